@@ -623,14 +623,15 @@ public abstract class AbstractBO implements BusinessObject {
 					"The getString() API for embedded objects is intended for use only with JSONObject instances. See get() method for other objects types");
 			}
 			JSONObject embedded = (JSONObject)instance;
-			while(path.contains(Settings.PATH_DELIMITER)) {
-				String componentAttribute = path.substring(0, path.indexOf(Settings.PATH_DELIMITER));
-				path = path.substring(path.indexOf(Settings.PATH_DELIMITER) + 1);
+			PropertyPath propertyPath = PropertyPath.compile(path);
+			for(int i = 0; i < propertyPath.size()-1; i++) {
+				String componentAttribute = propertyPath.getStep(i);
 				if(!embedded.has(componentAttribute)) {
 					return null;
 				}
 				embedded = embedded.getJSONObject(componentAttribute);
 			}
+			path = propertyPath.getStep(propertyPath.size()-1);
 			if(!embedded.has(path)) {
 				return null;
 			}
@@ -649,12 +650,56 @@ public abstract class AbstractBO implements BusinessObject {
 	@Override
 	public Object get(String path) {
 		if(path.indexOf(Settings.PATH_DELIMITER) != -1) {
+			PropertyPath propertyPath = PropertyPath.compile(path);
+			if(propertyPath.isPlain()) {
+				return getPathObject(propertyPath);
+			}
 			return getPathObject(Settings.convertToBOPath(path));
 		} else {
 			return getPathObject(path);
 		}
 	}
 
+	/**
+	 * Walks a compiled path whose steps are all property names.
+	 * Equivalent to getPathObject on the SDO form of the path, without re-parsing it.
+	 *
+	 * @param propertyPath compiled path
+	 * @return value at path
+	 */
+	private Object getPathObject(PropertyPath propertyPath) {
+		Property[] properties = propertyPath.resolve(getType());
+
+		AbstractBO current = this;
+		for(int i = 0; ; i++) {
+			Property property = properties[i];
+			if(property == null || ((ExtendedProperty)property).getContainingType() != current.getType()) {
+				// The object is of a different type than the one the path was resolved against
+				property = current.getType().getProperty(propertyPath.getStep(i));
+			}
+
+			Object value = current.get(property);
+			if(i == propertyPath.size()-1 || value == null) {
+				return value;
+			}
+
+			BusinessObject anchorBO = current.objectCreator.getExistingDataObject(value);
+			if(anchorBO == null) {
+				// This can happen when the object has just been created
+				// and the natural keys are not yet processed.
+				return null;
+			}
+			if(!(anchorBO instanceof AbstractBO)) {
+				StringBuilder remainingPath = new StringBuilder();
+				for(int j = i+1; j < propertyPath.size(); j++) {
+					remainingPath.append(SDO_PATH_DELIMITER).append(propertyPath.getStep(j));
+				}
+				return anchorBO.get(remainingPath.substring(1));
+			}
+			current = (AbstractBO)anchorBO;
+		}
+	}
+
 	protected DataObject getDeepestContainer(String path) {
 		if(path == null || "".equals(path))
 			throw new IllegalArgumentException("Path cannot be empty or null");
@@ -844,29 +889,26 @@ public abstract class AbstractBO implements BusinessObject {
 			return;
 		}
 
-		// adjust for ancestor path in child queries
-		String propertyPath = queryTree.makeRelative(fullPropertyPath);
-		String anchorPath = ((QueryFragment)queryTree.getRoot()).getAnchorPath();
+		// The path relative to the root of the query tree, compiled once per column
+		QueryTree.ReconstitutionPath compiledPath = queryTree.getReconstitutionPath(fullPropertyPath);
+		PropertyPath pathSteps = compiledPath.getPropertyPath();
+		String propertyPath = pathSteps.getPath();
 
 		// Since this builds the path for objects already persisted, the identifier value will not be null
-		String[] pathSteps = propertyPath.split(Settings.PATH_DELIMITER_REGEX);
 		BusinessObject current = this;
-		StringBuilder currentPath = new StringBuilder("");
 		StringBuilder anchor = new StringBuilder("");
 
-		for(String step: pathSteps) {
-			if(currentPath.length() > 0) {
-				currentPath.append(Settings.PATH_DELIMITER);
-			}
-			currentPath.append(step);
+		for(int stepIndex = 0; stepIndex < pathSteps.size(); stepIndex++) {
+			String step = pathSteps.getStep(stepIndex);
+			String currentPath = pathSteps.getPrefix(stepIndex);
 			Property property = current.getInstanceProperty(step);
 
 			//Property domainProperty = domainEntityType.getProperty(currentPath.toString());
-			Property domainProperty = queryTree.getProperty(currentPath.toString());
+			Property domainProperty = compiledPath.getDomainProperty(stepIndex);
 
 			if(property == null) {
 				if(getType().isOpen()) {
-					QueryTree.FragmentAnchor anchorFragment = queryTree.findFragment(currentPath.toString());
+					QueryTree.FragmentAnchor anchorFragment = queryTree.findFragment(currentPath);
 					if (anchorFragment != null) {
 						EntityType type = anchorFragment.fragment.getEntityType();
 						// We need the external type
@@ -915,7 +957,7 @@ public abstract class AbstractBO implements BusinessObject {
 						Collection<String> naturalKey = ((EntityType)property.getType()).getExpandedNaturalKey();
 						if(naturalKey != null) {
 							for(String key: naturalKey) {
-								Object keyValue = propertyResult.get(anchorPath+currentPath + Settings.PATH_DELIMITER + key);
+								Object keyValue = propertyResult.get(compiledPath.getAttributePath(stepIndex, key));
 								naturalKeyValues.put(key, keyValue);
 							}
 						}				
@@ -924,14 +966,14 @@ public abstract class AbstractBO implements BusinessObject {
 					// Get the identifier value
 					Object idValue = null;
 					if(((EntityType)property.getType()).getIdentifierProperty() != null) {
-						idValue = propertyResult.get(anchorPath+currentPath + Settings.PATH_DELIMITER + ((EntityType)property.getType()).getIdentifierProperty().getName());
+						idValue = propertyResult.get(compiledPath.getAttributePath(stepIndex, ((EntityType)property.getType()).getIdentifierProperty().getName()));
 					}
 					//propertyDO = getObjectCreator().findEntity(idValue, naturalKeyValues, domainProperty.getType(), getAnchor(anchor.toString()));
 					propertyDO = findQueryObject(fullPropertyPath, idValue, domainProperty.getType(), qti);
 
 					if(propertyDO == null) { // create and set the instance object
 						// check if we are narrowing
-						String narrowToType = (String) propertyResult.get(anchorPath+currentPath + Settings.PATH_DELIMITER + QueryFragment.ENTITY_TYPE_ATTRIBUTE);
+						String narrowToType = (String) propertyResult.get(compiledPath.getAttributePath(stepIndex, QueryFragment.ENTITY_TYPE_ATTRIBUTE));
 						EntityType objectType = (EntityType) property.getType();
 						if(narrowToType != null)
 							objectType = (EntityType) getObjectCreator().getDataModel().getShape().getType(
@@ -979,13 +1021,13 @@ public abstract class AbstractBO implements BusinessObject {
 				if(((EntityType)elementType).getNaturalKey() != null) {
 					Collection<String> naturalKey = ((EntityType)elementType).getExpandedNaturalKey();
 					for(String key: naturalKey) {
-						Object keyValue = propertyResult.get(anchorPath+currentPath + Settings.PATH_DELIMITER + key);
+						Object keyValue = propertyResult.get(compiledPath.getAttributePath(stepIndex, key));
 						naturalKeyValues.put(key, keyValue);
 					}
 				}
 				Object idValue = null;
 				if(((EntityType) elementType).getIdentifierProperty() != null) {
-					idValue = propertyResult.get(anchorPath+currentPath + Settings.PATH_DELIMITER + ((EntityType) elementType).getIdentifierProperty().getName());
+					idValue = propertyResult.get(compiledPath.getAttributePath(stepIndex, ((EntityType) elementType).getIdentifierProperty().getName()));
 				}
 				// find the element
 				//elementDO = getObjectCreator().findEntity(idValue, naturalKeyValues, domainElementType, getAnchor(anchor.toString()));
@@ -1002,7 +1044,7 @@ public abstract class AbstractBO implements BusinessObject {
 					Object elementInstance = null;
 
 					if( ((ExtendedProperty)property).isMap() ) {
-						Object keyValue = propertyResult.get(anchorPath+currentPath + Settings.PATH_DELIMITER + QueryFragment.MAP_KEY_ATTRIBUTE);
+						Object keyValue = propertyResult.get(compiledPath.getAttributePath(stepIndex, QueryFragment.MAP_KEY_ATTRIBUTE));
 						Map map = (Map) current.getInstance();
 						elementInstance = map.get(keyValue);
 					} 
@@ -1037,15 +1079,15 @@ public abstract class AbstractBO implements BusinessObject {
 				Object elementInstance = ((BusinessObject)elementDO).getInstance();				
 				if( ((ExtendedProperty)property).isMap() ) {
 					// If this is a map, get the key
-					Object keyValue = propertyResult.get(anchorPath+currentPath + Settings.PATH_DELIMITER + QueryFragment.MAP_KEY_ATTRIBUTE);
+					Object keyValue = propertyResult.get(compiledPath.getAttributePath(stepIndex, QueryFragment.MAP_KEY_ATTRIBUTE));
 					Map map = (Map) current.getInstance();
 					map.put(keyValue, elementInstance);
 				} else if ( ((ExtendedProperty)property).isList() ) {
-					Object indexValue = propertyResult.get(anchorPath+currentPath + Settings.PATH_DELIMITER + QueryFragment.LIST_INDEX_ATTRIBUTE);
+					Object indexValue = propertyResult.get(compiledPath.getAttributePath(stepIndex, QueryFragment.LIST_INDEX_ATTRIBUTE));
 					if(current.getInstance() instanceof JSONArray) {
 						// add it in the order we see it
 						JSONArray jsonArray = (JSONArray) current.getInstance();
-						visitor.add(currentPath.toString(), new ReconstituteRecordVisitor.AddEvent(jsonArray, elementInstance));
+						visitor.add(currentPath, new ReconstituteRecordVisitor.AddEvent(jsonArray, elementInstance));
 
 					} else {
 						List list = (List)current.getInstance();
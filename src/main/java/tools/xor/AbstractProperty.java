@@ -20,11 +20,6 @@
 package tools.xor;
 
 import java.lang.annotation.Annotation;
-import java.lang.invoke.CallSite;
-import java.lang.invoke.LambdaMetafactory;
-import java.lang.invoke.MethodHandle;
-import java.lang.invoke.MethodHandles;
-import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -61,6 +56,7 @@ import tools.xor.event.PropertyEvent;
 import tools.xor.generator.Generator;
 import tools.xor.service.DataStore;
 import tools.xor.service.Shape;
+import tools.xor.util.AccessorFactory;
 import tools.xor.util.ClassUtil;
 import tools.xor.util.Constants;
 import tools.xor.util.I18NUtils;
@@ -88,6 +84,8 @@ public abstract class AbstractProperty implements ExtendedProperty, Cloneable {
     protected BiConsumer setterFunction;
 	
 	protected Field      field;
+	protected Function   fieldGetterFunction;
+	protected BiConsumer fieldSetterFunction;
 	
 	/**
 	 * Business logic related annotations.
@@ -416,58 +414,16 @@ public abstract class AbstractProperty implements ExtendedProperty, Cloneable {
 	}
 
 	private void initGetterFunction() {
-		try {
-			MethodHandles.Lookup caller = MethodHandles.lookup();
-			MethodType getter=MethodType.methodType(getterMethod.getReturnType());
-			MethodHandle target=caller.findVirtual(getContainingType().getInstanceClass(), getterMethod.getName(), getter);
-			MethodType func= target.type();
-			/*
-			CallSite site = LambdaMetafactory.metafactory(caller,
-					"get",
-					MethodType.methodType(Supplier.class),
-					func.generic(), target, func);
-			*/
-			CallSite site = LambdaMetafactory.metafactory(
-				caller,
-				"apply",
-				MethodType.methodType(Function.class),
-				func.generic(), target, func);
-
-			MethodHandle factory = site.getTarget();
-			getterFunction =  (Function) factory.invokeExact();
-
-		} catch (Throwable t) {
-			// Not a serious issue as the value can be retrieved using field access
-			logger.info(
-				"Error while creating lambda function for getter method: " + getName() + ", Message: "
-					+ t.getMessage());
-			getterFunction = null;
-		}
+		getterFunction = AccessorFactory.getter(getContext(), getterMethod);
 	}
 
 	private void initSetterFunction() {
-		try {
-			MethodHandles.Lookup caller = MethodHandles.lookup();
-
-			MethodType setter = MethodType.methodType(Void.TYPE, setterMethod.getParameterTypes()[0]);
-			MethodHandle target = caller.findVirtual(getContainingType().getInstanceClass(),
-					setterMethod.getName(), setter);
-			MethodType func = target.type();
-			MethodType samMethodType = func.changeParameterType(0, Object.class).changeParameterType(1, Object.class);
-			CallSite site = LambdaMetafactory.metafactory(caller, "accept",
-					MethodType.methodType(BiConsumer.class),
-					samMethodType, target, func);
-
-			MethodHandle factory = site.getTarget();
-			setterFunction = (BiConsumer) factory.invokeExact();
+		setterFunction = AccessorFactory.setter(getContext(), setterMethod);
+	}
 
-		} catch (Throwable t) {
-			// Not a serious issue as the value can be set using field access
-			logger.info(
-				"Error while creating lambda function for setter method: " + getName()
-					+ ", Message: " + t.getMessage());
-			setterFunction = null;
-		}
+	private void initFieldFunctions() {
+		fieldGetterFunction = AccessorFactory.fieldGetter(getContext(), field);
+		fieldSetterFunction = AccessorFactory.fieldSetter(getContext(), field);
 	}
 
 	/**
@@ -507,6 +463,7 @@ public abstract class AbstractProperty implements ExtendedProperty, Cloneable {
 		initSetterFunction();
 
 		initApiVersion();
+		initFieldFunctions();
 		initByAnnotations();
 		initColumnName();
 
@@ -1042,11 +999,11 @@ public abstract class AbstractProperty implements ExtendedProperty, Cloneable {
 				} catch (Exception e) { // fallback to field access
 					originalAccessException = e;
 					logger.warn("Falling back to field access for method : " + getAttributeDetails(getterMethod.getName(), instance));
-					return ClassUtil.invokeFieldAsPrivileged(instance, field, null, true);
+					return readField(instance);
 				}
 			} else {
 				try {
-					return ClassUtil.invokeFieldAsPrivileged(instance, field, null, true);
+					return readField(instance);
 				} catch (Exception e) { // fallback to method access
 					originalAccessException = e;
 					logger.warn("Falling back to method access for field : " + getAttributeDetails(field.getName(), instance));
@@ -1115,11 +1072,11 @@ public abstract class AbstractProperty implements ExtendedProperty, Cloneable {
 						logger.warn(
 							"Falling back to field access for method : " + getAttributeDetails(setterMethod.getName(), instance));
 					}
-					ClassUtil.invokeFieldAsPrivileged(instance, field, propertyValue, false);
+					writeField(instance, propertyValue);
 				}
 			} else {
 				try {
-					ClassUtil.invokeFieldAsPrivileged(instance, field, propertyValue, false);
+					writeField(instance, propertyValue);
 				} catch (Exception e) { // fallback to method access
 					originalAccessException = e;
 					if(field != null) {
@@ -1137,6 +1094,30 @@ public abstract class AbstractProperty implements ExtendedProperty, Cloneable {
 		}
 	}
 
+	private Object readField(Object instance) throws
+		InvocationTargetException,
+		IllegalAccessException
+	{
+		if(fieldGetterFunction != null) {
+			return fieldGetterFunction.apply(instance);
+		} else {
+			// Fallback to reflection
+			return ClassUtil.invokeFieldAsPrivileged(instance, field, null, true);
+		}
+	}
+
+	private void writeField(Object instance, Object propertyValue) throws
+		InvocationTargetException,
+		IllegalAccessException
+	{
+		if(fieldSetterFunction != null) {
+			fieldSetterFunction.accept(instance, propertyValue);
+		} else {
+			// Fallback to reflection
+			ClassUtil.invokeFieldAsPrivileged(instance, field, propertyValue, false);
+		}
+	}
+
 	private void invokeSetter(Object instance, Object propertyValue) throws
 		InvocationTargetException,
 		IllegalAccessException
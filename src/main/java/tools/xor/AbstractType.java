@@ -36,6 +36,7 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.Stack;
+import java.util.function.Supplier;
 
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
@@ -54,6 +55,7 @@ import tools.xor.annotation.XorLambda;
 import tools.xor.generator.Generator;
 import tools.xor.generator.LinkedChoices;
 import tools.xor.service.Shape;
+import tools.xor.util.AccessorFactory;
 import tools.xor.util.ApplicationConfiguration;
 import tools.xor.util.ClassUtil;
 import tools.xor.util.Constants;
@@ -97,6 +99,7 @@ public abstract class AbstractType implements EntityType, Cloneable, Comparable<
 	private Shape shape;
 
 	private List<GeneratorDriver> entityGenerators = new LinkedList<>();
+	private volatile ConstructorAccessor constructorAccessor;
 
 	public AbstractType() {
 		classResolver = new ClassResolver(this);
@@ -1188,8 +1191,34 @@ public abstract class AbstractType implements EntityType, Cloneable, Comparable<
 	
 	@Override
 	public Object newInstance(Object instance) {
-		 return ClassUtil.newInstance(getInstanceClass());
-	}	
+		Class<?> instanceClass = getInstanceClass();
+
+		ConstructorAccessor accessor = this.constructorAccessor;
+		if(accessor == null || accessor.instanceClass != instanceClass) {
+			accessor = new ConstructorAccessor(instanceClass);
+			this.constructorAccessor = accessor;
+		}
+
+		if(accessor.constructor != null) {
+			return accessor.constructor.get();
+		}
+
+		// Fallback to reflection
+		return ClassUtil.newInstance(instanceClass);
+	}
+
+	/**
+	 * Creates instances of a class without reflection
+	 */
+	private static class ConstructorAccessor {
+		private final Class<?> instanceClass;
+		private final Supplier constructor;
+
+		ConstructorAccessor(Class<?> instanceClass) {
+			this.instanceClass = instanceClass;
+			this.constructor = instanceClass == null ? null : AccessorFactory.constructor(ClassUtil.getUnEnhanced(instanceClass));
+		}
+	}
 	
 	@Override
 	public Object generate(Settings settings, Property property, JSONObject rootedAt, List<JSONObject> entitiesToChooseFrom,
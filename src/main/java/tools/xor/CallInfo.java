@@ -20,8 +20,12 @@
 package tools.xor;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
@@ -38,6 +42,7 @@ import tools.xor.util.State;
 import tools.xor.util.graph.StateGraph;
 import tools.xor.util.graph.StateTree;
 import tools.xor.util.graph.TypeGraph;
+import tools.xor.view.View;
 
 public class CallInfo {
 	private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
@@ -57,6 +62,47 @@ public class CallInfo {
 	// attributes for optimization
 	private String           propertyPath;
 	private State            currentState;
+	private Map<PlanKey, List<Property>> propertyPlans; // shared by all the CallInfo objects of a traversal
+
+	/*
+	 * The properties of an object only depend on the below fields, so they are
+	 * computed once for all the objects with the same values, for e.g., the
+	 * elements of a collection.
+	 */
+	private static class PlanKey {
+		private final View view;
+		private final StateGraph.Scope scope;
+		private final State state;
+		private final String propertyPath;
+		private final Type type;
+
+		PlanKey(View view, StateGraph.Scope scope, State state, String propertyPath, Type type) {
+			this.view = view;
+			this.scope = scope;
+			this.state = state;
+			this.propertyPath = propertyPath;
+			this.type = type;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof PlanKey)) {
+				return false;
+			}
+			PlanKey other = (PlanKey) o;
+
+			return view == other.view
+				&& scope == other.scope
+				&& state == other.state
+				&& type == other.type
+				&& Objects.equals(propertyPath, other.propertyPath);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(view), scope, System.identityHashCode(state), propertyPath, System.identityHashCode(type));
+		}
+	}
 	
 	public CallInfo() {
 		// Empty constructor, needs to be followed with an init call
@@ -74,6 +120,7 @@ public class CallInfo {
 		this.parent = parent;
 		this.inputProperty = property;	
 		this.propertyPath = null;
+		this.propertyPlans = null;
 		
 		if(parent != null) {
 				operation = parent.getOperation();
@@ -320,28 +367,32 @@ public class CallInfo {
 		}
 	}
 	
-	public List<Property> getProperties(Type type) {
-		checkView();
+	private Map<PlanKey, List<Property>> getPropertyPlans() {
+		if(propertyPlans == null) {
+			propertyPlans = (parent == null) ? new HashMap<PlanKey, List<Property>>() : parent.getPropertyPlans();
+		}
 
-		EntityType entityType = (EntityType)settings.getEntityType();
-		TypeGraph sg = settings.getView().getTypeGraph(getDomainType(entityType), settings.getScope());
+		return propertyPlans;
+	}
 
-		if(logger.isDebugEnabled()) {
-			logger.debug("Type: " + getOutputRoot().getType().getName() + ", view: " 
-					+ settings.getView().getName() 
-					+ " type: " + type.getName()
-					+ " domain type: " + getDomainType((EntityType)type).getName());
-			logger.debug("State graph is " + ( (sg==null) ? "NOT":"") + " present");
-		}
+	/**
+	 * Returns the properties of the given type that are part of the view, at the current
+	 * position in the traversal. The result is shared with the other objects of the traversal
+	 * having the same state, property path and type, so it should not be modified.
+	 *
+	 * @param type of the object
+	 * @return properties to process
+	 */
+	public List<Property> getProperties(Type type) {
+		checkView();
 
 		if(!settings.getView().isExpanded()) {
 			settings.getView().expand();
 		}
 
-		List<Property> exactProperties = null;
-
+		State state = null;
 		if(getSettings().getScope() == StateGraph.Scope.EDGE) {
-			State state = getCurrentState();
+			state = getCurrentState();
 			if (settings.getAction() == AggregateAction.READ) {
 				Object obj = ClassUtil.getInstance(getInput());
 				if (obj != null) {
@@ -355,7 +406,33 @@ public class CallInfo {
 					}
 				}
 			}
+		}
+
+		PlanKey key = new PlanKey(settings.getView(), settings.getScope(), state, getInputPropertyPath(), type);
+		List<Property> result = getPropertyPlans().get(key);
+		if(result == null) {
+			result = Collections.unmodifiableList(getPropertyPlan(type, state));
+			getPropertyPlans().put(key, result);
+		}
+
+		return result;
+	}
+
+	private List<Property> getPropertyPlan(Type type, State state) {
+		EntityType entityType = (EntityType)settings.getEntityType();
+		TypeGraph sg = settings.getView().getTypeGraph(getDomainType(entityType), settings.getScope());
 
+		if(logger.isDebugEnabled()) {
+			logger.debug("Type: " + getOutputRoot().getType().getName() + ", view: " 
+					+ settings.getView().getName() 
+					+ " type: " + type.getName()
+					+ " domain type: " + getDomainType((EntityType)type).getName());
+			logger.debug("State graph is " + ( (sg==null) ? "NOT":"") + " present");
+		}
+
+		List<Property> exactProperties = null;
+
+		if(getSettings().getScope() == StateGraph.Scope.EDGE) {
 			// The state graph has full blown attributes for the type
 			// We need to get only the exact properties
 			exactProperties = sg.next(
@@ -386,6 +463,9 @@ public class CallInfo {
 		}
 
 		if(settings.getView().getRegexAttributes() != null) {
+			// The list from the state graph is cached, so it is not modified
+			exactProperties = new ArrayList<>(exactProperties);
+
 			// Get the RegEx properties
 			Set<String> isIncluded = new HashSet<>();
 			for (Property p : exactProperties) {
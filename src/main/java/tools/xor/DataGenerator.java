@@ -24,6 +24,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -31,11 +32,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.logging.log4j.LogManager;
@@ -72,12 +75,15 @@ public class DataGenerator
         IMPORTER_POOL_SIZE = poolSize;
     }    
 
-    // Used for throttle control
-    public static final int HIGH_WATERMARK = 1500;
-    public static final int LOW_WATERMARK = 1000;
+    // Used for throttle control. Number of batches that can be waiting for an importer,
+    // beyond which the generator blocks until the importer catches up.
+    public static final int QUEUE_CAPACITY = 2;
+
+    // How long the generator waits for a queue slot before checking if the importer failed
+    private static final long HAND_OFF_WAIT_MILLIS = 100;
 
     private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
-    public static final JSONObject END_MARKER = new JSONObject();
+    public static final List<JSONObject> END_MARKER = Collections.unmodifiableList(new ArrayList<JSONObject>());
     public static final Object SUCCESS = new Object();
 
     private TypeMapper typeMapper;
@@ -90,8 +96,8 @@ public class DataGenerator
     private boolean sameThread;
 
     // DataGenerator and DataImporter communication data structures
-    private ConcurrentLinkedQueue[] importerQueues = new ConcurrentLinkedQueue[IMPORTER_POOL_SIZE];
-    private boolean reachedHigh[] = new boolean[DataGenerator.IMPORTER_POOL_SIZE];
+    // Each entry is a batch of DataImporter.COMMIT_SIZE objects that is committed together
+    private List<BlockingQueue<List<JSONObject>>> importerQueues = new ArrayList<>(IMPORTER_POOL_SIZE);
 
     public DataGenerator (List<String> types, TypeMapper typeMapper, Settings settings, DataModelFactory dasFactory, boolean sameThread) {
         this.types = types;
@@ -142,16 +148,21 @@ public class DataGenerator
         }
 
         Set<String> processed = new HashSet<>();
-        for(String typename: types) {
-            Type type = typeMapper.getShape().getType(typename);
-            if(hasGenerator(type)) {
-                if(sameThread) {
-                    generateInstancesSameThread((EntityType)type, settings);
-                } else {
-                    generateInstancesUsingJobs((EntityType)type, settings);
+        try {
+            for (String typename : types) {
+                Type type = typeMapper.getShape().getType(typename);
+                if (hasGenerator(type)) {
+                    if (sameThread) {
+                        generateInstancesSameThread((EntityType)type, settings);
+                    }
+                    else {
+                        generateInstancesUsingJobs((EntityType)type, settings);
+                    }
+                    processed.add(typename);
                 }
-                processed.add(typename);
             }
+        } finally {
+            importers.shutdown();
         }
     }
 
@@ -171,9 +182,9 @@ public class DataGenerator
     }
 
     private void initQueues() {
+        importerQueues.clear();
         for(int i = 0; i < IMPORTER_POOL_SIZE; i++) {
-            importerQueues[i] = new ConcurrentLinkedQueue();;
-            reachedHigh[i] = false;
+            importerQueues.add(new ArrayBlockingQueue<List<JSONObject>>(QUEUE_CAPACITY));
         }
     }
 
@@ -190,7 +201,7 @@ public class DataGenerator
                 throw new RuntimeException("Writing to CSV can have only 1 importer job");
             }
 
-            importJobs.add(importers.submit(new DataImporter(this, importerQueues[i], dataStore, typeMapper, settings)));
+            importJobs.add(importers.submit(new DataImporter(this, importerQueues.get(i), dataStore, typeMapper, settings)));
         }
 
         return importJobs;
@@ -212,63 +223,65 @@ public class DataGenerator
             JDBCSessionContext sc = dataStore.getSessionContext();
             sc.beginTransaction();
 
-            generator.init(sc.getConnection(), visitor);
-            generator.processVisitors();
-
-            Iterator iter = (Iterator) generator;
-            int generationCount = 0;
-            while(iter.hasNext()) {
-                int jobNo = generationCount%IMPORTER_POOL_SIZE;
-
-                if(iter.next() == null) {
-                    continue;
-                }
-
-                while(reachedHigh[jobNo]) {
-                    // pause until the importer drains down the queue below the low water mark
-                    try {
-                        // First check if the importer ran into an exception
-                        if(importJobs.get(jobNo).isDone()) {
-                            try {
-                                importJobs.get(jobNo).get();
-                            }
-                            catch (ExecutionException e) {
-                                // If an exception occurred we stop right away
-                                throw ClassUtil.wrapRun(e);
-                            }
-                        }
-                        Thread.sleep(1);
-                    }
-                    catch (InterruptedException e) {
-                        throw ClassUtil.wrapRun(e);
+            try {
+                generator.init(sc.getConnection(), visitor);
+                generator.processVisitors();
+
+                Iterator iter = (Iterator)generator;
+                int batchCount = 0;
+                List<JSONObject> batch = new ArrayList<>(DataImporter.COMMIT_SIZE);
+                while (iter.hasNext()) {
+                    if (iter.next() == null) {
+                        continue;
                     }
 
-                    if(importerQueues[jobNo].size() <= LOW_WATERMARK) {
-                        // reset the flag once the queue capacity falls
-                        // below low watermark
-                        reachedHigh[jobNo] = false;
+                    batch.add(generateObject(entityType, visitor));
+                    if (batch.size() == DataImporter.COMMIT_SIZE) {
+                        handOff(batch, batchCount++ % IMPORTER_POOL_SIZE, importJobs);
+                        batch = new ArrayList<>(DataImporter.COMMIT_SIZE);
                     }
                 }
-
-                generateObject(entityType, visitor, jobNo);
-
-                // Update the generation count
-                generationCount++;
-
-                // Check if the queue capacity has reached the high water mark
-                if(importerQueues[jobNo].size() >= HIGH_WATERMARK) {
-                    reachedHigh[jobNo] = true;
+                if (!batch.isEmpty()) {
+                    handOff(batch, batchCount % IMPORTER_POOL_SIZE, importJobs);
                 }
+            } catch (RuntimeException e) {
+                // Stop the importers that are still running, their uncommitted batch is rolled back
+                for (Future importJob : importJobs) {
+                    importJob.cancel(true);
+                }
+                throw e;
+            } finally {
+                // release the connection
+                sc.rollback();
+                sc.close();
             }
 
-            // release the connection
-            sc.rollback();
-            sc.close();
+            waitForJobs(importJobs);
+        }
+    }
 
-            if(waitForJobs(importJobs)) {
-                break;
+    /**
+     * Hands off a batch to an importer, blocking while the importer queue is full.
+     * If the importer fails while the generator is waiting, the failure is rethrown.
+     *
+     * @param batch of objects to import
+     * @param jobNo of the importer
+     * @param importJobs importer results
+     */
+    private void handOff(List<JSONObject> batch, int jobNo, List<Future> importJobs) {
+        Future importJob = importJobs.get(jobNo);
+        try {
+            while (!importerQueues.get(jobNo).offer(batch, HAND_OFF_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (importJob.isDone()) {
+                    // An importer only finishes early if it ran into an exception
+                    importJob.get();
+                    throw new RuntimeException("Importer stopped before all the data was generated");
+                }
             }
         }
+        catch (InterruptedException | ExecutionException e) {
+            throw ClassUtil.wrapRun(e);
+        }
     }
     
     /*
@@ -301,7 +314,7 @@ public class DataGenerator
                     continue;
                 }
 
-                JSONObject json = generateObject(entityType, visitor, -1);
+                JSONObject json = generateObject(entityType, visitor);
                 try {
                     DataImporter.importJson(dataStore, json, typeMapper, settings, this);
                 } catch(SQLException sqe) {
@@ -316,12 +329,16 @@ public class DataGenerator
         }
     }    
 
-    private boolean waitForJobs(List<Future> importJobs) {
-
-        boolean encounteredError = false;
+    private void waitForJobs(List<Future> importJobs) {
 
+        RuntimeException error = null;
         for (int i = 0; i < IMPORTER_POOL_SIZE; i++) {
-            importerQueues[i].offer(DataGenerator.END_MARKER);
+            try {
+                handOff(DataGenerator.END_MARKER, i, importJobs);
+            }
+            catch (RuntimeException e) {
+                // reported below when waiting for the job
+            }
         }
 
         // Wait for the import jobs to finish
@@ -331,14 +348,18 @@ public class DataGenerator
             }
             catch (Exception e) {
                 logger.error(ExceptionUtils.getStackTrace(e));
-                encounteredError = true;
+                if(error == null) {
+                    error = ClassUtil.wrapRun(e);
+                }
             }
         }
 
-        return encounteredError;
+        if(error != null) {
+            throw error;
+        }
     }
 
-    private JSONObject generateObject(EntityType entityType, StateGraph.ObjectGenerationVisitor visitor, int jobNo) {
+    private JSONObject generateObject(EntityType entityType, StateGraph.ObjectGenerationVisitor visitor) {
         // Generate the JSONObject
         JSONObject json = new JSONObject();
 
@@ -358,11 +379,6 @@ public class DataGenerator
         }
         json.put(Constants.XOR.TYPE, entityType.getName());
 
-        if(jobNo >= 0) {
-            importerQueues[jobNo].offer(json);
-        }
-        
-        // Needed when running within same thread
         return json;
     }
 
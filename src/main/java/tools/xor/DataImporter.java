@@ -20,8 +20,9 @@
 package tools.xor;
 
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -48,13 +49,13 @@ public class DataImporter implements Callable
 
     private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
 
-    private ConcurrentLinkedQueue<JSONObject> queue;
+    private BlockingQueue<List<JSONObject>> queue;
     private Settings settings;
     private TypeMapper typeMapper;
     private JDBCDataStore dataStore;
     private DataGenerator dataGenerator;
 
-    public DataImporter(DataGenerator dataGenerator, ConcurrentLinkedQueue<JSONObject> queue, DataStore dataStore, TypeMapper typeMapper, Settings settings) {
+    public DataImporter(DataGenerator dataGenerator, BlockingQueue<List<JSONObject>> queue, DataStore dataStore, TypeMapper typeMapper, Settings settings) {
         this.queue = queue;
         this.settings = settings;
         this.typeMapper = typeMapper;
@@ -73,36 +74,31 @@ public class DataImporter implements Callable
             // Initial cleanup
             dataStore.getSessionContext().commit();
             
-            int i = 1;
             while (true) {
-                // Give a millisecond for the data to start flowing
-                while (queue.isEmpty()) {
-                    Thread.sleep(1);
-                }
-
-                JSONObject json = queue.remove();
+                // Blocks until the generator hands off the next batch
+                List<JSONObject> batch = queue.take();
 
-                if (json == DataGenerator.END_MARKER) {
+                if (batch == DataGenerator.END_MARKER) {
                     break;
                 }
 
-                importJson(dataStore, json, typeMapper, settings, dataGenerator);
+                for(JSONObject json: batch) {
+                    importJson(dataStore, json, typeMapper, settings, dataGenerator);
+                }
 
-                if (i++ % COMMIT_SIZE == 0) {
-                    // commit in batches
-                    commit();
+                // commit in batches
+                commit();
 
-                    // Begin a new transaction
-                    dataStore.getSessionContext().beginTransaction();
-                }
+                // Begin a new transaction
+                dataStore.getSessionContext().beginTransaction();
             }
 
             // last commit
             commit();
         } catch(Exception e) {
-            // if we are here and if the queue is not empty then we empty the
-            // queue, so the generator is not kept waiting
-            e.printStackTrace();
+            // The generator notices that this importer is done and stops
+            // handing off batches to it
+            logger.error("Import of the generated data failed", e);
             throw e;
         } finally {
             dataStore.getSessionContext().closeResources();
@@ -0,0 +1,110 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prefetch cache populated by the PrefetchPlanner. It holds the persistent entities
+ * keyed by their type and identifier, and also remembers the identifiers that were
+ * looked up and did not have an entity, so these are not looked up again.
+ *
+ * The collections are not cached, they are obtained from the owner entity.
+ *
+ * @author Dilip Dalton
+ */
+public class DefaultPrefetchCache implements PrefetchCache {
+
+	// The identifiers are keyed by their string value, since the Java type of an
+	// identifier in the input can be different from the persistent one
+	private Map<String, Map<String, Object>> entities = new HashMap<>();
+	private Map<String, Set<String>> prefetched = new HashMap<>();
+
+	/**
+	 * Record that the entity with the given id was looked up.
+	 *
+	 * @param type of the entity
+	 * @param id of the entity
+	 * @param entity persistent entity, null if it does not exist
+	 */
+	public void addEntity(Type type, Object id, Object entity) {
+		String key = getKey(id);
+
+		Set<String> ids = prefetched.get(type.getName());
+		if(ids == null) {
+			ids = new HashSet<>();
+			prefetched.put(type.getName(), ids);
+		}
+		ids.add(key);
+
+		if(entity != null) {
+			Map<String, Object> byId = entities.get(type.getName());
+			if(byId == null) {
+				byId = new HashMap<>();
+				entities.put(type.getName(), byId);
+			}
+			byId.put(key, entity);
+		}
+	}
+
+	/**
+	 * Check if the entity was looked up. If so, getEntity returning null means the
+	 * entity does not exist.
+	 *
+	 * @param type of the entity
+	 * @param key of the entity
+	 * @return true if the entity was looked up
+	 */
+	public boolean isPrefetched(Type type, Object key) {
+		Set<String> ids = prefetched.get(type.getName());
+
+		return ids != null && ids.contains(getKey(key));
+	}
+
+	@Override
+	public Object getEntity(Type type, Object key) {
+		Map<String, Object> byId = entities.get(type.getName());
+
+		return byId == null ? null : byId.get(getKey(key));
+	}
+
+	@Override
+	public Collection getCollection(ExtendedProperty collectionProperty, Object ownerPrimaryKey) {
+		return null;
+	}
+
+	@Override
+	public Collection getDefaultCollection(ExtendedProperty collectionProperty) {
+		return null;
+	}
+
+	private String getKey(Object key) {
+		// A key made up of a single field
+		if(key instanceof Map && ((Map)key).size() == 1) {
+			key = ((Map)key).values().iterator().next();
+		}
+
+		return key == null ? null : key.toString();
+	}
+}
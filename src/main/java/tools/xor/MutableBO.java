@@ -84,21 +84,34 @@ public class MutableBO extends AbstractBO {
 		this.getObjectCreator().setShare(true);
 		this.createAggregate(settings);
 
-		// Create an object creator for the target root
-        TypeMapper typeMapper = getObjectCreator().getTypeMapper().newInstance(MapperSide.DOMAIN);
-        ObjectCreator oc = new ObjectCreator(settings, getObjectCreator().getDataStore(), typeMapper);		
-		oc.setShare(true);
-		callInfo.setOutputObjectCreator(oc);
-		ModifyOperation operation = new ModifyOperation();
-		callInfo.setOperation(operation);
+		// Load the persistent entities of the input in bulk
+		boolean isPrefetch = settings.isPrefetch() && settings.getPrefetchCache() == null;
+		if(isPrefetch) {
+			settings.setPrefetchCache(new PrefetchPlanner(getObjectCreator(), settings).prefetch());
+		}
 
-		BusinessObject target = operation.createTarget(callInfo, getEntityType(callInfo, settings));
-		oc.setObjectGraph(target);
-		callInfo.setOutput(target);
-		settings.setPersist(true);
-		operation.execute(callInfo);
+		try {
+			// Create an object creator for the target root
+			TypeMapper typeMapper = getObjectCreator().getTypeMapper().newInstance(MapperSide.DOMAIN);
+			ObjectCreator oc = new ObjectCreator(settings, getObjectCreator().getDataStore(), typeMapper);
+			oc.setShare(true);
+			callInfo.setOutputObjectCreator(oc);
+			ModifyOperation operation = new ModifyOperation();
+			callInfo.setOperation(operation);
+
+			BusinessObject target = operation.createTarget(callInfo, getEntityType(callInfo, settings));
+			oc.setObjectGraph(target);
+			callInfo.setOutput(target);
+			settings.setPersist(true);
+			operation.execute(callInfo);
 
-		return target;
+			return target;
+		} finally {
+			// The cache is only valid for this update
+			if(isPrefetch) {
+				settings.setPrefetchCache(null);
+			}
+		}
 	}
 
 	@Override
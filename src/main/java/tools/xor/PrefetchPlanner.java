@@ -0,0 +1,157 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import tools.xor.providers.jdbc.DBTranslator;
+import tools.xor.service.DataStore;
+import tools.xor.util.ObjectCreator;
+import tools.xor.view.QueryTreeInvocation;
+
+/**
+ * Populates a DefaultPrefetchCache from the input of an update, so the persistent
+ * entities are not loaded one at a time while the input graph is traversed.
+ *
+ * The input data objects are created by following the view's TypeGraph (see
+ * BusinessObject#createAggregate), so only the entities reachable by the view,
+ * including the collection elements, are prefetched. The identifiers are grouped
+ * by the domain type and loaded using DataStore#findByIds, in chunks that fit
+ * the IN list of the database, see DBTranslator#getMaxInListSize.
+ *
+ * @author Dilip Dalton
+ */
+public class PrefetchPlanner {
+	private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
+
+	private final ObjectCreator input;
+	private final Settings settings;
+
+	/**
+	 * @param input object creator containing the data objects of the input graph
+	 * @param settings of the update
+	 */
+	public PrefetchPlanner(ObjectCreator input, Settings settings) {
+		this.input = input;
+		this.settings = settings;
+	}
+
+	/**
+	 * Load the persistent entities of the input graph in bulk.
+	 *
+	 * @return cache of the persistent entities
+	 */
+	public DefaultPrefetchCache prefetch() {
+		DefaultPrefetchCache cache = new DefaultPrefetchCache();
+		DataStore dataStore = input.getDataStore();
+		TypeMapper typeMapper = input.getTypeMapper();
+		int chunkSize = getChunkSize(dataStore);
+
+		for(Map.Entry<EntityType, List<Object>> entry: getIdsByType().entrySet()) {
+			EntityType domainType = entry.getKey();
+			List<Object> ids = entry.getValue();
+
+			// Needed to get the identifier of the persistent entities
+			ObjectCreator oc = new ObjectCreator(settings, dataStore, typeMapper.newInstance(MapperSide.DOMAIN));
+			Map<String, Object> found = new LinkedHashMap<>();
+			for(int from = 0; from < ids.size(); from += chunkSize) {
+				List<Object> chunk = ids.subList(from, Math.min(ids.size(), from + chunkSize));
+				for(Object entity: dataStore.findByIds(domainType, chunk)) {
+					BusinessObject bo = oc.createDataObject(entity, domainType, null, null);
+					found.put(bo.getIdentifierValue().toString(), entity);
+				}
+			}
+
+			for(Object id: ids) {
+				cache.addEntity(domainType, id, found.get(id.toString()));
+			}
+
+			if(logger.isDebugEnabled()) {
+				logger.debug("Prefetched " + found.size() + " of " + ids.size() + " entities of type " + domainType.getName());
+			}
+		}
+
+		return cache;
+	}
+
+	/*
+	 * The number of ids loaded by a single findByIds call. The translator also
+	 * limits it by the number of bind parameters the database accepts.
+	 */
+	private static int getChunkSize(DataStore dataStore) {
+		DBTranslator translator = dataStore.getDBTranslator();
+
+		return translator != null ? translator.getMaxInListSize() : QueryTreeInvocation.MAX_INLIST_SIZE;
+	}
+
+	/*
+	 * Group the identifiers of the input entities by their domain type,
+	 * see AbstractDataStore#getPersistentObject
+	 */
+	private Map<EntityType, List<Object>> getIdsByType() {
+		Map<EntityType, List<Object>> result = new LinkedHashMap<>();
+		Map<EntityType, Map<String, Object>> unique = new LinkedHashMap<>();
+		TypeMapper typeMapper = input.getTypeMapper();
+
+		for(BusinessObject from: input.getDataObjects()) {
+			if(!(from.getType() instanceof EntityType)) {
+				continue;
+			}
+			EntityType type = (EntityType)from.getType();
+			if(type.isEmbedded() || type.getIdentifierProperty() == null) {
+				continue;
+			}
+
+			Serializable id = (Serializable)((ExtendedProperty)type.getIdentifierProperty()).getValue(from);
+			if(id == null || "".equals(id)) {
+				continue;
+			}
+
+			String typeName = typeMapper.toDomain(
+				type.isDomainType() ?
+					type.getName() :
+					typeMapper.getDomainShape().getType(type.getEntityName()).getInstanceClass().getName(), from);
+			Type domainType = typeMapper.getDomainShape().getType(typeName);
+			if(!(domainType instanceof EntityType)) {
+				continue;
+			}
+
+			Map<String, Object> ids = unique.get(domainType);
+			if(ids == null) {
+				ids = new LinkedHashMap<>();
+				unique.put((EntityType)domainType, ids);
+			}
+			ids.put(id.toString(), id);
+		}
+
+		for(Map.Entry<EntityType, Map<String, Object>> entry: unique.entrySet()) {
+			result.put(entry.getKey(), new ArrayList<>(entry.getValue().values()));
+		}
+
+		return result;
+	}
+}
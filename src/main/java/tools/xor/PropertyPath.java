@@ -0,0 +1,196 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import tools.xor.util.ApplicationConfiguration;
+import tools.xor.util.Constants;
+
+/**
+ * A property path compiled into its steps, so the path is not parsed again
+ * each time it is used to read or reconstitute a value.
+ *
+ * The steps are separated by Settings.PATH_DELIMITER. Compiled paths are cached and
+ * shared across threads, so an instance is immutable once created.
+ * The caches are bounded, since the paths can come from user input and the types
+ * of a shape that is no longer used should not be retained. A cache that is full is
+ * cleared, so the lookups do not need a lock.
+ */
+public class PropertyPath
+{
+	public static final int DEFAULT_CACHE_SIZE = 4096;
+
+	// A path is usually resolved against a single type, or a few types of different shapes
+	private static final int MAX_RESOLVED_TYPES = 16;
+
+	private static final int CACHE_SIZE;
+
+	static {
+		int size = DEFAULT_CACHE_SIZE;
+		if (ApplicationConfiguration.config().containsKey(Constants.Config.PROPERTY_PATH_CACHE_SIZE)) {
+			size = ApplicationConfiguration.config().getInt(Constants.Config.PROPERTY_PATH_CACHE_SIZE);
+		}
+		CACHE_SIZE = size;
+	}
+
+	private static final Map<String, PropertyPath> compiledPaths = new ConcurrentHashMap<>();
+
+	private final String path;
+	private final String[] steps;
+	private final String[] prefixes; // path up to and including the step
+	private final boolean plain;     // true if every step is a property name
+	private final Map<Type, Property[]> resolved = new ConcurrentHashMap<>();
+
+	private PropertyPath(String path) {
+		this.path = path;
+		this.steps = path.split(Settings.PATH_DELIMITER_REGEX);
+		this.prefixes = new String[steps.length];
+
+		// split() drops a trailing empty step, so such a path is never plain
+		boolean isPlain = !path.endsWith(Settings.PATH_DELIMITER);
+		StringBuilder prefix = new StringBuilder();
+		for(int i = 0; i < steps.length; i++) {
+			if(i > 0) {
+				prefix.append(Settings.PATH_DELIMITER);
+			}
+			prefix.append(steps[i]);
+			prefixes[i] = prefix.toString();
+
+			if(!isPropertyName(steps[i])) {
+				isPlain = false;
+			}
+		}
+		this.plain = isPlain;
+	}
+
+	/**
+	 * Returns the compiled form of the given path
+	 *
+	 * @param path property path
+	 * @return compiled path
+	 */
+	public static PropertyPath compile(String path) {
+		PropertyPath result = compiledPaths.get(path);
+		if(result == null) {
+			result = new PropertyPath(path);
+			if(compiledPaths.size() >= CACHE_SIZE) {
+				compiledPaths.clear();
+			}
+			compiledPaths.put(path, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return number of compiled paths that are cached
+	 */
+	public static int getCacheSize() {
+		return compiledPaths.size();
+	}
+
+	private static boolean isPropertyName(String step) {
+		if(step.isEmpty()) {
+			return false;
+		}
+
+		// Steps with an index, attribute filter or operator need to be parsed
+		for(int i = 0; i < step.length(); i++) {
+			switch(step.charAt(i)) {
+			case '[':
+			case ']':
+			case '/':
+			case '=':
+			case '+':
+			case '<':
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public String getPath() {
+		return this.path;
+	}
+
+	public int size() {
+		return this.steps.length;
+	}
+
+	public String getStep(int index) {
+		return this.steps[index];
+	}
+
+	/**
+	 * Returns the path up to and including the given step
+	 *
+	 * @param index of the step
+	 * @return path prefix
+	 */
+	public String getPrefix(int index) {
+		return this.prefixes[index];
+	}
+
+	/**
+	 * @return true if all the steps refer to a property and do not have an index or filter
+	 */
+	public boolean isPlain() {
+		return this.plain;
+	}
+
+	/**
+	 * Resolves the properties of the steps starting from the given type. A step is
+	 * resolved against the type of the previous step, or its element type if it is
+	 * a collection. The steps that cannot be resolved are null, for e.g., open content
+	 * or properties of a subtype.
+	 *
+	 * @param type from which the path starts
+	 * @return property of each step
+	 */
+	public Property[] resolve(Type type) {
+		Property[] result = resolved.get(type);
+		if(result == null) {
+			result = new Property[steps.length];
+			Type current = type;
+			for(int i = 0; i < steps.length && current != null; i++) {
+				Property property = current.getProperty(steps[i]);
+				if(property == null) {
+					break;
+				}
+				result[i] = property;
+				current = property.isMany() ? ((ExtendedProperty)property).getElementType() : property.getType();
+			}
+			if(resolved.size() >= MAX_RESOLVED_TYPES) {
+				resolved.clear();
+			}
+			resolved.put(type, result);
+		}
+
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return this.path;
+	}
+}
@@ -30,11 +30,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.imageio.ImageIO;
@@ -87,7 +89,7 @@ import tools.xor.view.ViewType;
  * @author Dilip Dalton
  *
  */
-public class Settings {
+public class Settings implements Cloneable {
 	private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
 
 	public static final String PATH_DELIMITER = ".";
@@ -188,6 +190,13 @@ public class Settings {
 	private Integer offset;
 	private Map<String, Object> nextToken;
 
+	// Parallel query related attributes
+	private ExecutorService queryExecutor; // Executor on which the queries of this request are run
+	private long queryTimeout; // in milliseconds, a value of 0 waits indefinitely
+	private Integer queryJoinThreshold; // overrides the query.join.threshold property
+	private Integer fetchSize; // used by the queries whose view does not have a fetch size
+	private int bulkPoolSize = 1; // number of threads processing the aggregates of a list input
+
 	private int apiVersion = getCurrentApiVersion();
 	
 	private boolean baseline; // Retrieve a domain based object, when using the query API
@@ -208,6 +217,7 @@ public class Settings {
 	
 	// User provided data that is efficiently obtained
 	private PrefetchCache prefetchCache;
+	private boolean prefetch; // populate a default prefetch cache from the input before an update
 
 	private ImportMethod importMethod = ImportMethod.PREPARED_STATEMENT;
 
@@ -865,6 +875,134 @@ public class Settings {
 		this.limit = limit;
 	}
 
+	public ExecutorService getQueryExecutor() {
+		return queryExecutor;
+	}
+
+	/**
+	 * Run the queries of this request on the given executor instead of the shared
+	 * query executor. Useful to isolate the queries of a tenant.
+	 * The executor is not shut down by the framework.
+	 *
+	 * If the queries are pipelined, a child query holds a thread of this executor while
+	 * it waits for the ids of its parent. So the executor should not be shared
+	 * with other requests, and should either be unbounded or have more threads than
+	 * the QueryTree instances of the view. Otherwise the parent queries can be starved.
+	 *
+	 * @param queryExecutor to use for the parallel queries
+	 */
+	public void setQueryExecutor(ExecutorService queryExecutor) {
+		this.queryExecutor = queryExecutor;
+	}
+
+	public long getQueryTimeout() {
+		return queryTimeout;
+	}
+
+	/**
+	 * The time given to all the queries of this request to complete.
+	 * The queries still running after this time are cancelled and an exception is thrown.
+	 *
+	 * @param queryTimeout in milliseconds, 0 waits indefinitely
+	 */
+	public void setQueryTimeout(long queryTimeout) {
+		this.queryTimeout = queryTimeout;
+	}
+
+	public Integer getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * The number of rows fetched in a round trip by the queries of this request, unless
+	 * the view of the query has its own fetch size. Also used by the EntityScroll of a
+	 * migration, in place of the batch size.
+	 *
+	 * @param fetchSize number of rows, null to use the driver default
+	 */
+	public void setFetchSize(Integer fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	public int getBulkPoolSize() {
+		return bulkPoolSize;
+	}
+
+	/**
+	 * The number of threads that create/update/patch the aggregates of a list input.
+	 * The list is split into contiguous parts, and each part is processed and flushed in
+	 * its own transaction. So the aggregates should not refer to each other.
+	 * Only supported by the JDBC data store when there is no existing transaction.
+	 *
+	 * The request is not atomic. If a part fails, the parts that have not started are
+	 * cancelled, and the failure is thrown once the running parts have finished, so no
+	 * result is returned. The parts that have committed are not rolled back. On success
+	 * the result lists the aggregates of all the parts in the order of the input.
+	 *
+	 * @param bulkPoolSize number of threads, 1 processes the list on the calling thread
+	 */
+	public void setBulkPoolSize(int bulkPoolSize) {
+		this.bulkPoolSize = bulkPoolSize;
+	}
+
+	/**
+	 * Creates a copy that is modified independently of these settings, for example by
+	 * the thread processing a part of a bulk request or by a QueryScroll fetching its pages.
+	 *
+	 * The collections are copied, so the parameters, tags, associations and paging token
+	 * of the copy can be changed. Their elements and all the other referenced objects,
+	 * such as the view, shape, interceptor, session context, prefetch cache and the
+	 * global sequence, are shared with the copy.
+	 *
+	 * @return copy of the settings
+	 */
+	public Settings copy() {
+		Settings result;
+		try {
+			result = (Settings) super.clone();
+		}
+		catch (CloneNotSupportedException e) {
+			throw ClassUtil.wrapRun(e);
+		}
+
+		result.params = copyOf(params);
+		result.actionOverrides = copyOf(actionOverrides);
+		result.userkeyOverrides = copyOf(userkeyOverrides);
+		result.references = copyOf(references);
+		result.expandedAssociations = copyOf(expandedAssociations);
+		result.prunedAssociations = copyOf(prunedAssociations);
+		result.pruneRelative = pruneRelative == null ? null : new HashSet<>(pruneRelative);
+		result.additionalFunctions = copyOf(additionalFunctions);
+		result.tags = copyOf(tags);
+		result.nextToken = copyOf(nextToken);
+		result.collectionSparseness = copyOf(collectionSparseness);
+		result.shouldCreateIfMissing = copyOf(shouldCreateIfMissing);
+
+		return result;
+	}
+
+	private static <K, V> Map<K, V> copyOf(Map<K, V> map) {
+		return map == null ? null : new LinkedHashMap<>(map);
+	}
+
+	private static <T> List<T> copyOf(List<T> list) {
+		return list == null ? null : new ArrayList<>(list);
+	}
+
+	public Integer getQueryJoinThreshold() {
+		return queryJoinThreshold;
+	}
+
+	/**
+	 * If a parent query returns more ids than this threshold, a SQL child query
+	 * is joined with the parent ids using the query join table instead of an IN list.
+	 *
+	 * @param queryJoinThreshold number of parent ids, 0 disables the query join table
+	 */
+	public void setQueryJoinThreshold(Integer queryJoinThreshold) {
+		this.queryJoinThreshold = queryJoinThreshold;
+	}
+
 	public Type getEntityType() {
 		return entityType;
 	}
@@ -1410,6 +1548,21 @@ public class Settings {
 		this.prefetchCache = prefetchCache;
 	}
 
+	public boolean isPrefetch() {
+		return prefetch;
+	}
+
+	/**
+	 * If enabled and a prefetch cache is not provided, the persistent entities referenced
+	 * by the input of an update are loaded in bulk before the update is processed.
+	 * @see PrefetchPlanner
+	 *
+	 * @param prefetch true to load the entities in bulk
+	 */
+	public void setPrefetch(boolean prefetch) {
+		this.prefetch = prefetch;
+	}
+
 	public boolean isGenerateVisual ()
 	{
 		return this.graphFileName != null && !"".equals(this.graphFileName.trim());
@@ -94,10 +94,14 @@ public abstract class AbstractOperation implements Operation {
 		}
 
 		// Set the chunk values
+		// A null value is compared using IS NULL, so it does not have a parameter
 		Map<String, Object> nextToken = settings.getNextToken();
 		if (nextToken != null) {
 			for (Map.Entry<String, Object> entry : nextToken.entrySet()) {
 				if (!query.hasParameter(QueryFragment.NEXTTOKEN_PARAM_PREFIX + entry.getKey())) {
+					if (entry.getValue() == null || !isRoot) {
+						continue;
+					}
 					throw new IllegalStateException(
 						"NextToken missing information for orderBy field: " + entry.getKey());
 				}
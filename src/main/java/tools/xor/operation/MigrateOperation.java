@@ -21,6 +21,7 @@ package tools.xor.operation;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -31,8 +32,10 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.json.JSONObject;
 
 import tools.xor.EntityType;
@@ -43,16 +46,28 @@ import tools.xor.service.AggregateManager;
 import tools.xor.service.EntityScroll;
 import tools.xor.util.ApplicationConfiguration;
 import tools.xor.util.Constants;
+import tools.xor.util.Edge;
+import tools.xor.util.State;
 
 /**
  * Migrates data from the source DB to the target DB
+ *
+ * A single producer reads the source with a cursor and a number of consumers write
+ * the rows in batches to the target. The batch size and the number of consumers are
+ * adapted to the commit latency of the target and the depth of the queue, see BatchController.
  */
 public class MigrateOperation extends GraphTraversal
 {
+    private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
+
     private final static int QUEUE_SIZE = 10000;
     private final static int CONSUMER_COUNT = 2;
+    private final static long MONITOR_INTERVAL = 100; // in milliseconds
     private final static JSONObject POISON_PILL = new JSONObject();
     private final static int CONSUMER_BATCH_SIZE;
+    private final static int MAX_CONSUMER_COUNT;
+    private final static long BATCH_LATENCY; // in milliseconds
+    private final static int ENTITY_POOL_SIZE;
 
     static {
         if (ApplicationConfiguration.config().containsKey(Constants.Config.MIGRATE_BATCH_SIZE)) {
@@ -60,11 +75,32 @@ public class MigrateOperation extends GraphTraversal
         } else {
             CONSUMER_BATCH_SIZE = 100;
         }
+
+        if (ApplicationConfiguration.config().containsKey(Constants.Config.MIGRATE_CONSUMER_MAX)) {
+            MAX_CONSUMER_COUNT = Math.max(CONSUMER_COUNT, ApplicationConfiguration.config().getInt(Constants.Config.MIGRATE_CONSUMER_MAX));
+        } else {
+            MAX_CONSUMER_COUNT = 8;
+        }
+
+        if (ApplicationConfiguration.config().containsKey(Constants.Config.MIGRATE_BATCH_LATENCY)) {
+            BATCH_LATENCY = ApplicationConfiguration.config().getLong(Constants.Config.MIGRATE_BATCH_LATENCY);
+        } else {
+            BATCH_LATENCY = 1000;
+        }
+
+        if (ApplicationConfiguration.config().containsKey(Constants.Config.MIGRATE_ENTITY_POOL_SIZE)) {
+            ENTITY_POOL_SIZE = ApplicationConfiguration.config().getInt(Constants.Config.MIGRATE_ENTITY_POOL_SIZE);
+        } else {
+            ENTITY_POOL_SIZE = 1;
+        }
     }
 
     private final AggregateManager source;
     private final AggregateManager target;
     private final BlockingQueue queue;
+    private final int queueCapacity;
+    private MigrateResult result = new MigrateResult();
+    private int entityPoolSize = ENTITY_POOL_SIZE;
 
     public MigrateOperation(AggregateManager source, AggregateManager target, Integer queueSize) {
         this.source = source;
@@ -74,19 +110,101 @@ public class MigrateOperation extends GraphTraversal
             queueSize = QUEUE_SIZE;
         }
         this.queue = new ArrayBlockingQueue(queueSize);
+        this.queueCapacity = queueSize;
     }
 
     /**
-     * TODO: Result of the current execution so far. For example:
-     * 1. the number of rows processed
-     * 2. the number of rows successfully migrated
-     * 3. the number of batches with errors (by rows is nice to have)
+     * Result of the execution so far, with the rows read, the rows written, the failed
+     * batches and the throughput of each entity.
      *
      * @return result of this execution
      */
-    @Override public Object getResult ()
+    @Override public MigrateResult getResult ()
     {
-        return null;
+        return this.result;
+    }
+
+    /**
+     * Share a result between the operations of a migration, so it covers all the entities
+     *
+     * @param result to update
+     */
+    public void setResult(MigrateResult result) {
+        this.result = result;
+    }
+
+    /**
+     * The number of entities that are migrated concurrently, if they are independent
+     * of each other. A value of 1 migrates the entities one at a time.
+     *
+     * @return pool size, defaults to the migrate.entity.pool.size property
+     */
+    public int getEntityPoolSize() {
+        return this.entityPoolSize;
+    }
+
+    public void setEntityPoolSize(int entityPoolSize) {
+        this.entityPoolSize = entityPoolSize;
+    }
+
+    /**
+     * Adapts the batch size and the number of consumers of a migration.
+     *
+     * The batch size is halved when a commit takes longer than the target latency, and is
+     * grown when a commit takes less than half of it while enough rows are queued to fill
+     * a larger batch. A consumer is added while the queue is more than half full and the
+     * target still commits within the latency, since a slow target would not gain from
+     * more concurrent writers.
+     */
+    public static class BatchController {
+        private final int maxBatchSize;
+        private final long targetLatency; // in nanoseconds
+        private final int maxConsumers;
+        private volatile int batchSize;
+        private long lastLatency;         // in nanoseconds, 0 until the first batch is committed
+
+        public BatchController(int batchSize, int maxBatchSize, long targetLatencyMillis, int maxConsumers) {
+            this.batchSize = batchSize;
+            this.maxBatchSize = Math.max(batchSize, maxBatchSize);
+            this.targetLatency = targetLatencyMillis * 1000000;
+            this.maxConsumers = maxConsumers;
+        }
+
+        public int getBatchSize() {
+            return this.batchSize;
+        }
+
+        /**
+         * Record the commit of a batch
+         *
+         * @param size of the batch
+         * @param latency time taken to write the batch in nanoseconds
+         * @param queueDepth number of rows waiting in the queue
+         */
+        public synchronized void record(int size, long latency, int queueDepth) {
+            this.lastLatency = latency;
+
+            if(latency > targetLatency) {
+                batchSize = Math.max(1, batchSize / 2);
+            } else if(latency < targetLatency / 2 && size >= batchSize && queueDepth >= batchSize) {
+                batchSize = Math.min(maxBatchSize, batchSize + Math.max(1, batchSize / 2));
+            }
+        }
+
+        /**
+         * Checks if another consumer should be started
+         *
+         * @param queueDepth number of rows waiting in the queue
+         * @param queueCapacity maximum number of rows in the queue
+         * @param consumers number of consumers running
+         * @return true if a consumer should be added
+         */
+        public synchronized boolean isAddConsumer(int queueDepth, int queueCapacity, int consumers) {
+            return consumers < maxConsumers
+                && queueDepth > queueCapacity / 2
+                && lastLatency > 0
+                && lastLatency <= targetLatency;
+        }
     }
 
     public static class Producer implements Callable {
@@ -95,6 +213,7 @@ public class MigrateOperation extends GraphTraversal
         AggregateManager source;
         AggregateManager target;
         Settings settings;
+        MigrateResult.EntityResult entityResult;
 
         public Producer(BlockingQueue queue, AggregateManager source, AggregateManager target, Settings settings) {
             this.queue = queue;
@@ -103,6 +222,10 @@ public class MigrateOperation extends GraphTraversal
             this.settings = settings;
         }
 
+        void attach(MigrateResult.EntityResult entityResult) {
+            this.entityResult = entityResult;
+        }
+
         protected Settings getSettings() {
             return this.settings;
         }
@@ -123,12 +246,15 @@ public class MigrateOperation extends GraphTraversal
                         break;
                     }
                     queue.put(jsonObject);
+                    if(entityResult != null) {
+                        entityResult.addRowsRead(1);
+                    }
                 }
-
-                // Mark the end
-                queue.put(POISON_PILL);
             } catch (Exception e) {
-                e.printStackTrace();
+                logger.error("Unable to read the rows of " + getName(settings), e);
+            } finally {
+                // Mark the end, also on failure so the consumers do not wait forever
+                queue.put(POISON_PILL);
             }
 
             return null;
@@ -144,6 +270,8 @@ public class MigrateOperation extends GraphTraversal
         private BlockingQueue queue;
         private AggregateManager target;
         private Settings settings;
+        private BatchController controller;
+        private MigrateResult.EntityResult entityResult;
 
         public Consumer(BlockingQueue queue, AggregateManager target, Settings settings) {
             this.queue = queue;
@@ -151,6 +279,15 @@ public class MigrateOperation extends GraphTraversal
             this.settings = settings;
         }
 
+        void attach(BatchController controller, MigrateResult.EntityResult entityResult) {
+            this.controller = controller;
+            this.entityResult = entityResult;
+        }
+
+        private int getBatchSize() {
+            return controller != null ? controller.getBatchSize() : CONSUMER_BATCH_SIZE;
+        }
+
         protected Settings getSettings() {
             return this.settings;
         }
@@ -169,8 +306,9 @@ public class MigrateOperation extends GraphTraversal
                     target.configure(settings);
 
                     // Create a batch of objects from the queue
-                    List<JSONObject> batch = new ArrayList<>(CONSUMER_BATCH_SIZE);
-                    for (int i = 0; i < CONSUMER_BATCH_SIZE; i++) {
+                    int batchSize = getBatchSize();
+                    List<JSONObject> batch = new ArrayList<>(batchSize);
+                    for (int i = 0; i < batchSize; i++) {
                         Object data = queue.take();
 
                         // Check if we have reached the end of processing
@@ -182,12 +320,14 @@ public class MigrateOperation extends GraphTraversal
                         }
                         batch.add((JSONObject)data);
                     }
-                    System.out.println("batch size: " + batch.size());
+                    logger.debug("batch size: " + batch.size());
 
-                    persistToDB(batch);
+                    if(!batch.isEmpty()) {
+                        persist(batch);
+                    }
                 }
                 catch (Exception e) {
-                    e.printStackTrace();
+                    logger.error("Unable to write a batch of " + getName(settings), e);
                 }
 
                 // break out of the loop as we have finished processing all the events
@@ -197,6 +337,28 @@ public class MigrateOperation extends GraphTraversal
             }
         }
 
+        private void persist(List<JSONObject> batch) {
+            long start = System.nanoTime();
+            boolean written = false;
+            try {
+                persistToDB(batch);
+                written = true;
+            } finally {
+                // A batch that did not complete is not counted as written, whatever it threw
+                if(entityResult != null) {
+                    if(written) {
+                        entityResult.addRowsWritten(batch.size());
+                    } else {
+                        entityResult.addFailedBatch();
+                    }
+                }
+            }
+
+            if(controller != null) {
+                controller.record(batch.size(), System.nanoTime() - start, queue.size());
+            }
+        }
+
         /**
          * Can be overridden by the provider in a TX context
          * @param batch of entities to be persisted
@@ -383,6 +545,64 @@ public class MigrateOperation extends GraphTraversal
         return new ArrayList<>(sorted.values());
     }
 
+    /**
+     * Group the entities into levels, such that the entities within a level are not related
+     * to each other and can be migrated concurrently. An entity is placed in the level after
+     * the last entity it is related to, by a relationship or by inheritance.
+     *
+     * @param orderedTypes entities in topological order, see getEntitiesInOrder
+     * @return levels in the order they need to be migrated
+     */
+    public List<List<EntityType>> getIndependentEntities(List<EntityType> orderedTypes) {
+        Map<String, Set<String>> related = new HashMap<>();
+        for(Edge<State> edge: this.target.getDataModel().getShape().getOrderedGraph().getEdges()) {
+            addRelated(related, edge.getStart().getType().getName(), edge.getEnd().getType().getName());
+        }
+        for(EntityType entityType: orderedTypes) {
+            for(EntityType parentType = entityType.getParentType(); parentType != null; parentType = parentType.getParentType()) {
+                addRelated(related, entityType.getName(), parentType.getName());
+            }
+        }
+
+        List<List<EntityType>> result = new ArrayList<>();
+        Map<String, Integer> levels = new HashMap<>();
+        for(EntityType entityType: orderedTypes) {
+            int level = 0;
+            Set<String> relatedNames = related.get(entityType.getName());
+            if(relatedNames != null) {
+                for (String name : relatedNames) {
+                    if (levels.containsKey(name)) {
+                        level = Math.max(level, levels.get(name) + 1);
+                    }
+                }
+            }
+            levels.put(entityType.getName(), level);
+
+            if(level == result.size()) {
+                result.add(new ArrayList<EntityType>());
+            }
+            result.get(level).add(entityType);
+        }
+
+        return result;
+    }
+
+    private static void addRelated(Map<String, Set<String>> related, String a, String b) {
+        if(a.equals(b)) {
+            return;
+        }
+
+        if(!related.containsKey(a)) {
+            related.put(a, new HashSet<String>());
+        }
+        related.get(a).add(b);
+
+        if(!related.containsKey(b)) {
+            related.put(b, new HashSet<String>());
+        }
+        related.get(b).add(a);
+    }
+
     /**
      * Build a settings object with the migrate view in the context of a TX for a particular EntityType
      * @param entityType for which we need to build the settings object
@@ -418,26 +638,78 @@ public class MigrateOperation extends GraphTraversal
      */
     public void execute(Settings settings) {
 
+        MigrateResult.EntityResult entityResult = result.getEntityResult(getName(settings));
+        entityResult.start();
+
+        // The batch is not allowed to be larger than what the queue holds for each consumer
+        BatchController controller = new BatchController(
+            CONSUMER_BATCH_SIZE,
+            Math.max(CONSUMER_BATCH_SIZE, queueCapacity / MAX_CONSUMER_COUNT),
+            BATCH_LATENCY,
+            MAX_CONSUMER_COUNT);
+
         // 1 producer since that is cursor powered
-        // 1 or more consumers. We need to profile this to find the desirable number.
-        ExecutorService threadPool = Executors.newFixedThreadPool(CONSUMER_COUNT+1);
+        // 1 or more consumers, more are added while the target keeps up
+        ExecutorService threadPool = Executors.newCachedThreadPool();
+        List<Future> tasks = new ArrayList<>();
 
         // Add the single producer task
-        threadPool.submit(createProducer(queue, source, target, settings));
-
-        // Add 1 or more consumer tasks
-        for(int i = 0; i < CONSUMER_COUNT; i++) {
-            threadPool.submit(createConsumer(queue, target, settings));
+        Producer producer = createProducer(queue, source, target, settings);
+        producer.attach(entityResult);
+        Future producerTask = threadPool.submit(producer);
+        tasks.add(producerTask);
+
+        // Add the initial consumer tasks
+        int consumers = 0;
+        while(consumers < CONSUMER_COUNT) {
+            tasks.add(threadPool.submit(createConsumer(settings, controller, entityResult)));
+            consumers++;
         }
 
-        // this will wait for the producer to finish its execution.
-        threadPool.shutdown();
         try {
-            // Give it sufficient amount of time to finish
-            threadPool.awaitTermination(15, TimeUnit.DAYS);
+            // this will wait for the producer and the consumers to finish their execution
+            while(!isDone(tasks)) {
+                Thread.sleep(MONITOR_INTERVAL);
+
+                if(!producerTask.isDone() && controller.isAddConsumer(queue.size(), queueCapacity, consumers)) {
+                    tasks.add(threadPool.submit(createConsumer(settings, controller, entityResult)));
+                    consumers++;
+                }
+            }
         }
         catch (InterruptedException e) {
-            e.printStackTrace();
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while migrating " + entityResult.getName(), e);
+        }
+        finally {
+            threadPool.shutdownNow();
+            entityResult.finish();
         }
+        logger.info(entityResult + " with " + consumers + " consumers and batch size " + controller.getBatchSize());
+    }
+
+    private Consumer createConsumer(Settings settings, BatchController controller, MigrateResult.EntityResult entityResult) {
+        Consumer consumer = createConsumer(queue, target, settings);
+        consumer.attach(controller, entityResult);
+
+        return consumer;
+    }
+
+    private static boolean isDone(List<Future> tasks) {
+        for(Future task: tasks) {
+            if(!task.isDone()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String getName(Settings settings) {
+        if(settings.getView() != null && settings.getView().getName() != null) {
+            return settings.getView().getName();
+        }
+
+        return settings.getEntityType().getName();
     }
 }
@@ -0,0 +1,170 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.operation;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a migration, kept for each entity or relationship that is migrated.
+ * The counts are updated by the producer and the consumers while the migration runs,
+ * so the result can be inspected before it finishes.
+ */
+public class MigrateResult
+{
+    private final Map<String, EntityResult> entities = new LinkedHashMap<>();
+
+    /**
+     * Get the result of an entity, created on first access
+     *
+     * @param name of the entity or relationship view
+     * @return result of the entity
+     */
+    public synchronized EntityResult getEntityResult(String name) {
+        EntityResult result = entities.get(name);
+        if(result == null) {
+            result = new EntityResult(name);
+            entities.put(name, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return results keyed by entity name, in the order they were started
+     */
+    public synchronized Map<String, EntityResult> getEntityResults() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(entities));
+    }
+
+    public long getRowsRead() {
+        long result = 0;
+        for(EntityResult entity: getEntityResults().values()) {
+            result += entity.getRowsRead();
+        }
+
+        return result;
+    }
+
+    public long getRowsWritten() {
+        long result = 0;
+        for(EntityResult entity: getEntityResults().values()) {
+            result += entity.getRowsWritten();
+        }
+
+        return result;
+    }
+
+    public long getFailedBatches() {
+        long result = 0;
+        for(EntityResult entity: getEntityResults().values()) {
+            result += entity.getFailedBatches();
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for(EntityResult entity: getEntityResults().values()) {
+            result.append(entity).append("\n");
+        }
+
+        return result.toString();
+    }
+
+    public static class EntityResult {
+        private final String name;
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong rowsWritten = new AtomicLong();
+        private final AtomicLong failedBatches = new AtomicLong();
+        private volatile long startTime;  // in nanoseconds
+        private volatile long endTime;    // in nanoseconds, 0 while running
+
+        private EntityResult(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public void start() {
+            this.startTime = System.nanoTime();
+        }
+
+        public void finish() {
+            this.endTime = System.nanoTime();
+        }
+
+        public void addRowsRead(long count) {
+            rowsRead.addAndGet(count);
+        }
+
+        public void addRowsWritten(long count) {
+            rowsWritten.addAndGet(count);
+        }
+
+        public void addFailedBatch() {
+            failedBatches.incrementAndGet();
+        }
+
+        public long getRowsRead() {
+            return rowsRead.get();
+        }
+
+        public long getRowsWritten() {
+            return rowsWritten.get();
+        }
+
+        public long getFailedBatches() {
+            return failedBatches.get();
+        }
+
+        /**
+         * @return elapsed time in milliseconds, up to now if the entity is still being migrated
+         */
+        public long getElapsedMillis() {
+            if(startTime == 0) {
+                return 0;
+            }
+
+            return ((endTime != 0 ? endTime : System.nanoTime()) - startTime) / 1000000;
+        }
+
+        /**
+         * @return rows written per second
+         */
+        public double getThroughput() {
+            long elapsed = getElapsedMillis();
+
+            return elapsed == 0 ? 0 : getRowsWritten() * 1000.0 / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: read %d, written %d, failed batches %d, %.1f rows/s",
+                name, getRowsRead(), getRowsWritten(), getFailedBatches(), getThroughput());
+        }
+    }
+}
@@ -36,6 +36,7 @@ import tools.xor.util.InterQuery;
 import tools.xor.view.AggregateTree;
 import tools.xor.view.ObjectResolver;
 import tools.xor.view.ParallelDispatcher;
+import tools.xor.view.PipelinedDispatcher;
 import tools.xor.view.Query;
 import tools.xor.view.QueryBuilder;
 import tools.xor.view.QueryDispatcher;
@@ -107,7 +108,12 @@ public class QueryOperation extends TreeTraversal implements ObjectResolver
 		QueryBuilder builder = new QueryBuilder(aggregateTree, this.entity);
 		builder.construct(callInfo.getSettings());
 
-		QueryDispatcher dispatcher = ClassUtil.doParallelDispatch() ? new ParallelDispatcher(aggregateTree, this, callInfo) : new SerialDispatcher(aggregateTree, this, callInfo);
+		QueryDispatcher dispatcher = null;
+		if(ClassUtil.doParallelDispatch()) {
+			dispatcher = ClassUtil.doPipelinedDispatch() ? new PipelinedDispatcher(aggregateTree, this, callInfo) : new ParallelDispatcher(aggregateTree, this, callInfo);
+		} else {
+			dispatcher = new SerialDispatcher(aggregateTree, this, callInfo);
+		}
 		dispatcher.execute();
 	}
 
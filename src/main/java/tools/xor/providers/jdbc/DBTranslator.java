@@ -19,8 +19,10 @@
 
 package tools.xor.providers.jdbc;
 
+import java.io.Reader;
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.security.MessageDigest;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -37,6 +39,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONObject;
@@ -57,6 +61,7 @@ import tools.xor.util.ClassUtil;
 import tools.xor.util.graph.StateGraph;
 import tools.xor.view.BindParameter;
 import tools.xor.view.QueryJoinAction;
+import tools.xor.view.QueryTreeInvocation;
 
 /**
  * Responsible for interacting with various RDBMS implementations.
@@ -137,6 +142,15 @@ public abstract class DBTranslator
         public String toSQLLiteral (Object value);
     }
 
+    /**
+     * The format of the literal values of a row
+     */
+    private enum LiteralFormat {
+        SQL,  // SQL statement
+        CSV,  // CSV file
+        COPY  // Bulk load, see copyIn
+    }
+
     static {
 
         JDBCtoSQLConverter charConverter = new JDBCtoSQLConverter()
@@ -409,6 +423,27 @@ public abstract class DBTranslator
         return getConverter(dataType);
     }
 
+    /**
+     * Converter for the rows bulk loaded by copyIn. Can be overridden by
+     * the databases whose bulk load format differs from the CSV format.
+     * @param dataType for which the appropriate converter is to be found
+     * @return converter
+     */
+    protected JDBCtoSQLConverter getCopyConverter(String dataType) {
+        return getCSVConverter(dataType);
+    }
+
+    private JDBCtoSQLConverter getConverter(String dataType, LiteralFormat format) {
+        switch(format) {
+        case CSV:
+            return getCSVConverter(dataType);
+        case COPY:
+            return getCopyConverter(dataType);
+        default:
+            return getConverter(dataType);
+        }
+    }
+
     public static DBTranslator instance(Connection conn) {
         DBTranslator result;
         try {
@@ -605,6 +640,134 @@ public abstract class DBTranslator
         return sqlstr.toString();
     }
     
+    /**
+     * Get the properties of the modified object whose column values differ from the original object.
+     * The identifier and version properties are not included.
+     *
+     * @param entityType type, can be a supertype
+     * @param bo Object containing the modified values
+     * @param dbBO Object containing the original values
+     * @return dirty properties
+     */
+    public List<Property> getDirtyProperties(JDBCType entityType, BusinessObject bo, BusinessObject dbBO) {
+        Property version = entityType.getVersionProperty();
+
+        List<Property> result = new ArrayList<>();
+        for(Property p: getPropertiesToUpdate(entityType, bo)) {
+            if(p == version) {
+                continue;
+            }
+
+            // simple type
+            if(p.getType().isDataType() && !p.isMany()) {
+                String column = ((JDBCProperty)p).getColumns().get(0).getName();
+                if(!isSameValue(bo.get(column), dbBO.get(column))) {
+                    result.add(p);
+                }
+            }
+
+            // foreign keys
+            if(!p.getType().isDataType() && p.getMappedBy() == null) {
+                Object entity = bo.get(p);
+                Object dbEntity = dbBO.get(p);
+                if(isNull(entity) || isNull(dbEntity)) {
+                    if(isNull(entity) != isNull(dbEntity)) {
+                        result.add(p);
+                    }
+                    continue;
+                }
+
+                for(String column: ((JDBCProperty)p).getForeignKey().getReferencedColumns()) {
+                    if(!isSameValue(((JSONObject)entity).opt(column), ((JSONObject)dbEntity).opt(column))) {
+                        result.add(p);
+                        break;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean isNull(Object value) {
+        return value == null || JSONObject.NULL.equals(value);
+    }
+
+    private static boolean isSameValue(Object value, Object dbValue) {
+        if(isNull(value) || isNull(dbValue)) {
+            return isNull(value) && isNull(dbValue);
+        }
+
+        if(value instanceof Number && dbValue instanceof Number) {
+            // The same column value can be represented by different number types
+            return new BigDecimal(value.toString()).compareTo(new BigDecimal(dbValue.toString())) == 0;
+        }
+
+        return value.equals(dbValue);
+    }
+
+    /**
+     * Generate an update statement that only sets the dirty columns. The WHERE predicate checks
+     * the original values of the dirty columns, the identifier and the version.
+     * Since a null original value is checked using IS NULL, the statement depends on both the dirty
+     * columns and the null original values.
+     *
+     * For example:
+     *   UPDATE user SET name = ?,version = ? WHERE name = ? AND id = ? AND version = ?
+     *
+     * @param entityType type, can be a supertype
+     * @param dbBO Object containing the original values
+     * @param dirtyProperties see getDirtyProperties
+     * @return sql string with bind parameters
+     */
+    public String getUpdateSqlFragment(JDBCType entityType, BusinessObject dbBO, List<Property> dirtyProperties)
+    {
+        if(entityType.getIdentifierProperty() == null) {
+            throw new RuntimeException("Only update of entities containing identifier property is currently supported");
+        }
+
+        List<Property> properties = new ArrayList<>(dirtyProperties);
+        if(entityType.getVersionProperty() != null) {
+            properties.add(entityType.getVersionProperty());
+        }
+        List<String> columns = new LinkedList<>();
+        for(Property p: properties) {
+            addColumnNames(columns, p);
+        }
+        List<String> columnsToSet = new LinkedList<>();
+        for(String column: columns) {
+            columnsToSet.add(column + " = ?");
+        }
+
+        properties.add(dirtyProperties.size(), entityType.getIdentifierProperty());
+        List<String> predicate = new LinkedList<>();
+        for(Property p: properties) {
+            columns = new LinkedList<>();
+            addColumnNames(columns, p);
+            String condition = isOriginalNull(p, dbBO) ? " IS NULL" : " = ?";
+            for(String column: columns) {
+                predicate.add(column + condition);
+            }
+        }
+
+        StringBuilder sqlstr = new StringBuilder("UPDATE ");
+        sqlstr.append(entityType.getTableName())
+            .append(" SET ")
+            .append(String.join(",", columnsToSet))
+            .append(" WHERE ")
+            .append(String.join(" AND ", predicate));
+
+        return sqlstr.toString();
+    }
+
+    private boolean isOriginalNull(Property p, BusinessObject dbBO) {
+        if(p.getType().isDataType()) {
+            return isNull(dbBO.get(((JDBCProperty)p).getColumns().get(0).getName()));
+        }
+
+        return isNull(dbBO.get(p));
+    }
+
     public String getUpdateSqlFragment(JDBCType entityType, BusinessObject bo, List<String> columnsToSet, Map<String, Object> lookupKeys)
     {
         StringBuilder sqlstr = new StringBuilder("UPDATE ");
@@ -649,12 +812,123 @@ public abstract class DBTranslator
         List<String> lookupValues = new LinkedList<>();        
         for(Map.Entry<String, String> entry: lookupKeys.entrySet()) {
             Property p = entityType.getProperty(entry.getKey());
-            position = setSimpleValue(ps, lookupValues, p, bo, position, false, true);            
+            position = setSimpleValue(ps, lookupValues, p, bo, position, LiteralFormat.SQL, true);            
         }        
 
         return null;
     }       
 
+    /**
+     * The maximum number of ids in the IN list of a statement loading rows by their ids
+     *
+     * @return number of ids
+     */
+    public int getMaxInListSize() {
+        return Math.min(QueryTreeInvocation.MAX_INLIST_SIZE, getMaxBindParameters());
+    }
+
+    /**
+     * Get the properties of an entity that are stored in the columns of its table
+     *
+     * @param entityType of the table
+     * @return simple and foreign key properties
+     */
+    public List<Property> getLoadProperties(JDBCType entityType) {
+        List<Property> result = new ArrayList<>();
+        for(Property p: entityType.getDeclaredProperties()) {
+            if((p.getType().isDataType() && !p.isMany())
+                || (!p.getType().isDataType() && p.getMappedBy() == null && ((JDBCProperty)p).getForeignKey() != null)) {
+                result.add(p);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the statement to load the rows of a table by their ids. For e.g.,
+     *   SELECT id,name,library FROM librarian WHERE id IN (?,?,?)
+     *
+     * @param entityType of the table, needs to have an identifier
+     * @param properties whose columns are selected, see getLoadProperties
+     * @param numIds number of ids in the IN list
+     * @return select statement
+     */
+    public String getSelectByIdsSql(JDBCType entityType, List<Property> properties, int numIds) {
+        List<String> columnNames = new ArrayList<>();
+        for(Property p: properties) {
+            addColumnNames(columnNames, p);
+        }
+
+        StringBuilder sqlstr = new StringBuilder("SELECT ");
+        sqlstr.append(String.join(",", columnNames))
+            .append(" FROM ")
+            .append(entityType.getTableName())
+            .append(" WHERE ")
+            .append(((JDBCProperty)entityType.getIdentifierProperty()).getColumns().get(0).getName())
+            .append(" IN (");
+        for(int i = 0; i < numIds; i++) {
+            sqlstr.append(i == 0 ? "?" : ",?");
+        }
+        sqlstr.append(")");
+
+        return sqlstr.toString();
+    }
+
+    /**
+     * Set the ids of a statement returned by getSelectByIdsSql
+     *
+     * @param entityType of the table
+     * @param ps select statement
+     * @param ids in the IN list
+     */
+    public void setSelectByIdsValues(JDBCType entityType, PreparedStatement ps, List<?> ids) {
+        String dataType = ((JDBCProperty)entityType.getIdentifierProperty()).getColumns().get(0).getDataType();
+
+        int position = 1;
+        for(Object id: ids) {
+            addBindParameter(ps, dataType, position++, id);
+        }
+    }
+
+    /**
+     * Create the object of a row selected by getSelectByIdsSql. A foreign key is represented
+     * by an object holding the values of the referenced columns, as expected by setValue.
+     *
+     * @param properties in the order of the selected columns
+     * @param rs positioned on the row
+     * @return object keyed by the property names
+     * @throws SQLException if the row cannot be read
+     */
+    public JSONObject getLoadedObject(List<Property> properties, ResultSet rs) throws SQLException {
+        JSONObject result = new JSONObject();
+
+        int position = 1;
+        for(Property p: properties) {
+            if(p.getType().isDataType()) {
+                Object value = rs.getObject(position++);
+                if(value != null) {
+                    result.put(p.getName(), value);
+                }
+                continue;
+            }
+
+            JDBCDataModel.ForeignKey fkey = ((JDBCProperty)p).getForeignKey();
+            JSONObject reference = new JSONObject();
+            for(String column: fkey.getReferencedColumns()) {
+                Object value = rs.getObject(position++);
+                if(value != null) {
+                    reference.put(column, value);
+                }
+            }
+            if(reference.length() > 0) {
+                result.put(p.getName(), reference);
+            }
+        }
+
+        return result;
+    }
+
     private List<Property> getPropertiesForDelete(JDBCType entityType, BusinessObject bo) {
         JSONObject jsonObject = (JSONObject)bo.getInstance();
         Iterator iter = jsonObject.keys();
@@ -687,31 +961,74 @@ public abstract class DBTranslator
     }
 
     public String getInsertSqlFragment(JDBCType entityType, BusinessObject bo, boolean isBindParameters, DataGenerator dataGenerator) {
+        return getInsertSqlFragment(entityType, isBindParameters, getInsertColumns(entityType, bo, dataGenerator));
+    }
+
+    /**
+     * Get the names of the columns populated by an insert of the given object
+     * @param entityType of the table, can be a supertype
+     * @param bo being inserted
+     * @param dataGenerator optional, if the values are generated
+     * @return column names
+     */
+    public List<String> getInsertColumns(JDBCType entityType, BusinessObject bo, DataGenerator dataGenerator) {
         // iterate through the properties
         List<String> columnNames = new LinkedList<>();
         for(Property p: getProperties(entityType, dataGenerator)) {
             if(shouldSkip(bo, p, dataGenerator)) {
                 continue;
             }
+            addColumnNames(columnNames, p);
+        }
+        
+        return columnNames;
+    }
 
-            // simple type
-            if(p.getType().isDataType() && !p.isMany()) {
-                columnNames.add(((JDBCProperty)p).getColumns().get(0).getName());
-            }
+    /**
+     * Add the names of the columns whose values are set by setValue for the given property
+     * @param columnNames to which the names are added
+     * @param p property
+     */
+    private void addColumnNames(List<String> columnNames, Property p) {
+        // simple type
+        if(p.getType().isDataType() && !p.isMany()) {
+            columnNames.add(((JDBCProperty)p).getColumns().get(0).getName());
+        }
 
-            // foreign keys
-            if(!p.getType().isDataType() && p.getMappedBy() == null) {
-                JDBCDataModel.ForeignKey fkey = ((JDBCProperty)p).getForeignKey();
-                if(fkey == null) {
-                    throw new RuntimeException("A TO_ONE relationship should have a foreign key");
-                } else {
-                    // get the referencing columns
-                    columnNames.addAll(fkey.getReferencingColumns());
-                }
+        // foreign keys
+        if(!p.getType().isDataType() && p.getMappedBy() == null) {
+            JDBCDataModel.ForeignKey fkey = ((JDBCProperty)p).getForeignKey();
+            if(fkey == null) {
+                throw new RuntimeException("A TO_ONE relationship should have a foreign key");
+            } else {
+                // get the referencing columns
+                columnNames.addAll(fkey.getReferencingColumns());
             }
         }
-        
-        return getInsertSqlFragment(entityType, isBindParameters, columnNames);
+    }
+
+    /**
+     * Get the statement to bulk load rows in the format returned by getCSV.
+     * Only supported by databases that have a bulk load facility, see ImportMethod.COPY
+     *
+     * @param entityType of the table
+     * @param columnNames in the order of the values in the row
+     * @return bulk load statement
+     */
+    public String getCopySql(JDBCType entityType, List<String> columnNames) {
+        throw new RuntimeException("Bulk load using COPY is not supported for this database");
+    }
+
+    /**
+     * Stream the rows into the database using the statement returned by getCopySql
+     *
+     * @param connection on which the rows are loaded
+     * @param copySql bulk load statement
+     * @param rows in the format returned by getCSV, one row per line
+     * @return number of rows loaded
+     */
+    public long copyIn(Connection connection, String copySql, Reader rows) {
+        throw new RuntimeException("Bulk load using COPY is not supported for this database");
     }
     
     public String getInsertSqlFragment(JDBCType entityType, boolean isBindParameters, List<String> columnNames) {
@@ -740,7 +1057,7 @@ public abstract class DBTranslator
                                    BusinessObject bo) {
         int position = 1;
         for(Property p: getPropertiesForDelete(entityType, bo)) {
-            position = setValue(ps, new LinkedList<>(), p, bo, position, false);
+            position = setValue(ps, new LinkedList<>(), p, bo, position, LiteralFormat.SQL);
         }
     }
 
@@ -750,6 +1067,15 @@ public abstract class DBTranslator
                                    boolean isCSV,
                                    DataGenerator dataGenerator) {
 
+        return setInsertValues(entityType, ps, bo, isCSV ? LiteralFormat.CSV : LiteralFormat.SQL, dataGenerator);
+    }
+
+    private String setInsertValues (JDBCType entityType,
+                                    PreparedStatement ps,
+                                    BusinessObject bo,
+                                    LiteralFormat format,
+                                    DataGenerator dataGenerator) {
+
         List<Property> properties = new ArrayList<>();
         for(Property p: getProperties(entityType, dataGenerator)) {
             if(shouldSkip(bo, p, dataGenerator)) {
@@ -758,7 +1084,7 @@ public abstract class DBTranslator
             properties.add(p);
         }
 
-        return setInsertValues(entityType, ps, bo, isCSV, properties, true);
+        return setInsertValues(entityType, ps, bo, format, properties, true);
     }
     
     public String setInsertValues (JDBCType entityType,
@@ -767,15 +1093,25 @@ public abstract class DBTranslator
             boolean isCSV,
             List<Property> properties,
             boolean modelsRelationships) {
+
+        return setInsertValues(entityType, ps, bo, isCSV ? LiteralFormat.CSV : LiteralFormat.SQL, properties, modelsRelationships);
+    }
+
+    private String setInsertValues (JDBCType entityType,
+            PreparedStatement ps,
+            BusinessObject bo,
+            LiteralFormat format,
+            List<Property> properties,
+            boolean modelsRelationships) {
         
         // get the values
         List<String> values = new LinkedList<>();
         int position = 1;
         for(Property p: properties) {
             if(modelsRelationships) {
-                position = setValue(ps, values, p, bo, position, isCSV);
+                position = setValue(ps, values, p, bo, position, format);
             } else {
-                position = setSimpleValue(ps, values, p, bo, position, isCSV, false);                
+                position = setSimpleValue(ps, values, p, bo, position, format, false);                
             }
         }        
         
@@ -789,14 +1125,182 @@ public abstract class DBTranslator
         }        
     }
 
-    private int setValue(PreparedStatement ps, List<String> values, Property p, BusinessObject bo, int position, boolean isCSV) {
-        return setValue(ps, values, p, bo, position, isCSV, false);
+    /**
+     * A bind parameter value captured for a row of a multi-row insert.
+     * The rows are bound once the number of rows in the statement is known.
+     */
+    public static class BoundValue {
+        private final String type;
+        private final Object value;
+
+        public BoundValue(String type, Object value) {
+            this.type = type;
+            this.value = value;
+        }
+
+        public String getType() {
+            return this.type;
+        }
+
+        public Object getValue() {
+            return this.value;
+        }
+    }
+
+    /**
+     * Some drivers read the result incrementally, as given by the fetch size, only
+     * within a transaction. In autocommit mode the whole result is read at once.
+     *
+     * @return true if autocommit needs to be turned off to stream a result
+     */
+    public boolean isStreamingInTransaction() {
+        return false;
+    }
+
+    /**
+     * Clause that sorts the nulls of a column as if they are larger than any value, i.e.,
+     * after the non-null values in ascending order and before them in descending order.
+     * Keyset paging relies on this ordering.
+     *
+     * @param descending true if the column is sorted in descending order
+     * @return clause appended to the sort column, empty if this is the default null ordering
+     */
+    public String getNullsLargestClause(boolean descending) {
+        return descending ? " NULLS FIRST" : " NULLS LAST";
+    }
+
+    /**
+     * Checks if the database supports an INSERT statement with multiple rows in the VALUES clause,
+     * see ImportMethod.MULTI_ROW
+     *
+     * @return true if multi-row inserts are supported
+     */
+    public boolean isMultiRowInsertSupported() {
+        return true;
+    }
+
+    /**
+     * The maximum number of bind parameters in a single statement. This limits the number
+     * of rows of a multi-row insert.
+     *
+     * @return bind parameter limit
+     */
+    public int getMaxBindParameters() {
+        return 2000;
+    }
+
+    /**
+     * Get the number of rows that can be inserted by a single multi-row insert statement
+     *
+     * @param numColumns number of columns populated per row
+     * @return number of rows, at least 1
+     */
+    public int getMultiRowInsertSize(int numColumns) {
+        return Math.max(1, getMaxBindParameters() / Math.max(1, numColumns));
+    }
+
+    /**
+     * Get an insert statement with bind parameters for the given number of rows.
+     * For example:
+     *   INSERT INTO user (id,name) VALUES (?,?),(?,?)
+     *
+     * @param entityType of the table
+     * @param columnNames populated by each row
+     * @param numRows number of rows in the VALUES clause
+     * @return insert statement
+     */
+    public String getMultiRowInsertSql(JDBCType entityType, List<String> columnNames, int numRows) {
+        if(!isMultiRowInsertSupported()) {
+            throw new RuntimeException("Multi-row insert is not supported for this database");
+        }
+
+        StringBuilder row = new StringBuilder("(");
+        for(int i = 0; i < columnNames.size(); i++) {
+            if(i > 0) {
+                row.append(",");
+            }
+            row.append("?");
+        }
+        row.append(")");
+
+        StringBuilder sqlstr = new StringBuilder(getInsertSqlFragment(entityType, false, columnNames));
+        for(int i = 0; i < numRows; i++) {
+            if(i > 0) {
+                sqlstr.append(",");
+            }
+            sqlstr.append(row);
+        }
+
+        return sqlstr.toString();
+    }
+
+    /**
+     * Get the bind parameter values of a row in the order of the columns returned by getInsertColumns
+     *
+     * @param entityType of the table, can be a supertype
+     * @param bo being inserted
+     * @param dataGenerator optional, if the values are generated
+     * @return row values
+     */
+    public List<BoundValue> getInsertValues(JDBCType entityType, BusinessObject bo, DataGenerator dataGenerator) {
+        List<BoundValue> result = new ArrayList<>();
+        int position = 1;
+        for(Property p: getProperties(entityType, dataGenerator)) {
+            if(shouldSkip(bo, p, dataGenerator)) {
+                continue;
+            }
+            position = setValue(null, null, result, p, bo, position, LiteralFormat.SQL, false);
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the bind parameter values of a row in the order of the given properties.
+     * The properties are expected to be simple, see setInsertValues.
+     *
+     * @param entityType of the table
+     * @param bo being inserted
+     * @param properties corresponding to the columns
+     * @return row values
+     */
+    public List<BoundValue> getInsertValues(JDBCType entityType, BusinessObject bo, List<Property> properties) {
+        List<BoundValue> result = new ArrayList<>();
+        int position = 1;
+        for(Property p: properties) {
+            position = setSimpleValue(null, null, result, p, bo, position, LiteralFormat.SQL, false);
+        }
+
+        return result;
+    }
+
+    /**
+     * Bind the values of the rows of a statement returned by getMultiRowInsertSql
+     *
+     * @param ps multi-row insert statement
+     * @param rows values of each row
+     */
+    public void setMultiRowInsertValues(PreparedStatement ps, List<List<BoundValue>> rows) {
+        int position = 1;
+        for(List<BoundValue> row: rows) {
+            for(BoundValue bv: row) {
+                addBindParameter(ps, bv.getType(), position++, bv.getValue());
+            }
+        }
+    }
+
+    private int setValue(PreparedStatement ps, List<String> values, Property p, BusinessObject bo, int position, LiteralFormat format) {
+        return setValue(ps, values, p, bo, position, format, false);
+    }
+
+    private int setValue(PreparedStatement ps, List<String> values, Property p, BusinessObject bo, int position, LiteralFormat format, boolean isUpdate) {
+        return setValue(ps, values, null, p, bo, position, format, isUpdate);
     }
 
-    private int setValue(PreparedStatement ps, List<String> values, Property p, BusinessObject bo, int position, boolean isCSV, boolean isUpdate) {
+    private int setValue(PreparedStatement ps, List<String> values, List<BoundValue> boundValues, Property p, BusinessObject bo, int position, LiteralFormat format, boolean isUpdate) {
         // simple type
         if (p.getType().isDataType() && !p.isMany()) {
-            position = setSimpleValue(ps, values, p, bo, position, isCSV, isUpdate);
+            position = setSimpleValue(ps, values, boundValues, p, bo, position, format, isUpdate);
         }
 
         // foreign keys
@@ -808,21 +1312,29 @@ public abstract class DBTranslator
             for (int i = 0; i < referencedColumns.size(); i++) {
                 String dataType = referencedColumns.get(i).getDataType();
                 JDBCDataModel.ColumnInfo col = referencedColumns.get(i);
-                JDBCtoSQLConverter c = isCSV ? getCSVConverter(dataType) : getConverter(dataType);
-                values.add(getColumnString(entity.get(col.getName()), isUpdate, col.getName(), c));
+                if(values != null) {
+                    JDBCtoSQLConverter c = getConverter(dataType, format);
+                    values.add(getColumnString(entity.get(col.getName()), isUpdate, col.getName(), c));
+                }
 
                 if(ps != null) {
                     addBindParameter(ps, dataType, position++, entity.get(col.getName()));
                 }
+                if(boundValues != null) {
+                    boundValues.add(new BoundValue(dataType, entity.get(col.getName())));
+                }
             }
         }
 
         return position;
     }
     
-    private int setSimpleValue(PreparedStatement ps, List<String> values, Property p, BusinessObject bo, int position, boolean isCSV, boolean isUpdate) {
+    private int setSimpleValue(PreparedStatement ps, List<String> values, Property p, BusinessObject bo, int position, LiteralFormat format, boolean isUpdate) {
+        return setSimpleValue(ps, values, null, p, bo, position, format, isUpdate);
+    }
+
+    private int setSimpleValue(PreparedStatement ps, List<String> values, List<BoundValue> boundValues, Property p, BusinessObject bo, int position, LiteralFormat format, boolean isUpdate) {
         JDBCDataModel.ColumnInfo col = ((JDBCProperty)p).getColumns().get(0);
-        JDBCtoSQLConverter c = isCSV ? getCSVConverter(col.getDataType()) : getConverter(col.getDataType());
         
         Object value = bo.get(col.getName());
 
@@ -833,11 +1345,17 @@ public abstract class DBTranslator
             }
             logger.debug(String.format("Setting String value '%s' on column '%s'", value.toString(), col.getName()));
         }
-        values.add(getColumnString(value, isUpdate, col.getName(), c));
+        if(values != null) {
+            JDBCtoSQLConverter c = getConverter(col.getDataType(), format);
+            values.add(getColumnString(value, isUpdate, col.getName(), c));
+        }
 
         if(ps != null) {
             addBindParameter(ps, col.getDataType(), position++, value);
         }
+        if(boundValues != null) {
+            boundValues.add(new BoundValue(col.getDataType(), value));
+        }
          
         return position;
     }
@@ -871,7 +1389,7 @@ public abstract class DBTranslator
         List<String> modifiedValues = new LinkedList<>();
         int position = 1;
         for(Property p: getPropertiesToUpdate(entityType, bo)) {
-            position = setValue(ps, modifiedValues, p, bo, position, false, true);
+            position = setValue(ps, modifiedValues, p, bo, position, LiteralFormat.SQL, true);
         }
 
         // set original values in the WHERE predicate list
@@ -879,7 +1397,7 @@ public abstract class DBTranslator
         List<Property> persistentBOproperties = getPropertiesToUpdate(entityType, dbBO);
         persistentBOproperties.add(entityType.getIdentifierProperty());
         for(Property p: persistentBOproperties) {
-            position = setValue(ps, originalValues, p, dbBO, position, false, true);
+            position = setValue(ps, originalValues, p, dbBO, position, LiteralFormat.SQL, true);
         }
 
 
@@ -895,13 +1413,52 @@ public abstract class DBTranslator
         }
     }
     
+    /**
+     * Set the values of a statement returned by getUpdateSqlFragment for the dirty properties
+     *
+     * @param entityType type, can be a supertype
+     * @param ps update statement
+     * @param bo Object containing the modified values
+     * @param dbBO Object containing the original values
+     * @param dirtyProperties see getDirtyProperties
+     */
+    public void setUpdateValues (JDBCType entityType,
+                                 PreparedStatement ps,
+                                 BusinessObject bo,
+                                 BusinessObject dbBO,
+                                 List<Property> dirtyProperties) {
+        Property version = entityType.getVersionProperty();
+        List<Property> properties = new ArrayList<>(dirtyProperties);
+        if(version != null) {
+            if(bo.get(version.getName()) == null) {
+                throw new RuntimeException("Version is a required field for update");
+            }
+            // Ensure we increment this value in the modified object
+            bo.set(version.getName(), Integer.valueOf(bo.get(version.getName()).toString()) + 1);
+            properties.add(version);
+        }
+
+        int position = 1;
+        for(Property p: properties) {
+            position = setValue(ps, null, p, bo, position, LiteralFormat.SQL, true);
+        }
+
+        // set original values in the WHERE predicate list, the null values are checked using IS NULL
+        properties.add(dirtyProperties.size(), entityType.getIdentifierProperty());
+        for(Property p: properties) {
+            if(!isOriginalNull(p, dbBO)) {
+                position = setValue(ps, null, p, dbBO, position, LiteralFormat.SQL, true);
+            }
+        }
+    }
+
     public String setUpdateValues(JDBCType entityType, PreparedStatement ps, BusinessObject bo, List<String> columnsToSet, Map<String, Object> lookupKeys) {
 
         int position = 1;
         List<String> modifiedValues = new LinkedList<>();
         for(String columnToSet: columnsToSet) {
             Property p = entityType.getProperty(columnToSet);
-            position = setSimpleValue(ps, modifiedValues, p, bo, position, false, true);
+            position = setSimpleValue(ps, modifiedValues, p, bo, position, LiteralFormat.SQL, true);
         }
 
         // set the lookup values in the WHERE predicate list
@@ -909,7 +1466,7 @@ public abstract class DBTranslator
         for(Map.Entry<String, Object> entry: lookupKeys.entrySet()) {
             Property p = entityType.getProperty(entry.getKey());
             JDBCDataModel.ColumnInfo col = ((JDBCProperty)p).getColumns().get(0);
-            position = setSimpleValue(ps, lookupValues, p, bo, position, false, true);            
+            position = setSimpleValue(ps, lookupValues, p, bo, position, LiteralFormat.SQL, true);            
         }        
         
         if(ps == null) {
@@ -966,6 +1523,31 @@ public abstract class DBTranslator
         return sqlstr.toString();
     }    
 
+    /**
+     * Get a row in the format expected by the statement returned by getCopySql.
+     * This is a CSV row whose values are converted using getCopyConverter.
+     *
+     * @param entityType of the table
+     * @param bo having the values of the row
+     * @param dataGenerator used to generate the values
+     * @return row
+     */
+    public String getCopyRow(JDBCType entityType, BusinessObject bo, DataGenerator dataGenerator) {
+        return setInsertValues(entityType, null, bo, LiteralFormat.COPY, dataGenerator);
+    }
+
+    /**
+     * Get a row in the format expected by the statement returned by getCopySql.
+     *
+     * @param entityType of the table
+     * @param bo having the values of the row
+     * @param properties that are populated
+     * @return row
+     */
+    public String getCopyRow(JDBCType entityType, BusinessObject bo, List<Property> properties) {
+        return setInsertValues(entityType, null, bo, LiteralFormat.COPY, properties, false);
+    }
+
     public String getUpdateSql(JDBCType entityType, BusinessObject bo, BusinessObject dbBO) {
 
         StringBuilder sqlstr = new StringBuilder(getUpdateSqlFragment(entityType, bo, false));
@@ -1026,7 +1608,68 @@ public abstract class DBTranslator
         return result;
     }
 
+    /**
+     * Compute a digest of the column and constraint definitions of the schema. It changes
+     * whenever the schema is migrated, and is cheaper to get than the full table metadata.
+     *
+     * @param connection to the database
+     * @return hex encoded SHA-256 digest of the rows returned by the schema digest queries
+     */
+    public String getSchemaDigest (Connection connection)
+    {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        for(String sql: getSchemaDigestSQL()) {
+            try (PreparedStatement ps = connection.prepareStatement(sql);
+                ResultSet rs = ps.executeQuery();
+            ) {
+                int columnCount = rs.getMetaData().getColumnCount();
+                StringBuilder rows = new StringBuilder();
+                while(rs.next()) {
+                    for(int i = 1; i <= columnCount; i++) {
+                        rows.append(rs.getString(i)).append('|');
+                    }
+                    rows.append('\n');
+                }
+                DigestUtils.updateDigest(digest, rows.append('\n').toString());
+            }
+            catch (SQLException e) {
+                throw ClassUtil.wrapRun(e);
+            }
+        }
+
+        return Hex.encodeHexString(digest.digest());
+    }
+
     public List<JDBCDataModel.TableInfo> getTables (Connection connection, ForeignKeyEnhancer enhancer)
+    {
+        Map<String, JDBCDataModel.TableInfo> result = getTableMap(connection);
+
+        return getTables(result, getForeignKeys(connection, result), enhancer);
+    }
+
+    /**
+     * Capture the table and foreign key metadata of the database so it can be
+     * reused without introspecting the database again.
+     *
+     * @param connection to the database
+     * @param key identifying the database schema
+     * @return snapshot of the raw metadata
+     */
+    public SchemaSnapshot getSchemaSnapshot (Connection connection, String key)
+    {
+        Map<String, JDBCDataModel.TableInfo> result = getTableMap(connection);
+
+        return new SchemaSnapshot(key, result.values(), getForeignKeys(connection, result));
+    }
+
+    public List<JDBCDataModel.TableInfo> getTables (SchemaSnapshot snapshot, ForeignKeyEnhancer enhancer)
+    {
+        Map<String, JDBCDataModel.TableInfo> result = snapshot.createTables();
+
+        return getTables(result, snapshot.createForeignKeys(result), enhancer);
+    }
+
+    private Map<String, JDBCDataModel.TableInfo> getTableMap (Connection connection)
     {
         Map<String, List<String>> primaryKeys = getPrimaryKeys(connection);
 
@@ -1062,8 +1705,13 @@ public abstract class DBTranslator
             throw ClassUtil.wrapRun(e);
         }
 
-        List<JDBCDataModel.ForeignKey> foreignKeys = getForeignKeys(connection, result);
+        return result;
+    }
 
+    private List<JDBCDataModel.TableInfo> getTables (Map<String, JDBCDataModel.TableInfo> result,
+                                                     List<JDBCDataModel.ForeignKey> foreignKeys,
+                                                     ForeignKeyEnhancer enhancer)
+    {
         // Give a chance to add any additional business logic based relationships
         // not captured by a database foreign key
         foreignKeys = enhancer.process(foreignKeys);
@@ -1201,4 +1849,11 @@ public abstract class DBTranslator
 
     public abstract String getTableExistsSQL();
 
+    /**
+     * The queries are ordered so the digest of their rows only changes with the schema.
+     *
+     * @return queries on the column and constraint definitions of the schema
+     */
+    public abstract String[] getSchemaDigestSQL();
+
 }
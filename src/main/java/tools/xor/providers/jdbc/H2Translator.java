@@ -42,6 +42,11 @@ public class H2Translator extends DBTranslator
     // H2 database uses BIGINT as the sequence type
     private static final String SEQUENCES_SQL = "SELECT sequence_name, 'BIGINT', max_value, min_value, increment, current_value, is_cycle FROM information_schema.sequences WHERE sequence_schema = schema()";
     private static final String TABLE_EXISTS_SQL = "SELECT count(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = '%s' AND TABLE_SCHEMA = schema()";
+    private static final String[] SCHEMA_DIGEST_SQL = {
+        "SELECT TABLE_NAME, COLUMN_NAME, TYPE_NAME, CHARACTER_MAXIMUM_LENGTH, IS_NULLABLE, COLUMN_DEFAULT FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = schema() ORDER BY TABLE_NAME, COLUMN_NAME",
+        "SELECT CONSTRAINT_NAME, CONSTRAINT_TYPE, TABLE_NAME, COLUMN_LIST FROM INFORMATION_SCHEMA.CONSTRAINTS WHERE CONSTRAINT_SCHEMA = schema() ORDER BY CONSTRAINT_NAME",
+        "SELECT FK_NAME, PKTABLE_NAME, FKCOLUMN_NAME, PKCOLUMN_NAME, DELETE_RULE, UPDATE_RULE FROM INFORMATION_SCHEMA.CROSS_REFERENCES WHERE FKTABLE_SCHEMA = schema() ORDER BY FK_NAME, ORDINAL_POSITION"
+    };
 
     private Map<String, JDBCDataModel.SequenceInfo> sequenceMap;
 
@@ -185,6 +190,11 @@ public class H2Translator extends DBTranslator
         return TABLE_EXISTS_SQL;
     }
 
+    @Override public String[] getSchemaDigestSQL ()
+    {
+        return SCHEMA_DIGEST_SQL;
+    }
+
     private JDBCDataModel.ForeignKeyRule getForeignKeyRule(int value) {
         switch(value) {
         case 1:
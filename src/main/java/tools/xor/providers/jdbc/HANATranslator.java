@@ -47,6 +47,11 @@ public class HANATranslator extends DBTranslator
     private static final String PRIMARY_KEY_SQL = "SELECT TABLE_NAME, CONSTRAINT_NAME, COLUMN_NAME, POSITION FROM CONSTRAINTS WHERE IS_PRIMARY_KEY = 'TRUE' AND SCHEMA_NAME = CURRENT_USER ORDER BY CONSTRAINT_NAME, POSITION";
     private static final String SEQUENCES_SQL = "SELECT sequence_name, max_value, min_value, increment_by, start_number, is_cycled  FROM sequences WHERE SCHEMA_NAME = CURRENT_USER";
     private static final String TABLE_EXISTS_SQL = "SELECT count(*) FROM TABLES WHERE TABLE_NAME = '%s' AND SCHEMA_NAME = CURRENT_USER";
+    private static final String[] SCHEMA_DIGEST_SQL = {
+        "SELECT TABLE_NAME, COLUMN_NAME, DATA_TYPE_NAME, LENGTH, IS_NULLABLE, GENERATION_TYPE FROM TABLE_COLUMNS WHERE SCHEMA_NAME = CURRENT_USER ORDER BY TABLE_NAME, COLUMN_NAME",
+        "SELECT CONSTRAINT_NAME, TABLE_NAME, COLUMN_NAME, POSITION FROM CONSTRAINTS WHERE SCHEMA_NAME = CURRENT_USER ORDER BY TABLE_NAME, CONSTRAINT_NAME, POSITION",
+        "SELECT CONSTRAINT_NAME, TABLE_NAME, REFERENCED_TABLE_NAME, COLUMN_NAME, REFERENCED_COLUMN_NAME, DELETE_RULE, UPDATE_RULE FROM REFERENTIAL_CONSTRAINTS WHERE SCHEMA_NAME = CURRENT_USER ORDER BY TABLE_NAME, CONSTRAINT_NAME, POSITION"
+    };
 
     private Map<String, JDBCDataModel.SequenceInfo> sequenceMap;
 
@@ -163,6 +168,14 @@ public class HANATranslator extends DBTranslator
             });
     }
 
+    /**
+     * HANA only allows a single row in the VALUES clause of an INSERT statement
+     */
+    @Override
+    public boolean isMultiRowInsertSupported() {
+        return false;
+    }
+
     @Override
     protected JDBCtoSQLConverter getConverter(String dataType) {
         if(hanaConvertersByDataType.containsKey(dataType)) {
@@ -301,4 +314,9 @@ public class HANATranslator extends DBTranslator
     {
         return TABLE_EXISTS_SQL;
     }
+
+    @Override public String[] getSchemaDigestSQL ()
+    {
+        return SCHEMA_DIGEST_SQL;
+    }
 }
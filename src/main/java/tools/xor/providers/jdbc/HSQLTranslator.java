@@ -39,6 +39,11 @@ public class HSQLTranslator extends DBTranslator
     private static final String PRIMARY_KEY_SQL = "SELECT table_name, pk_name, column_name, key_seq FROM INFORMATION_SCHEMA.SYSTEM_PRIMARYKEYS WHERE table_schem = CURRENT_SCHEMA ORDER BY pk_name, key_seq";
     private static final String SEQUENCES_SQL = "SELECT sequence_name, data_type, maximum_value, minimum_value, increment, start_with, cycle_option  FROM information_schema.sequences WHERE SEQUENCE_SCHEMA = CURRENT_SCHEMA";
     private static final String TABLE_EXISTS_SQL = "SELECT count(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = '%s' AND TABLE_SCHEMA = CURRENT_SCHEMA";
+    private static final String[] SCHEMA_DIGEST_SQL = {
+        "SELECT TABLE_NAME, COLUMN_NAME, DTD_IDENTIFIER, IS_NULLABLE, IS_IDENTITY FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = CURRENT_SCHEMA ORDER BY TABLE_NAME, COLUMN_NAME",
+        "SELECT CONSTRAINT_NAME, TABLE_NAME, COLUMN_NAME, ORDINAL_POSITION FROM INFORMATION_SCHEMA.KEY_COLUMN_USAGE WHERE TABLE_SCHEMA = CURRENT_SCHEMA ORDER BY CONSTRAINT_NAME, ORDINAL_POSITION",
+        "SELECT CONSTRAINT_NAME, UNIQUE_CONSTRAINT_NAME, UPDATE_RULE, DELETE_RULE FROM INFORMATION_SCHEMA.REFERENTIAL_CONSTRAINTS WHERE CONSTRAINT_SCHEMA = CURRENT_SCHEMA ORDER BY CONSTRAINT_NAME"
+    };
 
     private Map<String, JDBCDataModel.SequenceInfo> sequenceMap;
 
@@ -174,6 +179,11 @@ public class HSQLTranslator extends DBTranslator
         return TABLE_EXISTS_SQL;
     }
 
+    @Override public String[] getSchemaDigestSQL ()
+    {
+        return SCHEMA_DIGEST_SQL;
+    }
+
     private JDBCDataModel.ForeignKeyRule getForeignKeyRule(int value) {
         switch(value) {
         case 1:
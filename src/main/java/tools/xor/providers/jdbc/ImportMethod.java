@@ -23,7 +23,12 @@ public enum ImportMethod
 {
     PREPARED_STATEMENT, // imports data using prepared statement batching
     LITERAL_SQL,        // imports data using literal sql batching
-    CSV                 // generates literal SQL in csv files.
+    CSV,                // generates literal SQL in csv files.
                         // saved under the name <entity_name>_<jobNo>.csv
                         // the user needs to manually import the csv files
+    COPY,               // streams the csv rows directly into the database
+                        // using the bulk load facility of the database, e.g., COPY in PostgreSQL
+    MULTI_ROW           // imports data using INSERT statements with multiple rows in the VALUES clause.
+                        // The number of rows per statement is limited by the bind parameter limit of the database.
+                        // Falls back to PREPARED_STATEMENT if the database does not support it, e.g., HANA
 }
@@ -19,6 +19,7 @@
 
 package tools.xor.providers.jdbc;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -46,7 +47,9 @@ import tools.xor.service.DataStore;
 import tools.xor.service.PersistenceProvider;
 import tools.xor.service.SchemaExtension;
 import tools.xor.service.Shape;
+import tools.xor.util.ApplicationConfiguration;
 import tools.xor.util.ClassUtil;
+import tools.xor.util.Constants;
 
 /**
  * This class is part of the Data Access Service framework.
@@ -338,6 +341,18 @@ public abstract class JDBCDataModel extends AbstractDataModel
             return this.name;
         }
 
+        public String getNameInDatabase() {
+            return this.nameInDatabase;
+        }
+
+        public ForeignKeyRule getDeleteRule() {
+            return this.deleteRule;
+        }
+
+        public ForeignKeyRule getUpdateRule() {
+            return this.updateRule;
+        }
+
         public String getInverseRelationshipName() {
             return this.inverseName;
         }
@@ -451,8 +466,31 @@ public abstract class JDBCDataModel extends AbstractDataModel
         }
     }
 
+    private File schemaSnapshotDir;
+    private SchemaSnapshot schemaSnapshot;
+    private boolean schemaSnapshotStale;
+
     public JDBCDataModel(DataModelFactory dasFactory, TypeMapper typeMapper) {
         super(dasFactory, typeMapper);
+
+        if(ApplicationConfiguration.config().containsKey(Constants.Config.SCHEMA_SNAPSHOT_DIR)) {
+            this.schemaSnapshotDir = new File(ApplicationConfiguration.config().getString(Constants.Config.SCHEMA_SNAPSHOT_DIR));
+        }
+    }
+
+    /**
+     * Set the directory where the table metadata is persisted between application runs.
+     * If not set, the tables are introspected from the database every time they are needed.
+     *
+     * @param dir snapshot directory, null to disable the snapshot
+     */
+    public void setSchemaSnapshotDir(File dir) {
+        this.schemaSnapshotDir = dir;
+        this.schemaSnapshot = null;
+    }
+
+    public File getSchemaSnapshotDir() {
+        return this.schemaSnapshotDir;
     }
 
     /**
@@ -481,7 +519,7 @@ public abstract class JDBCDataModel extends AbstractDataModel
 
     public List<TableInfo> getTables() {
         try(Connection c = getDataSource().getConnection()) {
-            List<TableInfo> tables = DBTranslator.instance(c).getTables(c, getAggregateManager().getForeignKeyEnhancer());
+            List<TableInfo> tables = getTables(c);
             return tables;
         }
         catch (SQLException e) {
@@ -489,9 +527,31 @@ public abstract class JDBCDataModel extends AbstractDataModel
         }
     }
 
+    private synchronized List<TableInfo> getTables(Connection c) {
+        DBTranslator translator = DBTranslator.instance(c);
+        if(schemaSnapshotDir == null) {
+            return translator.getTables(c, getAggregateManager().getForeignKeyEnhancer());
+        }
+
+        if(schemaSnapshot == null) {
+            String key = SchemaSnapshot.getKey(c);
+            if(!schemaSnapshotStale) {
+                schemaSnapshot = SchemaSnapshot.load(schemaSnapshotDir, key);
+            }
+            if(schemaSnapshot == null) {
+                logger.info("Capturing schema snapshot in " + schemaSnapshotDir.getAbsolutePath());
+                schemaSnapshot = translator.getSchemaSnapshot(c, key);
+                schemaSnapshot.save(schemaSnapshotDir);
+                schemaSnapshotStale = false;
+            }
+        }
+
+        return translator.getTables(schemaSnapshot, getAggregateManager().getForeignKeyEnhancer());
+    }
+
     public List<TableInfo> getRelationalTables() {
         try(Connection c = getDataSource().getConnection()) {
-            List<TableInfo> tables = DBTranslator.instance(c).getTables(c, getAggregateManager().getForeignKeyEnhancer());
+            List<TableInfo> tables = getTables(c);
 
             for(TableInfo table: tables) {
                 table.setForeignKeys(null);
@@ -593,6 +653,12 @@ public abstract class JDBCDataModel extends AbstractDataModel
     public void addNewTypes(Shape shape) {
         String name = shape.getName();
 
+        // New tables have been added to the database, so the snapshot needs to be recaptured
+        synchronized (this) {
+            schemaSnapshot = null;
+            schemaSnapshotStale = true;
+        }
+
         List<TableInfo> tables = name.equals(RELATIONAL_SHAPE) ? getRelationalTables() : getTables();
         List<TableInfo> newTables = new ArrayList<>();
         List<Type> newTypes = new ArrayList<>();
@@ -6,6 +6,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -22,6 +23,7 @@ import tools.xor.CallInfo;
 import tools.xor.EntityKey;
 import tools.xor.EntityType;
 import tools.xor.ExtendedProperty;
+import tools.xor.JDBCType;
 import tools.xor.NaturalEntityKey;
 import tools.xor.Property;
 import tools.xor.SurrogateEntityKey;
@@ -194,28 +196,40 @@ public class JDBCDataStore
 	@Override
 	public Object findById(Type type, Object id) {
 
-		if(context.readFromDB()) {
-			// TODO: get the object from the database
-			return null;
-		} else {
-			// The object with the given id is obtained from the JDBCSessionContext
-			EntityKey ek;
-			if (!(id instanceof EntityKey)) {
-				ek = new SurrogateEntityKey(id, AbstractTypeMapper.getSurrogateKeyTypeName(type));
-			}
-			else {
-				ek = (EntityKey)id;
-			}
-			return context.getEntity(ek);
+		// The object with the given id is obtained from the JDBCSessionContext
+		EntityKey ek;
+		if (!(id instanceof EntityKey)) {
+			ek = new SurrogateEntityKey(id, AbstractTypeMapper.getSurrogateKeyTypeName(type));
 		}
+		else {
+			ek = (EntityKey)id;
+		}
+		Object result = context.getEntity(ek);
+
+		// Only the entities with a surrogate key are loaded from the database
+		if(result == null && context.readFromDB() && !(id instanceof EntityKey)) {
+			context.load((JDBCType)type, Collections.singleton(id));
+			result = context.getEntity(ek);
+		}
+
+		return result;
 	}
 
 	@Override public List<Object> findByIds (EntityType entityType, Collection ids)
 	{
 		List<Object> result = new LinkedList<>();
 
+		// Load the missing entities using a single query per chunk of ids
+		if(context.readFromDB() && entityType.getIdentifierProperty() != null) {
+			context.load((JDBCType)entityType, ids);
+		}
+
+		// Similar to the JPA provider, only the entities that are found are returned
 		for(Object id: ids) {
-			result.add(findById(entityType, id));
+			Object entity = findById(entityType, id);
+			if(entity != null) {
+				result.add(entity);
+			}
 		}
 
 		return result;
@@ -237,6 +251,12 @@ public class JDBCDataStore
 		return null;
 	}
 
+	@Override
+	public DBTranslator getDBTranslator() {
+		// Also available when the session does not hold a connection
+		return context.getDbTranslator();
+	}
+
 
 	@Override
 	public Object getCached(Class<?> persistentClass, Object id)
@@ -266,11 +286,8 @@ public class JDBCDataStore
 			break;
 
 		case OQL:
-			connection = null;
-			if (!Query.isDeferred(queryString)) {
-				connection = context.getConnection();
-			}
-			result = new JDBCQuery(queryString, connection, null);
+			// A deferred query is prepared on this connection once its parameters are resolved
+			result = new JDBCQuery(queryString, context.getConnection(), null);
 			break;
 
 		default:
@@ -15,9 +15,11 @@ import tools.xor.Settings;
 import tools.xor.util.ClassUtil;
 import tools.xor.view.AbstractQuery;
 import tools.xor.view.BindParameter;
+import tools.xor.view.ColumnBuffer;
 import tools.xor.view.NativeQuery;
 import tools.xor.view.Query;
 import tools.xor.view.QueryStringHelper;
+import tools.xor.view.RecordHandler;
 import tools.xor.view.View;
 
 public class JDBCQuery extends AbstractQuery
@@ -26,6 +28,8 @@ public class JDBCQuery extends AbstractQuery
 	private PreparedStatement preparedStatement;
 	private NativeQuery nativeQuery;
 	private Map<String, Object> paramValues = new HashMap<>();
+	private ColumnBuffer.Reader columnReader; // the column storage only depends on the statement
+	private int fetchSize; // 0 uses the driver default
 
 	public JDBCQuery(String sql, Connection connection, NativeQuery nativeQuery) {
 		super(sql);
@@ -45,7 +49,9 @@ public class JDBCQuery extends AbstractQuery
 		try {
 			if(connection != null) {
 				if(!Query.isDeferred(getQueryString())) {
-					this.preparedStatement = connection.prepareStatement(getQueryString());
+					// The result is only read forward, so the driver does not need to keep the rows already read
+					this.preparedStatement = connection.prepareStatement(getQueryString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+					this.columnReader = null;
 				}
 			} else {
 				throw new RuntimeException("Need a JDBC connection");
@@ -178,38 +184,124 @@ public class JDBCQuery extends AbstractQuery
 		}
 	}
 */
-	private List getResultSet (Settings settings)
+	private void readResultSet (Settings settings, RecordHandler handler)
 	{
-		List result = new ArrayList<>();
-
 		try {
 			QueryStringHelper.setParameters(settings, preparedStatement, positionByName, paramValues);
-			ResultSet rs = preparedStatement.executeQuery();
-
-			ResultSetMetaData rsmd = rs.getMetaData();
-			int NumOfCol = rsmd.getColumnCount();
+			if(settings.getQueryTimeout() > 0) {
+				preparedStatement.setQueryTimeout(toSeconds(settings.getQueryTimeout()));
+			}
+			if(fetchSize > 0) {
+				preparedStatement.setFetchSize(fetchSize);
+			}
 
-			List columnLabels = new ArrayList<>(NumOfCol);
-			for(int i = 1; i <= NumOfCol; i++) {
-				columnLabels.add(rsmd.getColumnLabel(i));
+			// Stream the result if the driver needs a transaction for it
+			boolean streaming = fetchSize > 0
+				&& connection.getAutoCommit()
+				&& DBTranslator.getTranslator(connection).isStreamingInTransaction();
+			if(streaming) {
+				connection.setAutoCommit(false);
 			}
-			setColumns(columnLabels);
 
-			while (rs.next()) {
-				Object[] row = new Object[NumOfCol];
+			ResultSet rs = null;
+			try {
+				rs = preparedStatement.executeQuery();
+				ResultSetMetaData rsmd = rs.getMetaData();
+				int NumOfCol = rsmd.getColumnCount();
+
+				List columnLabels = new ArrayList<>(NumOfCol);
 				for (int i = 1; i <= NumOfCol; i++) {
-					row[i - 1] = rs.getObject(i);
+					columnLabels.add(rsmd.getColumnLabel(i));
+				}
+				setColumns(columnLabels);
+
+				if(handler instanceof RecordHandler.Columnar) {
+					readColumns(rs, (RecordHandler.Columnar)handler);
+					return;
+				}
+
+				// Each row is handed over as soon as it is read
+				while (rs.next()) {
+					Object[] row = new Object[NumOfCol];
+					for (int i = 1; i <= NumOfCol; i++) {
+						row[i - 1] = rs.getObject(i);
+					}
+					handler.handle(row);
+				}
+			} finally {
+				if(rs != null) {
+					rs.close();
+				}
+				if(streaming) {
+					connection.setAutoCommit(true);
 				}
-				result.add(row);
 			}
-			rs.close();
 		} catch (SQLException se) {
 			throw ClassUtil.wrapRun(se);
 		}
+	}
+
+	/**
+	 * Read the result a block at a time into a ColumnBuffer, and hand over the rows
+	 * of the block by their position in the block. The block is as large as the fetch size of the statement.
+	 *
+	 * @param rs result set
+	 * @param handler that accepts ColumnBuffer rows
+	 * @throws SQLException if the result cannot be read
+	 */
+	private void readColumns (ResultSet rs, RecordHandler.Columnar handler) throws SQLException
+	{
+		if(columnReader == null) {
+			columnReader = new ColumnBuffer.Reader(rs.getMetaData());
+		}
+		int blockSize = preparedStatement.getFetchSize() > 0 ? preparedStatement.getFetchSize() : ColumnBuffer.DEFAULT_SIZE;
+
+		ColumnBuffer buffer;
+		while ((buffer = columnReader.read(rs, blockSize)) != null) {
+			for (int i = 0; i < buffer.size(); i++) {
+				handler.handle(buffer, i);
+			}
+		}
+	}
+
+	private static int toSeconds(long millis) {
+		return (int) Math.max(1, (millis + 999) / 1000);
+	}
+
+	@Override public void cancel ()
+	{
+		super.cancel();
+
+		PreparedStatement statement = this.preparedStatement;
+		if(statement != null) {
+			try {
+				statement.cancel();
+				statement.close();
+			}
+			catch (SQLException e) {
+				throw ClassUtil.wrapRun(e);
+			}
+		}
+	}
+
+	private List getResultSet (Settings settings)
+	{
+		final List result = new ArrayList<>();
+		readResultSet(settings, new RecordHandler() {
+			@Override public void handle (Object record)
+			{
+				result.add(record);
+			}
+		});
 
 		return result;
 	}
 
+	@Override protected void processResultsInternal (View view, Settings settings, RecordHandler handler)
+	{
+		readResultSet(settings, handler);
+	}
+
 	@Override protected List getResultListInternal (View view, Settings settings)
 	{
 		return getResultSet(settings);
@@ -241,6 +333,12 @@ public class JDBCQuery extends AbstractQuery
 		}
 	}
 
+	@Override
+	public void setFetchSize(int fetchSize) {
+		// The statement might be deferred, so it is set when the query is executed
+		this.fetchSize = fetchSize;
+	}
+
 	@Override
 	public void setFirstResult(int offset) {
 		throw new RuntimeException("Offset not supported directly, modify your query to implement this.");
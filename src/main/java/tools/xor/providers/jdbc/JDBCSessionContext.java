@@ -22,21 +22,34 @@ package tools.xor.providers.jdbc;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -50,6 +63,7 @@ import tools.xor.EntityKey;
 import tools.xor.EntityType;
 import tools.xor.ExtendedProperty;
 import tools.xor.ImmutableBO;
+import tools.xor.JDBCProperty;
 import tools.xor.JDBCType;
 import tools.xor.NaturalEntityKey;
 import tools.xor.Property;
@@ -75,18 +89,90 @@ public class JDBCSessionContext implements CustomPersister
     private ImportMethod importMethod = ImportMethod.PREPARED_STATEMENT; // use prepared statement batch if order does not matter
     private Statement statement;
     //private Set<PreparedStatement> preparedInsert = new HashSet<>();
-    private Map<PSKey, PreparedStatement> preparedInsert = new HashMap<>();
-    private Map<PSKey, PreparedStatement> preparedUpdate = new HashMap<>();
-    private Map<PSKey, PreparedStatement> preparedDelete = new HashMap<>();
+    // A table can have more than one statement with a pending batch, e.g., an update per dirty column set
+    private Map<PSKey, Set<PreparedStatement>> preparedInsert = new HashMap<>();
+    private Map<PSKey, Set<PreparedStatement>> preparedUpdate = new HashMap<>();
+    private Map<PSKey, Set<PreparedStatement>> preparedDelete = new HashMap<>();
+    private Set<PreparedStatement> batchedStatements = Collections.newSetFromMap(new IdentityHashMap<PreparedStatement, Boolean>());
     private Map<EntityKey, JSONObject> idToObjects = new HashMap<>();
     private Map<JSONObject, JSONObject> snapshots = new HashMap<>();
     private final Map<String, List<String>> sqlByType = new HashMap<>();
     private List<String> literalSQLs = new LinkedList<>();
-    private final Map<String, PreparedStatement> statementCache = lruCache(1000);
+    private Map<PSKey, Map<String, StringBuilder>> copyRows = new HashMap<>(); // rows by COPY statement per table
+    private Map<PSKey, Map<List<String>, List<List<DBTranslator.BoundValue>>>> multiRows = new HashMap<>(); // rows by columns per table
     private Stack<ConnectionHolder> connections = new Stack<>();
     private Map<String, BufferedWriter> csvWriters = new HashMap<>();
     private Boolean autoCommit; // 3 value logic, only set if initialized
     private boolean orderSQL = true;
+    private boolean changeTracking; // keep only the column values of the loaded objects and update the modified columns
+    private FlushMode flushMode = FlushMode.SERIAL;
+    private boolean readFromDB; // load the entities missing in the identity map from the database
+    private Set<EntityKey> notFound = new HashSet<>(); // ids already looked up in the database without a row
+
+    public enum FlushMode {
+        SERIAL,   // the batches are executed in topological order on the session connection
+        PARALLEL  // the inserts of tables not related to each other are executed concurrently on separate connections
+    }
+
+    private final static int FLUSH_POOL_SIZE;
+    static {
+        int poolSize = 4;
+        if (ApplicationConfiguration.config().containsKey(Constants.Config.FLUSH_POOL_SIZE)) {
+            poolSize = ApplicationConfiguration.config().getInt(Constants.Config.FLUSH_POOL_SIZE);
+            if(poolSize < 1) {
+                poolSize = 4;
+            }
+        }
+
+        FLUSH_POOL_SIZE = poolSize;
+    }
+
+    // Only created if a parallel flush is done
+    private static class FlushExecutor {
+        private static final ExecutorService INSTANCE = Executors.newFixedThreadPool(FLUSH_POOL_SIZE, new ThreadFactory() {
+            @Override public Thread newThread (Runnable r)
+            {
+                Thread thread = new Thread(r, "xor-flush");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public FlushMode getFlushMode() {
+        return flushMode;
+    }
+
+    /**
+     * In the parallel flush mode, the rows inserted using the PREPARED_STATEMENT, MULTI_ROW or COPY
+     * import methods are grouped by the tables related to each other through foreign keys or inheritance.
+     * The groups are inserted concurrently, each on a separate connection, and these connections
+     * are committed at the end of the flush.
+     * This is only done if the session connection is in autocommit mode, since the separate
+     * connections cannot be part of the session transaction and do not see its uncommitted rows.
+     * Otherwise the flush is serial, so the inserts are undone by a rollback of the session.
+     * The updates and deletes are always executed on the session connection.
+     *
+     * @param flushMode SERIAL to execute all the batches on the session connection
+     */
+    public void setFlushMode(FlushMode flushMode) {
+        this.flushMode = flushMode;
+    }
+
+    public boolean isChangeTracking() {
+        return changeTracking;
+    }
+
+    /**
+     * If enabled, the snapshot of a processed object only contains its column values instead of a
+     * deep copy of the object, and the update statements only set the modified columns.
+     * An object without modified columns is not updated.
+     *
+     * @param changeTracking true to enable
+     */
+    public void setChangeTracking(boolean changeTracking) {
+        this.changeTracking = changeTracking;
+    }
 
     public boolean isOrderSQL() {
         return orderSQL;
@@ -110,6 +196,8 @@ public class JDBCSessionContext implements CustomPersister
         private final boolean readOnly; // If this is true, then there are no modifications and
                                         // it does not have to be committed
         private boolean originalAutoCommit;
+        private final StatementCache statementCache;
+        private final boolean statementCacheOwner; // false if shared with the outer transaction
 
         public boolean isOriginalAutoCommit() {
             return originalAutoCommit;
@@ -123,15 +211,37 @@ public class JDBCSessionContext implements CustomPersister
             return this.connection;
         }
 
-        public ConnectionHolder(Connection c, boolean owner, boolean readOnly) {
+        /**
+         * @param c JDBC connection
+         * @param owner true if the connection is closed by this holder
+         * @param readOnly true if there are no modifications
+         * @param outer holder of the enclosing transaction on the same connection, whose
+         *              statements are reused. If null, the holder has its own statements.
+         */
+        public ConnectionHolder(Connection c, boolean owner, boolean readOnly, ConnectionHolder outer) {
             this.connection = c;
             this.owner = owner;
             this.readOnly = readOnly;
+            this.statementCache = (outer == null) ? new StatementCache() : outer.getStatementCache();
+            this.statementCacheOwner = (outer == null);
         }
 
         public boolean isOwner() {
             return this.owner;
         }
+
+        public StatementCache getStatementCache() {
+            return this.statementCache;
+        }
+
+        /**
+         * Close the statements prepared by this holder, the connection is not closed
+         */
+        public void release() {
+            if(statementCacheOwner) {
+                statementCache.clear();
+            }
+        }
     }
 
     private static class PSKey implements ObjectGraph.StateComparator.TypedObject {
@@ -182,15 +292,34 @@ public class JDBCSessionContext implements CustomPersister
 
     public void setImportMethod (ImportMethod importMethod)
     {
+        // Fail early instead of at flush, e.g., HANA does not accept multiple rows in VALUES
+        if(importMethod == ImportMethod.MULTI_ROW && !getDbTranslator().isMultiRowInsertSupported()) {
+            logger.warn("Multi-row insert is not supported by the database, using PREPARED_STATEMENT instead");
+            importMethod = ImportMethod.PREPARED_STATEMENT;
+        }
         this.importMethod = importMethod;
     }
 
     public void init(JDBCSessionContext context) {
         if(context != null) {
             this.idToObjects = context.idToObjects;
+            this.notFound = context.notFound;
         }
     }
 
+    /**
+     * Use the options of another session, without sharing its entities, statements or
+     * connection. Used by the sessions processing the parts of a bulk request.
+     *
+     * @param context whose options are copied
+     */
+    public void initOptions(JDBCSessionContext context) {
+        this.orderSQL = context.orderSQL;
+        this.changeTracking = context.changeTracking;
+        this.flushMode = context.flushMode;
+        this.readFromDB = context.readFromDB;
+    }
+
     /**
      * This method is used to navigate the input object and map the
      * objects with its id.
@@ -203,10 +332,37 @@ public class JDBCSessionContext implements CustomPersister
     // Since this object is used as modification
     public void process (JSONObject object, EntityType entityType) {
 
-        JSONObject snapshot = ClassUtil.copyJson(object);
+        JDBCType type = (JDBCType) entityType;
+        register(object, type);
+
+        Iterator<String> iterator = object.keys();
+        while(iterator.hasNext()) {
+            Property property = type.getProperty(iterator.next());
+            if(property != null) {
+                if (!property.getType().isDataType()) {
+                    JSONObject child = object.getJSONObject(property.getName());
+                    process(child, (JDBCType)property.getType());
+                }
+                else if (property.isMany()
+                    && !((ExtendedProperty)property).getElementType().isDataType()) {
+                    JSONArray child = object.getJSONArray(property.getName());
+                    JDBCType elementType = (JDBCType)((ExtendedProperty)property).getElementType();
+                    for (int i = 0; i < child.length(); i++) {
+                        process(child.getJSONObject(i), elementType);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Add the object to the identity map and take its snapshot.
+     * The relationships of the object are not navigated.
+     */
+    private void register (JSONObject object, JDBCType type) {
+        JSONObject snapshot = changeTracking ? getColumnSnapshot(object, type) : ClassUtil.copyJson(object);
 
         EntityKey ek;
-        JDBCType type = (JDBCType) entityType;
         if(type.getIdentifierProperty() != null) {
             ek = new SurrogateEntityKey(object.get(type.getIdentifierProperty().getName()), AbstractTypeMapper.getSurrogateKeyTypeName(type));
         } else if(type.getNaturalKey() != null) {
@@ -220,25 +376,41 @@ public class JDBCSessionContext implements CustomPersister
         }
         idToObjects.put(ek, object);
         snapshots.put(object, snapshot);
+    }
+
+    /*
+     * The values of the columns are immutable, so they are shared with the object.
+     * A relationship is represented by the values of the columns referenced by its foreign key.
+     */
+    private JSONObject getColumnSnapshot(JSONObject object, JDBCType type) {
+        JSONObject snapshot = new JSONObject();
 
         Iterator<String> iterator = object.keys();
         while(iterator.hasNext()) {
-            Property property = type.getProperty(iterator.next());
-            if(property != null) {
-                if (!property.getType().isDataType()) {
-                    JSONObject child = object.getJSONObject(property.getName());
-                    process(child, (JDBCType)property.getType());
+            String name = iterator.next();
+            Property property = type.getProperty(name);
+            if(property == null || property.isMany()) {
+                continue;
+            }
+
+            if(property.getType().isDataType()) {
+                snapshot.put(name, object.get(name));
+            } else if(property.getMappedBy() == null && ((JDBCProperty)property).getForeignKey() != null) {
+                JSONObject child = object.optJSONObject(name);
+                if(child == null) {
+                    snapshot.put(name, JSONObject.NULL);
+                    continue;
                 }
-                else if (property.isMany()
-                    && !((ExtendedProperty)property).getElementType().isDataType()) {
-                    JSONArray child = object.getJSONArray(property.getName());
-                    JDBCType elementType = (JDBCType)((ExtendedProperty)property).getElementType();
-                    for (int i = 0; i < child.length(); i++) {
-                        process(child.getJSONObject(i), elementType);
-                    }
+
+                JSONObject reference = new JSONObject();
+                for(String column: ((JDBCProperty)property).getForeignKey().getReferencedColumns()) {
+                    reference.put(column, child.opt(column));
                 }
+                snapshot.put(name, reference);
             }
         }
+
+        return snapshot;
     }
 
     @Override
@@ -263,7 +435,13 @@ public class JDBCSessionContext implements CustomPersister
         return null;
     }
 
-    private DBTranslator getDbTranslator ()
+    /**
+     * The translator of the database, looked up once. A connection is obtained if the
+     * session does not have one.
+     *
+     * @return translator of the database
+     */
+    DBTranslator getDbTranslator ()
     {
         if (this.dbTranslator == null) {
             beginTransaction();
@@ -291,6 +469,10 @@ public class JDBCSessionContext implements CustomPersister
         TypeGraph<State, Edge<State>> sg = settings.getView().getTypeGraph(entityType);
         Collections.sort(objects, new ObjectGraph.StateComparator(sg));
 
+        if(readFromDB) {
+            prefetch(objects);
+        }
+
         for (BusinessObject bo : objects) {
             if (bo.getInstance() instanceof JSONObject) {
                 Object persistentInstance = this.po.getEntity(bo);
@@ -310,21 +492,64 @@ public class JDBCSessionContext implements CustomPersister
         }
     }
     
+    /*
+     * Load the existing entities of the graph from the database, with one query per type
+     * instead of a query per object.
+     */
+    private void prefetch (List<BusinessObject> objects) {
+        Map<JDBCType, List<Object>> idsByType = new LinkedHashMap<>();
+        for (BusinessObject bo : objects) {
+            if (!(bo.getInstance() instanceof JSONObject) || !(bo.getType() instanceof JDBCType)) {
+                continue;
+            }
+            JDBCType type = (JDBCType)bo.getType();
+            if(type.getIdentifierProperty() == null) {
+                continue;
+            }
+            Object id = ((ExtendedProperty)type.getIdentifierProperty()).getValue(bo);
+            if(id != null && !"".equals(id)) {
+                List<Object> ids = idsByType.get(type);
+                if(ids == null) {
+                    ids = new ArrayList<>();
+                    idsByType.put(type, ids);
+                }
+                ids.add(id);
+            }
+        }
+
+        for(Map.Entry<JDBCType, List<Object>> entry: idsByType.entrySet()) {
+            load(entry.getKey(), entry.getValue());
+        }
+    }
+
     @Override public void create (BusinessObject bo, Settings settings, DataGenerator generator) {
-        List<EntitySQL> entitySQLs = getInsertObjs(settings, bo, importMethod, generator);
+        List<EntitySQL> entitySQLs = getInsertObjs(settings, bo, getInsertMethod(), generator);
         createEntity(bo, entitySQLs);
     }
     
     @Override public void create (BusinessObject bo, List<String> columnsToUpdate) {
-        List<EntitySQL> entitySQLs = getInsertObjs(bo, importMethod, columnsToUpdate);
+        List<EntitySQL> entitySQLs = getInsertObjs(bo, getInsertMethod(), columnsToUpdate);
         createEntity(bo, entitySQLs);
     }    
 
+    /*
+     * A parallel flush needs the rows of the prepared statement batches, since a batch
+     * cannot be moved to another connection. So the rows are collected the same way as
+     * for a multi-row insert.
+     */
+    private ImportMethod getInsertMethod() {
+        if(importMethod == ImportMethod.PREPARED_STATEMENT && flushMode == FlushMode.PARALLEL) {
+            return ImportMethod.MULTI_ROW;
+        }
+
+        return importMethod;
+    }
+
     private void createEntity (BusinessObject bo, List<EntitySQL> entitySQLs)
     {
         try {
             // If preparedStatement batching is not desired due to ordering reasons
-            switch(importMethod) {
+            switch(getInsertMethod()) {
             case LITERAL_SQL:
                 createStatement();
                 for (EntitySQL entitySQL : entitySQLs) {
@@ -334,8 +559,8 @@ public class JDBCSessionContext implements CustomPersister
                 break;
             case PREPARED_STATEMENT:
                 for (EntitySQL entitySQL : entitySQLs) {
-                    entitySQL.ps.addBatch();
-                    preparedInsert.put(new PSKey(entitySQL.entityType), entitySQL.ps);
+                    addBatch(entitySQL.ps);
+                    addPending(preparedInsert, entitySQL);
 
                     if(logger.isDebugEnabled()) {
                         logger.debug(entitySQL.sql);
@@ -347,6 +572,16 @@ public class JDBCSessionContext implements CustomPersister
                     addSQL(entitySQL);
                 }
                 break;
+            case COPY:
+                for (EntitySQL entitySQL : entitySQLs) {
+                    addCopyRow(entitySQL);
+                }
+                break;
+            case MULTI_ROW:
+                for (EntitySQL entitySQL : entitySQLs) {
+                    addMultiRow(entitySQL);
+                }
+                break;
             }
         } catch(SQLException e) {
             throw ClassUtil.wrapRun(e);
@@ -366,13 +601,15 @@ public class JDBCSessionContext implements CustomPersister
                 }
                 break;
             case PREPARED_STATEMENT:
+            case MULTI_ROW:
                 for (EntitySQL entitySQL : getUpdateObjs(bo, dbBO, importMethod)) {
-                    entitySQL.ps.addBatch();
-                    preparedUpdate.put(new PSKey(entitySQL.entityType), entitySQL.ps);
+                    addBatch(entitySQL.ps);
+                    addPending(preparedUpdate, entitySQL);
                 }
                 break;
             case CSV:
-                throw new RuntimeException("CSV is not supported for update");
+            case COPY:
+                throw new RuntimeException(importMethod + " is not supported for update");
             }
         }catch(Throwable t) {
             t.printStackTrace();
@@ -392,13 +629,15 @@ public class JDBCSessionContext implements CustomPersister
                 }
                 break;
             case PREPARED_STATEMENT:
+            case MULTI_ROW:
                 for (EntitySQL entitySQL : getUpdateObjs(bo, columnsToSet, lookupKeys, importMethod)) {
-                    entitySQL.ps.addBatch();
-                    preparedUpdate.put(new PSKey(entitySQL.entityType), entitySQL.ps);
+                    addBatch(entitySQL.ps);
+                    addPending(preparedUpdate, entitySQL);
                 }
                 break;
             case CSV:
-                throw new RuntimeException("CSV is not supported for update");
+            case COPY:
+                throw new RuntimeException(importMethod + " is not supported for update");
             }
         }catch(SQLException e) {
             throw ClassUtil.wrapRun(e);
@@ -410,6 +649,7 @@ public class JDBCSessionContext implements CustomPersister
             // If preparedStatement batching is not desired due to ordering reasons
             switch(importMethod) {
             case PREPARED_STATEMENT:
+            case MULTI_ROW:
                 PreparedStatement ps = getSelectStmt(bo, primaryKeyColumn, lookupKeys);
                 Object result = null;
                 try(ResultSet rs = ps.executeQuery()) {
@@ -421,7 +661,8 @@ public class JDBCSessionContext implements CustomPersister
             case LITERAL_SQL:
                 throw new RuntimeException("Literal sql is not supported for select");                
             case CSV:
-                throw new RuntimeException("CSV is not supported for update");
+            case COPY:
+                throw new RuntimeException(importMethod + " is not supported for select");
             default:
                 return null;                
             }
@@ -435,7 +676,7 @@ public class JDBCSessionContext implements CustomPersister
         JDBCType entityType = (JDBCType)bo.getType();
         String psSQL = getDbTranslator().getSelectStmt(entityType, primaryKeyColumn, lookupKeys);
 
-        PreparedStatement ps = getOrCreate(psSQL);
+        PreparedStatement ps = getOrCreate(entityType, psSQL);
         getDbTranslator().setSelectValues(entityType, ps, bo, primaryKeyColumn, lookupKeys);
 
         return ps;
@@ -451,16 +692,64 @@ public class JDBCSessionContext implements CustomPersister
         sqls.add(entitySQL.sql);
     }
 
+    private void addCopyRow(EntitySQL entitySQL) {
+        PSKey key = new PSKey(entitySQL.entityType);
+        Map<String, StringBuilder> rowsBySql = copyRows.get(key);
+        if(rowsBySql == null) {
+            rowsBySql = new HashMap<>();
+            copyRows.put(key, rowsBySql);
+        }
+
+        // The columns can differ between the rows of a table if it is not generated data
+        StringBuilder rows = rowsBySql.get(entitySQL.copySql);
+        if(rows == null) {
+            rows = new StringBuilder();
+            rowsBySql.put(entitySQL.copySql, rows);
+        }
+        rows.append(entitySQL.sql).append('\n');
+    }
+
+    private void addMultiRow(EntitySQL entitySQL) {
+        PSKey key = new PSKey(entitySQL.entityType);
+        Map<List<String>, List<List<DBTranslator.BoundValue>>> rowsByColumns = multiRows.get(key);
+        if(rowsByColumns == null) {
+            rowsByColumns = new HashMap<>();
+            multiRows.put(key, rowsByColumns);
+        }
+
+        // The columns can differ between the rows of a table if it is not generated data
+        List<List<DBTranslator.BoundValue>> rows = rowsByColumns.get(entitySQL.columns);
+        if(rows == null) {
+            rows = new ArrayList<>();
+            rowsByColumns.put(entitySQL.columns, rows);
+        }
+        rows.add(entitySQL.values);
+    }
+
     private static class EntitySQL {
         JDBCType entityType;
         PreparedStatement ps;
         String sql;
+        String copySql; // COPY statement for the row in sql
+        List<String> columns; // columns of a multi-row insert
+        List<DBTranslator.BoundValue> values; // values of the columns for a multi-row insert
 
         EntitySQL(JDBCType entityType, PreparedStatement ps, String sql) {
             this.entityType = entityType;
             this.ps = ps;
             this.sql = sql;
         }
+
+        EntitySQL(JDBCType entityType, PreparedStatement ps, String sql, String copySql) {
+            this(entityType, ps, sql);
+            this.copySql = copySql;
+        }
+
+        EntitySQL(JDBCType entityType, List<String> columns, List<DBTranslator.BoundValue> values) {
+            this.entityType = entityType;
+            this.columns = columns;
+            this.values = values;
+        }
     }
 
     /*
@@ -491,6 +780,14 @@ public class JDBCSessionContext implements CustomPersister
             case CSV:
                 sqlStack.push(new EntitySQL(entityType, null, getDbTranslator().getCSV(entityType, bo, dataGenerator)));
                 break;
+            case COPY:
+                sqlStack.push(new EntitySQL(entityType, null, getDbTranslator().getCopyRow(entityType, bo, dataGenerator),
+                    getDbTranslator().getCopySql(entityType, getDbTranslator().getInsertColumns(entityType, bo, dataGenerator))));
+                break;
+            case MULTI_ROW:
+                sqlStack.push(new EntitySQL(entityType, getDbTranslator().getInsertColumns(entityType, bo, dataGenerator),
+                    getDbTranslator().getInsertValues(entityType, bo, dataGenerator)));
+                break;
             }
 
             // Walk up the super-type
@@ -540,6 +837,13 @@ public class JDBCSessionContext implements CustomPersister
         case CSV:
             result.add(new EntitySQL(entityType, null, getDbTranslator().getCSV(entityType, bo, properties)));
             break;
+        case COPY:
+            result.add(new EntitySQL(entityType, null, getDbTranslator().getCopyRow(entityType, bo, properties),
+                getDbTranslator().getCopySql(entityType, columns)));
+            break;
+        case MULTI_ROW:
+            result.add(new EntitySQL(entityType, columns, getDbTranslator().getInsertValues(entityType, bo, properties)));
+            break;
         }
 
         return result;
@@ -552,11 +856,12 @@ public class JDBCSessionContext implements CustomPersister
         while(entityType != null) {
             switch (importMethod) {
             case PREPARED_STATEMENT:
-                sqlStack.push(
-                    new EntitySQL(
-                        entityType,
-                        getPreparedUpdate(entityType, bo, dbBO),
-                        null));
+            case MULTI_ROW:
+                PreparedStatement ps = getPreparedUpdate(entityType, bo, dbBO);
+                // Nothing to update if none of the columns are modified
+                if(ps != null) {
+                    sqlStack.push(new EntitySQL(entityType, ps, null));
+                }
                 break;
             case LITERAL_SQL:
                 sqlStack.push(
@@ -566,7 +871,8 @@ public class JDBCSessionContext implements CustomPersister
                         getDbTranslator().getUpdateSql(entityType, bo, dbBO)));
                 break;
             case CSV:
-                throw new RuntimeException("CSV option not supported for update");
+            case COPY:
+                throw new RuntimeException(importMethod + " option not supported for update");
             }
 
             // Walk up the super-type
@@ -587,6 +893,7 @@ public class JDBCSessionContext implements CustomPersister
         List result = new LinkedList<>();
         switch (importMethod) {
         case PREPARED_STATEMENT:
+        case MULTI_ROW:
             result.add(
                 new EntitySQL(
                     entityType,
@@ -601,7 +908,8 @@ public class JDBCSessionContext implements CustomPersister
                     getDbTranslator().getUpdateSql(entityType, bo, columnsToSet, lookupKeys)));
             break;
         case CSV:
-            throw new RuntimeException("CSV option not supported for update");
+        case COPY:
+            throw new RuntimeException(importMethod + " option not supported for update");
         }
 
         return result;
@@ -630,7 +938,7 @@ public class JDBCSessionContext implements CustomPersister
     {
         String psSQL = getDbTranslator().getDeleteSqlFragment(entityType, bo);
 
-        PreparedStatement ps = getOrCreate(psSQL);
+        PreparedStatement ps = getOrCreate(entityType, psSQL);
         getDbTranslator().setDeletePredicate(entityType, ps, bo);
 
         return ps;
@@ -643,7 +951,7 @@ public class JDBCSessionContext implements CustomPersister
     {
         String psSQL = getDbTranslator().getInsertSqlFragment(entityType, bo, true, dataGenerator);
 
-        PreparedStatement ps = getOrCreate(psSQL);
+        PreparedStatement ps = getOrCreate(entityType, psSQL);
         getDbTranslator().setInsertValues(entityType, ps, bo, false, dataGenerator);
 
         return ps;
@@ -657,34 +965,68 @@ public class JDBCSessionContext implements CustomPersister
         {
             String psSQL = getDbTranslator().getInsertSqlFragment(entityType, true, columns);
 
-            PreparedStatement ps = getOrCreate(psSQL);
+            PreparedStatement ps = getOrCreate(entityType, psSQL);
             getDbTranslator().setInsertValues(entityType, ps, bo, false, properties, false);
 
             return ps;
         }
     
-    private PreparedStatement getOrCreate(String psSQL) {
-        PreparedStatement ps = null;
-        try {
-            if(statementCache.containsKey(psSQL)) {
-                ps = statementCache.get(psSQL);
-            } else {
-                ps = getConnection().prepareStatement(psSQL);
-                statementCache.put(psSQL, ps);
-            }
+    private void addBatch(PreparedStatement ps) throws SQLException {
+        ps.addBatch();
+
+        // Ensure the statement is not closed before the batch is executed
+        if(batchedStatements.add(ps)) {
+            getStatementCache().pin(ps);
         }
-        catch (SQLException e) {
-            throw ClassUtil.wrapRun(e);
+    }
+
+    private void addPending(Map<PSKey, Set<PreparedStatement>> pending, EntitySQL entitySQL) {
+        PSKey key = new PSKey(entitySQL.entityType);
+        Set<PreparedStatement> statements = pending.get(key);
+        if(statements == null) {
+            statements = new LinkedHashSet<>();
+            pending.put(key, statements);
         }
-        
-        return ps;
+        statements.add(entitySQL.ps);
+    }
+
+    private PreparedStatement getOrCreate(JDBCType entityType, String psSQL) {
+        return getStatementCache().prepare(getConnection(), entityType.getName(), psSQL);
+    }
+
+    /**
+     * The prepared statements are cached per connection, so they survive a flush and
+     * are shared with the nested transactions on the same connection. They are closed
+     * when the transaction that acquired or attached the connection is closed.
+     *
+     * @return statement cache of the current connection
+     */
+    public StatementCache getStatementCache() {
+        if(connections.isEmpty()) {
+            throw new RuntimeException("A statement cache needs a connection");
+        }
+
+        return connections.peek().getStatementCache();
     }
 
     private PreparedStatement getPreparedUpdate (JDBCType entityType, BusinessObject bo, BusinessObject dbBO)
     {
+        if(changeTracking) {
+            List<Property> dirtyProperties = getDbTranslator().getDirtyProperties(entityType, bo, dbBO);
+            if(dirtyProperties.isEmpty()) {
+                return null;
+            }
+
+            // The statements are cached by the set of dirty columns
+            PreparedStatement ps = getOrCreate(entityType, getDbTranslator().getUpdateSqlFragment(entityType, dbBO, dirtyProperties));
+            getDbTranslator().setUpdateValues(entityType, ps, bo, dbBO, dirtyProperties);
+
+            return ps;
+        }
+
         String psSQL = getDbTranslator().getUpdateSqlFragment(entityType, bo, true);
 
-        PreparedStatement ps = getOrCreate(psSQL);
+        PreparedStatement ps = getOrCreate(entityType, psSQL);
         getDbTranslator().setUpdateValues(entityType, ps, bo, dbBO);
 
         return ps;
@@ -694,7 +1036,7 @@ public class JDBCSessionContext implements CustomPersister
     {
         String psSQL = getDbTranslator().getUpdateSqlFragment(entityType, bo, columnsToSet, lookupKeys);
 
-        PreparedStatement ps = getOrCreate(psSQL);
+        PreparedStatement ps = getOrCreate(entityType, psSQL);
         getDbTranslator().setUpdateValues(entityType, ps, bo, columnsToSet, lookupKeys);
 
         return ps;
@@ -717,8 +1059,8 @@ public class JDBCSessionContext implements CustomPersister
     public void delete (BusinessObject bo) {
         try {
             for (EntitySQL entitySQL : getDeleteObjs(bo)) {
-                entitySQL.ps.addBatch();
-                preparedDelete.put(new PSKey(entitySQL.entityType), entitySQL.ps);
+                addBatch(entitySQL.ps);
+                addPending(preparedDelete, entitySQL);
             }
         }
         catch (SQLException e) {
@@ -739,7 +1081,7 @@ public class JDBCSessionContext implements CustomPersister
             try {
                 if (holder.getConnection().isClosed()) {
                     // this connection is no longer valid, so we get rid of it
-                    connections.pop();
+                    connections.pop().release();
                 } else {
                     // We have a valid connection
                     break;
@@ -751,7 +1093,7 @@ public class JDBCSessionContext implements CustomPersister
 
         if(connections.size() == 0) {
             Connection c = po.getNewConnection();
-            ConnectionHolder ch = new ConnectionHolder(c, true, readOnly);
+            ConnectionHolder ch = new ConnectionHolder(c, true, readOnly, null);
             try {
                 if(isAutoCommit() != null) {
                     ch.setOriginalAutoCommit(c.getAutoCommit());
@@ -762,7 +1104,7 @@ public class JDBCSessionContext implements CustomPersister
             }
             connections.push(ch);
         } else {
-            connections.push(new ConnectionHolder(getConnection(), false, readOnly));
+            connections.push(new ConnectionHolder(getConnection(), false, readOnly, connections.peek()));
         }
     }
     
@@ -773,8 +1115,9 @@ public class JDBCSessionContext implements CustomPersister
     public void attachToExisting(Connection connection) {
         assert connection != null : "Provided JDBC connection should be valid and not null!";
         
-        // Mark we are not the owner and that we should not commit on this connection
-        connections.push(new ConnectionHolder(connection, false, true));        
+        // Mark we are not the owner and that we should not commit on this connection.
+        // The statements prepared on it are closed when this session detaches.
+        connections.push(new ConnectionHolder(connection, false, true, null));
     }
 
     @Override public void readOnlyTransaction() {
@@ -791,6 +1134,7 @@ public class JDBCSessionContext implements CustomPersister
 
         ConnectionHolder holder = connections.pop();
         try {
+            holder.release();
             if(holder.isOwner()) {
                 // restore the autocommit value
                 if(isAutoCommit() != null) {
@@ -839,7 +1183,7 @@ public class JDBCSessionContext implements CustomPersister
         }
     }
 
-    private Map<PSKey, PreparedStatement> getSortedMap(Map<PSKey, PreparedStatement> input, boolean reverse) {
+    private <V> Map<PSKey, V> getSortedMap(Map<PSKey, V> input, boolean reverse) {
         if(input.size() == 0) {
             return input;
         }
@@ -849,8 +1193,8 @@ public class JDBCSessionContext implements CustomPersister
         Shape shape = ((EntityType)input.keySet().iterator().next().getType()).getShape();
         TypeGraph<State, Edge<State>> defaultOrdering = shape.getOrderedGraph();
 
-        TreeMap<PSKey, PreparedStatement> result = new TreeMap<>(new ObjectGraph.StateComparator(defaultOrdering));
-        for(Map.Entry<PSKey, PreparedStatement> entry: input.entrySet()) {
+        TreeMap<PSKey, V> result = new TreeMap<>(new ObjectGraph.StateComparator(defaultOrdering));
+        for(Map.Entry<PSKey, V> entry: input.entrySet()) {
             result.put(entry.getKey(), entry.getValue());
         }
 
@@ -868,24 +1212,35 @@ public class JDBCSessionContext implements CustomPersister
                 || !ApplicationConfiguration.config().getBoolean(Constants.Config.BATCH_SKIP)) {
 
                 switch(importMethod) {
+                case MULTI_ROW:
                 case PREPARED_STATEMENT:
+                    // The rows collected for a multi-row insert or a parallel flush
+                    insertRows();
+
+                    // The updates and deletes are batched using prepared statements
                     if (orderSQL) {
                         this.preparedInsert = getSortedMap(this.preparedInsert, false);
                         this.preparedUpdate = getSortedMap(this.preparedUpdate, false);
                         this.preparedDelete = getSortedMap(this.preparedDelete, true);
                     }
 
-                    for(PreparedStatement ps: preparedInsert.values()) {
-                        int[] result = ps.executeBatch();
-                        logger.info("Inserting batch with size: " + result.length);
+                    for(Set<PreparedStatement> statements: preparedInsert.values()) {
+                        for(PreparedStatement ps: statements) {
+                            int[] result = ps.executeBatch();
+                            logger.info("Inserting batch with size: " + result.length);
+                        }
                     }
 
-                    for(PreparedStatement ps: preparedUpdate.values()) {
-                        ps.executeBatch();
+                    for(Set<PreparedStatement> statements: preparedUpdate.values()) {
+                        for(PreparedStatement ps: statements) {
+                            ps.executeBatch();
+                        }
                     }
 
-                    for(PreparedStatement ps: preparedDelete.values()) {
-                        ps.executeBatch();
+                    for(Set<PreparedStatement> statements: preparedDelete.values()) {
+                        for(PreparedStatement ps: statements) {
+                            ps.executeBatch();
+                        }
                     }
                     break;
                 case LITERAL_SQL:
@@ -914,11 +1269,20 @@ public class JDBCSessionContext implements CustomPersister
                 case CSV:
                     writeToFile();
                     break;
+                case COPY:
+                    insertRows();
+                    break;
                 }
             } else {
                 switch(importMethod) {
                 case PREPARED_STATEMENT:
                     throw new RuntimeException("Non batch execution is not supported. The batch.skip setting should be set to false.");
+                case MULTI_ROW:
+                    if(!preparedUpdate.isEmpty() || !preparedDelete.isEmpty()) {
+                        throw new RuntimeException("Non batch execution of updates and deletes is not supported. The batch.skip setting should be set to false.");
+                    }
+                    insertRows();
+                    break;
                 case LITERAL_SQL:
                     try(Statement stmt = getConnection().createStatement()) {
                         for (String insertSQL : literalSQLs) {
@@ -930,6 +1294,9 @@ public class JDBCSessionContext implements CustomPersister
                 case CSV:
                     writeToFile();
                     break;
+                case COPY:
+                    insertRows();
+                    break;
                 }
             }
         }
@@ -940,6 +1307,7 @@ public class JDBCSessionContext implements CustomPersister
                 if(this.statement != null) {
                     this.statement.close();
                 }
+                releaseStatements();
                 if(preparedInsert != null) {
                     preparedInsert.clear();
                 }
@@ -957,6 +1325,292 @@ public class JDBCSessionContext implements CustomPersister
         }
     }
 
+    /**
+     * Insert the collected rows of each table in the topological order of the tables, so the
+     * referenced rows are loaded before the rows referencing them.
+     * In the parallel flush mode, the tables not related to each other are loaded concurrently
+     * if the session connection is in autocommit mode.
+     */
+    private void insertRows() throws SQLException {
+        Map<PSKey, Boolean> tables = new HashMap<>();
+        for(PSKey key: multiRows.keySet()) {
+            tables.put(key, Boolean.TRUE);
+        }
+        for(PSKey key: copyRows.keySet()) {
+            tables.put(key, Boolean.TRUE);
+        }
+        if (orderSQL) {
+            tables = getSortedMap(tables, false);
+        }
+
+        if(flushMode == FlushMode.PARALLEL && getConnection().getAutoCommit()) {
+            List<List<PSKey>> groups = getUnrelatedTables(new ArrayList<>(tables.keySet()));
+            if(groups.size() > 1) {
+                insertRowsParallel(groups);
+                return;
+            }
+        }
+
+        for(PSKey table: tables.keySet()) {
+            insertRows(getConnection(), getStatementCache(), table);
+        }
+    }
+
+    /**
+     * Insert the collected rows of a table on the given connection.
+     * The rows of a multi-row insert use as many rows per statement as the bind parameter
+     * limit of the database allows.
+     *
+     * @param connection on which the rows are inserted
+     * @param statementCache of the connection
+     * @param table whose rows are inserted
+     * @throws SQLException if the insert fails
+     */
+    private void insertRows(Connection connection, StatementCache statementCache, PSKey table) throws SQLException {
+        JDBCType entityType = (JDBCType)table.getType();
+
+        Map<List<String>, List<List<DBTranslator.BoundValue>>> rowsByColumns = multiRows.get(table);
+        if(rowsByColumns != null) {
+            for(Map.Entry<List<String>, List<List<DBTranslator.BoundValue>>> entry: rowsByColumns.entrySet()) {
+                List<String> columns = entry.getKey();
+                List<List<DBTranslator.BoundValue>> rows = entry.getValue();
+
+                int count = 0;
+                if(importMethod == ImportMethod.MULTI_ROW) {
+                    int size = getDbTranslator().getMultiRowInsertSize(columns.size());
+                    int from = 0;
+                    while (from < rows.size()) {
+                        // The remaining rows are inserted using statements whose number of rows is a power of 2,
+                        // so only a few distinct statements are prepared for a column list regardless of the row count
+                        int remaining = rows.size() - from;
+                        int numRows = remaining >= size ? size : Integer.highestOneBit(remaining);
+                        List<List<DBTranslator.BoundValue>> statementRows = rows.subList(from, from + numRows);
+
+                        PreparedStatement ps = statementCache.prepare(connection, entityType.getName(), getDbTranslator().getMultiRowInsertSql(entityType, columns, numRows));
+                        getDbTranslator().setMultiRowInsertValues(ps, statementRows);
+                        count += ps.executeUpdate();
+                        from += numRows;
+                    }
+                } else {
+                    PreparedStatement ps = statementCache.prepare(connection, entityType.getName(), getDbTranslator().getInsertSqlFragment(entityType, true, columns));
+                    for(List<DBTranslator.BoundValue> row: rows) {
+                        getDbTranslator().setMultiRowInsertValues(ps, Collections.singletonList(row));
+                        ps.addBatch();
+                    }
+                    count = ps.executeBatch().length;
+                }
+                logger.info("Inserting batch with size: " + count);
+            }
+        }
+
+        Map<String, StringBuilder> rowsBySql = copyRows.get(table);
+        if(rowsBySql != null) {
+            for(Map.Entry<String, StringBuilder> entry: rowsBySql.entrySet()) {
+                long count = getDbTranslator().copyIn(connection, entry.getKey(), new StringReader(entry.getValue().toString()));
+                logger.info("Copying batch with size: " + count);
+            }
+        }
+    }
+
+    /**
+     * Group the tables such that the tables of different groups are not related by a
+     * foreign key or by inheritance. The order of the tables is retained within a group.
+     *
+     * @param tables in topological order
+     * @return groups of related tables
+     */
+    private List<List<PSKey>> getUnrelatedTables(List<PSKey> tables) {
+        if(tables.size() < 2) {
+            return Collections.singletonList(tables);
+        }
+
+        Map<String, String> parents = new HashMap<>();
+        for(PSKey table: tables) {
+            parents.put(table.getType().getName(), table.getType().getName());
+        }
+
+        for(PSKey table: tables) {
+            EntityType parentType = ((EntityType)table.getType()).getParentType();
+            while(parentType != null) {
+                union(parents, table.getType().getName(), parentType.getName());
+                parentType = parentType.getParentType();
+            }
+        }
+
+        Shape shape = ((EntityType)tables.get(0).getType()).getShape();
+        for(Edge<State> edge: shape.getOrderedGraph().getEdges()) {
+            union(parents, edge.getStart().getType().getName(), edge.getEnd().getType().getName());
+        }
+
+        Map<String, List<PSKey>> groups = new LinkedHashMap<>();
+        for(PSKey table: tables) {
+            String root = find(parents, table.getType().getName());
+            List<PSKey> group = groups.get(root);
+            if(group == null) {
+                group = new ArrayList<>();
+                groups.put(root, group);
+            }
+            group.add(table);
+        }
+
+        return new ArrayList<>(groups.values());
+    }
+
+    private static String find(Map<String, String> parents, String name) {
+        String parent = parents.get(name);
+        while(!parent.equals(name)) {
+            name = parent;
+            parent = parents.get(name);
+        }
+
+        return name;
+    }
+
+    private static void union(Map<String, String> parents, String a, String b) {
+        // Only the tables having rows to insert are of interest
+        if(!parents.containsKey(a) || !parents.containsKey(b)) {
+            return;
+        }
+
+        String rootA = find(parents, a);
+        String rootB = find(parents, b);
+        if(!rootA.equals(rootB)) {
+            parents.put(rootB, rootA);
+        }
+    }
+
+    /**
+     * Insert the groups of tables concurrently, each on its own connection. At most
+     * flush.pool.size connections are used, with the larger groups spread first.
+     * The connections are committed once all the groups are inserted, and rolled back
+     * if any of them fails.
+     *
+     * @param groups of tables, see getUnrelatedTables
+     */
+    private void insertRowsParallel(List<List<PSKey>> groups) {
+        // Initialize the translator on this thread, since it uses the session connection
+        getDbTranslator();
+
+        int numWorkers = Math.min(groups.size(), FLUSH_POOL_SIZE);
+        List<List<PSKey>> workers = new ArrayList<>();
+        long[] workerRows = new long[numWorkers];
+        for(int i = 0; i < numWorkers; i++) {
+            workers.add(new ArrayList<PSKey>());
+        }
+
+        List<List<PSKey>> bySize = new ArrayList<>(groups);
+        Collections.sort(bySize, new Comparator<List<PSKey>>() {
+            @Override public int compare (List<PSKey> o1, List<PSKey> o2)
+            {
+                return Long.compare(getNumRows(o2), getNumRows(o1));
+            }
+        });
+        for(List<PSKey> group: bySize) {
+            int worker = 0;
+            for(int i = 1; i < numWorkers; i++) {
+                if(workerRows[i] < workerRows[worker]) {
+                    worker = i;
+                }
+            }
+            workers.get(worker).addAll(group);
+            workerRows[worker] += getNumRows(group);
+        }
+
+        List<Future<ConnectionHolder>> futures = new ArrayList<>();
+        for(final List<PSKey> tables: workers) {
+            futures.add(FlushExecutor.INSTANCE.submit(new Callable<ConnectionHolder>() {
+                @Override public ConnectionHolder call () throws Exception
+                {
+                    ConnectionHolder holder = new ConnectionHolder(po.getNewConnection(), true, false, null);
+                    try {
+                        holder.getConnection().setAutoCommit(false);
+                        for (PSKey table : tables) {
+                            insertRows(holder.getConnection(), holder.getStatementCache(), table);
+                        }
+                    } catch (Exception e) {
+                        closeWorkerConnection(holder, false);
+                        throw e;
+                    }
+
+                    return holder;
+                }
+            }));
+        }
+
+        List<ConnectionHolder> connections = new ArrayList<>();
+        RuntimeException failure = null;
+        for(Future<ConnectionHolder> future: futures) {
+            try {
+                connections.add(future.get());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = failure == null ? ClassUtil.wrapRun(e) : failure;
+            }
+            catch (ExecutionException e) {
+                if(failure == null) {
+                    failure = e.getCause() instanceof Exception ? ClassUtil.wrapRun((Exception)e.getCause()) : ClassUtil.wrapRun(e);
+                }
+            }
+        }
+
+        // Without a distributed transaction, a failed commit cannot undo the connections already committed
+        for(ConnectionHolder holder: connections) {
+            try {
+                closeWorkerConnection(holder, failure == null);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    private long getNumRows(List<PSKey> tables) {
+        long result = 0;
+        for(PSKey table: tables) {
+            if(multiRows.containsKey(table)) {
+                for(List<List<DBTranslator.BoundValue>> rows: multiRows.get(table).values()) {
+                    result += rows.size();
+                }
+            }
+            if(copyRows.containsKey(table)) {
+                for(StringBuilder rows: copyRows.get(table).values()) {
+                    result += rows.length();
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private void closeWorkerConnection(ConnectionHolder holder, boolean commit) {
+        Connection connection = holder.getConnection();
+        try {
+            if(commit) {
+                connection.commit();
+            } else {
+                connection.rollback();
+            }
+        }
+        catch (SQLException e) {
+            logger.error("Unable to " + (commit ? "commit" : "rollback") + " the flush connection: " + e.getMessage());
+            if(commit) {
+                throw ClassUtil.wrapRun(e);
+            }
+        }
+        finally {
+            holder.release();
+            try {
+                connection.close();
+            }
+            catch (SQLException e) {
+                logger.warn("Unable to close the flush connection: " + e.getMessage());
+            }
+        }
+    }
+
     private void writeToFile() {
         for(Map.Entry<String, List<String>> entry: sqlByType.entrySet()) {
             BufferedWriter out = null;
@@ -993,11 +1647,24 @@ public class JDBCSessionContext implements CustomPersister
         }
     }
 
+    /*
+     * The batches of the prepared statements have been executed, so they can be closed if evicted
+     */
+    private void releaseStatements() {
+        if(getConnection() != null) {
+            getStatementCache().unpin(batchedStatements);
+        }
+        batchedStatements.clear();
+    }
+
     public void clear() {
         this.idToObjects = new HashMap<>();
+        this.notFound = new HashSet<>();
         this.snapshots = new HashMap<>();
         this.sqlByType.clear();
         this.literalSQLs.clear();
+        this.copyRows = new HashMap<>();
+        this.multiRows = new HashMap<>();
         if(this.preparedInsert != null) {
             this.preparedInsert = new HashMap<>();
         }
@@ -1007,12 +1674,112 @@ public class JDBCSessionContext implements CustomPersister
         if(this.preparedDelete != null) {
             this.preparedDelete = new HashMap<>();
         }
-        this.statementCache.clear();
         this.statement = null;
     }
 
     @Override public boolean readFromDB ()
     {
-        return false;
+        return this.readFromDB;
+    }
+
+    /**
+     * If enabled, the entities that are not in the identity map are loaded from the
+     * database when they are looked up, see JDBCDataStore.findById and findByIds.
+     *
+     * @param readFromDB true to load the missing entities from the database
+     */
+    public void setReadFromDB (boolean readFromDB)
+    {
+        this.readFromDB = readFromDB;
+    }
+
+    /**
+     * Checks if an entity was looked up in the database and not found
+     *
+     * @param key of the entity
+     * @return true if there is no row for the entity
+     */
+    public boolean isNotFound (EntityKey key)
+    {
+        return notFound.contains(key);
+    }
+
+    /**
+     * Load the entities with the given ids from the database and add them to the identity map.
+     * The ids already in the identity map, or already known to be missing, are skipped.
+     * The remaining ids are loaded with one statement per chunk of ids, where the size of
+     * a chunk is limited by the database. The last chunk is padded with its last id, so all
+     * the chunks share the same prepared statement.
+     *
+     * @param entityType of the entities, needs to have an identifier
+     * @param ids of the entities
+     */
+    public void load (JDBCType entityType, Collection<?> ids)
+    {
+        if(entityType.getIdentifierProperty() == null) {
+            throw new RuntimeException("Only entities with an identifier can be loaded by id: " + entityType.getName());
+        }
+
+        String keyTypeName = AbstractTypeMapper.getSurrogateKeyTypeName(entityType);
+        Map<String, Object> toLoad = new LinkedHashMap<>(); // keyed by the string form, since the Java type can differ from the column
+        for(Object id: ids) {
+            if(id == null) {
+                continue;
+            }
+            EntityKey key = new SurrogateEntityKey(id, keyTypeName);
+            if(!idToObjects.containsKey(key) && !notFound.contains(key)) {
+                toLoad.put(id.toString(), id);
+            }
+        }
+        if(toLoad.isEmpty()) {
+            return;
+        }
+
+        boolean isOwner = connections.isEmpty();
+        if(isOwner) {
+            beginTransaction(true);
+        }
+        try {
+            DBTranslator translator = getDbTranslator();
+            List<Property> properties = translator.getLoadProperties(entityType);
+            List<Object> idList = new ArrayList<>(toLoad.values());
+            int chunkSize = Math.min(idList.size(), translator.getMaxInListSize());
+            PreparedStatement ps = getStatementCache().prepare(getConnection(), entityType.getName(), translator.getSelectByIdsSql(entityType, properties, chunkSize));
+
+            String idName = entityType.getIdentifierProperty().getName();
+            for(int from = 0; from < idList.size(); from += chunkSize) {
+                List<Object> chunk = new ArrayList<>(idList.subList(from, Math.min(idList.size(), from + chunkSize)));
+                while(chunk.size() < chunkSize) {
+                    chunk.add(chunk.get(chunk.size()-1));
+                }
+                translator.setSelectByIdsValues(entityType, ps, chunk);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        // A relationship only has the referenced columns, so it is not added to the identity map
+                        JSONObject object = translator.getLoadedObject(properties, rs);
+                        register(object, entityType);
+
+                        // Also find it by the id that was asked for, if its type is different
+                        Object id = toLoad.remove(object.get(idName).toString());
+                        if(id != null && !id.equals(object.get(idName))) {
+                            idToObjects.put(new SurrogateEntityKey(id, keyTypeName), object);
+                        }
+                    }
+                }
+            }
+
+            for(Object id: toLoad.values()) {
+                notFound.add(new SurrogateEntityKey(id, keyTypeName));
+            }
+        }
+        catch (SQLException e) {
+            throw ClassUtil.wrapRun(e);
+        }
+        finally {
+            if(isOwner) {
+                close();
+            }
+        }
     }
 }
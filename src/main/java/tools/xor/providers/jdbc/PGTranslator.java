@@ -1,7 +1,11 @@
 package tools.xor.providers.jdbc;
 
+import tools.xor.JDBCType;
 import tools.xor.service.ForeignKeyEnhancer;
 import tools.xor.util.ClassUtil;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -24,15 +28,47 @@ public class PGTranslator extends DBTranslator
     // H2 database uses BIGINT as the sequence type
     private static final String SEQUENCES_SQL = "SELECT sequence_name, data_type, maximum_value, minimum_value, increment, start_value, cycle_option FROM information_schema.sequences WHERE sequence_schema = current_schema()";
     private static final String TABLE_EXISTS_SQL = "SELECT count(*) FROM information_schema.tables WHERE TABLE_NAME = '%s' AND TABLE_SCHEMA = current_schema()";
+    private static final String[] SCHEMA_DIGEST_SQL = {
+        "SELECT table_name, column_name, data_type, character_maximum_length, numeric_precision, is_nullable, is_generated FROM information_schema.columns WHERE table_schema = current_schema() ORDER BY table_name, column_name",
+        "SELECT constraint_name, table_name, column_name, ordinal_position FROM information_schema.key_column_usage WHERE table_schema = current_schema() ORDER BY constraint_name, table_name, ordinal_position",
+        "SELECT constraint_name, unique_constraint_name, update_rule, delete_rule FROM information_schema.referential_constraints WHERE constraint_schema = current_schema() ORDER BY constraint_name"
+    };
 
     private Map<String, JDBCDataModel.SequenceInfo> sequenceMap;
 
     private static final Map<String, String> psql_to_jdbc_map = new HashMap<>();
 
+    private static final String PG_CONNECTION_CLASS = "org.postgresql.PGConnection";
+    private static final String BYTEA = "BYTEA";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // Hex format of bytea, e.g., \x0a1b
+    private static final JDBCtoSQLConverter BYTEA_COPY_CONVERTER = new JDBCtoSQLConverter()
+    {
+        @Override public String toSQLLiteral (Object value)
+        {
+            if(value == null) return "NULL";
+            if(value instanceof String) {
+                value = ((String)value).getBytes(StandardCharsets.UTF_8);
+            }
+            if(!(value instanceof byte[])) {
+                throw new RuntimeException("Unsupported value type for bytea converter");
+            }
+
+            byte[] bytes = (byte[])value;
+            StringBuilder result = new StringBuilder(2 + bytes.length * 2).append("\\x");
+            for(byte b: bytes) {
+                result.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+            }
+            return result.toString();
+        }
+    };
+
     static {
         psql_to_jdbc_map.put("TIME", "TIMESTAMP");
         psql_to_jdbc_map.put("TIME WITH TIME ZONE", "TIMESTAMP");
         psql_to_jdbc_map.put("TIMESTAMP WITH TIME ZONE", "TIMESTAMP");
+        psql_to_jdbc_map.put("TIMESTAMP WITHOUT TIME ZONE", "TIMESTAMP");
         psql_to_jdbc_map.put("CHARACTER", "CHAR");
         psql_to_jdbc_map.put("CHARACTER VARYING", "VARCHAR");
         psql_to_jdbc_map.put("UUID", "VARCHAR");
@@ -75,6 +111,78 @@ public class PGTranslator extends DBTranslator
         return super.getJavaClass(sqlType);
     }
 
+    /**
+     * The COPY rows use the PostgreSQL type names, and bytea values use the hex format
+     */
+    @Override
+    protected JDBCtoSQLConverter getCopyConverter (String dataType)
+    {
+        if(BYTEA.equals(dataType)) {
+            return BYTEA_COPY_CONVERTER;
+        }
+        if(psql_to_jdbc_map.containsKey(dataType)) {
+            dataType = psql_to_jdbc_map.get(dataType);
+        }
+        return super.getCopyConverter(dataType);
+    }
+
+    /**
+     * The CSV rows quote strings with a single quote and use an unquoted NULL for null values
+     */
+    @Override
+    public String getCopySql (JDBCType entityType, List<String> columnNames)
+    {
+        return String.format("COPY %s (%s) FROM STDIN WITH (FORMAT csv, QUOTE '''', NULL 'NULL')",
+            entityType.getTableName(),
+            String.join(",", columnNames));
+    }
+
+    /**
+     * Uses the CopyManager of the driver. It is accessed by reflection, so the
+     * driver is only needed at runtime.
+     */
+    @Override
+    public long copyIn (Connection connection, String copySql, Reader rows)
+    {
+        try {
+            Class<?> pgConnection = Class.forName(PG_CONNECTION_CLASS);
+            Object copyAPI = pgConnection.getMethod("getCopyAPI").invoke(connection.unwrap(pgConnection));
+            Method copyIn = copyAPI.getClass().getMethod("copyIn", String.class, Reader.class);
+
+            return (Long)copyIn.invoke(copyAPI, copySql, rows);
+        }
+        catch (SQLException | ReflectiveOperationException e) {
+            throw ClassUtil.wrapRun(e);
+        }
+    }
+
+    /**
+     * The driver uses a cursor for the fetch size only when autocommit is off
+     */
+    @Override
+    public boolean isStreamingInTransaction ()
+    {
+        return true;
+    }
+
+    /**
+     * Nulls are sorted as larger than any value by default
+     */
+    @Override
+    public String getNullsLargestClause (boolean descending)
+    {
+        return "";
+    }
+
+    /**
+     * The wire protocol uses a 16 bit count for the bind parameters of a statement
+     */
+    @Override
+    public int getMaxBindParameters ()
+    {
+        return Short.MAX_VALUE;
+    }
+
     @Override
     protected JDBCDataModel.ColumnInfo createColumnInfo (ResultSet rs) throws SQLException
     {
@@ -187,6 +295,11 @@ public class PGTranslator extends DBTranslator
         return TABLE_EXISTS_SQL;
     }
 
+    @Override public String[] getSchemaDigestSQL ()
+    {
+        return SCHEMA_DIGEST_SQL;
+    }
+
     private JDBCDataModel.ForeignKeyRule getForeignKeyRule(String value) {
         switch(value) {
         case "CASCADE":
@@ -0,0 +1,308 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.providers.jdbc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import tools.xor.util.ApplicationConfiguration;
+import tools.xor.util.ClassUtil;
+import tools.xor.util.Constants;
+
+/**
+ * A serializable copy of the raw table, column, primary key and foreign key
+ * metadata read by the DBTranslator. It is captured before the ForeignKeyEnhancer
+ * runs, so the enhanced relationships are rebuilt on every use.
+ *
+ * A snapshot saved to disk is keyed by the database identity and a digest of the
+ * column and constraint definitions of the schema, so a migrated schema gets a new
+ * snapshot. A missing, stale or unreadable snapshot is ignored and the metadata is
+ * introspected from the database again.
+ *
+ * @author Dilip Dalton
+ */
+public class SchemaSnapshot
+{
+    private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
+
+    private static final String FILE_PREFIX = "schema-";
+    private static final String FILE_SUFFIX = ".json";
+
+    private static final String KEY = "key";
+    private static final String TABLES = "tables";
+    private static final String FOREIGN_KEYS = "foreignKeys";
+    private static final String NAME = "name";
+    private static final String COLUMNS = "columns";
+    private static final String PRIMARY_KEYS = "primaryKeys";
+    private static final String NULLABLE = "nullable";
+    private static final String JAVA_TYPE = "javaType";
+    private static final String DATA_TYPE = "dataType";
+    private static final String GENERATED = "generated";
+    private static final String LENGTH = "length";
+    private static final String REFERENCING_TABLE = "referencingTable";
+    private static final String REFERENCED_TABLE = "referencedTable";
+    private static final String REFERENCING_COLUMNS = "referencingColumns";
+    private static final String REFERENCED_COLUMNS = "referencedColumns";
+    private static final String DELETE_RULE = "deleteRule";
+    private static final String UPDATE_RULE = "updateRule";
+
+    private final JSONObject json;
+
+    private SchemaSnapshot(JSONObject json) {
+        this.json = json;
+    }
+
+    public SchemaSnapshot(String key, Collection<JDBCDataModel.TableInfo> tables, List<JDBCDataModel.ForeignKey> foreignKeys) {
+        JSONArray tablesJson = new JSONArray();
+        for(JDBCDataModel.TableInfo table: tables) {
+            JSONArray columnsJson = new JSONArray();
+            for(JDBCDataModel.ColumnInfo ci: table.getColumns()) {
+                JSONObject columnJson = new JSONObject();
+                columnJson.put(NAME, ci.getName());
+                columnJson.put(NULLABLE, ci.isNullable());
+                columnJson.put(JAVA_TYPE, ci.getType().getName());
+                columnJson.put(DATA_TYPE, ci.getDataType());
+                columnJson.put(GENERATED, ci.isGenerated());
+                columnJson.put(LENGTH, ci.getLength());
+                columnsJson.put(columnJson);
+            }
+
+            JSONObject tableJson = new JSONObject();
+            tableJson.put(NAME, table.getName());
+            tableJson.put(COLUMNS, columnsJson);
+            tableJson.put(PRIMARY_KEYS, new JSONArray(table.getPrimaryKeys()));
+            tablesJson.put(tableJson);
+        }
+
+        JSONArray foreignKeysJson = new JSONArray();
+        for(JDBCDataModel.ForeignKey fk: foreignKeys) {
+            JSONObject fkJson = new JSONObject();
+            fkJson.put(NAME, fk.getNameInDatabase());
+            fkJson.put(REFERENCING_TABLE, fk.getReferencingTable().getName());
+            fkJson.put(REFERENCED_TABLE, fk.getReferencedTable().getName());
+            fkJson.put(REFERENCING_COLUMNS, new JSONArray(fk.getReferencingColumns()));
+            fkJson.put(REFERENCED_COLUMNS, new JSONArray(fk.getReferencedColumns()));
+            if(fk.getDeleteRule() != null) {
+                fkJson.put(DELETE_RULE, fk.getDeleteRule().name());
+            }
+            if(fk.getUpdateRule() != null) {
+                fkJson.put(UPDATE_RULE, fk.getUpdateRule().name());
+            }
+            foreignKeysJson.put(fkJson);
+        }
+
+        this.json = new JSONObject();
+        this.json.put(KEY, key);
+        this.json.put(TABLES, tablesJson);
+        this.json.put(FOREIGN_KEYS, foreignKeysJson);
+    }
+
+    public String getKey() {
+        return json.getString(KEY);
+    }
+
+    /**
+     * Builds a new set of tables from the snapshot. The tables are created afresh on
+     * each call since the caller is free to modify them.
+     *
+     * @return map of table name to table
+     */
+    public Map<String, JDBCDataModel.TableInfo> createTables() {
+        Map<String, JDBCDataModel.TableInfo> result = new HashMap<>();
+
+        JSONArray tablesJson = json.getJSONArray(TABLES);
+        for(int i = 0; i < tablesJson.length(); i++) {
+            JSONObject tableJson = tablesJson.getJSONObject(i);
+
+            List<JDBCDataModel.ColumnInfo> columns = new LinkedList<>();
+            JSONArray columnsJson = tableJson.getJSONArray(COLUMNS);
+            for(int j = 0; j < columnsJson.length(); j++) {
+                JSONObject columnJson = columnsJson.getJSONObject(j);
+                columns.add(new JDBCDataModel.ColumnInfo(
+                    columnJson.getString(NAME),
+                    columnJson.getBoolean(NULLABLE),
+                    getJavaClass(columnJson.getString(JAVA_TYPE)),
+                    columnJson.getString(DATA_TYPE),
+                    columnJson.getBoolean(GENERATED),
+                    columnJson.getInt(LENGTH)));
+            }
+
+            JDBCDataModel.TableInfo table = new JDBCDataModel.TableInfo(tableJson.getString(NAME));
+            table.setColumns(columns);
+            table.setPrimaryKeys(toList(tableJson.getJSONArray(PRIMARY_KEYS)));
+            result.put(table.getName(), table);
+        }
+
+        return result;
+    }
+
+    /**
+     * Builds the database foreign keys between the given tables.
+     *
+     * @param tableMap tables created by {@link #createTables()}
+     * @return list of foreign keys
+     */
+    public List<JDBCDataModel.ForeignKey> createForeignKeys(Map<String, JDBCDataModel.TableInfo> tableMap) {
+        List<JDBCDataModel.ForeignKey> result = new ArrayList<>();
+
+        JSONArray foreignKeysJson = json.getJSONArray(FOREIGN_KEYS);
+        for(int i = 0; i < foreignKeysJson.length(); i++) {
+            JSONObject fkJson = foreignKeysJson.getJSONObject(i);
+
+            JDBCDataModel.ForeignKey fkey = new JDBCDataModel.ForeignKey(
+                fkJson.getString(NAME),
+                tableMap.get(fkJson.getString(REFERENCING_TABLE)),
+                tableMap.get(fkJson.getString(REFERENCED_TABLE)),
+                getRule(fkJson, DELETE_RULE),
+                getRule(fkJson, UPDATE_RULE));
+            fkey.setReferencingColumns(toList(fkJson.getJSONArray(REFERENCING_COLUMNS)));
+            fkey.setReferencedColumns(toList(fkJson.getJSONArray(REFERENCED_COLUMNS)));
+            result.add(fkey);
+        }
+
+        return result;
+    }
+
+    /**
+     * Identifies the database schema a snapshot belongs to.
+     *
+     * @param connection to the database
+     * @return hash of the database identity, the schema digest and the optional
+     *   schema.snapshot.version configuration value
+     */
+    public static String getKey(Connection connection) {
+        try {
+            DatabaseMetaData metaData = connection.getMetaData();
+            StringBuilder identity = new StringBuilder();
+            identity.append(metaData.getURL()).append('|')
+                .append(metaData.getUserName()).append('|')
+                .append(metaData.getDatabaseProductName()).append('|')
+                .append(metaData.getDatabaseProductVersion()).append('|');
+            if(ApplicationConfiguration.config().containsKey(Constants.Config.SCHEMA_SNAPSHOT_VERSION)) {
+                identity.append(ApplicationConfiguration.config().getString(Constants.Config.SCHEMA_SNAPSHOT_VERSION));
+            }
+            identity.append('|').append(DBTranslator.instance(connection).getSchemaDigest(connection));
+
+            return DigestUtils.sha256Hex(identity.toString());
+        }
+        catch (SQLException e) {
+            throw ClassUtil.wrapRun(e);
+        }
+    }
+
+    public static File getFile(File dir, String key) {
+        return new File(dir, FILE_PREFIX + key + FILE_SUFFIX);
+    }
+
+    /**
+     * Read a previously saved snapshot.
+     *
+     * @param dir snapshot directory
+     * @param key of the current database schema
+     * @return snapshot or null if there is no usable snapshot for the key
+     */
+    public static SchemaSnapshot load(File dir, String key) {
+        File file = getFile(dir, key);
+        if(!file.exists()) {
+            return null;
+        }
+
+        try {
+            SchemaSnapshot result = new SchemaSnapshot(new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)));
+            if(!key.equals(result.getKey())) {
+                logger.warn("Ignoring stale schema snapshot " + file.getAbsolutePath());
+                return null;
+            }
+
+            // Ensure the snapshot can be fully materialized
+            result.createForeignKeys(result.createTables());
+
+            return result;
+        }
+        catch (Exception e) {
+            logger.warn("Ignoring unreadable schema snapshot " + file.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Save the snapshot in the given directory. A failure to save is logged and
+     * otherwise ignored as the snapshot is only an optimization.
+     *
+     * @param dir snapshot directory
+     */
+    public void save(File dir) {
+        File file = getFile(dir, getKey());
+        try {
+            Files.createDirectories(dir.toPath());
+            File temp = File.createTempFile(FILE_PREFIX, FILE_SUFFIX, dir);
+            Files.write(temp.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e) {
+            logger.warn("Unable to save schema snapshot " + file.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    private static JDBCDataModel.ForeignKeyRule getRule(JSONObject fkJson, String name) {
+        return fkJson.has(name) ? JDBCDataModel.ForeignKeyRule.valueOf(fkJson.getString(name)) : null;
+    }
+
+    private static Class getJavaClass(String className) {
+        try {
+            return Class.forName(className);
+        }
+        catch (ClassNotFoundException e) {
+            throw ClassUtil.wrapRun(e);
+        }
+    }
+
+    private static List<String> toList(JSONArray array) {
+        List<String> result = new LinkedList<>();
+        for(int i = 0; i < array.length(); i++) {
+            result.add(array.getString(i));
+        }
+
+        return result;
+    }
+}
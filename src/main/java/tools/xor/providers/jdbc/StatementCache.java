@@ -0,0 +1,291 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.providers.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import tools.xor.util.ApplicationConfiguration;
+import tools.xor.util.ClassUtil;
+import tools.xor.util.Constants;
+
+/**
+ * Holds the prepared statements of a connection, so they are reused across flushes
+ * and by the nested transactions of a JDBCSessionContext using the connection.
+ * The cache is held by whoever acquired the connection and is cleared when the
+ * connection is released, so it does not outlive it.
+ *
+ * A statement is keyed by the name of the table type it is prepared for and its SQL.
+ * The number of statements is bounded and the evicted statements are closed. A statement
+ * with a pending batch is only closed after the batch is executed, see pin and unpin.
+ * Until then it is also returned for its SQL, so a statement with a pending batch is
+ * never replaced by a new one.
+ */
+public class StatementCache
+{
+    private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
+
+    public static final int DEFAULT_SIZE = 1000;
+
+    public enum EvictionPolicy {
+        LRU,  // evict the least recently used statement
+        FIFO  // evict the least recently prepared statement
+    }
+
+    private static final int SIZE;
+    private static final EvictionPolicy POLICY;
+
+    static {
+        int size = DEFAULT_SIZE;
+        if (ApplicationConfiguration.config().containsKey(Constants.Config.STATEMENT_CACHE_SIZE)) {
+            size = ApplicationConfiguration.config().getInt(Constants.Config.STATEMENT_CACHE_SIZE);
+        }
+        SIZE = size;
+
+        EvictionPolicy policy = EvictionPolicy.LRU;
+        if (ApplicationConfiguration.config().containsKey(Constants.Config.STATEMENT_CACHE_EVICTION)) {
+            policy = EvictionPolicy.valueOf(ApplicationConfiguration.config().getString(Constants.Config.STATEMENT_CACHE_EVICTION).toUpperCase());
+        }
+        POLICY = policy;
+    }
+
+    private final int maxSize;
+    private final Map<StatementKey, PreparedStatement> statements;
+    private final Map<PreparedStatement, Integer> pinCounts = new IdentityHashMap<>(); // a statement can be pinned by more than one session
+    private final Map<StatementKey, PreparedStatement> evictedPinned = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long prepareNanos;
+
+    /**
+     * Create a statement cache with the configured size and eviction policy
+     */
+    public StatementCache() {
+        this(SIZE, POLICY);
+    }
+
+    /**
+     * Create a statement cache
+     *
+     * @param maxSize maximum number of statements, should be at least 1
+     * @param policy decides the statement that is evicted
+     */
+    public StatementCache(final int maxSize, EvictionPolicy policy) {
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<StatementKey, PreparedStatement>(16, 0.75f, policy == EvictionPolicy.LRU) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StatementKey, PreparedStatement> eldest) {
+                if(size() > maxSize) {
+                    evict(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get a prepared statement for the given SQL, preparing it on a cache miss
+     *
+     * @param connection on which the statement is prepared, always the same for a cache
+     * @param typeName name of the table type the statement is for, can be null
+     * @param sql statement text
+     * @return prepared statement
+     */
+    public synchronized PreparedStatement prepare(Connection connection, String typeName, String sql) {
+        StatementKey key = new StatementKey(typeName, sql);
+        PreparedStatement ps = statements.get(key);
+        if(ps != null) {
+            hits++;
+            return ps;
+        }
+
+        // An evicted statement with a pending batch is reused, else its batch would be lost
+        ps = evictedPinned.remove(key);
+        if(ps != null) {
+            hits++;
+            statements.put(key, ps);
+            return ps;
+        }
+
+        misses++;
+        long start = System.nanoTime();
+        try {
+            ps = connection.prepareStatement(sql);
+        }
+        catch (SQLException e) {
+            throw ClassUtil.wrapRun(e);
+        }
+        prepareNanos += System.nanoTime() - start;
+        statements.put(key, ps);
+
+        return ps;
+    }
+
+    /**
+     * Mark a statement as having a pending batch, so it is not closed if evicted.
+     * The pins are counted, so each pin needs to be released by unpin.
+     *
+     * @param ps prepared statement
+     */
+    public synchronized void pin(PreparedStatement ps) {
+        Integer count = pinCounts.get(ps);
+        pinCounts.put(ps, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Release a pin of the statements whose batches have been executed or discarded.
+     * A statement that was evicted in the meantime is closed once all its pins are released.
+     *
+     * @param released prepared statements
+     */
+    public synchronized void unpin(Collection<PreparedStatement> released) {
+        for(PreparedStatement ps: released) {
+            Integer count = pinCounts.get(ps);
+            if(count == null) {
+                continue;
+            }
+            if(count > 1) {
+                pinCounts.put(ps, count - 1);
+                continue;
+            }
+
+            pinCounts.remove(ps);
+            if(evictedPinned.values().remove(ps)) {
+                closeStatement(ps);
+            }
+        }
+    }
+
+    /**
+     * @param ps prepared statement
+     * @return true if the statement has a pending batch
+     */
+    public synchronized boolean isPinned(PreparedStatement ps) {
+        return pinCounts.containsKey(ps);
+    }
+
+    private void evict(StatementKey key, PreparedStatement ps) {
+        evictions++;
+        if(pinCounts.containsKey(ps)) {
+            evictedPinned.put(key, ps);
+        } else {
+            closeStatement(ps);
+        }
+    }
+
+    private void closeStatement(PreparedStatement ps) {
+        try {
+            ps.close();
+        }
+        catch (SQLException e) {
+            // The statement is no longer used, so this is not fatal
+            logger.warn("Unable to close the evicted statement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Close all the statements, done when the connection is released
+     */
+    public synchronized void clear() {
+        if(logger.isDebugEnabled()) {
+            logger.debug(toString());
+        }
+
+        for(PreparedStatement ps: statements.values()) {
+            closeStatement(ps);
+        }
+        for(PreparedStatement ps: evictedPinned.values()) {
+            closeStatement(ps);
+        }
+        statements.clear();
+        evictedPinned.clear();
+        pinCounts.clear();
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double)hits / total;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return total time spent preparing the statements in nanoseconds
+     */
+    public synchronized long getPrepareNanos() {
+        return prepareNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Statement cache: size %s, hits %s, misses %s, hit rate %.2f, evictions %s, prepare time %s ms",
+            statements.size(), hits, misses, getHitRate(), evictions, prepareNanos / 1000000);
+    }
+
+    private static class StatementKey {
+        private final String typeName;
+        private final String sql;
+
+        StatementKey(String typeName, String sql) {
+            this.typeName = typeName;
+            this.sql = sql;
+        }
+
+        @Override
+        public int hashCode() {
+            return (typeName == null ? 0 : typeName.hashCode() * 31) + sql.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if( !(other instanceof StatementKey)) {
+                return false;
+            }
+
+            StatementKey key = (StatementKey) other;
+            return (typeName == null ? key.typeName == null : typeName.equals(key.typeName)) && sql.equals(key.sql);
+        }
+    }
+}
@@ -39,13 +39,16 @@ import tools.xor.AbstractBO;
 import tools.xor.AggregateAction;
 import tools.xor.BusinessObject;
 import tools.xor.CallInfo;
+import tools.xor.DefaultPrefetchCache;
 import tools.xor.EntityType;
 import tools.xor.ExtendedProperty;
+import tools.xor.PrefetchCache;
 import tools.xor.RelationshipType;
 import tools.xor.Settings;
 import tools.xor.Type;
 import tools.xor.TypeMapper;
 import tools.xor.operation.MigrateOperation;
+import tools.xor.providers.jdbc.DBTranslator;
 import tools.xor.util.AggregatePropertyPaths;
 import tools.xor.util.ClassUtil;
 import tools.xor.util.IntraQuery;
@@ -101,6 +104,12 @@ public abstract class AbstractDataStore implements DataStore {
 		// Overridden by subclasses
 	}	
 
+	@Override
+	public DBTranslator getDBTranslator() {
+		// Overridden by subclasses
+		return null;
+	}
+
 	private Object getByUserKey(CallInfo callInfo) {
 		EntityType entityType = (EntityType)((BusinessObject) callInfo.getInput()).getPropertyType();
 		BusinessObject from = (BusinessObject) callInfo.getInput();
@@ -179,7 +188,15 @@ public abstract class AbstractDataStore implements DataStore {
 							typeMapper.getDomainShape().getType(type.getEntityName()).getInstanceClass().getName(), from);
 					Type domainType = typeMapper.getDomainShape().getType(typeName);
 					if(domainType != null) {
-					    persistentObject = findById(domainType, id);
+						PrefetchCache cache = callInfo.getSettings().getPrefetchCache();
+						if(cache != null) {
+							persistentObject = cache.getEntity(domainType, id);
+						}
+
+						// Avoid the database if the entity is known not to exist
+						if(persistentObject == null && !(cache instanceof DefaultPrefetchCache && ((DefaultPrefetchCache)cache).isPrefetched(domainType, id))) {
+							persistentObject = findById(domainType, id);
+						}
 					}
 				}
 			}
@@ -24,17 +24,38 @@ public abstract class AbstractEntityScroll implements EntityScroll
     private Statement statement;
     private ResultSet rs;
     private DBTranslator translator;
+    private Connection streamingConnection; // autocommit was turned off to stream the result
+
+    /**
+     * The rows are fetched in batches of the fetch size of the settings if present,
+     * otherwise in batches of the batch size.
+     *
+     * @return number of rows fetched in a round trip
+     */
+    protected int getFetchSize() {
+        Integer fetchSize = getSettings().getFetchSize();
+
+        return fetchSize != null ? fetchSize : getSettings().getBatchSize();
+    }
 
     @Override public boolean hasNext ()
     {
         try {
             if (this.statement == null) {
+                Connection connection = getConnection();
+                this.translator = DBTranslator.getTranslator(connection);
+
+                // Stream the table instead of reading it whole, if the driver needs a transaction for it
+                if(this.translator.isStreamingInTransaction() && connection.getAutoCommit()) {
+                    connection.setAutoCommit(false);
+                    this.streamingConnection = connection;
+                }
+
                 this.statement =
-                    getConnection().createStatement();
-                this.statement.setFetchSize(getSettings().getBatchSize());
+                    connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                this.statement.setFetchSize(getFetchSize());
 
                 this.rs = this.statement.executeQuery(getSQLString());
-                this.translator = DBTranslator.getTranslator(this.statement);
             }
 
             return !this.rs.isAfterLast();
@@ -78,6 +99,12 @@ public abstract class AbstractEntityScroll implements EntityScroll
         }
         catch (Exception e) {}
         ;
+        try {
+            if (this.streamingConnection != null)
+                this.streamingConnection.setAutoCommit(true);
+        }
+        catch (Exception e) {}
+        ;
     }
 
     private JSONObject createJson() {
@@ -59,6 +59,7 @@ import tools.xor.util.graph.DirectedGraph;
 import tools.xor.util.graph.DirectedSparseGraph;
 import tools.xor.util.graph.StateGraph;
 import tools.xor.view.AggregateView;
+import tools.xor.view.QueryPlanCache;
 import tools.xor.view.UnmodifiableView;
 import tools.xor.view.View;
 
@@ -564,6 +565,9 @@ public abstract class AbstractShape implements Shape
 
             selected = selected.copy();
             views.put(selected.getName(), selected);
+
+            // The query plans of the replaced view are no longer used
+            QueryPlanCache.getInstance().invalidate(selected.getName());
         }
         denormalize();
     }
@@ -25,6 +25,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -33,6 +34,15 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.PostConstruct;
 
@@ -61,6 +71,7 @@ import tools.xor.operation.AbstractOperation;
 import tools.xor.operation.DenormalizedModifyOperation;
 import tools.xor.operation.DenormalizedQueryOperation;
 import tools.xor.operation.MigrateOperation;
+import tools.xor.operation.MigrateResult;
 import tools.xor.providers.jdbc.CustomPersister;
 import tools.xor.providers.jdbc.JDBCDataModel;
 import tools.xor.providers.jdbc.JDBCDataStore;
@@ -617,7 +628,7 @@ public class AggregateManager implements Xor
         return side;
 	}
 
-	private List<?> queryInternal (Object entity, Settings settings)
+	List<?> queryInternal (Object entity, Settings settings)
 	{
 		owLogger.debug("Performing query operation");
 		checkAndSet(settings, entity);
@@ -682,6 +693,15 @@ public class AggregateManager implements Xor
 		owLogger.debug("Performing create operation");
 		checkAndSet(settings, entity);
 
+		if(isParallelBulk(entity, settings)) {
+			return processBulk((List)entity, null, settings, new BulkTask() {
+				@Override public Object run (List entities, List snapshots, Settings partSettings)
+				{
+					return create(entities, partSettings);
+				}
+			});
+		}
+
 		// Not necessary as we manage the back-pointers
 		FlushHandler flushHandler = new FlushHandler(settings);
 
@@ -894,6 +914,15 @@ public class AggregateManager implements Xor
 			throw new IllegalStateException("The default action should either be UPDATE or MERGE");
 		}
 
+		if(isParallelBulk(entity, settings)) {
+			return processBulk((List)entity, null, settings, new BulkTask() {
+				@Override public Object run (List entities, List snapshots, Settings partSettings)
+				{
+					return update(entities, partSettings);
+				}
+			});
+		}
+
 		// Not necessary as we manage the back-pointers
 		FlushHandler flushHandler = new FlushHandler(settings);
 
@@ -962,18 +991,22 @@ public class AggregateManager implements Xor
 			this,
 			null);
 
+		MigrateResult result = new MigrateResult();
+
 		// Migrate just the entity including embedded objects
+		// The entities that are not related to each other are migrated concurrently
 		List<EntityType> orderedTypes = operation.getEntitiesInOrder(
 			getEntitiesToMigrate(),
 			settings);
-		Iterator<EntityType> iterator = orderedTypes.iterator();
-		while (iterator.hasNext()) {
-			EntityType entityType = iterator.next();
-			System.out.println("****** Migrating entity: " + entityType.getName());
+		for(List<EntityType> independentTypes: operation.getIndependentEntities(orderedTypes)) {
+			List<Settings> batchSettings = new ArrayList<>(independentTypes.size());
+			for(EntityType entityType: independentTypes) {
+				logger.info("****** Migrating entity: " + entityType.getName());
 
-			// Create a new settings based on migrate view
-			Settings batchSettings = operation.build(entityType, settings);
-			performMigration(source, batchSettings, operation);
+				// Create a new settings based on migrate view
+				batchSettings.add(operation.build(entityType, settings));
+			}
+			performMigration(source, batchSettings, operation.getEntityPoolSize(), result);
 		}
 
 		//NOTE: Specific consideration for migrating relationships
@@ -990,10 +1023,10 @@ public class AggregateManager implements Xor
 		Iterator<Settings> relationshipIterator = embeddedRelationships.iterator();
 		while (relationshipIterator.hasNext()) {
 			Settings relSettings = relationshipIterator.next();
-			System.out.println(
+			logger.info(
 				"****** Migrating embedded relationship: " + relSettings.getView().getName());
 
-			performMigration(source, relSettings, operation);
+			createMigration(source, relSettings, result).execute(relSettings);
 		}
 
 		// Migrate collection of entities
@@ -1003,22 +1036,79 @@ public class AggregateManager implements Xor
 		relationshipIterator = entityRelationships.iterator();
 		while (relationshipIterator.hasNext()) {
 			Settings relSettings = relationshipIterator.next();
-			System.out.println(
+			logger.info(
 				"****** Migrating entity relationship: " + relSettings.getView().getName());
 
-			performMigration(source, relSettings, operation);
+			createMigration(source, relSettings, result).execute(relSettings);
 		}
+
+		logger.info("****** Migration result:\n" + result);
 	}
 
-	private void performMigration(AggregateManager source, Settings settings, MigrateOperation operation) {
+	/**
+	 * Migrate independent entities, concurrently if the entity pool size of the migrate
+	 * operation allows it
+	 *
+	 * @param source database
+	 * @param independentSettings settings of each entity
+	 * @param entityPoolSize maximum number of entities migrated concurrently
+	 * @param result of the migration
+	 */
+	private void performMigration(AggregateManager source, List<Settings> independentSettings, int entityPoolSize, MigrateResult result) {
+		// The operations are created on this thread, since the data store is specific to a thread
+		List<MigrateOperation> operations = new ArrayList<>(independentSettings.size());
+		for(Settings settings: independentSettings) {
+			operations.add(createMigration(source, settings, result));
+		}
+
+		int poolSize = Math.min(entityPoolSize, independentSettings.size());
+		if(poolSize <= 1) {
+			for(int i = 0; i < operations.size(); i++) {
+				operations.get(i).execute(independentSettings.get(i));
+			}
+			return;
+		}
+
+		ExecutorService entityPool = Executors.newFixedThreadPool(poolSize);
+		try {
+			List<Future<?>> futures = new ArrayList<>(independentSettings.size());
+			for(int i = 0; i < operations.size(); i++) {
+				final MigrateOperation operation = operations.get(i);
+				final Settings settings = independentSettings.get(i);
+				futures.add(entityPool.submit(new Runnable() {
+					@Override public void run ()
+					{
+						operation.execute(settings);
+					}
+				}));
+			}
+			for(Future<?> future: futures) {
+				future.get();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw ClassUtil.wrapRun(e);
+		}
+		catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? ClassUtil.wrapRun((Exception)e.getCause()) : ClassUtil.wrapRun(e);
+		}
+		finally {
+			entityPool.shutdown();
+		}
+	}
+
+	private MigrateOperation createMigration(AggregateManager source, Settings settings, MigrateResult result) {
 		settings.setPersist(true);
 		settings.setMainAction(AggregateAction.MIGRATE);
 		settings.setSessionContext(settings.getSessionContext());
 
 		// Create a new operation for each entity,so we don't mix different entities
 		// in the same queue
-		operation = getDataStore().getMigrateOperation(source, this, null);
-		operation.execute(settings);
+		MigrateOperation operation = getDataStore().getMigrateOperation(source, this, null);
+		operation.setResult(result);
+
+		return operation;
 	}
 
 	@Override
@@ -1068,6 +1158,15 @@ public class AggregateManager implements Xor
 				"snapshot should also be a list mirroring the input entity list");
 		}
 
+		if(isParallelBulk(entity, settings)) {
+			return (List)processBulk(entity, snapshot, settings, new BulkTask() {
+				@Override public Object run (List entities, List snapshots, Settings partSettings)
+				{
+					return patch(entities, snapshots, partSettings);
+				}
+			});
+		}
+
 		List entityList = (List)entity;
 		List snapshotList = (List)snapshot;
 		for (int i = 0; i < entityList.size(); i++) {
@@ -1097,6 +1196,153 @@ public class AggregateManager implements Xor
 		return settings.getShape();
 	}
 
+	// Shared by the bulk requests, the threads are created as needed and reused
+	private static class BulkExecutor {
+		private static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override public Thread newThread (Runnable r)
+			{
+				Thread thread = new Thread(r, "xor-bulk");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/*
+	 * A part of a bulk request that is processed on a separate thread
+	 */
+	private interface BulkTask
+	{
+		Object run (List entities, List snapshots, Settings partSettings);
+	}
+
+	/*
+	 * The parts of a bulk request are processed in separate transactions, so this is only done
+	 * if the caller does not have a transaction. Also the entity manager of a JPA data store
+	 * is bound to the calling thread.
+	 */
+	private boolean isParallelBulk (Object entity, Settings settings)
+	{
+		if (settings.getBulkPoolSize() <= 1 || !(entity instanceof List) || ((List)entity).size() < 2) {
+			return false;
+		}
+
+		if (settings.getSessionContext() != null || !(getDataStore() instanceof JDBCDataStore)) {
+			return false;
+		}
+
+		try {
+			Connection connection = ((JDBCDataStore)getDataStore()).getSessionContext().getConnection();
+			return connection == null || connection.isClosed();
+		}
+		catch (SQLException e) {
+			throw ClassUtil.wrapRun(e);
+		}
+	}
+
+	/**
+	 * Split a list of independent aggregates into contiguous parts, and process each part on
+	 * its own thread with a separate data store, whose session has the options of the caller's
+	 * session, e.g., to read the entities from the database. Each part flushes its persistence work in
+	 * batches and commits its own transaction, so the request is not atomic.
+	 * At the first failure the parts that have not started are skipped, and the failure is
+	 * thrown once the running parts have finished. The parts that have committed stay
+	 * committed, see Settings#setBulkPoolSize.
+	 *
+	 * @param entities list of aggregates
+	 * @param snapshots optional list mirroring the aggregates
+	 * @param settings of the bulk request
+	 * @param task processing a part
+	 * @return the results of all the parts in the order of the input
+	 */
+	private Object processBulk (List entities, List snapshots, Settings settings, final BulkTask task)
+	{
+		int numParts = Math.min(settings.getBulkPoolSize(), entities.size());
+		int partSize = (entities.size() + numParts - 1) / numParts;
+
+		// The active shape and the data store are specific to a thread
+		final Shape shape = getShape(settings);
+		final JDBCSessionContext sessionContext = ((JDBCDataStore)getDataStore()).getSessionContext();
+
+		CompletionService<Object> bulkService = new ExecutorCompletionService<>(BulkExecutor.INSTANCE);
+		List<Future<Object>> futures = new ArrayList<>(numParts);
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		try {
+			for (int from = 0; from < entities.size(); from += partSize) {
+				int to = Math.min(entities.size(), from + partSize);
+				final List partEntities = new ArrayList(entities.subList(from, to));
+				final List partSnapshots = snapshots == null ? null : new ArrayList(snapshots.subList(from, to));
+
+				// Each part is processed serially on its thread
+				final Settings partSettings = settings.copy();
+				partSettings.setBulkPoolSize(1);
+				partSettings.setPrefetchCache(null);
+
+				futures.add(bulkService.submit(new Callable<Object>() {
+					@Override public Object call ()
+					{
+						if (cancelled.get()) {
+							return null;
+						}
+
+						getDataModel().setActive(shape);
+						JDBCDataStore partStore = (JDBCDataStore)dataModelFactory.createDataStore(null);
+						partStore.getSessionContext().initOptions(sessionContext);
+						setDataStore(partStore);
+						try {
+							return task.run(partEntities, partSnapshots, partSettings);
+						}
+						finally {
+							setDataStore(null);
+						}
+					}
+				}));
+			}
+
+			// Wait for the parts as they complete, so a failure is noticed at once
+			for (int i = 0; i < futures.size(); i++) {
+				bulkService.take().get();
+			}
+
+			List result = new ArrayList(entities.size());
+			for (Future<Object> future : futures) {
+				Object partResult = future.get();
+				if (partResult instanceof Collection) {
+					result.addAll((Collection)partResult);
+				}
+				else if (partResult != null) {
+					result.add(partResult);
+				}
+			}
+
+			return result;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw ClassUtil.wrapRun(e);
+		}
+		catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? ClassUtil.wrapRun((Exception)e.getCause()) : ClassUtil.wrapRun(e);
+		}
+		finally {
+			// Skip the parts that have not started and wait for the running parts, so the
+			// database does not change after the failure is thrown
+			cancelled.set(true);
+			for (Future<Object> future : futures) {
+				try {
+					future.get();
+				}
+				catch (ExecutionException e) {
+					// Only the first failure is thrown
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+	}
+
 	private void attach(Object entity, Object snapshot, Settings settings) {
 
 		// attach it to the persistence layer
@@ -1158,44 +1404,88 @@ public class AggregateManager implements Xor
 		}
 
 		if (settings.getLimit() != null && firstObject != lastObject) {
+			settings.setNextToken(getNextToken(settings, firstObject, lastObject));
+		}
 
-			// Extract the columns postions from the first object
-			Map<String, Integer> colPositions = new HashMap<String, Integer>();
-			if (lastObject.getClass().isArray()) {
-				int i = 0;
-				for (Object col : (Object[])firstObject) {
-					colPositions.put((String)col, i++);
-				}
+		return result;
+	}
+
+	/**
+	 * Captures the order by field values of the last object of a page, so the
+	 * next page can start after it.
+	 *
+	 * @param settings containing the order by functions
+	 * @param firstObject of the page, for a denormalized query these are the column names
+	 * @param lastObject of the page
+	 * @return nextToken values
+	 */
+	static Map<String, Object> getNextToken(Settings settings, Object firstObject, Object lastObject)
+	{
+		// Extract the columns postions from the first object
+		Map<String, Integer> colPositions = new HashMap<String, Integer>();
+		if (lastObject.getClass().isArray()) {
+			int i = 0;
+			for (Object col : (Object[])firstObject) {
+				colPositions.put((String)col, i++);
 			}
+		}
 
-			// Ensure we capture the order by field values for the last object in the nextToken
-			Map<String, Object> nextTokenValues = new HashMap<String, Object>();
-			List<Function> consolidated = new ArrayList<Function>(settings.getAdditionalFunctions());
-			// Also Look for the filters in the view
-			if (settings.getView().getFunction() != null) {
-				consolidated.addAll(settings.getView().getFunction());
+		// Ensure we capture the order by field values for the last object in the nextToken
+		Map<String, Object> nextTokenValues = new HashMap<String, Object>();
+		List<Function> orderBy = getOrderBy(settings);
+		for (Function function : orderBy) {
+			if (lastObject instanceof BusinessObject) {
+				nextTokenValues.put(
+					function.getAttribute(),
+					((BusinessObject)lastObject).get(function.getAttribute()));
+			}
+			else if (lastObject.getClass().isArray()) {
+				nextTokenValues.put(
+					function.getAttribute(),
+					((Object[])lastObject)[colPositions.get(function.getAttribute())]);
 			}
+		}
 
-			for (Function function : consolidated) {
-				if (function.isOrderBy()) {
-					if (lastObject instanceof BusinessObject) {
-						nextTokenValues.put(
-							function.getAttribute(),
-							((BusinessObject)lastObject).get(function.getAttribute()));
-					}
-					else if (lastObject.getClass().isArray()) {
-						nextTokenValues.put(
-							function.getAttribute(),
-							((Object[])lastObject)[colPositions.get(function.getAttribute())]);
-					}
-				}
+		// The id breaks the ties between objects having the same order by values.
+		// A custom query is responsible for its own ordering.
+		if (!orderBy.isEmpty() && !settings.getView().isCustom()
+			&& lastObject instanceof BusinessObject
+			&& ((BusinessObject)lastObject).getType() instanceof EntityType
+			&& ((EntityType)((BusinessObject)lastObject).getType()).getIdentifierProperty() != null) {
+			BusinessObject bo = (BusinessObject)lastObject;
+			String idAttribute = ((EntityType)bo.getType()).getIdentifierProperty().getName();
+			if (Function.isOrderedById(orderBy, idAttribute)) {
+				nextTokenValues.put(idAttribute, bo.getIdentifierValue());
+			}
+		}
+
+		return nextTokenValues;
+	}
+
+	static List<Function> getOrderBy(Settings settings)
+	{
+		List<Function> consolidated = new ArrayList<Function>(settings.getAdditionalFunctions());
+		// Also Look for the filters in the view
+		if (settings.getView().getFunction() != null) {
+			consolidated.addAll(settings.getView().getFunction());
+		}
+
+		List<Function> result = new ArrayList<Function>();
+		for (Function function : consolidated) {
+			if (function.isOrderBy()) {
+				result.add(function);
 			}
-			settings.setNextToken(nextTokenValues);
 		}
 
 		return result;
 	}
 
+	@Override
+	public EntityScroll<Object> scroll (Object entity, Settings settings)
+	{
+		return new QueryScroll(this, entity, settings);
+	}
+
 	public static class DefaultForeignKeyEnhancer implements ForeignKeyEnhancer
 	{
 
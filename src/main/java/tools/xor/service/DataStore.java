@@ -34,6 +34,7 @@ import tools.xor.Settings;
 import tools.xor.Type;
 import tools.xor.TypeMapper;
 import tools.xor.operation.MigrateOperation;
+import tools.xor.providers.jdbc.DBTranslator;
 import tools.xor.util.IntraQuery;
 import tools.xor.view.Query;
 import tools.xor.view.QueryFragment;
@@ -163,6 +164,13 @@ public interface DataStore {
      * @return QueryCapability object
      */
     public QueryCapability getQueryCapability();
+
+    /**
+     * Returns the translator for the database dialect, used to build SQL that is
+     * specific to the database.
+     * @return DBTranslator object, null if the database is not known
+     */
+    public DBTranslator getDBTranslator();
     
     /**
      * Some ORMs cannot resolve all the issues while persisting an aggregate. 
@@ -22,6 +22,9 @@ package tools.xor.service;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -39,6 +42,7 @@ import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.sql.DataSource;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -46,6 +50,7 @@ import org.apache.logging.log4j.Logger;
 import tools.xor.BusinessObject;
 import tools.xor.EntityType;
 import tools.xor.Type;
+import tools.xor.providers.jdbc.DBTranslator;
 import tools.xor.util.ClassUtil;
 import tools.xor.view.JPAQuery;
 import tools.xor.view.NativeQuery;
@@ -57,9 +62,11 @@ import tools.xor.view.StoredProcedureQuery;
 public abstract class JPADataStore extends AbstractDataStore
 {
 	private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
+	private static final String NON_JTA_DATASOURCE = "javax.persistence.nonJtaDataSource";
 
 	private boolean supportsSP;
 	private PersistenceUtil persistenceUtil;
+	private volatile DBTranslator translator;
 
     protected abstract EntityManager getEntityManager ();
 
@@ -150,10 +157,26 @@ public abstract class JPADataStore extends AbstractDataStore
 	@Override
 	public List<Object> findByIds (EntityType entityType, final Collection ids)
 	{
-		javax.persistence.Query query = getEntityManager().createQuery(
-			"SELECT e FROM " + entityType.getName() + " e WHERE e.id in :ids");
-		query.setParameter("ids", ids);
-		return query.getResultList();
+		// The entities already in the persistence context might not have been flushed
+		List<Object> result = new ArrayList<>();
+		List<Object> toQuery = new ArrayList<>();
+		for(Object id: ids) {
+			Object entity = getCached(entityType.getInstanceClass(), id);
+			if(entity != null) {
+				result.add(entity);
+			} else {
+				toQuery.add(id);
+			}
+		}
+
+		if(!toQuery.isEmpty()) {
+			javax.persistence.Query query = getEntityManager().createQuery(
+				"SELECT e FROM " + entityType.getName() + " e WHERE e.id in :ids");
+			query.setParameter("ids", toQuery);
+			result.addAll(query.getResultList());
+		}
+
+		return result;
 	}
 
 	private List<Object> getResult (Type type, Map<String, Object> propertyValues)
@@ -203,6 +226,29 @@ public abstract class JPADataStore extends AbstractDataStore
 		return new JPAQueryCapability();
 	}
 
+	@Override
+	public DBTranslator getDBTranslator ()
+	{
+		// The database does not change, so the translator is looked up only once
+		if(translator == null) {
+			if(persistenceUtil != null) {
+				translator = persistenceUtil.getTranslator(this);
+			} else {
+				Object dataSource = getEntityManagerFactory().getProperties().get(NON_JTA_DATASOURCE);
+				if(dataSource instanceof DataSource) {
+					try (Connection connection = ((DataSource)dataSource).getConnection()) {
+						translator = DBTranslator.getTranslator(connection);
+					}
+					catch (SQLException e) {
+						throw ClassUtil.wrapRun(e);
+					}
+				}
+			}
+		}
+
+		return translator;
+	}
+
 	@Override
 	public Query getQuery (String queryString, QueryType queryType, Object queryInput)
 	{
@@ -238,6 +284,11 @@ public abstract class JPADataStore extends AbstractDataStore
 			throw new RuntimeException("Unsupported queryType: " + queryType.name());
 		}
 
+		if(result instanceof JPAQuery) {
+			// Needed to cancel the query if it is still running
+			((JPAQuery)result).setEntityManager(getEntityManager());
+		}
+
 		return result;
 	}
 
@@ -22,6 +22,7 @@ package tools.xor.service;
 import java.sql.Blob;
 import java.util.Set;
 
+import tools.xor.providers.jdbc.DBTranslator;
 import tools.xor.view.StoredProcedure;
 
 /**
@@ -64,4 +65,11 @@ public interface PersistenceUtil {
      * @param stringKeyLen size of the string field used to represent the id
      */
     void createQueryJoinTable(DataStore po, final Integer stringKeyLen);
+
+    /**
+     * Get the translator for the database managed by the provider.
+     * @param po PersistenceOrchestrator instance
+     * @return DBTranslator instance, null if the database is not supported
+     */
+    DBTranslator getTranslator(DataStore po);
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.service;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import tools.xor.BusinessObject;
+import tools.xor.Settings;
+
+/**
+ * Reads the results of a query a page at a time.
+ *
+ * Each page is a separate query execution limited to the page size, and the next page
+ * starts after the order by values of the last object of the previous page (nextToken).
+ * So only a single page of reconstituted objects is held in memory, and an object is
+ * released as soon as it is handed to the caller.
+ *
+ * The scroll works on a copy of the settings, since the limit and the nextToken
+ * are changed for every page.
+ */
+public class QueryScroll implements EntityScroll<Object>
+{
+    private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
+
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private final AggregateManager am;
+    private final Object entity;
+    private final Settings settings;
+    private final boolean ordered;
+    private final int pageSize;
+    private final boolean hasHeader; // The first row of a denormalized result has the column names
+
+    private List<Object> page;
+    private int position;
+    private int pageCount;
+    private boolean lastPage;
+
+    public QueryScroll(AggregateManager am, Object entity, Settings settings) {
+        this.am = am;
+        this.entity = entity;
+
+        if(settings.getView() == null) {
+            throw new RuntimeException("A view needs to be specified to scroll the query results");
+        }
+        this.settings = settings.copy();
+        this.ordered = !AggregateManager.getOrderBy(this.settings).isEmpty();
+        this.pageSize = settings.getBatchSize() > 0 ? settings.getBatchSize() : DEFAULT_PAGE_SIZE;
+        if(!ordered) {
+            logger.warn(String.format("View %s has no order by, so its results are read as a single page", settings.getView().getName()));
+        } else {
+            this.settings.setLimit(pageSize);
+        }
+
+        List<String> columns = settings.getView().getAttributeList();
+        this.hasHeader = settings.isDenormalized() && columns != null && !columns.isEmpty();
+    }
+
+    private void fetchPage() {
+        page = (List<Object>)am.queryInternal(entity, settings);
+        position = 0;
+
+        int start = hasHeader ? 1 : 0;
+        if(page.size() - start < pageSize || !ordered) {
+            // A short page means there are no more results, so we avoid querying an empty page
+            lastPage = true;
+        } else {
+            // Capture the position to continue from before the objects are released
+            settings.setNextToken(AggregateManager.getNextToken(settings, page.get(0), page.get(page.size()-1)));
+        }
+
+        // The column names are returned only once
+        if(hasHeader && pageCount > 0) {
+            position = start;
+        }
+        pageCount++;
+    }
+
+    @Override public boolean hasNext ()
+    {
+        while(page == null || position >= page.size()) {
+            if(lastPage) {
+                page = null;
+                return false;
+            }
+            fetchPage();
+        }
+
+        return true;
+    }
+
+    @Override public Object next ()
+    {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Object result = page.get(position);
+        page.set(position++, null);
+
+        if(!settings.isDenormalized()) {
+            result = ((BusinessObject)result).getInstance();
+        }
+
+        return result;
+    }
+
+    /**
+     * @return number of pages queried so far
+     */
+    public int getPageCount() {
+        return this.pageCount;
+    }
+
+    @Override public void close ()
+    {
+        page = null;
+        lastPage = true;
+    }
+}
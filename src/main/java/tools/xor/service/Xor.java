@@ -114,6 +114,18 @@ public interface Xor {
 	 */
 	List<?> query(Object inputObject, Settings settings);
 
+	/**
+	 * Query the objects a page at a time instead of returning the whole result as a list.
+	 * The page size is given by Settings#getBatchSize and the pages are read using the
+	 * nextToken, so the view needs to be ordered by a unique key.
+	 * Only the current page is held in memory, and an object is released once it is returned.
+	 *
+	 * @param inputObject  The input object from the user in external form
+	 * @param settings User specified settings
+	 * @return cursor over the results of the query
+	 */
+	EntityScroll<Object> scroll(Object inputObject, Settings settings);
+
 	/**
 	 * Executes DML (INSERT, UPDATE, SELECT and DELETE) queries against the DB
 	 * @param settings object
@@ -41,13 +41,18 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -274,6 +279,7 @@ public class CSVLoader implements Callable {
     private String folderPath;
     private StateGraph.ObjectGenerationVisitor visitor;
     private boolean ignoreDependencyErrors;
+    private String fileFilter;
     
     // Used in parallel execution
     private Integer jobNo; // starts from 0
@@ -1008,6 +1014,7 @@ public class CSVLoader implements Callable {
         this.dataStore = dataStore;
         this.numThreads = numThreads;
         this.ignoreDependencyErrors = ignoreDependencyErrors;
+        this.fileFilter = fileFilter;
 
         if(path == null || "".equals(path.trim())) {
             throw new RuntimeException("Folder needs to be specified");
@@ -1109,6 +1116,332 @@ public class CSVLoader implements Callable {
         }
     }
 
+    /**
+     * Import the data using multiple threads, with each thread loading a range of the records
+     * of a CSV file. Unlike importDataParallel, each record is parsed by only one thread.
+     *
+     * The tables are loaded one at a time in the dependency order of the CSV states, and
+     * the ranges of a table are committed before the next table is loaded, so the referenced
+     * rows are visible when the rows referencing them are loaded.
+     *
+     * Tables whose data is generated by the entity generator instead of CSV records, are loaded
+     * by a single thread.
+     *
+     * @param settings for the import
+     * @param dataModelFactory used to create a data store for each thread
+     * @param numThreads number of threads
+     */
+    public void importDataPartitioned(Settings settings, DataModelFactory dataModelFactory, int numThreads) {
+        // Each thread has its own loader, since the generators of a CSVState keep state
+        List<CSVLoader> loaders = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            JDBCDataStore dataStore = (JDBCDataStore)dataModelFactory.createDataStore(settings.getSessionContext());
+            loaders.add(new CSVLoader(this.shape, this.folderPath, null, settings, dataStore, 1, this.fileFilter, this.ignoreDependencyErrors));
+        }
+
+        ExecutorService importers = Executors.newFixedThreadPool(numThreads);
+        try {
+            for(int i = orderingGraph.START; i < orderingGraph.START+orderingGraph.getVertices().size(); i++ ) {
+                CSVState csvState = orderingGraph.getVertex(i);
+                if(csvState.getCSVFile() != null) {
+                    importPartitions(importers, loaders, csvState, true);
+                }
+            }
+
+            for(int i = orderingGraph.START; i < orderingGraph.START+orderingGraph.getVertices().size(); i++ ) {
+                CSVState csvState = orderingGraph.getVertex(i);
+                if(csvState.nullableForeignKeys.size() > 0) {
+                    importPartitions(importers, loaders, csvState, false);
+                }
+            }
+        } finally {
+            importers.shutdown();
+        }
+    }
+
+    private void importPartitions(ExecutorService importers, List<CSVLoader> loaders, CSVState csvState, boolean isInsert) {
+        List<CSVPartition> partitions = new ArrayList<>();
+        File file = CSVPartition.getFile(csvState.getCSVFile());
+        if(file != null) {
+            try {
+                partitions = CSVPartition.split(file, loaders.size());
+            }
+            catch (IOException e) {
+                throw ClassUtil.wrapRun(e);
+            }
+        }
+        if(partitions.isEmpty()) {
+            // Process the whole file in a single job
+            partitions.add(null);
+        }
+
+        List<Future> importJobs = new ArrayList<Future>();
+        for(int i = 0; i < partitions.size(); i++) {
+            importJobs.add(importers.submit(new PartitionImporter(loaders.get(i), csvState.getTableName(), partitions.get(i), isInsert)));
+        }
+
+        // wait for all the ranges of the table to be committed
+        Exception error = null;
+        for (Future importJob : importJobs) {
+            try {
+                importJob.get();
+            }
+            catch (Exception e) {
+                logger.error(ExceptionUtils.getStackTrace(e));
+                if(error == null) {
+                    error = e;
+                }
+            }
+        }
+
+        if(error != null) {
+            throw new RuntimeException(String.format("Unable to import the data for table %s", csvState.getTableName()), error);
+        }
+    }
+
+    private static class PartitionImporter implements Callable {
+        private final CSVLoader loader;
+        private final String tableName;
+        private final CSVPartition partition;
+        private final boolean isInsert;
+
+        public PartitionImporter(CSVLoader loader, String tableName, CSVPartition partition, boolean isInsert) {
+            this.loader = loader;
+            this.tableName = tableName;
+            this.partition = partition;
+            this.isInsert = isInsert;
+        }
+
+        @Override
+        public Object call () throws Exception
+        {
+            CSVState csvState = loader.findState(CSVState.normalize(tableName));
+            JDBCSessionContext sc = loader.dataStore.getSessionContext();
+            sc.beginTransaction();
+
+            boolean orderSQL = sc.isOrderSQL();
+            try {
+                sc.setOrderSQL(false);
+                if(isInsert) {
+                    loader.createRecords(csvState, loader.settings, loader.dataStore, partition);
+                } else {
+                    loader.updateRecords(csvState, loader.settings, loader.dataStore, partition);
+                }
+                sc.commit();
+            } catch (Exception e) {
+                sc.rollback();
+                throw e;
+            } finally {
+                sc.setOrderSQL(orderSQL);
+                sc.close();
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Import the data by loading the tables concurrently on a work-stealing pool. A table is
+     * loaded as soon as all the tables it depends on in the ordering graph are committed, so
+     * tables that do not depend on each other are loaded at the same time.
+     * Once all the tables are loaded, the nullable foreign keys of the tables are updated
+     * concurrently.
+     *
+     * Each table is loaded in its own transaction. If a visitor is set on this loader,
+     * it needs to be thread safe.
+     *
+     * @param settings for the import
+     * @param dataModelFactory used to create a data store for each table
+     * @param numThreads parallelism of the pool
+     * @return load metrics of each table in the order the tables were loaded
+     */
+    public List<TableMetrics> importDataConcurrent(Settings settings, DataModelFactory dataModelFactory, int numThreads) {
+        ForkJoinPool pool = new ForkJoinPool(numThreads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        try {
+            TableScheduler inserts = new TableScheduler(settings, dataModelFactory, true);
+            pool.invoke(inserts);
+
+            TableScheduler updates = new TableScheduler(settings, dataModelFactory, false);
+            pool.invoke(updates);
+
+            return new ArrayList<>(inserts.metrics);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Progress and throughput of loading a table
+     */
+    public static class TableMetrics {
+        private final String tableName;
+        private final long rows;
+        private final long elapsedMillis;
+        private final List<String> dependencies;
+
+        public TableMetrics(String tableName, long rows, long elapsedMillis, List<String> dependencies) {
+            this.tableName = tableName;
+            this.rows = rows;
+            this.elapsedMillis = elapsedMillis;
+            this.dependencies = dependencies;
+        }
+
+        public String getTableName() {
+            return this.tableName;
+        }
+
+        /**
+         * @return the tables that were loaded before this table was started
+         */
+        public List<String> getDependencies() {
+            return this.dependencies;
+        }
+
+        public long getRows() {
+            return this.rows;
+        }
+
+        public long getElapsedMillis() {
+            return this.elapsedMillis;
+        }
+
+        /**
+         * @return rows loaded per second
+         */
+        public double getThroughput() {
+            return elapsedMillis == 0 ? rows * 1000.0 : (rows * 1000.0) / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %s rows in %s ms (%.1f rows/s)", tableName, rows, elapsedMillis, getThroughput());
+        }
+    }
+
+    /**
+     * Completes when all the tables are loaded. Each table is loaded by a TableLoad task
+     * that is forked when the last table it depends on is loaded.
+     */
+    private class TableScheduler extends CountedCompleter<Void> {
+        private final Settings settings;
+        private final DataModelFactory dataModelFactory;
+        private final boolean isInsert;
+        private final List<CSVState> tables = new ArrayList<>();
+        private final Map<CSVState, AtomicInteger> remainingDependencies = new HashMap<>();
+        private final Map<CSVState, List<CSVState>> dependents = new HashMap<>();
+        private final Map<CSVState, List<String>> dependencies = new HashMap<>();
+        private final Queue<TableMetrics> metrics = new ConcurrentLinkedQueue<>();
+
+        TableScheduler(Settings settings, DataModelFactory dataModelFactory, boolean isInsert) {
+            this.settings = settings;
+            this.dataModelFactory = dataModelFactory;
+            this.isInsert = isInsert;
+
+            for(int i = orderingGraph.START; i < orderingGraph.START+orderingGraph.getVertices().size(); i++ ) {
+                CSVState csvState = orderingGraph.getVertex(i);
+                if(isInsert ? csvState.getCSVFile() != null : csvState.nullableForeignKeys.size() > 0) {
+                    tables.add(csvState);
+                    remainingDependencies.put(csvState, new AtomicInteger());
+                    dependents.put(csvState, new ArrayList<CSVState>());
+                    dependencies.put(csvState, new ArrayList<String>());
+                }
+            }
+
+            // The updates of the nullable foreign keys do not depend on each other
+            if(isInsert) {
+                for(CSVState csvState: tables) {
+                    for(Edge<CSVState> edge: orderingGraph.getInEdges(csvState)) {
+                        CSVState dependedOn = orderingGraph.getStart(edge);
+                        // Only edges consistent with the topological order are considered,
+                        // any other edge would have been ignored by the sequential import
+                        if(dependents.containsKey(dependedOn) && orderingGraph.getId(dependedOn) < orderingGraph.getId(csvState)) {
+                            dependents.get(dependedOn).add(csvState);
+                            dependencies.get(csvState).add(dependedOn.getTableName());
+                            remainingDependencies.get(csvState).incrementAndGet();
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void compute() {
+            for(CSVState csvState: tables) {
+                if(remainingDependencies.get(csvState).get() == 0) {
+                    addToPendingCount(1);
+                    new TableLoad(this, csvState).fork();
+                }
+            }
+            tryComplete();
+        }
+
+        private void load(CSVState csvState) throws IOException {
+            JDBCDataStore dataStore = (JDBCDataStore)dataModelFactory.createDataStore(settings.getSessionContext());
+            JDBCSessionContext sc = dataStore.getSessionContext();
+            sc.beginTransaction();
+
+            long start = System.currentTimeMillis();
+            long rows = 0;
+            try {
+                sc.setOrderSQL(false);
+                if(isInsert) {
+                    rows = createRecords(csvState, settings, dataStore).recordNo - COUNTER_START;
+                } else {
+                    updateRecords(csvState, settings, dataStore);
+                }
+                sc.commit();
+            } catch (RuntimeException | IOException e) {
+                sc.rollback();
+                throw e;
+            } finally {
+                sc.close();
+            }
+
+            if(isInsert) {
+                TableMetrics tableMetrics = new TableMetrics(csvState.getTableName(), rows, System.currentTimeMillis() - start,
+                    dependencies.get(csvState));
+                metrics.add(tableMetrics);
+                logger.info(String.format("Loaded table %s of %s, %s", metrics.size(), tables.size(), tableMetrics));
+            }
+        }
+
+        /**
+         * Fork the dependents whose dependencies are all loaded
+         * @param csvState table that is loaded
+         */
+        private void release(CSVState csvState) {
+            for(CSVState dependent: dependents.get(csvState)) {
+                if(remainingDependencies.get(dependent).decrementAndGet() == 0) {
+                    addToPendingCount(1);
+                    new TableLoad(this, dependent).fork();
+                }
+            }
+        }
+    }
+
+    private static class TableLoad extends CountedCompleter<Void> {
+        private final TableScheduler scheduler;
+        private final CSVState csvState;
+
+        TableLoad(TableScheduler scheduler, CSVState csvState) {
+            super(scheduler);
+            this.scheduler = scheduler;
+            this.csvState = csvState;
+        }
+
+        @Override
+        public void compute() {
+            try {
+                scheduler.load(csvState);
+            }
+            catch (IOException e) {
+                throw ClassUtil.wrapRun(e);
+            }
+            scheduler.release(csvState);
+            tryComplete();
+        }
+    }
+
     public Future<CreateRecordIteration> generateAsynchronous(CSVState csvState, int capacity) {
         csvState.createBoundedQueue(capacity);
         this.setIgnoreDependencyErrors(true);
@@ -1289,6 +1622,10 @@ public class CSVLoader implements Callable {
     }
     
     private CreateRecordIteration createRecords(CSVState csvState, Settings settings, JDBCDataStore dataStore) throws IOException {
+        return createRecords(csvState, settings, dataStore, null);
+    }
+
+    private CreateRecordIteration createRecords(CSVState csvState, Settings settings, JDBCDataStore dataStore, CSVPartition partition) throws IOException {
         /* Get the columns we need to populate
          * 1. All non foreign key columns
          * 2. All not-null foreign key columns
@@ -1308,18 +1645,11 @@ public class CSVLoader implements Callable {
         }
 
         CreateRecordIteration iteration = new CreateRecordIteration(csvState, sc, currentVisitor);
+        iteration.i = skipRecords(iteration.entityIterator, partition);
         
         // Read the data for non FK columns
         if(csvState.getCSVFile() != null) {
-            try (BufferedReader reader = getReader(csvState.getCSVFile())) {
-                // skip first 2 lines
-                if (reader.ready()) {
-                    reader.readLine();
-                }
-                if (reader.ready()) {
-                    reader.readLine();
-                }
-
+            try (BufferedReader reader = getDataReader(csvState.getCSVFile(), partition)) {
                 try (CSVParser parser = new CSVParser(reader, CSVFormat.DEFAULT)) {
                     iteration.csvIterator = parser.iterator();
                     createRecords(iteration, csvState, currentVisitor, settings, dataStore);
@@ -1524,13 +1854,13 @@ public class CSVLoader implements Callable {
     }
     
     private void updateRecords(CSVState csvState, Settings settings, JDBCDataStore dataStore) throws IOException {
+        updateRecords(csvState, settings, dataStore, null);
+    }
+
+    private void updateRecords(CSVState csvState, Settings settings, JDBCDataStore dataStore, CSVPartition partition) throws IOException {
                 
         // Read the data for nullable FK columns
-        try(BufferedReader reader = getReader(csvState.getCSVFile())) {
-            // skip first 2 lines
-            if(reader.ready()) { reader.readLine();}
-            if(reader.ready()) { reader.readLine();}
-            
+        try(BufferedReader reader = getDataReader(csvState.getCSVFile(), partition)) {
             StateGraph.ObjectGenerationVisitor currentVisitor = getOrCreateVisitor(settings);  
             
             JDBCSessionContext sc = dataStore == null ? null : dataStore.getSessionContext();
@@ -1541,7 +1871,7 @@ public class CSVLoader implements Callable {
             
             try(CSVParser parser = new CSVParser(reader, CSVFormat.DEFAULT)) {
                 Iterator<CSVRecord> csvIterator = parser.iterator();
-                int i = COUNTER_START, recordNo = i;
+                int i = skipRecords(entityIterator, partition), recordNo = COUNTER_START;
                 boolean csvPowered = false;
                 CSVRecord csvRecord = null;
                 while(csvIterator.hasNext() || entityIterator.hasNext()) {
@@ -1649,6 +1979,26 @@ public class CSVLoader implements Callable {
         }
     }     
     
+    /**
+     * Advances the entity generator to the first record of the partition, so the generated
+     * values are the same as when the whole file is processed.
+     *
+     * @param entityIterator entity generator
+     * @param partition being processed, can be null
+     * @return the record counter of the first record
+     */
+    private int skipRecords(Iterator entityIterator, CSVPartition partition) {
+        int i = COUNTER_START;
+        if(partition != null) {
+            while(i < partition.getFirstRecord() && entityIterator.hasNext()) {
+                entityIterator.next();
+                i++;
+            }
+        }
+
+        return i;
+    }
+
     private boolean isMyJob(int recordNo) {
         if(jobNo == null || recordNo%this.numThreads == jobNo) {
             return true;
@@ -1734,6 +2084,28 @@ public class CSVLoader implements Callable {
         return result;
     }
 
+    /**
+     * Returns a reader on the data section of the CSV file
+     *
+     * @param filePath of the CSV file
+     * @param partition range of the data section, if null then the whole data section
+     * @return reader positioned at the first record
+     * @throws IOException if the file cannot be read
+     */
+    private static BufferedReader getDataReader(String filePath, CSVPartition partition) throws IOException
+    {
+        if(partition != null) {
+            return partition.getReader();
+        }
+
+        BufferedReader reader = getReader(filePath);
+        // skip first 2 lines
+        if(reader.ready()) { reader.readLine();}
+        if(reader.ready()) { reader.readLine();}
+
+        return reader;
+    }
+
     private static BufferedReader getReader(String filePath) throws FileNotFoundException
     {
         File file = new File(filePath);
@@ -0,0 +1,218 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2020, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package tools.xor.service.exim;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.input.BoundedInputStream;
+
+/**
+ * A byte range of the data section of a CSV file that starts and ends on a record boundary.
+ * This allows the records of a CSV file to be split between parallel jobs, with each job
+ * parsing only its range of the file.
+ */
+public class CSVPartition
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NUM_HEADER_LINES = 2; // header and schema lines
+
+    private final File file;
+    private final long start;       // byte offset of the first record
+    private final long end;         // byte offset after the last record
+    private final int firstRecord;  // ordinal of the first record, starting from 1
+
+    public CSVPartition(File file, long start, long end, int firstRecord) {
+        this.file = file;
+        this.start = start;
+        this.end = end;
+        this.firstRecord = firstRecord;
+    }
+
+    public long getStart() {
+        return this.start;
+    }
+
+    public long getEnd() {
+        return this.end;
+    }
+
+    public int getFirstRecord() {
+        return this.firstRecord;
+    }
+
+    /**
+     * Get a reader on the records of this range. Only the bytes of the range are read from the file.
+     *
+     * @return reader positioned at the first record
+     * @throws IOException if the file cannot be read
+     */
+    public BufferedReader getReader() throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        channel.position(start);
+
+        return new BufferedReader(new InputStreamReader(new BoundedInputStream(Channels.newInputStream(channel), end-start)));
+    }
+
+    /**
+     * Resolve the file of a CSV file path. The path can be absolute or relative to the classpath.
+     *
+     * @param filePath of the CSV file
+     * @return file or null if the CSV file is not a file in the filesystem, for e.g., inside a jar
+     */
+    public static File getFile(String filePath) {
+        File file = new File(filePath);
+        if(file.isAbsolute()) {
+            return file;
+        }
+
+        URL url = CSVPartition.class.getClassLoader().getResource(filePath);
+        if(url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+
+        try {
+            return new File(url.toURI());
+        }
+        catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Split the data section of a CSV file into ranges of approximately equal size.
+     * The file is scanned once at the byte level to find the record boundaries, honoring
+     * quoted values that span lines. Empty lines are not counted as records, the same as
+     * the CSV parser.
+     *
+     * @param file CSV file with the header and schema lines
+     * @param count desired number of ranges
+     * @return ranges in file order, empty if the file has no data records
+     * @throws IOException if the file cannot be read
+     */
+    public static List<CSVPartition> split(File file, int count) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Splitter splitter = new Splitter(file, channel.size(), count);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+            long position = 0;
+            while(channel.read(buffer) != -1) {
+                buffer.flip();
+                while(buffer.hasRemaining()) {
+                    splitter.next(buffer.get(), position++);
+                }
+                buffer.clear();
+            }
+
+            return splitter.finish();
+        }
+    }
+
+    private static class Splitter {
+        private final File file;
+        private final long size;
+        private final int count;
+        private final List<CSVPartition> result = new ArrayList<>();
+
+        private int headerLines;
+        private long dataStart = -1;
+        private long rangeSize;
+        private long rangeStart;
+        private int rangeFirstRecord = 1;
+        private int records;
+
+        private boolean inQuotes;
+        private boolean pendingCR;  // a carriage return ends the line unless followed by a new line
+        private boolean hasContent; // the current line is not empty
+
+        Splitter(File file, long size, int count) {
+            this.file = file;
+            this.size = size;
+            this.count = count;
+        }
+
+        void next(byte b, long position) {
+            if(pendingCR) {
+                pendingCR = false;
+                if(b == '\n') {
+                    endLine(position+1);
+                    return;
+                }
+                endLine(position);
+            }
+
+            if(inQuotes) {
+                if(b == '"') {
+                    inQuotes = false;
+                }
+            } else if(b == '\n') {
+                endLine(position+1);
+                return;
+            } else if(b == '\r') {
+                pendingCR = true;
+                return;
+            } else if(b == '"' && dataStart != -1) {
+                // Quotes in the header and schema lines are not significant
+                inQuotes = true;
+            }
+            hasContent = true;
+        }
+
+        private void endLine(long lineEnd) {
+            if(dataStart == -1) {
+                if(++headerLines == NUM_HEADER_LINES) {
+                    dataStart = lineEnd;
+                    rangeStart = lineEnd;
+                    rangeSize = (size-dataStart)/count;
+                }
+            } else if(hasContent) {
+                records++;
+                if(lineEnd-rangeStart >= rangeSize && result.size() < count-1) {
+                    result.add(new CSVPartition(file, rangeStart, lineEnd, rangeFirstRecord));
+                    rangeStart = lineEnd;
+                    rangeFirstRecord = records+1;
+                }
+            }
+            hasContent = false;
+        }
+
+        List<CSVPartition> finish() {
+            // The last line need not be terminated
+            if(pendingCR || hasContent) {
+                pendingCR = false;
+                endLine(size);
+            }
+            if(dataStart != -1 && records >= rangeFirstRecord) {
+                result.add(new CSVPartition(file, rangeStart, size, rangeFirstRecord));
+            }
+
+            return result;
+        }
+    }
+}
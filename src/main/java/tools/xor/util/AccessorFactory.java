@@ -0,0 +1,334 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.util;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Generates accessors that read and write a property, and create an instance of a type,
+ * without going through reflection on each call.
+ *
+ * A public method or constructor is bound using LambdaMetafactory, so the call is as fast as
+ * a direct call once inlined. Fields, and methods or constructors that are not public,
+ * are bound to a MethodHandle that is made accessible once when the accessor is generated.
+ *
+ * If an accessor cannot be generated, null is returned and the member is recorded as a
+ * fallback, as the caller will then need to use reflection. The fallbacks are logged
+ * once and are available from getFallbacks().
+ *
+ * As with reflection, setting a primitive to null throws an IllegalArgumentException.
+ */
+public class AccessorFactory
+{
+    private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final Set<String> fallbacks = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Generate an accessor for a getter method
+     *
+     * @param context description of the property used for reporting a fallback
+     * @param method getter
+     * @return accessor or null if one could not be generated
+     */
+    public static Function getter(String context, Method method) {
+        if(method == null) {
+            return null;
+        }
+
+        try {
+            MethodHandles.Lookup caller = MethodHandles.lookup();
+            MethodHandle target = caller.findVirtual(
+                method.getDeclaringClass(),
+                method.getName(),
+                MethodType.methodType(method.getReturnType()));
+            MethodType func = target.type();
+            CallSite site = LambdaMetafactory.metafactory(
+                caller,
+                "apply",
+                MethodType.methodType(Function.class),
+                func.generic(), target, func);
+
+            return (Function) site.getTarget().invokeExact();
+        } catch (Throwable t) {
+            // Not public, so use a method handle
+        }
+
+        try {
+            method.setAccessible(true);
+            return new HandleGetter(MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE));
+        } catch (Exception e) {
+            return fallback(context, "getter", method, e);
+        }
+    }
+
+    /**
+     * Generate an accessor for a setter method
+     *
+     * @param context description of the property used for reporting a fallback
+     * @param method setter
+     * @return accessor or null if one could not be generated
+     */
+    public static BiConsumer setter(String context, Method method) {
+        if(method == null) {
+            return null;
+        }
+
+        try {
+            MethodHandles.Lookup caller = MethodHandles.lookup();
+            MethodHandle target = caller.findVirtual(
+                method.getDeclaringClass(),
+                method.getName(),
+                MethodType.methodType(Void.TYPE, method.getParameterTypes()[0]));
+            MethodType func = target.type();
+            MethodType samMethodType = func.changeParameterType(0, Object.class).changeParameterType(1, Object.class);
+            CallSite site = LambdaMetafactory.metafactory(
+                caller,
+                "accept",
+                MethodType.methodType(BiConsumer.class),
+                samMethodType, target, func);
+
+            return checkNull((BiConsumer) site.getTarget().invokeExact(), method.getParameterTypes()[0], method);
+        } catch (Throwable t) {
+            // Not public, so use a method handle
+        }
+
+        try {
+            method.setAccessible(true);
+            return checkNull(new HandleSetter(MethodHandles.lookup().unreflect(method).asType(SETTER_TYPE)), method.getParameterTypes()[0], method);
+        } catch (Exception e) {
+            return fallback(context, "setter", method, e);
+        }
+    }
+
+    /**
+     * Generate an accessor that reads a field
+     *
+     * @param context description of the property used for reporting a fallback
+     * @param field to read
+     * @return accessor or null if one could not be generated
+     */
+    public static Function fieldGetter(String context, Field field) {
+        if(field == null) {
+            return null;
+        }
+
+        try {
+            if(Modifier.isStatic(field.getModifiers())) {
+                throw new IllegalArgumentException("Static field is not an instance property");
+            }
+            field.setAccessible(true);
+            return new HandleGetter(MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE));
+        } catch (Exception e) {
+            return fallback(context, "field getter", field, e);
+        }
+    }
+
+    /**
+     * Generate an accessor that writes a field
+     *
+     * @param context description of the property used for reporting a fallback
+     * @param field to write
+     * @return accessor or null if one could not be generated
+     */
+    public static BiConsumer fieldSetter(String context, Field field) {
+        if(field == null) {
+            return null;
+        }
+
+        try {
+            if(Modifier.isStatic(field.getModifiers())) {
+                throw new IllegalArgumentException("Static field is not an instance property");
+            }
+            field.setAccessible(true);
+            return checkNull(new HandleSetter(MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE)), field.getType(), field);
+        } catch (Exception e) {
+            return fallback(context, "field setter", field, e);
+        }
+    }
+
+    /**
+     * Generate an accessor that creates an instance using the no-arg constructor
+     *
+     * @param clazz of the instance
+     * @return accessor or null if one could not be generated
+     */
+    public static Supplier constructor(Class<?> clazz) {
+        if(clazz == null) {
+            return null;
+        }
+
+        Constructor<?> constructor;
+        try {
+            if(Modifier.isAbstract(clazz.getModifiers())) {
+                throw new IllegalArgumentException("Cannot instantiate an abstract class");
+            }
+            constructor = clazz.getDeclaredConstructor();
+        } catch (Exception e) {
+            return fallback(clazz.getName(), "constructor", clazz, e);
+        }
+
+        try {
+            MethodHandles.Lookup caller = MethodHandles.lookup();
+            MethodHandle target = caller.findConstructor(clazz, MethodType.methodType(void.class));
+            CallSite site = LambdaMetafactory.metafactory(
+                caller,
+                "get",
+                MethodType.methodType(Supplier.class),
+                CONSTRUCTOR_TYPE, target, target.type());
+
+            return (Supplier) site.getTarget().invokeExact();
+        } catch (Throwable t) {
+            // Not public, so use a method handle
+        }
+
+        try {
+            constructor.setAccessible(true);
+            return new HandleConstructor(MethodHandles.lookup().unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE));
+        } catch (Exception e) {
+            return fallback(clazz.getName(), "constructor", constructor, e);
+        }
+    }
+
+    private static BiConsumer checkNull(BiConsumer setter, Class<?> valueType, Object member) {
+        if(valueType.isPrimitive()) {
+            return new PrimitiveSetter(setter, member);
+        }
+
+        return setter;
+    }
+
+    private static <T> T fallback(String context, String kind, Object member, Exception e) {
+        if(fallbacks.add(context + " " + kind)) {
+            logger.info(String.format("Using reflection for the %s of %s, unable to generate an accessor for %s: %s", kind, context, member, e.getMessage()));
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the properties and classes that are accessed using reflection,
+     * since an accessor could not be generated for them.
+     *
+     * @return sorted fallbacks
+     */
+    public static Set<String> getFallbacks() {
+        return Collections.unmodifiableSet(new TreeSet<>(fallbacks));
+    }
+
+    private static RuntimeException wrap(Throwable t) {
+        if(t instanceof Error) {
+            throw (Error)t;
+        }
+
+        return ClassUtil.wrapRun((Exception)t);
+    }
+
+    private static class HandleGetter implements Function<Object, Object> {
+        private final MethodHandle handle;
+
+        HandleGetter(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public Object apply(Object instance) {
+            try {
+                return handle.invokeExact(instance);
+            } catch (Throwable t) {
+                throw wrap(t);
+            }
+        }
+    }
+
+    private static class HandleSetter implements BiConsumer<Object, Object> {
+        private final MethodHandle handle;
+
+        HandleSetter(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void accept(Object instance, Object value) {
+            try {
+                handle.invokeExact(instance, value);
+            } catch (Throwable t) {
+                throw wrap(t);
+            }
+        }
+    }
+
+    private static class PrimitiveSetter implements BiConsumer<Object, Object> {
+        private final BiConsumer setter;
+        private final Object member;
+
+        PrimitiveSetter(BiConsumer setter, Object member) {
+            this.setter = setter;
+            this.member = member;
+        }
+
+        @Override
+        public void accept(Object instance, Object value) {
+            if(value == null) {
+                throw new IllegalArgumentException("Cannot set a null value using the primitive " + member);
+            }
+            setter.accept(instance, value);
+        }
+    }
+
+    private static class HandleConstructor implements Supplier<Object> {
+        private final MethodHandle handle;
+
+        HandleConstructor(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public Object get() {
+            try {
+                return handle.invokeExact();
+            } catch (Throwable t) {
+                throw wrap(t);
+            }
+        }
+    }
+}
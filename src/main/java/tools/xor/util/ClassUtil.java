@@ -82,6 +82,7 @@ public class ClassUtil {
     private static final String JAVASSIST_INDEXOF = "_$$_javassist_";
 
     private static final AtomicBoolean parallelDispatch = new AtomicBoolean(true);
+    private static final AtomicBoolean pipelinedDispatch = new AtomicBoolean(false);
     private static final RandomUtil randomUtil = new RandomUtil();
     
     static {
@@ -220,6 +221,20 @@ public class ClassUtil {
         return parallelDispatch.get();
     }
 
+    /**
+     * Only applicable if parallel dispatch is enabled. The child queries are
+     * started as the parent ids become available.
+     *
+     * @param value true if the child queries should be pipelined
+     */
+    public static void setPipelinedDispatch(boolean value) {
+        pipelinedDispatch.set(value);
+    }
+
+    public static boolean doPipelinedDispatch() {
+        return pipelinedDispatch.get();
+    }
+
     public static Class<?> getUnEnhanced(Class<?> clazz) {
         if(isEnhanced(clazz))
             return clazz.getSuperclass();
@@ -68,14 +68,26 @@ public class Constants {
 		public static final String MIGRATE_ENTITIES = "entities.to.migrate";
 		public static final String MIGRATE_RELATIONSHIPS = "migrate.relationships.entities";
 		public static final String MIGRATE_BATCH_SIZE = "migrate.batch.size";
+		public static final String MIGRATE_BATCH_LATENCY = "migrate.batch.latency";
+		public static final String MIGRATE_CONSUMER_MAX = "migrate.consumer.max";
+		public static final String MIGRATE_ENTITY_POOL_SIZE = "migrate.entity.pool.size";
 		public static final String MIGRATE_FILTER_PARTITION = "migrate.filter.partition";
 		public static final String INCLUDE_SUBCLASS = "include.subclass";
 		public static final String BATCH_SKIP = "batch.skip";
 		public static final String BATCH_COMMIT_SIZE = "batch.commit.size";
         public static final String IMPORTER_POOL_SIZE = "importer.pool.size";		
 		public static final String QUERY_POOL_SIZE = "query.pool.size";
+		public static final String QUERY_EXECUTOR = "query.executor";
 		public static final String QUERY_JOIN_TABLE = "query.join.table";
+		public static final String QUERY_JOIN_THRESHOLD = "query.join.threshold";
+		public static final String QUERY_PLAN_CACHE_SIZE = "query.plan.cache.size";
+		public static final String PROPERTY_PATH_CACHE_SIZE = "property.path.cache.size";
+		public static final String STATEMENT_CACHE_SIZE = "statement.cache.size";
+		public static final String STATEMENT_CACHE_EVICTION = "statement.cache.eviction";
+		public static final String FLUSH_POOL_SIZE = "flush.pool.size";
 		public static final String EXCEL_STREAMING = "excel.streaming";
+		public static final String SCHEMA_SNAPSHOT_DIR = "schema.snapshot.dir";
+		public static final String SCHEMA_SNAPSHOT_VERSION = "schema.snapshot.version";
 	}
   
   
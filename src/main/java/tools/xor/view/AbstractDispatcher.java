@@ -50,6 +50,16 @@ public abstract class AbstractDispatcher implements QueryDispatcher
 
     abstract protected void executeQueries(List<QueryTree> queries, QueryTreeInvocation queryInvocation);
 
+    /**
+     * A dispatcher that is able to start the child queries before the parent query
+     * has been fully read returns a listener to be notified of the parent ids.
+     *
+     * @return listener for the parent ids, null by default
+     */
+    protected IdBatchListener getIdBatchListener() {
+        return null;
+    }
+
     @Override public void execute ()
     {
         List<QueryTree> queries = new LinkedList<>();
@@ -112,7 +122,7 @@ public abstract class AbstractDispatcher implements QueryDispatcher
             try {
                 // Process the results
                 for (QueryTreeInvocation.RecordDelta delta : recordDeltas) {
-                    Object[] record = delta.getRecord();
+                    Object record = delta.getRecord();
                     BusinessObject anchorObject = queryTree.getRootObject(
                         record,
                         (BusinessObject)callInfo.getOutput(),
@@ -163,66 +173,145 @@ public abstract class AbstractDispatcher implements QueryDispatcher
 
         AggregateTree<QueryTree, InterQuery<QueryTree>> aggregateTree = disptacher.aggregateTree;
         CallInfo callInfo = disptacher.callInfo;
-        ObjectResolver resolver = disptacher.resolver;
 
         InterQuery parentEdge = null;
         if(query != null) {
             // get the parent edge if present
-            Iterator<InterQuery<QueryTree>> iter = aggregateTree.getInEdges(queryTree).iterator();
-            if (iter.hasNext()) {
-                parentEdge = iter.next();
-
-                DataStore po = callInfo.getSettings().getDataStore();
-                
+            parentEdge = getParentEdge(aggregateTree, queryTree);
+            if (parentEdge != null) {
                 // At this point we check if we need to proceed further depending on whether the parent
                 // query produced any results
                 Set parentIds = queryInvocation.getParentIds(parentEdge);
                 if(parentIds == null || parentIds.isEmpty()) {
                     return false;
                 }
-                queryInvocation.resolveQuery(parentEdge);
-
-                if(query.isDeferred()) {
-                    query.setQueryString(query.extractParameters());
+                if(QueryJoinAction.useQueryJoinTable(queryTree, parentIds, callInfo.getSettings())) {
+                    // Too many parent ids for an IN list, so the child query selects them from the join table
+                    DataStore po = callInfo.getSettings().getDataStore();
+                    po.populateQueryJoinTable(queryInvocation.getOrCreateInvocationId(queryTree), parentIds);
+                    queryInvocation.resolveQuery(parentEdge, InterQuery.JoinType.JOINTABLE);
+                } else {
+                    queryInvocation.resolveQuery(parentEdge);
                 }
-                po.evaluateDeferred(query, Query.getQueryType(query), queryInvocation);
+                evaluateDeferred(callInfo, query, queryInvocation);
             }
         }
 
-        List records =  null;
-        queryTree.prepare(callInfo, resolver, queryInvocation, parentEdge);
+        queryInvocation.start(aggregateTree, queryTree, disptacher.getIdBatchListener());
+        processRecords(disptacher, query, queryTree, queryInvocation, parentEdge);
+        queryInvocation.finish(aggregateTree, queryTree);
+
+        // execute actions
+        executeActions(disptacher, queryTree, queryInvocation);
+        
+        return true;
+    }
+
+    protected static InterQuery getParentEdge(AggregateTree<QueryTree, InterQuery<QueryTree>> aggregateTree, QueryTree queryTree) {
+        Iterator<InterQuery<QueryTree>> iter = aggregateTree.getInEdges(queryTree).iterator();
+
+        return iter.hasNext() ? iter.next() : null;
+    }
+
+    /**
+     * Create the provider query now that the parent ids are known
+     *
+     * @param callInfo of the operation
+     * @param query whose parent ids have been resolved
+     * @param queryInvocation holding the parent ids
+     */
+    protected static void evaluateDeferred(CallInfo callInfo, Query query, QueryTreeInvocation queryInvocation) {
+        DataStore po = callInfo.getSettings().getDataStore();
+
+        if(query.isDeferred()) {
+            query.setQueryString(query.extractParameters());
+        }
+        po.evaluateDeferred(query, Query.getQueryType(query), queryInvocation);
+    }
+
+    /**
+     * Execute the query and record the results in the QueryTreeInvocation as they are read.
+     * Can be invoked multiple times for the same QueryTree, once for each batch of parent ids.
+     *
+     * @param disptacher serial or parallel
+     * @param query to be executed
+     * @param queryTree modelling the query
+     * @param queryInvocation holding the results of the query executions
+     * @param parentEdge not null if this is a child query
+     */
+    protected static void processRecords(AbstractDispatcher disptacher,
+                                         Query query,
+                                         QueryTree queryTree,
+                                         QueryTreeInvocation queryInvocation,
+                                         InterQuery parentEdge) {
+
+        CallInfo callInfo = disptacher.callInfo;
+
+        queryTree.prepare(callInfo, disptacher.resolver, queryInvocation, parentEdge);
+        RecordResolver recordResolver = new RecordResolver(queryTree, queryInvocation);
+
         View view = queryTree.getView();
+        List records = null;
         if(view instanceof AggregateView) {
             records = ((AggregateView)view).getResults();
         }
-        if(query != null && records == null) {
-            records = query.getResultList(queryTree.getView(), callInfo.getSettings());
+
+        if(records != null) {
+            for (Object record : records) {
+                recordResolver.handle(record);
+            }
+        } else if(query != null) {
+            Integer fetchSize = queryTree.getFetchSize(callInfo.getSettings());
+            if(fetchSize != null) {
+                query.setFetchSize(fetchSize);
+            }
+            query.processResults(view, callInfo.getSettings(), recordResolver);
+        }
+    }
+
+    protected static void executeActions(AbstractDispatcher disptacher, QueryTree queryTree, QueryTreeInvocation queryInvocation) {
+        List<Action> actions = queryTree.getActions();
+        for(Action action: actions) {
+            action.execute(disptacher, queryInvocation, disptacher.callInfo.getSettings().getDataStore());
+        }
+    }
+
+    private static class RecordResolver implements RecordHandler.Columnar {
+
+        private final QueryTree queryTree;
+        private final QueryTreeInvocation queryInvocation;
+        private Map<String, Object> previous;
+        private ColumnBuffer previousBlock;
+        private int previousRow;
+
+        RecordResolver(QueryTree queryTree, QueryTreeInvocation queryInvocation) {
+            this.queryTree = queryTree;
+            this.queryInvocation = queryInvocation;
         }
 
-        // Check if this is a single column result
-        if(records.size() > 0) {
-            if(!records.get(0).getClass().isArray()) {
+        @Override public void handle (ColumnBuffer block, int row)
+        {
+            if(previousBlock == null && !queryTree.isIdentifierSelected()) {
                 throw new RuntimeException("Was the identifier column forgotten to be added to the subtype query?");
             }
+
+            queryTree.resolveField(block, row, previousBlock, previousRow, queryInvocation);
+            previousBlock = block;
+            previousRow = row;
         }
 
-        queryInvocation.start(aggregateTree, queryTree);
-        Map<String, Object> previous = null;
-        for (Object record : records) {
+        @Override public void handle (Object record)
+        {
+            // Check if this is a single column result
+            if(previous == null && !record.getClass().isArray()) {
+                throw new RuntimeException("Was the identifier column forgotten to be added to the subtype query?");
+            }
+
             previous = queryTree.resolveField(
                 null, // Not reconstituting at this phase
                 (Object[])record,
                 previous,
                 queryInvocation);
         }
-        queryInvocation.finish(aggregateTree, queryTree);
-
-        // execute actions
-        List<Action> actions = queryTree.getActions();
-        for(Action action: actions) {
-            action.execute(disptacher, queryInvocation, callInfo.getSettings().getDataStore());
-        }
-        
-        return true;
     }
 }
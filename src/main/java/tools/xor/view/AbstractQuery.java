@@ -32,6 +32,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -51,6 +52,7 @@ public abstract class AbstractQuery implements Query {
 	private Map<String, Integer> columnMap;
 	private String queryString;
 	private List<Map<String, Object>> batches;
+	private volatile boolean cancelled;
 
 	// We always refer to bind parameters by name
 	// Even positional parameters in the query need to have a name mapped
@@ -228,14 +230,68 @@ public abstract class AbstractQuery implements Query {
 		throw new UnsupportedOperationException("The implementation is required or the getResultList needs to overridden");
 	}
 
+	/**
+	 * Providers that can read the result incrementally should override this method.
+	 * By default the result is fully read before it is given to the handler.
+	 *
+	 * @param view of this operation
+	 * @param settings for this operation
+	 * @param handler that is given each record
+	 */
+	protected void processResultsInternal(View view, Settings settings, RecordHandler handler) {
+		for(Object record: getResultListInternal(view, settings)) {
+			checkCancelled();
+			handler.handle(record);
+		}
+	}
+
+	@Override
+	public void processResults(View view, Settings settings, RecordHandler handler) {
+		if(batches == null) {
+			processResultsInternal(view, settings, handler);
+		} else {
+			for(Map<String, Object> batch: batches) {
+				checkCancelled();
+				for(Map.Entry<String, Object> entry: batch.entrySet()) {
+					setParameter(entry.getKey(), entry.getValue());
+				}
+				processResultsInternal(view, settings, handler);
+			}
+		}
+	}
+
+	/**
+	 * Stops the processing of the results once the query has been cancelled.
+	 * Needed for providers that cannot interrupt a query that is running.
+	 */
+	protected void checkCancelled() {
+		if(cancelled) {
+			throw new CancellationException("The query has been cancelled");
+		}
+	}
+
+	@Override
+	public void cancel() {
+		// Not all providers support cancelling a running query, but the
+		// remaining results are not processed
+		this.cancelled = true;
+	}
+
+	@Override
+	public void setFetchSize(int fetchSize) {
+		// Not all providers support a fetch size
+	}
+
 	@SuppressWarnings("rawtypes")
 	@Override
 	public List getResultList(View view, Settings settings) {
+		checkCancelled();
 		if(batches == null) {
 			return getResultListInternal(view, settings);
 		} else {
 			List result = new LinkedList<>();
 			for(Map<String, Object> batch: batches) {
+				checkCancelled();
 				for(Map.Entry<String, Object> entry: batch.entrySet()) {
 					setParameter(entry.getKey(), entry.getValue());
 				}
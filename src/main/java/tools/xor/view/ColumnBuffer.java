@@ -0,0 +1,380 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.view;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A block of query result rows stored by column.
+ *
+ * The columns whose values are returned as Long, Integer, Double or Boolean by the
+ * driver are kept in primitive arrays, with a bitmap marking the null values, so the
+ * values are neither boxed nor is an array allocated per row. The values are boxed
+ * only when they are asked for.
+ * The other columns are kept as objects. The getter used to read them from the
+ * ResultSet is also decided once, for e.g., getString for a String column.
+ */
+public class ColumnBuffer
+{
+    public static final int DEFAULT_SIZE = 256;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final int OBJECT = 0;
+    private static final int LONG = 1;
+    private static final int INT = 2;
+    private static final int DOUBLE = 3;
+    private static final int BOOLEAN = 4;
+    private static final int STRING = 5;
+    private static final int DECIMAL = 6;
+    private static final int TIMESTAMP = 7;
+    private static final int DATE = 8;
+    private static final int TIME = 9;
+
+    private final int[] kinds;
+    private final Object[] data;   // primitive or Object array of each column
+    private final BitSet[] nulls;  // null values of the primitive columns
+    private int size;
+    private int capacity;
+
+    private ColumnBuffer(int[] kinds, int capacity) {
+        this.kinds = kinds;
+        this.capacity = capacity;
+        this.data = new Object[kinds.length];
+        this.nulls = new BitSet[kinds.length];
+
+        for(int i = 0; i < kinds.length; i++) {
+            switch(kinds[i]) {
+            case LONG:
+                data[i] = new long[capacity];
+                break;
+            case INT:
+                data[i] = new int[capacity];
+                break;
+            case DOUBLE:
+                data[i] = new double[capacity];
+                break;
+            case BOOLEAN:
+                data[i] = new boolean[capacity];
+                break;
+            default:
+                data[i] = new Object[capacity];
+            }
+            if(isPrimitive(kinds[i])) {
+                nulls[i] = new BitSet(capacity);
+            }
+        }
+    }
+
+    private static boolean isPrimitive(int kind) {
+        return kind >= LONG && kind <= BOOLEAN;
+    }
+
+    private void grow(int capacity) {
+        this.capacity = capacity;
+        for(int i = 0; i < kinds.length; i++) {
+            switch(kinds[i]) {
+            case LONG:
+                data[i] = Arrays.copyOf((long[])data[i], capacity);
+                break;
+            case INT:
+                data[i] = Arrays.copyOf((int[])data[i], capacity);
+                break;
+            case DOUBLE:
+                data[i] = Arrays.copyOf((double[])data[i], capacity);
+                break;
+            case BOOLEAN:
+                data[i] = Arrays.copyOf((boolean[])data[i], capacity);
+                break;
+            default:
+                data[i] = Arrays.copyOf((Object[])data[i], capacity);
+            }
+        }
+    }
+
+    /**
+     * @return number of rows in this block
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public int getColumnCount() {
+        return this.kinds.length;
+    }
+
+    public Row getRow(int row) {
+        return new Row(this, row);
+    }
+
+    /**
+     * Get the value of a column, boxed to the same type that ResultSet.getObject would return
+     *
+     * @param row index in this block
+     * @param column index, starts from 0
+     * @return column value
+     */
+    public Object getValue(int row, int column) {
+        if(isPrimitive(kinds[column]) && nulls[column].get(row)) {
+            return null;
+        }
+
+        switch(kinds[column]) {
+        case LONG:
+            return ((long[])data[column])[row];
+        case INT:
+            return ((int[])data[column])[row];
+        case DOUBLE:
+            return ((double[])data[column])[row];
+        case BOOLEAN:
+            return ((boolean[])data[column])[row];
+        default:
+            return ((Object[])data[column])[row];
+        }
+    }
+
+    /**
+     * Checks if the column has the same value in both rows, comparing the primitive
+     * values directly if possible.
+     *
+     * @param row index in this block
+     * @param other block of the other row, read by the same Reader
+     * @param otherRow index in the other block
+     * @param column index, starts from 0
+     * @return true if the values are equal or both are null
+     */
+    public boolean isSame(int row, ColumnBuffer other, int otherRow, int column) {
+        if(!isPrimitive(kinds[column])) {
+            Object value = ((Object[])data[column])[row];
+            Object otherValue = ((Object[])other.data[column])[otherRow];
+
+            return value == null ? otherValue == null : value.equals(otherValue);
+        }
+
+        boolean isNull = nulls[column].get(row);
+        if(isNull || other.nulls[column].get(otherRow)) {
+            return isNull && other.nulls[column].get(otherRow);
+        }
+
+        switch(kinds[column]) {
+        case LONG:
+            return ((long[])data[column])[row] == ((long[])other.data[column])[otherRow];
+        case INT:
+            return ((int[])data[column])[row] == ((int[])other.data[column])[otherRow];
+        case DOUBLE:
+            // Same as Double.equals
+            return Double.doubleToLongBits(((double[])data[column])[row]) == Double.doubleToLongBits(((double[])other.data[column])[otherRow]);
+        default:
+            return ((boolean[])data[column])[row] == ((boolean[])other.data[column])[otherRow];
+        }
+    }
+
+    /**
+     * Checks if the column value is different from the value in a row of another block
+     *
+     * @param row index in this block
+     * @param other block of the other row
+     * @param otherRow index in the other block
+     * @param column index, starts from 0
+     * @return true if the value has changed
+     */
+    public boolean isChanged(int row, ColumnBuffer other, int otherRow, int column) {
+        if(isCompatible(other)) {
+            return !isSame(row, other, otherRow, column);
+        }
+
+        Object value = getValue(row, column);
+        Object otherValue = other.getValue(otherRow, column);
+
+        return value == null ? otherValue != null : !value.equals(otherValue);
+    }
+
+    private boolean isCompatible(ColumnBuffer other) {
+        return this.kinds == other.kinds;
+    }
+
+    private void read(ResultSet rs, int row) throws SQLException {
+        for(int i = 0; i < kinds.length; i++) {
+            // JDBC columnIndex starts from 1
+            switch(kinds[i]) {
+            case LONG:
+                ((long[])data[i])[row] = rs.getLong(i+1);
+                break;
+            case INT:
+                ((int[])data[i])[row] = rs.getInt(i+1);
+                break;
+            case DOUBLE:
+                ((double[])data[i])[row] = rs.getDouble(i+1);
+                break;
+            case BOOLEAN:
+                ((boolean[])data[i])[row] = rs.getBoolean(i+1);
+                break;
+            case STRING:
+                ((Object[])data[i])[row] = rs.getString(i+1);
+                break;
+            case DECIMAL:
+                ((Object[])data[i])[row] = rs.getBigDecimal(i+1);
+                break;
+            case TIMESTAMP:
+                ((Object[])data[i])[row] = rs.getTimestamp(i+1);
+                break;
+            case DATE:
+                ((Object[])data[i])[row] = rs.getDate(i+1);
+                break;
+            case TIME:
+                ((Object[])data[i])[row] = rs.getTime(i+1);
+                break;
+            default:
+                ((Object[])data[i])[row] = rs.getObject(i+1);
+            }
+            if(isPrimitive(kinds[i]) && rs.wasNull()) {
+                nulls[i].set(row);
+            }
+        }
+    }
+
+    /**
+     * A row in a block, for access to a single row of the block.
+     */
+    public static class Row {
+        private final ColumnBuffer buffer;
+        private final int index;
+
+        private Row(ColumnBuffer buffer, int index) {
+            this.buffer = buffer;
+            this.index = index;
+        }
+
+        public ColumnBuffer getBuffer() {
+            return this.buffer;
+        }
+
+        public int getIndex() {
+            return this.index;
+        }
+
+        public Object getValue(int column) {
+            return buffer.getValue(index, column);
+        }
+
+        /**
+         * Checks if the column value is different from the value in the other row
+         *
+         * @param column index
+         * @param other row
+         * @return true if the value has changed
+         */
+        public boolean isChanged(int column, Row other) {
+            return buffer.isChanged(index, other.buffer, other.index, column);
+        }
+
+        /**
+         * @return the values of the row as an array
+         */
+        public Object[] toArray() {
+            Object[] result = new Object[buffer.getColumnCount()];
+            for(int i = 0; i < result.length; i++) {
+                result[i] = getValue(i);
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Reads a ResultSet into blocks. The storage of each column is decided once from
+     * the ResultSetMetaData, so it can be reused for every execution of the same statement.
+     */
+    public static class Reader {
+        private final int[] kinds;
+
+        public Reader(ResultSetMetaData rsmd) throws SQLException {
+            this.kinds = new int[rsmd.getColumnCount()];
+            for(int i = 0; i < kinds.length; i++) {
+                kinds[i] = getKind(rsmd.getColumnClassName(i+1));
+            }
+        }
+
+        private static int getKind(String className) {
+            if(Long.class.getName().equals(className)) {
+                return LONG;
+            } else if(Integer.class.getName().equals(className)) {
+                return INT;
+            } else if(Double.class.getName().equals(className)) {
+                return DOUBLE;
+            } else if(Boolean.class.getName().equals(className)) {
+                return BOOLEAN;
+            } else if(String.class.getName().equals(className)) {
+                return STRING;
+            } else if(BigDecimal.class.getName().equals(className)) {
+                return DECIMAL;
+            } else if(Timestamp.class.getName().equals(className)) {
+                return TIMESTAMP;
+            } else if(Date.class.getName().equals(className)) {
+                return DATE;
+            } else if(Time.class.getName().equals(className)) {
+                return TIME;
+            }
+
+            return OBJECT;
+        }
+
+        public int getColumnCount() {
+            return this.kinds.length;
+        }
+
+        /**
+         * Read the next block of rows. The block starts small and grows up to the
+         * capacity, so a short result does not allocate a full block. The last block
+         * is trimmed to its rows, as the block is kept till the results are reconstituted.
+         *
+         * @param rs positioned before the next row to read
+         * @param capacity maximum number of rows in the block
+         * @return the block, or null if there are no more rows
+         * @throws SQLException if the result cannot be read
+         */
+        public ColumnBuffer read(ResultSet rs, int capacity) throws SQLException {
+            ColumnBuffer buffer = null;
+            while(buffer == null || buffer.size < capacity) {
+                if(!rs.next()) {
+                    break;
+                }
+                if(buffer == null) {
+                    buffer = new ColumnBuffer(kinds, Math.min(INITIAL_CAPACITY, capacity));
+                } else if(buffer.size == buffer.capacity) {
+                    buffer.grow(Math.min(buffer.size * 2, capacity));
+                }
+                buffer.read(rs, buffer.size++);
+            }
+            if(buffer != null && buffer.size < buffer.capacity) {
+                buffer.grow(buffer.size);
+            }
+
+            return buffer;
+        }
+    }
+}
@@ -61,6 +61,9 @@ public class Function implements Comparable<Function> {
 
 	@XmlTransient
 	protected FunctionHandler functionHandler;
+
+	@XmlTransient
+	protected boolean generatedParams; // a parameter name is unique to this invocation
 	
 	/**
 	 * No-args constructor required for Unmarshalling purpose. Don't use this directly.
@@ -225,6 +228,7 @@ public class Function implements Comparable<Function> {
 				// We now have to update the parameter name with the modified parameter name
 				// so the function can use the modfied value
 				functionHandler.updateParamName(parameterName, key);
+				generatedParams = true;
 			}
 		}
 	}
@@ -241,10 +245,41 @@ public class Function implements Comparable<Function> {
         return true;
 	}
 
+	/**
+	 * Returns true if the query string refers to a parameter whose name was generated
+	 * for this invocation, so the query string cannot be reused by another invocation.
+	 *
+	 * @return true if a parameter name was generated
+	 */
+	public boolean hasGeneratedParams() {
+		return this.generatedParams;
+	}
+
 	public FunctionHandler getHandler() {
 		return this.functionHandler;
 	}
 
+	/**
+	 * A paged query needs a unique sort column last. If the order by functions are on
+	 * the root entity and do not include its id, then the id is sorted on last.
+	 *
+	 * @param orderBy order by functions of the query
+	 * @param idAttribute name of the identifier property of the root entity
+	 * @return true if the query is also sorted by the id
+	 */
+	public static boolean isOrderedById(List<Function> orderBy, String idAttribute) {
+		for(Function function: orderBy) {
+			if(!function.isOrderBy()) {
+				continue;
+			}
+			if(function.getAttribute().equals(idAttribute) || function.getAttribute().indexOf(Settings.PATH_DELIMITER) != -1) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
 	@Override
 	public int compareTo(Function o) {
 		return position-o.position;
@@ -0,0 +1,38 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.view;
+
+import java.util.Set;
+
+/**
+ * Notified of the parent ids of a QueryTree as they become available, so the
+ * child queries can be started before the parent query has completed.
+ */
+public interface IdBatchListener
+{
+    /**
+     * A batch of distinct ids has been collected for the given source fragment
+     *
+     * @param queryTree whose results produced the ids
+     * @param source fragment of the InterQuery edge(s) needing these ids
+     * @param ids batch of ids, never larger than QueryTreeInvocation#MAX_INLIST_SIZE
+     */
+    public void notify(QueryTree queryTree, QueryFragment source, Set ids);
+}
@@ -19,24 +19,35 @@
 
 package tools.xor.view;
 
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.persistence.EntityManager;
 import javax.persistence.Parameter;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 import tools.xor.AggregateAction;
 import tools.xor.Settings;
 
 
 public class JPAQuery extends AbstractQuery {
+	private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
 	
+	private static final String QUERY_TIMEOUT_HINT = "javax.persistence.query.timeout";
+	private static final String FETCH_SIZE_HINT = "org.hibernate.fetchSize";
+
 	private javax.persistence.Query jpaQuery;
 	private NativeQuery nativeQuery;
 	private Map<String, Object> paramValues = new HashMap<>();
 	private Set<String> namedParams;
+	private int fetchSize;
+	private EntityManager entityManager;
 
 	public JPAQuery(String queryString, javax.persistence.Query jpaQuery) {
 		this(queryString, jpaQuery, null);
@@ -88,9 +99,18 @@ public class JPAQuery extends AbstractQuery {
 	@SuppressWarnings("rawtypes")
 	@Override
 	protected List getResultListInternal(View view, Settings settings) {
+		checkCancelled();
 		if(isNativeQuery()) {
 			setParameters(settings, paramValues);
 		}
+		if(settings.getQueryTimeout() > 0) {
+			// JPA has no standard way to cancel a query, so let the database enforce it
+			jpaQuery.setHint(QUERY_TIMEOUT_HINT, settings.getQueryTimeout());
+		}
+		if(fetchSize > 0) {
+			// Ignored by the providers that do not understand the hint
+			jpaQuery.setHint(FETCH_SIZE_HINT, fetchSize);
+		}
 
 		return jpaQuery.getResultList();
 	}
@@ -175,7 +195,40 @@ public class JPAQuery extends AbstractQuery {
 		jpaQuery.setFirstResult(offset);
 	}
 
+	@Override
+	public void setFetchSize(int fetchSize) {
+		// The query might be deferred, so the hint is set when the query is executed
+		this.fetchSize = fetchSize;
+	}
+
 	public boolean isDeferred() {
 		return jpaQuery == null;
 	}
+
+	public void setEntityManager(EntityManager entityManager) {
+		this.entityManager = entityManager;
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+
+		if(entityManager == null) {
+			return;
+		}
+
+		// JPA has no API to cancel a running query, so we use the provider session
+		// if it supports it, e.g., Hibernate Session.cancelQuery()
+		try {
+			Object session = entityManager.getDelegate();
+			Method cancelQuery = session.getClass().getMethod("cancelQuery");
+			cancelQuery.invoke(session);
+		}
+		catch (NoSuchMethodException e) {
+			// Provider does not support cancellation
+		}
+		catch (Exception e) {
+			logger.warn("Unable to cancel the query: " + e.getMessage());
+		}
+	}
 }
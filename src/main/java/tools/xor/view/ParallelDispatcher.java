@@ -19,23 +19,46 @@
 
 package tools.xor.view;
 
+import java.lang.reflect.Method;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import tools.xor.CallInfo;
 import tools.xor.Settings;
 import tools.xor.service.DataStore;
 import tools.xor.util.ApplicationConfiguration;
+import tools.xor.util.ClassUtil;
 import tools.xor.util.Constants;
 import tools.xor.util.InterQuery;
 
 /**
- * Goes through each QueryTree and executes it serially.
+ * Executes the child QueryTree instances in parallel, once their parent query has completed.
+ *
+ * The queries are run on the executor provided by Settings#setQueryExecutor, or else on a
+ * shared executor configured using the query.executor and query.pool.size properties.
+ * If Settings#setQueryTimeout is set, the queries still running after that time are
+ * cancelled. The first failure of any query is thrown to the caller.
  */
 public class ParallelDispatcher extends AbstractDispatcher implements Callback
 {
+    private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
+
+    public static final String FIXED_EXECUTOR = "fixed";
+    public static final String VIRTUAL_EXECUTOR = "virtual";
+
     private final static int QUERY_POOL_SIZE;
     static {
         int poolSize = 4;
@@ -49,8 +72,104 @@ public class ParallelDispatcher extends AbstractDispatcher implements Callback
         QUERY_POOL_SIZE = poolSize;
     }      
 
-    private static ExecutorService qe = Executors.newFixedThreadPool(QUERY_POOL_SIZE);
+    private static ExecutorService qe = createExecutor();
     private CountDownLatch latch;
+    private ExecutorService executor;
+    private Queue<Future<?>> futures = new ConcurrentLinkedQueue<>();
+    private Map<QueryTree, Query> running = new ConcurrentHashMap<>();
+    private AtomicReference<Exception> failure = new AtomicReference<>();
+    private volatile boolean cancelled;
+
+    private static ExecutorService createExecutor() {
+        String executorType = FIXED_EXECUTOR;
+        if (ApplicationConfiguration.config().containsKey(Constants.Config.QUERY_EXECUTOR)) {
+            executorType = ApplicationConfiguration.config().getString(Constants.Config.QUERY_EXECUTOR);
+        }
+
+        if(VIRTUAL_EXECUTOR.equalsIgnoreCase(executorType)) {
+            // Virtual threads are only available from Java 21
+            try {
+                Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) method.invoke(null);
+            }
+            catch (Exception e) {
+                logger.warn("Virtual threads are not supported by this JVM, using a pool of size " + QUERY_POOL_SIZE);
+            }
+        }
+
+        return Executors.newFixedThreadPool(QUERY_POOL_SIZE);
+    }
+
+    protected void submit(QueryTree queryTree, QueryTreeInvocation queryTreeInvocation, Runnable task) {
+        submit(queryTree, queryTreeInvocation, task, executor);
+    }
+
+    /**
+     * Run the task of a QueryTree on the given executor
+     *
+     * @param queryTree whose query is executed by the task
+     * @param queryTreeInvocation holding the query results
+     * @param task that executes the query
+     * @param executor to run the task on
+     */
+    protected void submit(QueryTree queryTree, QueryTreeInvocation queryTreeInvocation, Runnable task, ExecutorService executor) {
+        if(cancelled) {
+            return;
+        }
+
+        futures.add(executor.submit(new CallbackTask(task, queryTree, queryTreeInvocation, this)));
+    }
+
+    /**
+     * Keep track of the query being executed, so it can be cancelled.
+     *
+     * @param queryTree being executed
+     * @param query provider query of the QueryTree
+     */
+    protected void register(QueryTree queryTree, Query query) {
+        running.put(queryTree, query);
+    }
+
+    /**
+     * Records the first failure and cancels the remaining queries.
+     *
+     * @param e cause of the failure
+     */
+    protected void fail(Exception e) {
+        if(failure.compareAndSet(null, e)) {
+            cancel();
+        }
+    }
+
+    /**
+     * @return true if the outstanding queries have been cancelled due to a failure or timeout
+     */
+    protected boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Cancel all the outstanding queries and release the caller.
+     */
+    protected void cancel() {
+        cancelled = true;
+
+        for(Future<?> future: futures) {
+            future.cancel(true);
+        }
+        for(Query query: running.values()) {
+            try {
+                query.cancel();
+            } catch (Exception e) {
+                logger.warn("Unable to cancel query: " + e.getMessage());
+            }
+        }
+
+        // None of the remaining queries will complete normally
+        while(latch.getCount() > 0) {
+            latch.countDown();
+        }
+    }
 
     private void validate(AggregateTree<QueryTree, InterQuery<QueryTree>> at) {
         // Check that a stored procedure does not populate the temp table
@@ -67,26 +186,65 @@ public class ParallelDispatcher extends AbstractDispatcher implements Callback
 
         validate(at);
         this.latch = new CountDownLatch(at.getVertices().size());
+
+        this.executor = callInfo.getSettings().getQueryExecutor();
+        if(this.executor == null) {
+            this.executor = qe;
+        }
     }
 
     public void complete(QueryTree queryTree, QueryTreeInvocation queryTreeInvocation) {
+        running.remove(queryTree);
         latch.countDown();
 
+        if(cancelled) {
+            return;
+        }
+
         // Execute the child queries
-        for(InterQuery<QueryTree> edge: aggregateTree.getOutEdges(queryTree)) {
-            QueryTree child = edge.getEnd();
-            CallbackTask ct = new CallbackTask(new QueryTreeProcessor(child, queryTreeInvocation, this), this);
-            qe.submit(ct);
+        try {
+            for (InterQuery<QueryTree> edge : aggregateTree.getOutEdges(queryTree)) {
+                dispatchChild(edge, queryTreeInvocation);
+            }
+        } catch (RuntimeException e) {
+            // for e.g., the executor rejected a child query
+            fail(e);
         }
     }
 
+    /**
+     * Called once the parent query of the edge has completed
+     *
+     * @param edge whose end is the child query
+     * @param queryTreeInvocation holding the parent query results
+     */
+    protected void dispatchChild(InterQuery<QueryTree> edge, QueryTreeInvocation queryTreeInvocation) {
+        QueryTree child = edge.getEnd();
+        submit(child, queryTreeInvocation, new QueryTreeProcessor(child, queryTreeInvocation, this));
+    }
+
+    /**
+     * Ensure we have initialized for DB access for the current thread
+     *
+     * @param settings of the current operation
+     * @return the DataStore for the current thread
+     */
+    protected static DataStore initThread(Settings settings) {
+        settings.getAggregateManager().configure(settings);
+
+        DataStore po = settings.getDataStore();
+        po.initForQuery();
+
+        return po;
+    }
+
     private static class QueryTreeProcessor implements Runnable {
 
         private final QueryTree queryTree;
         private final QueryTreeInvocation queryInvocation;
-        private final AbstractDispatcher dispatcher;
+        private final ParallelDispatcher dispatcher;
 
-        public QueryTreeProcessor(QueryTree queryTree, QueryTreeInvocation queryTreeInvocation, AbstractDispatcher dispatcher) {
+        public QueryTreeProcessor(QueryTree queryTree, QueryTreeInvocation queryTreeInvocation, ParallelDispatcher dispatcher) {
             this.queryTree = queryTree;
             this.queryInvocation = queryTreeInvocation;
             this.dispatcher = dispatcher;
@@ -94,15 +252,9 @@ public class ParallelDispatcher extends AbstractDispatcher implements Callback
 
         @Override public void run ()
         {
-            Settings settings = dispatcher.callInfo.getSettings();
-
-            // Ensure we have initialized for DB access for the current thread
-            settings.getAggregateManager().configure(settings);
-
-            DataStore po = settings.getDataStore();
-            po.initForQuery();
-
+            DataStore po = initThread(dispatcher.callInfo.getSettings());
             Query query = queryTree.createQuery(po);
+            dispatcher.register(queryTree, query);
 
             executeQuery(
                 dispatcher,
@@ -123,22 +275,22 @@ public class ParallelDispatcher extends AbstractDispatcher implements Callback
     private static class CallbackTask implements Runnable {
 
         private final Runnable task;
-        private final Callback callback;
+        private final ParallelDispatcher callback;
         private final QueryTree queryTree;
         private final QueryTreeInvocation queryTreeInvocation;
 
-        CallbackTask(QueryTreeProcessor task, ParallelDispatcher callback) {
+        CallbackTask(Runnable task, QueryTree queryTree, QueryTreeInvocation queryTreeInvocation, ParallelDispatcher callback) {
             this.task = task;
             this.callback = callback;
-            this.queryTree = task.getQueryTree();
-            this.queryTreeInvocation = task.getQueryInvocation();
+            this.queryTree = queryTree;
+            this.queryTreeInvocation = queryTreeInvocation;
         }
 
         public void run() {
             try {
                 task.run();
             } catch (Exception e) {
-                e.printStackTrace();
+                callback.fail(e);
             } finally {
                 callback.complete(queryTree, queryTreeInvocation);
             }
@@ -155,17 +307,27 @@ public class ParallelDispatcher extends AbstractDispatcher implements Callback
         // Start with executing the root queries
         while(!queries.isEmpty()) {
             QueryTree queryTree = queries.remove(0);
-            CallbackTask ct = new CallbackTask(new QueryTreeProcessor(queryTree, queryTreeInvocation, this), this);
-            qe.submit(ct);
+            submit(queryTree, queryTreeInvocation, new QueryTreeProcessor(queryTree, queryTreeInvocation, this));
         }
 
+        long timeout = callInfo.getSettings().getQueryTimeout();
         try {
             // Wait until all queries have completed
-            // TODO: implement timeout to get out of a stuck query
-            latch.await();
+            if(timeout > 0) {
+                if(!latch.await(timeout, TimeUnit.MILLISECONDS)) {
+                    fail(new TimeoutException("The queries did not complete within " + timeout + " ms"));
+                }
+            } else {
+                latch.await();
+            }
         }
         catch (InterruptedException e) {
-            e.printStackTrace();
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+
+        if(failure.get() != null) {
+            throw ClassUtil.wrapRun(failure.get());
         }
     }
 }
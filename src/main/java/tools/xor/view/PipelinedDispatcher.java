@@ -0,0 +1,217 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.view;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import tools.xor.CallInfo;
+import tools.xor.service.DataStore;
+import tools.xor.util.InterQuery;
+
+/**
+ * Starts the child queries while the parent query is still being read.
+ *
+ * The parent ids are handed over in batches of QueryTreeInvocation#MAX_INLIST_SIZE
+ * as the parent result is read, and each batch is executed as an IN list query
+ * against the child QueryTree. So the time taken to execute the AggregateTree
+ * approaches the time taken by its longest path instead of the sum of all its levels.
+ *
+ * The batches of a child QueryTree are executed in order by a single task, since the
+ * Query object of a QueryTree cannot be shared between threads. Different child
+ * QueryTree instances are executed in parallel.
+ *
+ * Child queries that need all the parent ids, for e.g., those that use the query join table
+ * or have their results already provided, are executed after the parent query
+ * has completed as is done by the ParallelDispatcher.
+ *
+ * If any query fails, the pipelines still waiting for parent ids are closed, so their
+ * tasks return even if the executor does not interrupt cancelled tasks.
+ *
+ * A pipeline holds its thread while waiting for the parent ids. So that the pipelines
+ * cannot take up all the threads of the bounded shared query executor, and starve the
+ * parent queries they are waiting on, the pipelines are run on a separate unbounded executor.
+ * If the request has its own executor (Settings#setQueryExecutor), all the queries run on it.
+ */
+public class PipelinedDispatcher extends ParallelDispatcher implements IdBatchListener
+{
+    private static final Set END_OF_BATCHES = new HashSet();
+
+    // Only created if the pipelines are run on the shared query executor
+    private static class PipelineExecutor {
+        private static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override public Thread newThread (Runnable r)
+            {
+                Thread thread = new Thread(r, "xor-pipeline");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private Map<QueryTree, QueryPipeline> pipelines = new ConcurrentHashMap<>();
+    private QueryTreeInvocation queryInvocation;
+    private final ExecutorService pipelineExecutor;
+
+    public PipelinedDispatcher(AggregateTree<QueryTree, InterQuery<QueryTree>> at, ObjectResolver resolver, CallInfo callInfo) {
+        super(at, resolver, callInfo);
+
+        ExecutorService executor = callInfo.getSettings().getQueryExecutor();
+        this.pipelineExecutor = executor != null ? executor : PipelineExecutor.INSTANCE;
+    }
+
+    @Override
+    protected IdBatchListener getIdBatchListener() {
+        return this;
+    }
+
+    @Override
+    protected void executeQueries(List<QueryTree> queries, QueryTreeInvocation queryTreeInvocation) {
+        this.queryInvocation = queryTreeInvocation;
+
+        super.executeQueries(queries, queryTreeInvocation);
+    }
+
+    private boolean isPipelined(InterQuery<QueryTree> edge) {
+        QueryTree child = edge.getEnd();
+
+        View view = child.getView();
+        if(view instanceof AggregateView && ((AggregateView)view).getResults() != null) {
+            return false;
+        }
+
+        return !QueryJoinAction.needsQueryJoinTable(child);
+    }
+
+    private QueryPipeline getPipeline(InterQuery<QueryTree> edge) {
+        QueryTree child = edge.getEnd();
+
+        QueryPipeline pipeline = pipelines.get(child);
+        if(pipeline == null) {
+            synchronized (pipelines) {
+                pipeline = pipelines.get(child);
+                if(pipeline == null) {
+                    pipeline = new QueryPipeline(edge);
+                    pipelines.put(child, pipeline);
+                    submit(child, queryInvocation, pipeline, pipelineExecutor);
+                }
+            }
+        }
+
+        return pipeline;
+    }
+
+    @Override
+    public void notify (QueryTree queryTree, QueryFragment source, Set ids)
+    {
+        for(InterQuery<QueryTree> edge: aggregateTree.getOutEdges(queryTree)) {
+            if(edge.getSource() == source && isPipelined(edge)) {
+                getPipeline(edge).add(ids);
+            }
+        }
+    }
+
+    @Override
+    protected void cancel() {
+        super.cancel();
+
+        // The parent of a pipeline might never complete, so release the waiting tasks
+        for(QueryPipeline pipeline: pipelines.values()) {
+            pipeline.close();
+        }
+    }
+
+    @Override
+    protected void dispatchChild(InterQuery<QueryTree> edge, QueryTreeInvocation queryTreeInvocation) {
+        if(isPipelined(edge)) {
+            // The parent has completed, so no more batches will arrive
+            getPipeline(edge).close();
+        } else {
+            super.dispatchChild(edge, queryTreeInvocation);
+        }
+    }
+
+    private class QueryPipeline implements Runnable {
+
+        private final InterQuery<QueryTree> parentEdge;
+        private final QueryTree queryTree;
+        private final BlockingQueue<Set> batches = new LinkedBlockingQueue<>();
+        private boolean closed;
+
+        QueryPipeline(InterQuery<QueryTree> parentEdge) {
+            this.parentEdge = parentEdge;
+            this.queryTree = parentEdge.getEnd();
+        }
+
+        void add(Set ids) {
+            batches.add(ids);
+        }
+
+        synchronized void close() {
+            if(!closed) {
+                closed = true;
+                batches.add(END_OF_BATCHES);
+            }
+        }
+
+        @Override public void run ()
+        {
+            DataStore po = initThread(callInfo.getSettings());
+            Query query = queryTree.createQuery(po);
+            register(queryTree, query);
+
+            boolean started = false;
+            try {
+                Set ids = batches.take();
+                while (ids != END_OF_BATCHES && !isCancelled()) {
+                    if (!started) {
+                        queryInvocation.start(aggregateTree, queryTree, PipelinedDispatcher.this);
+                        queryInvocation.resolveQuery(parentEdge, ids);
+                        evaluateDeferred(callInfo, query, queryInvocation);
+                        started = true;
+                    }
+                    else {
+                        queryInvocation.bindInList(query, ids);
+                    }
+                    processRecords(PipelinedDispatcher.this, query, queryTree, queryInvocation, parentEdge);
+
+                    ids = batches.take();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the parent ids", e);
+            }
+
+            if(started && !isCancelled()) {
+                queryInvocation.finish(aggregateTree, queryTree);
+                executeActions(PipelinedDispatcher.this, queryTree, queryInvocation);
+            }
+        }
+    }
+}
@@ -53,6 +53,22 @@ public interface Query extends DML {
 	@SuppressWarnings("rawtypes")
 	List getResultList(View view, Settings settings);
 
+	/**
+	 * Process the result from the query one record at a time. Providers that support it
+	 * hand over each record as it is read, so the handler can start working before the
+	 * whole result has been fetched.
+	 * @param view of this operation
+	 * @param settings for this operation
+	 * @param handler that is given each record
+	 */
+	void processResults(View view, Settings settings, RecordHandler handler);
+
+	/**
+	 * Cancel the query if it is executing and release its provider resources.
+	 * Can be called from a thread different from the one executing the query.
+	 */
+	void cancel();
+
 	/**
 	 * Get single result from the query
 	 * @param view of this operation
@@ -73,6 +89,14 @@ public interface Query extends DML {
 	 */
 	void setFirstResult(int offset);
 
+	/**
+	 * Set the number of rows fetched from the database in a round trip.
+	 * Providers that cannot control this ignore it.
+	 *
+	 * @param fetchSize number of rows
+	 */
+	void setFetchSize(int fetchSize);
+
 	/**
 	 * Get a list of the columns selected by this query
 	 * @return list of columns
@@ -25,6 +25,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
@@ -32,8 +33,10 @@ import org.apache.logging.log4j.Logger;
 
 import tools.xor.EntityType;
 import tools.xor.ExtendedProperty;
+import tools.xor.Property;
 import tools.xor.RelationshipType;
 import tools.xor.Settings;
+import tools.xor.providers.jdbc.DBTranslator;
 import tools.xor.service.DataStore;
 import tools.xor.util.Constants;
 import tools.xor.util.InterQuery;
@@ -64,17 +67,41 @@ public class QueryFromFragments implements QueryBuilderStrategy
             settings,
             this.queryTree);
 
-        StringBuilder oql = new StringBuilder(constructOQL(settings));
-        queryTree.setSelectString(oql.toString());
-        oql.append(buildWhereClause(settings, consolidatedFunctions));
-        oql.append(buildOrderClause(settings, consolidatedFunctions));
+        // The filters are selected only once, since selecting a filter can add user parameters
+        List<Function> filters = new LinkedList<>();
+        for(Function function : consolidatedFunctions) {
+            // Order By filters are handled separately
+            if(function.isOrderBy() || !function.isRelevant()) {
+                continue;
+            }
+            if(Function.doProcess(function, settings)) {
+                filters.add(function);
+            }
+        }
+
+        QueryPlanCache planCache = QueryPlanCache.getInstance();
+        String signature = planCache.isEnabled() ? getPlanSignature(settings, consolidatedFunctions, filters) : null;
+        QueryPlanCache.Plan plan = signature != null ? planCache.get(this.queryTree, signature) : null;
+
+        if(plan == null) {
+            StringBuilder oql = new StringBuilder(constructOQL(settings));
+            String selectString = oql.toString();
+            oql.append(buildWhereClause(settings, consolidatedFunctions, filters));
+            oql.append(buildOrderClause(settings, consolidatedFunctions));
+
+            plan = new QueryPlanCache.Plan(selectString, oql.toString());
+            if(signature != null) {
+                planCache.put(this.queryTree, signature, plan);
+            }
+        }
+        queryTree.setSelectString(plan.getSelectString());
 
         final Logger vb = LogManager.getLogger(Constants.Log.VIEW_BRANCH);
         if(vb.isDebugEnabled()) {
-            vb.debug("OQL of view [" + this.queryTree.getView().getName() + "] => " + oql.toString());
+            vb.debug("OQL of view [" + this.queryTree.getView().getName() + "] => " + plan.getQueryString());
         }
 
-        QueryHandle handle = new QueryHandle(oql.toString(),
+        QueryHandle handle = new QueryHandle(plan.getQueryString(),
             DataStore.QueryType.OQL,
             null);
 
@@ -147,10 +174,69 @@ public class QueryFromFragments implements QueryBuilderStrategy
         return result;
     }
 
-    private String buildWhereClause(Settings settings, List<Function> consolidatedFunctions) {
+    /**
+     * Captures everything other than the QueryTree that the generated query string depends on.
+     *
+     * @param settings user provided settings
+     * @param consolidatedFunctions functions of the view and the user
+     * @param filters functions that are part of the where clause
+     * @return signature of the query string, or null if the query string is not to be cached
+     */
+    private String getPlanSignature(Settings settings, List<Function> consolidatedFunctions, List<Function> filters) {
+        DataStore po = settings.getDataStore();
+
+        // A parameter name generated for this invocation makes the query string one of a kind,
+        // so it is not cached
+        for(Function function : filters) {
+            if(function.hasGeneratedParams()) {
+                return null;
+            }
+        }
+
+        // The translator decides the database specific clauses, for e.g., the order of nulls
+        DBTranslator translator = po == null ? null : po.getDBTranslator();
+
+        StringBuilder signature = new StringBuilder();
+        signature.append(po == null ? null : po.getClass().getName())
+            .append('|').append(translator == null ? null : translator.getClass().getName())
+            .append('|').append(Settings.doSQL(po))
+            .append('|').append(settings.getResolverType());
+
+        for(Function function : filters) {
+            signature.append("|F:").append(function.getQueryString());
+        }
+        for(Function function : consolidatedFunctions) {
+            if(function.isOrderBy()) {
+                signature.append("|O:").append(function.getQueryString());
+            }
+        }
+
+        // id filter
+        signature.append('|').append(builder.getEntity() != null && builder.getEntity().getIdentifierValue() != null);
+
+        // join with the parent query
+        Collection<InterQuery<QueryTree>> inEdges = builder.getAggregateTree().getInEdges(this.queryTree);
+        if(!inEdges.isEmpty()) {
+            QueryHandle parentHandle = inEdges.iterator().next().getStart().getQueryHandle();
+            signature.append('|').append(parentHandle == null ? null : parentHandle.getQueryType());
+        }
+
+        // paging
+        signature.append('|').append(settings.getLimit() != null);
+        Map<String, Object> nextToken = settings.getNextToken();
+        if(nextToken != null) {
+            for(String key: new TreeSet<>(nextToken.keySet())) {
+                signature.append("|T:").append(key).append(nextToken.get(key) == null ? "=null" : "");
+            }
+        }
+
+        return signature.toString();
+    }
+
+    private String buildWhereClause(Settings settings, List<Function> consolidatedFunctions, List<Function> filters) {
         StringBuilder queryString = new StringBuilder();
 
-        checkAndAddFilters(queryString, settings, consolidatedFunctions);
+        checkAndAddFilters(queryString, filters);
         checkAndAddId(queryString);
         checkAndAddInterQueryJoinPlaceholder(queryString);
         checkAndAddChunkStart(settings, queryString, consolidatedFunctions);
@@ -191,18 +277,9 @@ public class QueryFromFragments implements QueryBuilderStrategy
         }
     }
 
-    protected void checkAndAddFilters(StringBuilder queryString, Settings settings, List<Function> consolidatedFunctions) {
-
-        for(Function function : consolidatedFunctions) {
-
-            // Order By filters are handled separately
-            if(function.isOrderBy() || !function.isRelevant()) {
-                continue;
-            }
-            if(!Function.doProcess(function, settings)) {
-                continue;
-            }
+    protected void checkAndAddFilters(StringBuilder queryString, List<Function> filters) {
 
+        for(Function function : filters) {
             addWhereStep(queryString);
             queryString.append(function.getQueryString());
         }
@@ -218,7 +295,9 @@ public class QueryFromFragments implements QueryBuilderStrategy
     /*
      * refers to the columns used in the order by clause.
      * There needs to be atleast one unique column for this to work property.
-     * If there are multiple columns then the last column should be a unique column
+     * If there are multiple columns then the last column should be a unique column.
+     * When paging, the root query is always sorted by the id column last, so
+     * the id column is the unique column if the user did not provide one.
      *
      * Examples:
      * 1. Sort on unique column A
@@ -230,6 +309,11 @@ public class QueryFromFragments implements QueryBuilderStrategy
      *    and the query becomes
      *    AND ( B > pageColumn.B OR (B = pageColumn.B AND I > pageColumn.I))
      *
+     * A nullable sort column is sorted with its nulls after the non-null values, so
+     * for a nullable ascending column B the query becomes
+     *    AND ( (B > pageColumn.B OR B IS NULL) OR (B = pageColumn.B AND I > pageColumn.I))
+     * and if pageColumn.B is null
+     *    AND ( (B IS NULL AND I > pageColumn.I))
      *
      * @param settings user provided settings
      * @param selectClause the current query string that has been built so far
@@ -244,54 +328,159 @@ public class QueryFromFragments implements QueryBuilderStrategy
             return;
         }
 
-        List<Function> orderBy = new LinkedList<Function>();
-        for(Function function : consolidatedFunctions) {
-            if(function.isOrderBy()) {
-                orderBy.add(function);
+        // Only the keys that are part of the nextToken are compared
+        List<SeekKey> keys = new LinkedList<>();
+        for(SeekKey key: getSeekKeys(consolidatedFunctions)) {
+            if(nextToken.containsKey(key.attribute)) {
+                keys.add(key);
+            }
+        }
+        if(keys.isEmpty()) {
+            return;
+        }
+
+        // ( after(k1) OR ( k1 = v1 AND after(k2) ) OR ... )
+        StringBuilder condition = new StringBuilder();
+        StringBuilder equal = new StringBuilder();
+        for(SeekKey key: keys) {
+            Object value = nextToken.get(key.attribute);
+            String after = key.getAfterExp(value);
+            if(after != null) {
+                if(condition.length() > 0) {
+                    condition.append(" OR ");
+                }
+                condition.append("( ");
+                if(equal.length() > 0) {
+                    condition.append(equal).append(" AND ");
+                }
+                condition.append(after).append(" )");
             }
+
+            if(equal.length() > 0) {
+                equal.append(" AND ");
+            }
+            equal.append(key.getEqualExp(value));
         }
 
         addWhereStep(queryString);
-        queryString.append( " ( ");
-        for(int i = 0; i < orderBy.size(); i++) {
-            Function f = orderBy.get(i);
-            // AND ( B > pageColumn.B OR (B = pageColumn.B AND I > pageColumn.I))
-
-            if(i == 0) {
-                queryString.append( f.getNormalizedName() );
-                queryString.append( getDirection(f) + ":" + QueryFragment.NEXTTOKEN_PARAM_PREFIX + f.getAttribute());
-            }
+        if(condition.length() == 0) {
+            // The last row had null values for all the keys, so there are no more rows
+            queryString.append(" 1 = 0 ");
+        } else {
+            queryString.append(" ( ").append(condition).append(" ) ");
+        }
+    }
 
-            if(i > 0) {
-                queryString.append( " OR ( " + getEqualOrderByExp(i-1, orderBy) );
-                queryString.append( " AND " + f.getNormalizedName() + getDirection(f) + ":" + QueryFragment.NEXTTOKEN_PARAM_PREFIX + f.getAttribute());
-                queryString.append( " ) ");
+    /**
+     * Paging requires the root query to have a total order, so a user provided
+     * order is followed by the id of the root entity.
+     *
+     * @param settings user provided settings
+     * @return true if the root query is being paged
+     */
+    private boolean isSeekRoot(Settings settings) {
+        if(builder.getAggregateTree().getRoot() != this.queryTree) {
+            return false;
+        }
+
+        return settings.getLimit() != null || (settings.getNextToken() != null && !settings.getNextToken().isEmpty());
+    }
+
+    private List<SeekKey> getSeekKeys(List<Function> consolidatedFunctions) {
+        QueryFragment root = ((QueryTree<QueryFragment, IntraQuery<QueryFragment>>)this.queryTree).getRoot();
+        EntityType entityType = root.getEntityType();
+
+        List<SeekKey> result = new LinkedList<>();
+        for(Function function : consolidatedFunctions) {
+            if(function.isOrderBy()) {
+                result.add(new SeekKey(function.getNormalizedName(),
+                    function.getAttribute(),
+                    !(function.getHandler() instanceof AscHandler),
+                    isNullable(entityType, function.getAttribute())));
             }
         }
-        queryString.append( " ) ");
+
+        // The ORDER BY clause is grouped by alias, so the id can only be the last sort
+        // column if all the other sort columns are on the root entity
+        if(builder.getAggregateTree().getRoot() == this.queryTree
+            && entityType.getIdentifierProperty() != null
+            && Function.isOrderedById(consolidatedFunctions, entityType.getIdentifierProperty().getName())) {
+            result.add(new SeekKey(root.getId(), entityType.getIdentifierProperty().getName(), false, false));
+        }
+
+        return result;
     }
 
-    private String getDirection(Function function) {
-        if(function.functionHandler instanceof AscHandler) {
-            return " > ";
-        } else {
-            return " < ";
+    /*
+     * A column of a primitive type cannot have a null value, even if it is not declared as required
+     */
+    private static boolean isNullable(EntityType entityType, String attribute) {
+        Property property = entityType.getProperty(attribute);
+        if(property != null && property.getType().getInstanceClass() != null
+            && property.getType().getInstanceClass().isPrimitive()) {
+            return false;
         }
+
+        return property == null || property.isNullable();
     }
 
-    private String getEqualOrderByExp(int endPos, List<Function> orderBy) {
-        // 	Create an equals condition for all the orderBy fields until endPos
+    private static class SeekKey {
+        private final String name;
+        private final String attribute;
+        private final boolean descending;
+        private final boolean nullable;
+
+        SeekKey(String name, String attribute, boolean descending, boolean nullable) {
+            this.name = name;
+            this.attribute = attribute;
+            this.descending = descending;
+            this.nullable = nullable;
+        }
+
+        private String getParam() {
+            return ":" + QueryFragment.NEXTTOKEN_PARAM_PREFIX + attribute;
+        }
+
+        /*
+         * Condition for the rows that sort after the given value
+         * Returns null if no row can sort after this value
+         */
+        String getAfterExp(Object value) {
+            if(value == null) {
+                return descending ? name + " IS NOT NULL" : null;
+            }
 
-        StringBuilder result = new StringBuilder("");
-        for(int i = 0; i <= endPos; i++) {
-            Function f = orderBy.get(i);
-            if(i > 0) {
-                result.append(" AND ");
+            if(descending) {
+                return name + " < " + getParam();
+            } else if(nullable) {
+                return "(" + name + " > " + getParam() + " OR " + name + " IS NULL)";
+            } else {
+                return name + " > " + getParam();
             }
-            result.append( f.getNormalizedName() + " = : " + QueryFragment.NEXTTOKEN_PARAM_PREFIX + f.getAttribute());
         }
 
-        return result.toString();
+        String getEqualExp(Object value) {
+            return value == null ? name + " IS NULL" : name + " = " + getParam();
+        }
+
+        /*
+         * Nulls are sorted as if they are larger than any value. The clause is only
+         * needed if the database sorts them differently by default.
+         * If the database is not known, the rows are first sorted on whether the value
+         * is null, since the default null ordering differs between the databases.
+         */
+        String getOrderExp(String orderString, DBTranslator translator) {
+            if(!nullable) {
+                return orderString;
+            }
+
+            if(translator == null) {
+                return "CASE WHEN " + name + " IS NULL THEN 1 ELSE 0 END" + (descending ? " DESC" : " ASC")
+                    + QueryBuilder.COMMA_DELIMITER + orderString;
+            }
+
+            return orderString + translator.getNullsLargestClause(descending);
+        }
     }
 
     private void checkAndAddOpenPropertyJoins(StringBuilder queryString) {
@@ -412,6 +601,7 @@ public class QueryFromFragments implements QueryBuilderStrategy
         }
 
             // filter order clauses
+        boolean isSeekRoot = isSeekRoot(settings);
         Map<String, List<String>> overridden = new HashMap<>();
         for (Function function : consolidatedFunctions) {
             if (function.isOrderBy()) {
@@ -430,6 +620,24 @@ public class QueryFromFragments implements QueryBuilderStrategy
             }
         }
 
+        // A page needs to end at the same row irrespective of the database, so the
+        // null ordering and the order of the rows with the same sort values is fixed
+        if(isSeekRoot && !overridden.isEmpty()) {
+            DBTranslator translator = po != null ? po.getDBTranslator() : null;
+            overridden.clear();
+            for(SeekKey key: getSeekKeys(consolidatedFunctions)) {
+                if(key.name.indexOf(Settings.PATH_DELIMITER) != -1) {
+                    String alias = key.name.substring(0, key.name.indexOf(Settings.PATH_DELIMITER));
+                    List<String> orderClauses = overridden.get(alias);
+                    if(orderClauses == null) {
+                        orderClauses = new LinkedList<>();
+                        overridden.put(alias, orderClauses);
+                    }
+                    orderClauses.add(key.getOrderExp(key.name + (key.descending ? " DESC" : " ASC"), translator));
+                }
+            }
+        }
+
         // Override the default values where applicable
         for(Map.Entry<String, List<String>> entry: overridden.entrySet()) {
             if(fragmentOrder.containsKey(entry.getKey())) {
@@ -4,6 +4,8 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import tools.xor.Settings;
+import tools.xor.service.AbstractDataStore;
 import tools.xor.service.DataStore;
 import tools.xor.util.ApplicationConfiguration;
 import tools.xor.util.Constants;
@@ -15,12 +17,22 @@ public class QueryJoinAction implements Action
 
     public final static String JOIN_TABLE_NAME;
 
+    // Number of parent ids above which a SQL child query is joined using the query join table
+    // instead of an IN list. A value of 0 disables this.
+    public final static int JOIN_THRESHOLD;
+
     static {
         if (ApplicationConfiguration.config().containsKey(Constants.Config.QUERY_JOIN_TABLE)) {
             JOIN_TABLE_NAME = ApplicationConfiguration.config().getString(Constants.Config.QUERY_JOIN_TABLE);
         } else {
             JOIN_TABLE_NAME = Query.QUERY_JOIN_TABLENAME;
         }
+
+        if (ApplicationConfiguration.config().containsKey(Constants.Config.QUERY_JOIN_THRESHOLD)) {
+            JOIN_THRESHOLD = ApplicationConfiguration.config().getInt(Constants.Config.QUERY_JOIN_THRESHOLD);
+        } else {
+            JOIN_THRESHOLD = 0;
+        }
     }
 
     public QueryJoinAction(Set<InterQuery> edgesToProcess) {
@@ -40,6 +52,52 @@ public class QueryJoinAction implements Action
         return result;
     }
 
+    private static int getJoinThreshold(Settings settings) {
+        return settings.getQueryJoinThreshold() != null ? settings.getQueryJoinThreshold() : JOIN_THRESHOLD;
+    }
+
+    /**
+     * A SQL child query joined to its parent using an IN list, can instead be joined using the query join table.
+     * This is done if there are too many parent ids, so the child query is executed once instead of
+     * once for every QueryTreeInvocation#MAX_INLIST_SIZE parent ids.
+     * The query join table needs to be present in the database.
+     *
+     * @param child query tree
+     * @param parentIds ids returned by the parent query
+     * @param settings of the operation having the threshold
+     * @return true if the query join table should be used
+     */
+    public static boolean useQueryJoinTable(QueryTree child, Set parentIds, Settings settings) {
+        int threshold = getJoinThreshold(settings);
+        if(threshold <= 0 || parentIds.size() <= threshold) {
+            return false;
+        }
+
+        Query query = child.getQuery();
+        return query != null && query.isSQL() && Query.isDeferred(query.getQueryString());
+    }
+
+    /**
+     * Subquery that replaces the IN list of a child query that uses the query join table.
+     * The rows are looked up using the invocation id of the child query, so each child query
+     * gets its own copy of the parent ids.
+     *
+     * @param parentIds ids returned by the parent query
+     * @return subquery selecting the parent ids
+     */
+    public static String getJoinTableSubquery(Set parentIds) {
+        String idColumn = AbstractDataStore.QUERYJOIN_ID_INT_COL;
+        if(parentIds.iterator().next() instanceof String) {
+            idColumn = AbstractDataStore.QUERYJOIN_ID_STR_COL;
+        }
+
+        return String.format("SELECT %s FROM %s WHERE %s = :%s",
+            idColumn,
+            JOIN_TABLE_NAME,
+            AbstractDataStore.QUERYJOIN_INVOC_COL,
+            QueryFragment.INVOCATION_ID_PARAM);
+    }
+
     @Override public void execute (AbstractDispatcher dispatcher, QueryTreeInvocation qti, DataStore po)
     {
         // To make it work with all types of parent queries, we
@@ -0,0 +1,181 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.view;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tools.xor.util.ApplicationConfiguration;
+import tools.xor.util.Constants;
+
+/**
+ * Holds the query strings generated for a QueryTree, so they are not rebuilt
+ * every time a view is queried with the same filters.
+ *
+ * A plan is keyed by the QueryTree of the cached AggregateTree of a view, from which the
+ * QueryTree being built was copied, and a signature of all the settings that affect
+ * the query string.
+ * The number of plans is bounded and the least recently used plan is evicted first.
+ */
+public class QueryPlanCache
+{
+    public static final int DEFAULT_SIZE = 512;
+
+    private static final QueryPlanCache INSTANCE;
+
+    static {
+        int size = DEFAULT_SIZE;
+        if (ApplicationConfiguration.config().containsKey(Constants.Config.QUERY_PLAN_CACHE_SIZE)) {
+            size = ApplicationConfiguration.config().getInt(Constants.Config.QUERY_PLAN_CACHE_SIZE);
+        }
+        INSTANCE = new QueryPlanCache(size);
+    }
+
+    private final int maxSize;
+    private final Map<PlanKey, Plan> plans;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public static QueryPlanCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Create a plan cache
+     *
+     * @param maxSize maximum number of plans, a value of 0 disables the cache
+     */
+    public QueryPlanCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.plans = new LinkedHashMap<PlanKey, Plan>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PlanKey, Plan> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public Plan get(QueryTree queryTree, String signature) {
+        Plan result;
+        synchronized (plans) {
+            result = plans.get(new PlanKey(queryTree.getTemplate(), signature));
+        }
+
+        if(result == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+
+        return result;
+    }
+
+    public void put(QueryTree queryTree, String signature, Plan plan) {
+        synchronized (plans) {
+            plans.put(new PlanKey(queryTree.getTemplate(), signature), plan);
+        }
+    }
+
+    /**
+     * Remove the plans of a view, needed when the view is reloaded.
+     *
+     * @param viewName name of the view
+     */
+    public void invalidate(String viewName) {
+        synchronized (plans) {
+            Iterator<PlanKey> iter = plans.keySet().iterator();
+            while(iter.hasNext()) {
+                View view = iter.next().queryTree.getView();
+                if(view != null && viewName.equals(view.getName())) {
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (plans) {
+            plans.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (plans) {
+            return plans.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public static class Plan {
+        private final String selectString;
+        private final String queryString;
+
+        public Plan(String selectString, String queryString) {
+            this.selectString = selectString;
+            this.queryString = queryString;
+        }
+
+        public String getSelectString() {
+            return this.selectString;
+        }
+
+        public String getQueryString() {
+            return this.queryString;
+        }
+    }
+
+    private static class PlanKey {
+        private final QueryTree queryTree;
+        private final String signature;
+
+        PlanKey(QueryTree queryTree, String signature) {
+            this.queryTree = queryTree;
+            this.signature = signature;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(queryTree) * 31 + signature.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if( !(other instanceof PlanKey)) {
+                return false;
+            }
+
+            PlanKey key = (PlanKey) other;
+            return queryTree == key.queryTree && signature.equals(key.signature);
+        }
+    }
+}
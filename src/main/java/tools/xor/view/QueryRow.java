@@ -0,0 +1,248 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.view;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A record of a query result that is accessed by the full path of its columns.
+ *
+ * The position of each path is kept in a Layout that is shared by all the records
+ * of a QueryTree, so the values of the record are neither copied nor hashed per row.
+ * The record is either an array or a row of a ColumnBuffer.
+ */
+public class QueryRow extends AbstractMap<String, Object>
+{
+    private final Layout layout;
+    private final Object[] record;
+    private final ColumnBuffer block;
+    private final int row;
+
+    public QueryRow(Layout layout, Object[] record) {
+        this.layout = layout;
+        this.record = record;
+        this.block = null;
+        this.row = -1;
+    }
+
+    public QueryRow(Layout layout, ColumnBuffer block, int row) {
+        this.layout = layout;
+        this.record = null;
+        this.block = block;
+        this.row = row;
+    }
+
+    private Object getRecordValue(int position) {
+        return record != null ? record[position] : block.getValue(row, position);
+    }
+
+    public Layout getLayout() {
+        return this.layout;
+    }
+
+    /**
+     * Get the value of a column by its index in the layout
+     *
+     * @param index of the column in the layout
+     * @return column value
+     */
+    public Object getValue(int index) {
+        return getRecordValue(layout.columns[index]);
+    }
+
+    /**
+     * Checks if the column value is different from the value in the other row.
+     * Both rows need to have the same layout.
+     *
+     * @param index of the column in the layout
+     * @param other row to compare against
+     * @return true if the value has changed
+     */
+    public boolean isChanged(int index, QueryRow other) {
+        if(block != null && other.block != null) {
+            return block.isChanged(row, other.block, other.row, layout.columns[index]);
+        }
+
+        Object currentValue = getValue(index);
+        Object previousValue = other.getValue(index);
+
+        if(currentValue == previousValue) {
+            return false;
+        }
+        if(currentValue == null ^ previousValue == null) {
+            return true;
+        }
+
+        return !currentValue.equals(previousValue);
+    }
+
+    @Override
+    public Object get(Object key) {
+        Integer position = layout.positions.get(key);
+
+        return position == null ? null : getRecordValue(position);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return layout.positions.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return layout.paths.length;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override public Iterator<Entry<String, Object>> iterator ()
+            {
+                return new Iterator<Entry<String, Object>>() {
+                    private int index;
+
+                    @Override public boolean hasNext ()
+                    {
+                        return index < layout.paths.length;
+                    }
+
+                    @Override public Entry<String, Object> next ()
+                    {
+                        if(!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, Object> entry = new SimpleImmutableEntry<>(layout.paths[index], getValue(index));
+                        index++;
+
+                        return entry;
+                    }
+                };
+            }
+
+            @Override public int size ()
+            {
+                return layout.paths.length;
+            }
+        };
+    }
+
+    /**
+     * Position of each column path in the query record. Created once per QueryTree
+     * and shared by all its rows.
+     */
+    public static class Layout {
+        private final Object source;                  // definition the layout was built from
+        private final String[] paths;                 // distinct column paths
+        private final int[] columns;                  // record position of each path
+        private final Map<String, Integer> positions; // record position by path
+        private final List<String> propertyPaths;     // paths that need to be reconstituted
+        private final Map<String, Set<String>> pathsByPrefix = new ConcurrentHashMap<>();
+
+        /**
+         * Create a layout
+         *
+         * @param source definition, used to check if the layout needs to be rebuilt
+         * @param positions record position by path. If a path is repeated, the last position is used
+         * @param propertyPaths paths that need to be reconstituted
+         */
+        public Layout(Object source, LinkedHashMap<String, Integer> positions, List<String> propertyPaths) {
+            this.source = source;
+            this.positions = positions;
+            this.propertyPaths = propertyPaths;
+
+            this.paths = new String[positions.size()];
+            this.columns = new int[positions.size()];
+            int i = 0;
+            for(Map.Entry<String, Integer> entry: positions.entrySet()) {
+                paths[i] = entry.getKey();
+                columns[i++] = entry.getValue();
+            }
+        }
+
+        public boolean isBuiltFrom(Object source) {
+            return this.source == source;
+        }
+
+        public int size() {
+            return this.paths.length;
+        }
+
+        public String getPath(int index) {
+            return this.paths[index];
+        }
+
+        /**
+         * @param index of the column in the layout
+         * @return position of the column in the query record
+         */
+        public int getColumn(int index) {
+            return this.columns[index];
+        }
+
+        /**
+         * @param path of the column
+         * @return position of the column in the query record, -1 if the path is not present
+         */
+        public int getPosition(String path) {
+            Integer position = positions.get(path);
+
+            return position == null ? -1 : position;
+        }
+
+        public List<String> getPropertyPaths() {
+            return this.propertyPaths;
+        }
+
+        /**
+         * Returns the property paths starting with the given prefix. The result is
+         * cached since consecutive rows usually differ at the same prefix.
+         * The layout is shared by the queries that run in parallel, so the cache
+         * is concurrent. Threads racing on a prefix compute the same set.
+         *
+         * @param prefix of the property paths
+         * @return unmodifiable set of property paths
+         */
+        public Set<String> getPropertyPaths(String prefix) {
+            Set<String> result = pathsByPrefix.get(prefix);
+            if(result == null) {
+                result = new HashSet<>();
+                for(String propertyPath: propertyPaths) {
+                    if(propertyPath.startsWith(prefix)) {
+                        result.add(propertyPath);
+                    }
+                }
+                result = Collections.unmodifiableSet(result);
+                pathsByPrefix.put(prefix, result);
+            }
+
+            return result;
+        }
+    }
+}
@@ -154,7 +154,11 @@ public class QueryStringHelper
             temp.add(narrowedFunction);
         }
         if(queryTree.getView() != null && queryTree.getView().getFunction() != null) {
-            temp.addAll(queryTree.getView().getFunction());
+            // The view functions are shared, so work on a copy since normalization
+            // and parameter renaming modify the function
+            for(Function function : queryTree.getView().getFunction()) {
+                temp.add(function.copy());
+            }
         }
 
         // We populate only those filters for while all the attributes can be found in
@@ -25,10 +25,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
@@ -39,6 +42,7 @@ import tools.xor.BusinessObject;
 import tools.xor.CallInfo;
 import tools.xor.EntityType;
 import tools.xor.Property;
+import tools.xor.PropertyPath;
 import tools.xor.Settings;
 import tools.xor.Type;
 import tools.xor.service.DataStore;
@@ -71,6 +75,7 @@ public class QueryTree<V extends QueryFragment, E extends IntraQuery<V>> extends
 	private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
 
 	private static final int START_POS = 0;
+	private static final Object UNRESOLVED = new Object(); // step without a QueryTree edge property
 
 	private Type      aggregateType;
 	private String    name;
@@ -80,8 +85,13 @@ public class QueryTree<V extends QueryFragment, E extends IntraQuery<V>> extends
 	private QueryHandle handle;       // Handle to the details needed to construct the Query object
 	private String    selectString;
 	private View      view; // view associated with this QueryTree, needed for functions
+	private QueryRow.Layout rowLayout; // position of the columns in the query result row
+	private QueryTree template;       // QueryTree this was copied from, used to look up its query plan
+	private Integer   fetchSize;      // overrides the fetch size of the view
 	private List<Action> actions = new LinkedList<>(); // perform any processing after a query has executed and before
 	                              // any child queries are processed
+	private Map<String, ReconstitutionPath> reconstitutionPaths = new ConcurrentHashMap<>();
+	private Map<String, String> deepestCollections = new ConcurrentHashMap<>();
 
 	public QueryTree (EntityType rootType, View view) {
 		this.aggregateType = rootType;
@@ -123,6 +133,8 @@ public class QueryTree<V extends QueryFragment, E extends IntraQuery<V>> extends
 	public QueryTree copy() {
 		QueryTree<V, E> result = new QueryTree<>((EntityType)this.aggregateType, this.view);
 		result.setName(this.name);
+		result.template = getTemplate();
+		result.fetchSize = this.fetchSize;
 
 		Map<V, V> oldNew = new HashMap<>();
 		for(V fragment: getVertices()) {
@@ -150,6 +162,39 @@ public class QueryTree<V extends QueryFragment, E extends IntraQuery<V>> extends
 		}
 	}
 
+	/**
+	 * Get the QueryTree of the cached AggregateTree that this QueryTree was copied from.
+	 * The query plans built for a copy are shared by all the copies of the same QueryTree.
+	 *
+	 * @return original QueryTree, or this QueryTree if it is not a copy
+	 */
+	public QueryTree getTemplate() {
+		return this.template != null ? this.template : this;
+	}
+
+	public void setFetchSize(Integer fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * The number of rows fetched in a round trip by the query of this QueryTree.
+	 * In order of precedence, it is the value set on this QueryTree, on its view,
+	 * or on the settings of the request.
+	 *
+	 * @param settings of the request
+	 * @return fetch size, or null to use the driver default
+	 */
+	public Integer getFetchSize(Settings settings) {
+		if(this.fetchSize != null) {
+			return this.fetchSize;
+		}
+		if(this.view != null && this.view.getFetchSize() != null) {
+			return this.view.getFetchSize();
+		}
+
+		return settings.getFetchSize();
+	}
+
 	public List<String> getSelectedColumns() {
 		List<String> result = new LinkedList<>();
 		for(QueryField field: fields) {
@@ -176,47 +221,63 @@ public class QueryTree<V extends QueryFragment, E extends IntraQuery<V>> extends
 	}
 	
 	public Object getQueryValue(Object[] queryResultRow, String path) {
+		int position = getQueryPosition(path);
+
+		return position == -1 ? null : queryResultRow[position];
+	}	
+
+	public Object getQueryValue(ColumnBuffer.Row queryResultRow, String path) {
+		int position = getQueryPosition(path);
+
+		return position == -1 ? null : queryResultRow.getValue(position);
+	}
+
+	private int getQueryPosition(String path) {
 		QueryField field = attributeToFieldMap.get(path);
 		if(field != null) {
-			return queryResultRow[field.getPosition()];
+			return field.getPosition();
 		} else {
-			int position = this.query.getColumnPosition(path);
-			if(position == -1) {
-				return null;
-			}
-			return queryResultRow[position];
+			return this.query.getColumnPosition(path);
+		}
+	}
+
+	private Object getRecordValue(Object record, String path) {
+		if(record instanceof ColumnBuffer.Row) {
+			return getQueryValue((ColumnBuffer.Row)record, path);
 		}
-	}	
+
+		return getQueryValue((Object[])record, path);
+	}
 
 	public BusinessObject getRootObject (Object record, BusinessObject entity, QueryTreeInvocation queryInvocation) throws Exception {
 		BusinessObject rootObject = null;
 
-		if(ClassUtil.getDimensionCount(record) == 1) {
-			Object[] queryRow = (Object[])record;
+		if(record instanceof ColumnBuffer.Row || ClassUtil.getDimensionCount(record) == 1) {
+			Object queryRow = record;
 
 			Object idValue = null;
 			String anchorPath = getRoot().getAnchorPath();
 			if(((EntityType)this.aggregateType).getIdentifierProperty() != null) {
 				String idPropertyName = ((EntityType)this.aggregateType).getIdentifierProperty().getName();
-				idValue = getQueryValue(queryRow, anchorPath+idPropertyName);
+				idValue = getRecordValue(queryRow, anchorPath+idPropertyName);
 			}
 			
 			// We need to get the dynamic type, so we have to get the dynamic shape
 			Shape shape = entity.getObjectCreator().getShape();
             Type type = shape.getType(((EntityType)this.aggregateType).getEntityName());
-            String entityName = (String) getQueryValue(queryRow, QueryFragment.ENTITY_TYPE_ATTRIBUTE);
+            String entityName = (String) getRecordValue(queryRow, QueryFragment.ENTITY_TYPE_ATTRIBUTE);
             if(entityName != null) {
                 type = shape.getType(entityName.trim());
             }
 
 			/*
 			Type type = ((EntityType)this.aggregateType).getShape().getExternalType(this.aggregateType.getName());
-			String entityName = (String) getQueryValue(queryRow, QueryFragment.ENTITY_TYPE_ATTRIBUTE);
+			String entityName = (String) getRecordValue(queryRow, QueryFragment.ENTITY_TYPE_ATTRIBUTE);
 			if(entityName != null) {
 				type = ((EntityType)this.aggregateType).getShape().getExternalType(entityName.trim());
 			}
 			
-			String entityName = (String) getQueryValue(queryRow, QueryFragment.ENTITY_TYPE_ATTRIBUTE);
+			String entityName = (String) getRecordValue(queryRow, QueryFragment.ENTITY_TYPE_ATTRIBUTE);
 			Type type = entity.getType();
 			if(entityName != null) {
 				// This is padded with space based on the largest type name if a CASE statement is used
@@ -248,41 +309,126 @@ public class QueryTree<V extends QueryFragment, E extends IntraQuery<V>> extends
 		return rootObject;
 	}
 
-	public Map<String, Object> resolveField(BusinessObject root, Object[] queryResultRow, Map<String, Object> previousResult, QueryTreeInvocation queryInvocation) {
-		Map<String, Object> propertyResult = new HashMap<>();
-		Set<String> propertyPaths = new HashSet<>();
-
+	/**
+	 * The layout is built once from the fields (system generated query) or from the
+	 * columns (user specified query) and shared by all the rows of the result.
+	 *
+	 * @return layout of the query result row
+	 */
+	private QueryRow.Layout getRowLayout() {
 		// system generated query
 		if(this.fields.size() > 0) {
-			for (QueryField field : this.fields) {
-				propertyResult.put(field.getFullPath(), queryResultRow[field.getPosition()]);
-			}
-
-			for (String propertyPath : propertyResult.keySet()) {
-				QueryField field = attributeToFieldMap.get(propertyPath);
-				if (field.isAugmenter()) {
-					continue;
+			if(rowLayout == null || !rowLayout.isBuiltFrom(this.fields)) {
+				LinkedHashMap<String, Integer> positions = new LinkedHashMap<>();
+				for (QueryField field : this.fields) {
+					positions.put(field.getFullPath(), field.getPosition());
 				}
 
-				propertyPaths.add(propertyPath);
+				List<String> propertyPaths = new ArrayList<>();
+				for (String propertyPath : positions.keySet()) {
+					QueryField field = attributeToFieldMap.get(propertyPath);
+					if (field.isAugmenter()) {
+						continue;
+					}
+
+					propertyPaths.add(propertyPath);
+				}
+				rowLayout = new QueryRow.Layout(this.fields, positions, propertyPaths);
 			}
 		} // user specified query
-		else if(getQuery().getColumns().size() > 0) {
+		else {
 			List<String> columns = getQuery().getColumns();
-			for(int i = 0; i < columns.size(); i++) {
-				propertyResult.put(columns.get(i), queryResultRow[i]);
+			if(rowLayout == null || !rowLayout.isBuiltFrom(columns)) {
+				LinkedHashMap<String, Integer> positions = new LinkedHashMap<>();
+				List<String> propertyPaths = new ArrayList<>();
+				if(columns != null) {
+					for (int i = 0; i < columns.size(); i++) {
+						positions.put(columns.get(i), i);
+					}
+
+					for (String path : positions.keySet()) {
+						if (!QueryFragment.systemFields.contains(Settings.getBaseName(path))) {
+							propertyPaths.add(path);
+						}
+					}
+				}
+				rowLayout = new QueryRow.Layout(columns, positions, propertyPaths);
 			}
+		}
+
+		return rowLayout;
+	}
 
-			for(String path: columns) {
-				if (!QueryFragment.systemFields.contains(Settings.getBaseName(path))) {
-					propertyPaths.add(path);
+	public Map<String, Object> resolveField(BusinessObject root, Object[] queryResultRow, Map<String, Object> previousResult, QueryTreeInvocation queryInvocation) {
+		return resolveField(new QueryRow(getRowLayout(), queryResultRow), queryResultRow, previousResult, queryInvocation);
+	}
+
+	/**
+	 * Same as {@link #resolveField(BusinessObject, Object[], Map, QueryTreeInvocation)}, but the
+	 * row is referred to by its position in the ColumnBuffer and its values are read
+	 * from the buffer only when needed.
+	 *
+	 * @param block the rows are read into
+	 * @param row position of the row in the block
+	 * @param previousBlock block of the previous row, null if this is the first row
+	 * @param previousRow position of the previous row in its block
+	 * @param queryInvocation invocation state
+	 */
+	public void resolveField(ColumnBuffer block, int row, ColumnBuffer previousBlock, int previousRow, QueryTreeInvocation queryInvocation) {
+		QueryRow.Layout layout = getRowLayout();
+
+		// Identify which objects have changed
+		Set<String> changed;
+		if(previousBlock != null) {
+			changed = new HashSet<>();
+			for(int i = 0; i < layout.size(); i++) {
+				if(block.isChanged(row, previousBlock, previousRow, layout.getColumn(i))) {
+					changed.add(layout.getPath(i));
 				}
 			}
+		} else {
+			changed = new HashSet<>(layout.getPropertyPaths());
+		}
+
+		String lcp = getChangedLCP(changed);
+		changed = layout.getPropertyPaths(lcp);
+
+		// Record this result to be used later on for reconstitution
+		queryInvocation.addRecordDelta(this, changed, lcp, layout, block, row);
+
+		for(String propertyPath: changed) {
+			// Notify the queryTreeInvocation visitor of the changed values
+			if(queryInvocation.isVisited(propertyPath)) {
+				queryInvocation.visit(propertyPath, block.getValue(row, layout.getPosition(propertyPath)));
+			}
 		}
+	}
+
+	/**
+	 * Needed to find the object a row refers to.
+	 *
+	 * @return true if the identifier of the aggregate type is part of the query
+	 */
+	public boolean isIdentifierSelected() {
+		Property identifier = ((EntityType)this.aggregateType).getIdentifierProperty();
+
+		return identifier == null || getQueryPosition(getRoot().getAnchorPath() + identifier.getName()) != -1;
+	}
+
+	private Map<String, Object> resolveField(QueryRow propertyResult, Object queryResultRow, Map<String, Object> previousResult, QueryTreeInvocation queryInvocation) {
+		QueryRow.Layout layout = propertyResult.getLayout();
+		List<String> propertyPaths = layout.getPropertyPaths();
 
 		// Identify which objects have changed
 		Set<String> changed = new HashSet<>();
-		if(previousResult != null) {
+		if(previousResult instanceof QueryRow && ((QueryRow)previousResult).getLayout() == layout) {
+			QueryRow previousRow = (QueryRow) previousResult;
+			for(int i = 0; i < layout.size(); i++) {
+				if(propertyResult.isChanged(i, previousRow)) {
+					changed.add(layout.getPath(i));
+				}
+			}
+		} else if(previousResult != null) {
 			for(Map.Entry<String, Object> entry: previousResult.entrySet()) {
 				// Meta fields (list index etc) should be skipped
 				//if(!propertyPaths.contains(entry.getKey())) {
@@ -303,9 +449,24 @@ public class QueryTree<V extends QueryFragment, E extends IntraQuery<V>> extends
 				changed.add(entry.getKey());
 			}
 		} else {
-			changed = propertyPaths;
+			changed.addAll(propertyPaths);
 		}
 
+		String lcp = getChangedLCP(changed);
+		changed = layout.getPropertyPaths(lcp);
+
+		// Record this result to be used later on for reconstitution
+		queryInvocation.addRecordDelta(this, changed, propertyResult, lcp, queryResultRow);
+
+		for(String propertyPath: changed) {
+			// Notify the queryTreeInvocation visitor of the changed values
+			queryInvocation.visit(propertyPath, propertyResult.get(propertyPath));
+		}
+
+		return propertyResult;
+	}
+
+	private String getChangedLCP(Set<String> changed) {
 		// We are probably adding duplicate entries in a collection
 		// to enable this select an additional column that distinguishes this duplicate value
 		// for e.g., a column representing a list index
@@ -317,23 +478,7 @@ public class QueryTree<V extends QueryFragment, E extends IntraQuery<V>> extends
 		// and update all the properties rooted at the least common prefix
 		// We need to do this since we need to initialize all those fields even if they
 		// are not considered to be changed by checking the previous row.
-		String lcp = getLCP(new LinkedList<>(changed));
-		changed = new HashSet<>();
-		for(String propertyPath: propertyPaths) {
-			if(propertyPath.startsWith(lcp)) {
-				changed.add(propertyPath);
-			}
-		}
-
-		// Record this result to be used later on for reconstitution
-		queryInvocation.addRecordDelta(this, changed, propertyResult, lcp, queryResultRow);
-
-		for(String propertyPath: changed) {
-			// Notify the queryTreeInvocation visitor of the changed values
-			queryInvocation.visit(propertyPath, propertyResult.get(propertyPath));
-		}
-
-		return propertyResult;
+		return getLCP(new ArrayList<>(changed));
 	}
 
 	public String getDeepestCollection(String path) {
@@ -341,6 +486,17 @@ public class QueryTree<V extends QueryFragment, E extends IntraQuery<V>> extends
 			return path;
 		}
 
+		// The result only depends on the structure of the tree
+		String result = deepestCollections.get(path);
+		if(result == null) {
+			result = findDeepestCollection(path);
+			deepestCollections.put(path, result);
+		}
+
+		return result;
+	}
+
+	private String findDeepestCollection(String path) {
 		FragmentAnchor fragmentAnchor = findFragment(path);
 		if(fragmentAnchor != null) {
 			QueryFragment fragment = fragmentAnchor.fragment;
@@ -552,6 +708,78 @@ public class QueryTree<V extends QueryFragment, E extends IntraQuery<V>> extends
 		return result;
 	}
 
+	/**
+	 * Returns the compiled form of a result column path used to reconstitute its value.
+	 * The compiled form is cached, since the same columns are reconstituted for every row.
+	 *
+	 * @param fullPropertyPath path of the column in the query result
+	 * @return compiled path
+	 */
+	public ReconstitutionPath getReconstitutionPath(String fullPropertyPath) {
+		ReconstitutionPath result = reconstitutionPaths.get(fullPropertyPath);
+		if(result == null) {
+			result = new ReconstitutionPath(fullPropertyPath);
+			reconstitutionPaths.put(fullPropertyPath, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * A result column path relative to the root of this QueryTree, along with the
+	 * values derived from each of its steps
+	 */
+	public class ReconstitutionPath {
+		private final PropertyPath propertyPath;  // path relative to the root
+		private final String[] attributePrefixes; // full path of a step suffixed by the delimiter
+		private final AtomicReferenceArray<Object> domainProperties; // resolved lazily, shared by the threads reading the result
+
+		private ReconstitutionPath(String fullPropertyPath) {
+			// adjust for ancestor path in child queries
+			this.propertyPath = PropertyPath.compile(makeRelative(fullPropertyPath));
+			this.attributePrefixes = new String[propertyPath.size()];
+			this.domainProperties = new AtomicReferenceArray<>(propertyPath.size());
+
+			String anchorPath = getRoot().getAnchorPath();
+			for(int i = 0; i < propertyPath.size(); i++) {
+				attributePrefixes[i] = anchorPath + propertyPath.getPrefix(i) + Settings.PATH_DELIMITER;
+			}
+		}
+
+		public PropertyPath getPropertyPath() {
+			return this.propertyPath;
+		}
+
+		/**
+		 * Returns the path of an attribute of the object at the given step
+		 *
+		 * @param index of the step
+		 * @param attribute name, for e.g., the identifier or a natural key
+		 * @return full path of the attribute in the query result
+		 */
+		public String getAttributePath(int index, String attribute) {
+			return attributePrefixes[index] + attribute;
+		}
+
+		/**
+		 * Returns the property of the QueryTree edge for the given step
+		 *
+		 * @param index of the step
+		 * @return domain property
+		 */
+		public Property getDomainProperty(int index) {
+			// Resolved lazily as reconstitution might not need all the steps
+			Object result = domainProperties.get(index);
+			if(result == null) {
+				Property property = getProperty(propertyPath.getPrefix(index));
+				result = property != null ? property : UNRESOLVED;
+				domainProperties.set(index, result);
+			}
+
+			return result == UNRESOLVED ? null : (Property) result;
+		}
+	}
+
 	/**
 	 * Make the absolute path relative to this QueryTree.
 	 *
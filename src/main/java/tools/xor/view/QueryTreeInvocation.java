@@ -20,6 +20,7 @@
 package tools.xor.view;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -29,12 +30,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentMap;
 
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import tools.xor.AbstractTypeMapper;
 import tools.xor.BusinessObject;
-import tools.xor.EntityKey;
-import tools.xor.SurrogateEntityKey;
 import tools.xor.Type;
 import tools.xor.util.InterQuery;
 
@@ -57,16 +57,17 @@ public class QueryTreeInvocation
                                               // If a query does not have an entry here after resolveQuery
                                               // has been processed, that means it is a SUBQUERY join till
                                               // the root node
+    private Map<Query, Integer> inListSize;   // number of PARENT_INLIST bind parameters in the query string
 
     private Map<String, List<BusinessObject>> objectsByPath; // Used for stitching child objects
                                                              // The parent objects are obtained by getting
                                                              // the full path from the source fragment of the InterQuery edge
 
-    private Map<EntityKey, BusinessObject>    queryObjects; // Unique object per id and path
+    private ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<Object, BusinessObject>>> queryObjects; // Unique object per path, type and id
     private Map<QueryTree, List<RecordDelta>> recordDeltas;
     private Map<QueryFragment, QueryVisitor>  visitors; // used during a QueryTree's resolveField calls
     private Map<String, QueryVisitor>         visitorsByPath;
-    private Map<QueryTree, String>            invocationIds; // Safe to use QueryTree as we use a copy of the AggregateTree
+    private ConcurrentMap<QueryTree, String>  invocationIds; // Safe to use QueryTree as we use a copy of the AggregateTree
 
     private static final Base64.Encoder BASE64_URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
 
@@ -76,6 +77,7 @@ public class QueryTreeInvocation
         this.parentIdList = new ConcurrentHashMap<>();
         this.lastParentId = new ConcurrentHashMap<>();
         this.idList = new ConcurrentHashMap<>();
+        this.inListSize = new ConcurrentHashMap<>();
         this.visitors = new ConcurrentHashMap<>();
         this.visitorsByPath = new ConcurrentHashMap<>();
         this.objectsByPath = new ConcurrentHashMap<>();
@@ -90,7 +92,8 @@ public class QueryTreeInvocation
             // generate a GUID invocation id that is 128 bits in length in base64 format
             UUID uuid = UUID.randomUUID();
             byte[] bytes = getBytesFromUUID(uuid);
-            invocationIds.put(queryTree, BASE64_URL_ENCODER.encodeToString(bytes));
+            // Child queries running in parallel can ask for the same invocation id
+            invocationIds.putIfAbsent(queryTree, BASE64_URL_ENCODER.encodeToString(bytes));
         }
 
         return invocationIds.get(queryTree);
@@ -120,29 +123,46 @@ public class QueryTreeInvocation
         private Set<String> changed; // the fields that have new information
         private Map<String, Object> propertyResult; // information from result set keyed by full path
         private String lcp;
-        private Object[] record;
+        private Object record;
 
-        public RecordDelta(Set<String> changed, Map<String, Object> propertyResult, String lcp, Object[] record) {
+        // A row of a ColumnBuffer is only referred to by its position, the row is
+        // viewed as a record and a map only when the results are reconstituted
+        private QueryRow.Layout layout;
+        private ColumnBuffer block;
+        private int row;
+
+        public RecordDelta(Set<String> changed, Map<String, Object> propertyResult, String lcp, Object record) {
             this.changed = changed;
             this.propertyResult = propertyResult;
             this.lcp = lcp;
             this.record = record;
         }
 
+        public RecordDelta(Set<String> changed, String lcp, QueryRow.Layout layout, ColumnBuffer block, int row) {
+            this.changed = changed;
+            this.lcp = lcp;
+            this.layout = layout;
+            this.block = block;
+            this.row = row;
+        }
+
         public Set<String> getChanged() {
             return this.changed;
         }
 
         public Map<String, Object> getPropertyResult() {
-            return this.propertyResult;
+            return block != null ? new QueryRow(layout, block, row) : this.propertyResult;
         }
 
         public String getLCP() {
             return this.lcp;
         }
 
-        public Object[] getRecord() {
-            return this.record;
+        /**
+         * @return an array or a ColumnBuffer.Row
+         */
+        public Object getRecord() {
+            return block != null ? block.getRow(row) : this.record;
         }
     }
 
@@ -152,42 +172,84 @@ public class QueryTreeInvocation
      * @param edge for which the query string needs to be updated for the edge end
      */
     public void resolveQuery(InterQuery<QueryTree> edge) {
+        resolveQuery(edge, getJoinType(edge));
+    }
 
-        QueryTree queryTree = edge.getEnd();
-        InterQuery<QueryTree> parentEdge = edge;
-
-        // since query is resolved in a BFS manner, we only need to join with the immediate parent
-        InterQuery.JoinType joinType = getJoinType(parentEdge);
+    /**
+     * Update the query string for the child query using the given join type
+     *
+     * @param edge for which the query string needs to be updated for the edge end
+     * @param joinType how the child query is joined with the parent ids
+     */
+    public void resolveQuery(InterQuery<QueryTree> edge, InterQuery.JoinType joinType) {
+        resolveQuery(edge, getParentIds(edge), joinType);
+    }
 
-        if(parentEdge != null) {
-            idList.put(queryTree.getQuery(), getParentIds(parentEdge));
+    /**
+     * Update the query string for the child query using only a batch of the parent ids.
+     * Used when the child query is executed while the parent query is still being read.
+     * The size of the IN list is fixed by the first batch, and subsequent batches
+     * are bound using {@link #bindInList(Query, Set)}.
+     *
+     * @param edge for which the query string needs to be updated for the edge end
+     * @param ids batch of parent ids
+     */
+    public void resolveQuery(InterQuery<QueryTree> edge, Set ids) {
+        if(QueryJoinAction.needsQueryJoinTable(edge.getEnd())) {
+            throw new RuntimeException("A child query using the query join table needs all the parent ids");
         }
+        resolveQuery(edge, ids, InterQuery.JoinType.INLIST);
+    }
+
+    private void resolveQuery(InterQuery<QueryTree> edge, Set parentIds, InterQuery.JoinType joinType) {
+
+        QueryTree queryTree = edge.getEnd();
 
         String queryString = queryTree.getQuery().getQueryString();
         if (joinType == InterQuery.JoinType.INLIST) {
+            // since query is resolved in a BFS manner, we only need to join with the immediate parent
+            idList.put(queryTree.getQuery(), parentIds);
 
             Set inlistvalues = idList.get(queryTree.getQuery());
             int size = inlistvalues.size() >= MAX_INLIST_SIZE ? MAX_INLIST_SIZE : inlistvalues.size();
+            inListSize.put(queryTree.getQuery(), size);
 
             // This is simple replace
-            queryString = queryString.replaceFirst(
-                Pattern.quote(Query.INTERQUERY_JOIN_PLACEHOLDER),
+            queryString = replacePlaceholder(queryString,
                 getParentInListBindString(size, queryTree.getQuery()));
         }
         else if(joinType == InterQuery.JoinType.JOINTABLE) {
-            // do nothing
-            // either INSERT the parent ids or
-            // INSERT using the parent query
-            // TODO: update the fact that the rows were inserted
+            // A custom query refers to the join table directly, so there is nothing to replace.
+            // A generated query selects the parent ids from the join table.
+            if(Query.isDeferred(queryString)) {
+                queryString = replacePlaceholder(queryString,
+                    QueryJoinAction.getJoinTableSubquery(parentIds));
+            }
         } else {
-            queryString = queryString.replaceFirst(
-                Pattern.quote(Query.INTERQUERY_JOIN_PLACEHOLDER),
+            queryString = replacePlaceholder(queryString,
                 deriveSubquery(edge, edge.getStart().getQuery().getQueryString()));
 
         }
         queryTree.getQuery().setQueryString(queryString);
     } 
 
+    /*
+     * Replaces the first placeholder. Unlike String#replaceFirst, no regular expression
+     * is compiled and the replacement is taken literally.
+     */
+    private static String replacePlaceholder(String queryString, String replacement) {
+        int start = queryString.indexOf(Query.INTERQUERY_JOIN_PLACEHOLDER);
+        if(start == -1) {
+            return queryString;
+        }
+
+        return new StringBuilder(queryString.length() + replacement.length())
+            .append(queryString, 0, start)
+            .append(replacement)
+            .append(queryString, start + Query.INTERQUERY_JOIN_PLACEHOLDER.length(), queryString.length())
+            .toString();
+    }
+
     private String deriveSubquery(InterQuery edge, String oql) {
         // We need to select only the parent id from the original parent oql
         // So we first split the query around the FROM clause
@@ -206,9 +268,17 @@ public class QueryTreeInvocation
             if(inlistvalues.size() <= MAX_INLIST_SIZE) {
                 // Set the parameters for the IN list
                 int start = OFFSET;
+                Object value = null;
                 Iterator iter = inlistvalues.iterator();
                 while (iter.hasNext()) {
-                    query.setParameter(QueryFragment.PARENT_INLIST + start++, iter.next());
+                    value = iter.next();
+                    query.setParameter(QueryFragment.PARENT_INLIST + start++, value);
+                }
+
+                // A smaller batch is padded with the last value to fill the IN list
+                Integer size = inListSize.get(query);
+                while(size != null && start <= size) {
+                    query.setParameter(QueryFragment.PARENT_INLIST + start++, value);
                 }
             } else {
                 query.processLargeInList(inlistvalues);
@@ -216,6 +286,22 @@ public class QueryTreeInvocation
         }
     }
 
+    /**
+     * Bind the next batch of parent ids to a query that has already been resolved.
+     *
+     * @param query whose IN list parameters need to be set
+     * @param ids batch of parent ids, not larger than the IN list of the query
+     */
+    public void bindInList(Query query, Set ids) {
+        Integer size = inListSize.get(query);
+        if(size == null || ids.size() > size) {
+            throw new RuntimeException("The batch of parent ids does not fit the IN list of the query");
+        }
+
+        idList.put(query, ids);
+        initInList(query);
+    }
+
     private String getParentInListBindString(int count, Query query) {
         StringBuilder result = new StringBuilder();
 
@@ -262,13 +348,77 @@ public class QueryTreeInvocation
     }
 
     public static class QueryVisitor {
-        // This is a list because to support scrolling we need to
-        // know the last id
-        List ids = new LinkedList<>();
+        // Numeric ids are kept unboxed, until an id of a different type is seen
+        private LongOpenHashSet longIds = new LongOpenHashSet();
+        private Set ids;
+
+        // To support scrolling we need to know the last id
+        private Object lastId;
+
+        // Only needed if the ids are streamed to the child queries
+        private final IdBatchListener listener;
+        private final QueryTree queryTree;
+        private final QueryFragment source;
+        private Set batch;
+
+        public QueryVisitor() {
+            this(null, null, null);
+        }
+
+        public QueryVisitor(IdBatchListener listener, QueryTree queryTree, QueryFragment source) {
+            this.listener = listener;
+            this.queryTree = queryTree;
+            this.source = source;
+
+            if(listener != null) {
+                this.batch = new HashSet<>();
+            }
+        }
 
         public void addId(Object id) {
             if(id != null) {
-                ids.add(id);
+                lastId = id;
+
+                if(add(id) && listener != null) {
+                    batch.add(id);
+                    if(batch.size() == MAX_INLIST_SIZE) {
+                        flush();
+                    }
+                }
+            }
+        }
+
+        private boolean add(Object id) {
+            if(ids == null) {
+                if(id instanceof Long) {
+                    return longIds.add(((Long)id).longValue());
+                }
+                ids = new HashSet<>(longIds);
+                longIds = null;
+            }
+
+            return ids.add(id);
+        }
+
+        /**
+         * @return the distinct ids seen by this visitor
+         */
+        public Set getIds() {
+            return ids == null ? longIds : ids;
+        }
+
+        public Object getLastId() {
+            return this.lastId;
+        }
+
+        /**
+         * Hand over the ids collected since the last batch
+         */
+        public void flush() {
+            if(listener != null && !batch.isEmpty()) {
+                Set ready = batch;
+                batch = new HashSet<>();
+                listener.notify(queryTree, source, ready);
             }
         }
     }
@@ -279,12 +429,31 @@ public class QueryTreeInvocation
         }
     }
 
+    /**
+     * @param path of a column
+     * @return true if the values of the column are collected for a child query
+     */
+    public boolean isVisited(String path) {
+        return visitorsByPath.containsKey(path);
+    }
+
     public void start(AggregateTree<QueryTree, InterQuery<QueryTree>> at, QueryTree qt) {
+        start(at, qt, null);
+    }
+
+    /**
+     * Prepare to collect the ids needed by the child queries
+     *
+     * @param at aggregate tree being executed
+     * @param qt QueryTree whose results will be read
+     * @param listener optional, notified of the ids in batches while the results are being read
+     */
+    public void start(AggregateTree<QueryTree, InterQuery<QueryTree>> at, QueryTree qt, IdBatchListener listener) {
         // Loop through each outgoing edge and create a visitor for them
         for(InterQuery outgoing: at.getOutEdges(qt)) {
             // Multiple InterQuery edges can emanate from the same QueryFragment source
             if(!visitors.containsKey(outgoing.getSource())) {
-                QueryVisitor visitor = new QueryVisitor();
+                QueryVisitor visitor = new QueryVisitor(listener, qt, outgoing.getSource());
                 visitors.put(outgoing.getSource(), visitor);
                 visitorsByPath.put(outgoing.getSource().getIdField().getFullPath(), visitor);
             }
@@ -299,9 +468,10 @@ public class QueryTreeInvocation
             QueryFragment source = outgoing.getSource();
             if(visitors.containsKey(source)) {
                 QueryVisitor visitor = visitors.get(source);
-                parentIdList.put(source, new HashSet<>(visitor.ids));
-                if(visitor.ids.size() > 0) {
-                    lastParentId.put(qt, visitor.ids.get(visitor.ids.size()-1));
+                visitor.flush();
+                parentIdList.put(source, visitor.getIds());
+                if(visitor.getLastId() != null) {
+                    lastParentId.put(qt, visitor.getLastId());
                 }
 
                 // Now we no longer need this visitor as it has been processed
@@ -323,28 +493,69 @@ public class QueryTreeInvocation
         Object id = bo.getIdentifierValue();
         // Currently we only support tracking objects with surrogate key
         if (id != null) {
-            EntityKey key = new SurrogateEntityKey(id, AbstractTypeMapper.getSurrogateKeyTypeName(bo.getType()), path);
-            BusinessObject existing = queryObjects.get(key);
+            Map<Object, BusinessObject> objects = getQueryObjects(path, AbstractTypeMapper.getSurrogateKeyTypeName(bo.getType()), true);
+            BusinessObject existing = objects.get(id);
 
             if (existing != bo) {
-                queryObjects.put(key, bo);
+                objects.put(id, bo);
+            }
+        }
+    }
+
+    /*
+     * The objects are looked up by path, surrogate key type and id in that order.
+     * This avoids creating an EntityKey for each lookup, as the path and type name
+     * strings have their hash codes cached.
+     */
+    private Map<Object, BusinessObject> getQueryObjects(String path, String typeName, boolean create) {
+        ConcurrentMap<String, ConcurrentMap<Object, BusinessObject>> objectsByType = queryObjects.get(path);
+        if(objectsByType == null) {
+            if(!create) {
+                return null;
+            }
+            objectsByType = new ConcurrentHashMap<>();
+            ConcurrentMap<String, ConcurrentMap<Object, BusinessObject>> existing = queryObjects.putIfAbsent(path, objectsByType);
+            if(existing != null) {
+                objectsByType = existing;
             }
         }
+
+        ConcurrentMap<Object, BusinessObject> objects = objectsByType.get(typeName);
+        if(objects == null) {
+            if(!create) {
+                return null;
+            }
+            objects = new ConcurrentHashMap<>();
+            ConcurrentMap<Object, BusinessObject> existing = objectsByType.putIfAbsent(typeName, objects);
+            if(existing != null) {
+                objects = existing;
+            }
+        }
+
+        return objects;
     }
 
     public BusinessObject getQueryObject(String path, Object idValue, Type type) {
-        EntityKey key = new SurrogateEntityKey(idValue, AbstractTypeMapper.getSurrogateKeyTypeName(type), path);        
-        
-        return queryObjects.get(key);
+        Map<Object, BusinessObject> objects = getQueryObjects(path, AbstractTypeMapper.getSurrogateKeyTypeName(type), false);
+
+        return objects == null ? null : objects.get(idValue);
+    }
+
+    public void addRecordDelta(QueryTree queryTree, Set<String> changed, Map<String, Object> propertyResult, String lcp, Object record) {
+        addRecordDelta(queryTree, new RecordDelta(changed, propertyResult, lcp, record));
+    }
+
+    public void addRecordDelta(QueryTree queryTree, Set<String> changed, String lcp, QueryRow.Layout layout, ColumnBuffer block, int row) {
+        addRecordDelta(queryTree, new RecordDelta(changed, lcp, layout, block, row));
     }
 
-    public void addRecordDelta(QueryTree queryTree, Set<String> changed, Map<String, Object> propertyResult, String lcp, Object[] record) {
+    private void addRecordDelta(QueryTree queryTree, RecordDelta delta) {
         List<RecordDelta> deltas = recordDeltas.get(queryTree);
         if(deltas == null) {
-            deltas = new LinkedList<>();
+            deltas = new ArrayList<>();
             recordDeltas.put(queryTree, deltas);
         }
-        deltas.add(new RecordDelta(changed, propertyResult, lcp, record));
+        deltas.add(delta);
     }
 
     public List<RecordDelta> getRecordDeltas(QueryTree queryTree) {
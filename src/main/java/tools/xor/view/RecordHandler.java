@@ -0,0 +1,47 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.view;
+
+/**
+ * Receives the records of a query result one at a time, as they are read
+ * from the underlying provider.
+ */
+public interface RecordHandler
+{
+    /**
+     * Process a single record of the query result
+     * @param record representing a row of the result
+     */
+    public void handle(Object record);
+
+    /**
+     * A handler that also accepts the rows of a {@link ColumnBuffer}, so the
+     * provider can read the result by column instead of creating an array per row.
+     */
+    public interface Columnar extends RecordHandler {
+
+        /**
+         * Process a single row of a block of the query result
+         * @param block holding the row
+         * @param row index of the row in the block
+         */
+        public void handle(ColumnBuffer block, int row);
+    }
+}
@@ -120,6 +120,14 @@ public class StoredProcedureQuery extends AbstractQuery {
 		return (List)execute(view, AggregateAction.READ);
 	}
 
+	@Override
+	public void processResults(View view, Settings settings, RecordHandler handler) {
+		// The result set is read by the stored procedure execution
+		for(Object record: getResultList(view, settings)) {
+			handler.handle(record);
+		}
+	}
+
 	private void initPosition(Map<Integer, View> viewPosition, View view) {
 		viewPosition.put(view.getResultPosition(), view);
 
@@ -161,6 +161,8 @@ public class TraversalView implements Comparable<TraversalView>, Vertex, View {
     @XmlAttribute
     protected Integer           resultPosition; // Wrapper class, because we test custom
 
+    protected Integer           fetchSize;      // null uses the driver default
+
     // The primary key attribute name needed for linking with child views
     // This is a list because a primary key can be composite
     protected List<String>      primaryKeyAttribute;
@@ -272,6 +274,17 @@ public class TraversalView implements Comparable<TraversalView>, Vertex, View {
         return resultPosition;
     }
 
+    @XmlAttribute
+    @Override public Integer getFetchSize ()
+    {
+        return fetchSize;
+    }
+
+    @Override public void setFetchSize (Integer fetchSize)
+    {
+        this.fetchSize = fetchSize;
+    }
+
     @Override
     public List<Field> getFields ()
     {
@@ -580,6 +593,7 @@ public class TraversalView implements Comparable<TraversalView>, Vertex, View {
         copy.setExpanded(expanded);
         copy.jsonString = jsonString;
         copy.resultPosition = resultPosition;
+        copy.fetchSize = fetchSize;
         if(json != null) {
             copy.json = ClassUtil.copyJson(json);
         }
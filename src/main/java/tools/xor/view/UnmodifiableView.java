@@ -321,4 +321,14 @@ public class UnmodifiableView implements View
     {
         return view.getResultPosition();
     }
+
+    @Override public Integer getFetchSize ()
+    {
+        return view.getFetchSize();
+    }
+
+    @Override public void setFetchSize (Integer fetchSize)
+    {
+        raiseException();
+    }
 }
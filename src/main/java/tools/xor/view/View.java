@@ -437,6 +437,22 @@ public interface View {
 	 */
 	Integer getResultPosition();
 
+	/**
+	 * Number of rows fetched from the database in a round trip by the query of this view.
+	 * A view with a large result should set this, so the driver does not read the whole
+	 * result into memory before the first row is processed.
+	 *
+	 * @return fetch size, or null to use the driver default
+	 */
+	Integer getFetchSize();
+
+	/**
+	 * Set the number of rows fetched in a round trip by the query of this view
+	 *
+	 * @param fetchSize number of rows, null to use the driver default
+	 */
+	void setFetchSize(Integer fetchSize);
+
 	/**
 	 * Set the fields that form the scope of this view. Used to implement GraphQL functionality.
 	 *
@@ -0,0 +1,39 @@
+package tools.xor;
+
+import org.junit.jupiter.api.Test;
+
+public class PropertyPathTest {
+
+	@Test
+	public void compile() {
+		PropertyPath path = PropertyPath.compile("assignedTo.owner.name");
+
+		// compiled paths are shared
+		assert(PropertyPath.compile("assignedTo.owner.name") == path);
+
+		assert(path.size() == 3);
+		assert(path.getStep(0).equals("assignedTo"));
+		assert(path.getStep(2).equals("name"));
+		assert(path.getPrefix(0).equals("assignedTo"));
+		assert(path.getPrefix(1).equals("assignedTo.owner"));
+		assert(path.getPrefix(2).equals("assignedTo.owner.name"));
+		assert(path.isPlain());
+	}
+
+	@Test
+	public void notPlain() {
+		assert(!PropertyPath.compile("taskChildren[0].name").isPlain());
+		assert(!PropertyPath.compile("taskChildren[name=A].name").isPlain());
+		assert(!PropertyPath.compile("assignedTo.").isPlain());
+		assert(!PropertyPath.compile("assignedTo..name").isPlain());
+	}
+
+	@Test
+	public void boundedCache() {
+		for(int i = 0; i < PropertyPath.DEFAULT_CACHE_SIZE + 10; i++) {
+			PropertyPath.compile("bounded" + i + ".name");
+		}
+
+		assert(PropertyPath.getCacheSize() <= PropertyPath.DEFAULT_CACHE_SIZE);
+	}
+}
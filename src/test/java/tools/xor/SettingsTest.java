@@ -0,0 +1,44 @@
+package tools.xor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class SettingsTest {
+
+	@Test
+	public void copy() {
+		Settings settings = new Settings();
+		settings.setParam("name", "A");
+		settings.addTag("tag");
+		settings.expand(new AssociationSetting("assignedTo"));
+		Map<String, Object> nextToken = new HashMap<>();
+		nextToken.put("id", 1);
+		settings.setNextToken(nextToken);
+		settings.setBatchSize(10);
+
+		// The collections of the copy are changed independently
+		Settings copy = settings.copy();
+		copy.setParam("name", "B");
+		copy.addTag("copy");
+		copy.expand(new AssociationSetting("owner"));
+		copy.getNextToken().put("id", 2);
+		copy.setBatchSize(20);
+
+		assert(settings.getParams().get("name").equals("A"));
+		assert(!settings.getTags().contains("copy"));
+		assert(settings.getExpandedAssociations().size() == 1);
+		assert(settings.getNextToken().get("id").equals(1));
+		assert(settings.getBatchSize() == 10);
+
+		assert(copy.getParams().get("name").equals("B"));
+		assert(copy.getTags().contains("tag") && copy.getTags().contains("copy"));
+		assert(copy.getExpandedAssociations().size() == 2);
+		assert(copy.getNextToken().get("id").equals(2));
+
+		// The other objects are shared
+		assert(copy.getInterceptor() == settings.getInterceptor());
+		assert(copy.getExpandedAssociations().get(0) == settings.getExpandedAssociations().get(0));
+	}
+}
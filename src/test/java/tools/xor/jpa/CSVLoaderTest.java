@@ -57,6 +57,7 @@ import tools.xor.service.DataModel;
 import tools.xor.service.DataModelFactory;
 import tools.xor.service.Shape;
 import tools.xor.service.exim.CSVLoader;
+import tools.xor.service.exim.CSVPartition;
 import tools.xor.service.exim.CSVLoader.CSVState;
 import tools.xor.util.ClassUtil;
 import tools.xor.util.Edge;
@@ -201,6 +202,122 @@ public class CSVLoaderTest {
         }
 	}	
 	
+    @Test
+    public void test1_importConcurrent() throws IOException {
+        String testFolder = "csvloader/test1/";
+
+        DataModel dm = amJDBC.getDataModel();
+        Shape shape = dm.getShape();
+
+        CSVLoader csvLoader = new CSVLoader(shape, testFolder);
+        for(CSVState state: csvLoader.getGraph().getVertices()) {
+            Generator rootidgen = new StringTemplate(new String[] {"ID_[VISITOR_CONTEXT]"});
+            EntityType entityType = (EntityType) state.getType();
+            entityType.getProperty("UUID").setGenerator(rootidgen);
+        }
+
+        amJDBC.configure(null);
+        JDBCDataStore dataStore = (JDBCDataStore)amJDBC.getDataStore();
+        JDBCSessionContext sc = dataStore.getSessionContext();
+        sc.setAutoCommit(false);
+        sc.beginTransaction();
+        try {
+            Settings settings = new Settings();
+            List<CSVLoader.TableMetrics> metrics = csvLoader.importDataConcurrent(settings, amJDBC.getDataModelFactory(), 2);
+
+            // The foreign keys between these tables are nullable, so all the tables are
+            // loaded independently and the foreign keys are set in the update pass
+            assert(metrics.size() == 3);
+            List<String> tables = new ArrayList<>();
+            for(CSVLoader.TableMetrics tableMetrics: metrics) {
+                tables.add(tableMetrics.getTableName().toUpperCase());
+                assert(tableMetrics.getRows() > 0);
+            }
+            assert(tables.contains("PERSON") && tables.contains("QUOTE"));
+            checkLoadOrder(metrics);
+
+            settings = new Settings();
+            settings.setSessionContext(sc);
+            int numTasks = (int)metrics.get(tables.indexOf("TASK")).getRows();
+            validateTask(queryTasks(settings, shape), numTasks, shape, true);
+        } finally {
+            try (Statement stmt = sc.getConnection().createStatement()) {
+                stmt.execute("DELETE from QUOTE");
+                stmt.execute("DELETE from TASK");
+                stmt.execute("DELETE from PERSON");
+                sc.getConnection().commit();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+
+            sc.rollback();
+            sc.close();
+        }
+    }
+
+    @Test
+    public void test3_importConcurrent() throws IOException {
+        String testFolder = "csvloader/test3/";
+
+        DataModel dm = amJDBC.getDataModel();
+        Shape shape = dm.getShape();
+
+        CSVLoader csvLoader = new CSVLoader(shape, testFolder);
+
+        amJDBC.configure(null);
+        JDBCDataStore dataStore = (JDBCDataStore)amJDBC.getDataStore();
+        JDBCSessionContext sc = dataStore.getSessionContext();
+        sc.setAutoCommit(false);
+        sc.beginTransaction();
+        try {
+            Settings settings = new Settings();
+            List<CSVLoader.TableMetrics> metrics = csvLoader.importDataConcurrent(settings, amJDBC.getDataModelFactory(), 2);
+
+            // PROJECT is generated from the committed TASK rows, so it has to wait for TASK
+            assert(metrics.size() == 2);
+            CSVLoader.TableMetrics project = null;
+            for(CSVLoader.TableMetrics tableMetrics: metrics) {
+                if(tableMetrics.getTableName().equalsIgnoreCase("PROJECT")) {
+                    project = tableMetrics;
+                }
+            }
+            assert(project != null);
+            assert(project.getDependencies().size() == 1);
+            assert(project.getDependencies().get(0).equalsIgnoreCase("TASK"));
+            checkLoadOrder(metrics);
+
+            settings = new Settings();
+            settings.setSessionContext(sc);
+            validateTask(queryTasks(settings, shape), 5, shape, false);
+            validateProject(queryProjects(settings, shape), 5, shape);
+        } finally {
+            try (Statement stmt = sc.getConnection().createStatement()) {
+                stmt.execute("DELETE from PROJECT");
+                stmt.execute("DELETE from TASK");
+                sc.getConnection().commit();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+
+            sc.rollback();
+            sc.close();
+        }
+    }
+
+    /**
+     * A table is loaded only after the tables it depends on are loaded.
+     * The metrics are in the order the tables finished loading.
+     */
+    private void checkLoadOrder(List<CSVLoader.TableMetrics> metrics) {
+        List<String> loadOrder = new ArrayList<>();
+        for(CSVLoader.TableMetrics tableMetrics: metrics) {
+            for(String dependency: tableMetrics.getDependencies()) {
+                assert(loadOrder.contains(dependency.toUpperCase()));
+            }
+            loadOrder.add(tableMetrics.getTableName().toUpperCase());
+        }
+    }
+
     private String getAbsoluteResourcePath(String path) {
         path = "src/test/resources/" + path;
         String[] paths = path.split("/");
@@ -480,6 +597,46 @@ public class CSVLoaderTest {
         }
     }
 
+    @Test
+    public void test6_importPartitioned() throws IOException {
+
+        DataModel dm = amJDBC.getDataModel();
+        Shape shape = dm.getShape();
+        String testFolder = "csvloader/test6";
+        CSVLoader csvLoader = new CSVLoader(shape, testFolder);
+
+        // The ranges are contiguous and start on a record boundary
+        List<CSVPartition> partitions = CSVPartition.split(CSVPartition.getFile("csvloader/test6/Task_1M.csv"), 4);
+        assert(partitions.size() == 4);
+        assert(partitions.get(0).getFirstRecord() == 1);
+        for(int i = 1; i < partitions.size(); i++) {
+            assert(partitions.get(i).getStart() == partitions.get(i-1).getEnd());
+            assert(partitions.get(i).getFirstRecord() > partitions.get(i-1).getFirstRecord());
+            assert(partitions.get(i).getReader().readLine().startsWith("Task " + (partitions.get(i).getFirstRecord()-1) + ","));
+        }
+
+        amJDBC.configure(null);
+        JDBCDataStore dataStore = (JDBCDataStore) amJDBC.getDataStore();
+        JDBCSessionContext sc = dataStore.getSessionContext();
+        sc.setAutoCommit(false);
+        sc.beginTransaction();
+        try {
+            Settings settings = new Settings();
+            csvLoader.importDataPartitioned(settings, amJDBC.getDataModelFactory(), 4);
+            validateTask(queryTasks(settings, shape), 24997, shape, false);
+        } finally {
+            try (Statement stmt = sc.getConnection().createStatement()) {
+                stmt.execute("DELETE from TASK");
+                sc.getConnection().commit();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+
+            sc.rollback();
+            sc.close();
+        }
+    }
+
     @Test
     /*
      * Direct entity generator Test.
@@ -1,59 +1,44 @@
-/**
- * XOR, empowering Model Driven Architecture in J2EE applications
- *
- * Copyright (c) 2012, Dilip Dalton
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *  http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software 
- * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT 
- * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *
- * See the License for the specific language governing permissions and limitations 
- * under the License.
- */
-
-package tools.xor.jpa;
-
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.junit.jupiter.api.Test;
-import org.springframework.test.context.ContextConfiguration;
-import org.springframework.test.context.junit.jupiter.SpringExtension;
-import org.springframework.transaction.annotation.Transactional;
-
-import tools.xor.logic.DefaultPaging;
-
-@ExtendWith(SpringExtension.class)
-@ContextConfiguration(locations = { "classpath:/spring-jpa-test.xml" })
-@Transactional
-public class JPAPaging extends DefaultPaging {
-
-	@Test
-	public void sortPersonAsc() {
-		super.sortPersonAsc();
-	}
-	
-	@Test
-	public void sortPersonDesc() {
-		super.sortPersonDesc();
-	}
-	
-	@Test
-	public void pagePerson() {
-		super.pagePerson();
-	}
-	
-	@Test
-	public void offsetPerson() {
-		super.offsetPerson();
-	}
-	
-	@Test
-	public void customOffsetPerson() {
-		super.customOffsetPerson();
-	}	
-}
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.jpa;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import tools.xor.logic.DefaultPerfUpdate;
+
+/**
+ * Measures the update of a collection of 10000 tasks.
+ * This is a benchmark and not part of the test suite, run it explicitly using
+ * -Dtest=JPACollectionUpdatePerf
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = { "classpath:/spring-jpa-perf-test.xml" })
+@Transactional
+public class JPACollectionUpdatePerf extends DefaultPerfUpdate {
+
+	@Test
+	public void testCollectionUpdate() {
+		super.testCollectionUpdate();
+	}
+}
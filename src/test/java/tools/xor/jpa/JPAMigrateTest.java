@@ -0,0 +1,309 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2012, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import tools.xor.Settings;
+import tools.xor.db.base.Book;
+import tools.xor.db.base.Chapter;
+import tools.xor.db.base.Patent;
+import tools.xor.operation.MigrateOperation;
+import tools.xor.operation.MigrateResult;
+import tools.xor.service.AggregateManager;
+import tools.xor.service.DataStore;
+import tools.xor.service.EntityScroll;
+import tools.xor.util.ApplicationConfiguration;
+import tools.xor.util.ClassUtil;
+import tools.xor.util.Constants;
+
+/**
+ * Runs AggregateManager.migrate end to end with a migrate operation that reads the rows
+ * from memory and records the batches written, since the providers do not scroll a source.
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = { "classpath:/spring-jpa-test.xml" })
+public class JPAMigrateTest {
+
+	private static final int ROWS = 250;
+
+	@Autowired
+	protected AggregateManager aggregateManager;
+
+	@Test
+	public void migrate() {
+		// Book and Patent are independent and are migrated together, Chapter belongs to a Book
+		String book = getName(Book.class);
+		String patent = getName(Patent.class);
+		String chapter = getName(Chapter.class);
+
+		// The first batch of Book and of Patent only complete if they are written at the same time
+		Recorder recorder = new Recorder(2, 10);
+		recorder.add(book, true, false);
+		recorder.add(patent, true, true);
+		recorder.add(chapter, false, false);
+		MigrateResult result = migrate(recorder, book + ", " + patent + ", " + chapter);
+
+		assertEquals(3, result.getEntityResults().size());
+		assertEquals(3 * ROWS, result.getRowsRead());
+
+		// Only the batch with the failing Patent row fails
+		assertEquals(1, result.getFailedBatches());
+		assertEquals(1, recorder.getResult(patent).getFailedBatches());
+		assertTrue(recorder.failedRows.get() > 0);
+		assertEquals(ROWS, recorder.getResult(book).getRowsWritten());
+		assertEquals(ROWS, recorder.getResult(chapter).getRowsWritten());
+		assertEquals(ROWS - recorder.failedRows.get(), recorder.getResult(patent).getRowsWritten());
+		assertEquals(3 * ROWS - recorder.failedRows.get(), result.getRowsWritten());
+
+		// The rows counted as written are the ones the consumers persisted
+		for(String entityName: new String[] { book, patent, chapter }) {
+			assertEquals(recorder.getWritten(entityName), recorder.getResult(entityName).getRowsWritten());
+		}
+
+		// Chapter is only started once all the Book rows are written
+		assertTrue(recorder.getStart(chapter) >= recorder.getEnd(book));
+	}
+
+	@Test
+	public void migrateSerially() {
+		String book = getName(Book.class);
+		String patent = getName(Patent.class);
+
+		// Without an entity pool, the first batch of each entity waits in vain for the other
+		Recorder recorder = new Recorder(1, 1);
+		recorder.add(book, true, false);
+		recorder.add(patent, true, false);
+		MigrateResult result = migrate(recorder, book + ", " + patent);
+
+		assertEquals(2 * ROWS, result.getRowsRead());
+		assertEquals(1, recorder.getResult(book).getFailedBatches());
+		assertEquals(1, recorder.getResult(patent).getFailedBatches());
+		assertEquals(2 * ROWS - recorder.failedRows.get(), result.getRowsWritten());
+	}
+
+	private String getName(Class<?> entityClass) {
+		return aggregateManager.getDataModel().getShape().getType(entityClass).getName();
+	}
+
+	private MigrateResult migrate(final Recorder recorder, String entities) {
+		aggregateManager.configure(null);
+		final DataStore dataStore = aggregateManager.getDataStore();
+
+		// Serve the test migration from the data store of this thread
+		DataStore migrateStore = (DataStore)Proxy.newProxyInstance(
+			DataStore.class.getClassLoader(),
+			new Class[] { DataStore.class },
+			new InvocationHandler() {
+				@Override public Object invoke (Object proxy, Method method, Object[] args) throws Throwable
+				{
+					if("getMigrateOperation".equals(method.getName())) {
+						return new TestMigration(recorder);
+					}
+					try {
+						return method.invoke(dataStore, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				}
+			});
+
+		ApplicationConfiguration.config().setProperty(Constants.Config.MIGRATE_ENTITIES, entities);
+		aggregateManager.setDataStore(migrateStore);
+		try {
+			aggregateManager.migrate(aggregateManager, new Settings());
+		} finally {
+			aggregateManager.setDataStore(dataStore);
+			ApplicationConfiguration.config().clearProperty(Constants.Config.MIGRATE_ENTITIES);
+		}
+
+		return recorder.result;
+	}
+
+	/**
+	 * The source rows of each entity and what the migration did with them
+	 */
+	private static class Recorder {
+		private final int entityPoolSize;
+		private final int barrierTimeout; // in seconds
+		private final CyclicBarrier barrier = new CyclicBarrier(2);
+		private final Map<String, List<JSONObject>> rows = new ConcurrentHashMap<>();
+		private final Set<String> waiting = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		private final Map<String, AtomicInteger> written = new ConcurrentHashMap<>();
+		private final Map<String, Long> start = new ConcurrentHashMap<>();
+		private final Map<String, Long> end = new ConcurrentHashMap<>();
+		private final Map<String, String> views = new ConcurrentHashMap<>();
+		private final AtomicInteger failedRows = new AtomicInteger();
+		private volatile MigrateResult result;
+
+		Recorder(int entityPoolSize, int barrierTimeout) {
+			this.entityPoolSize = entityPoolSize;
+			this.barrierTimeout = barrierTimeout;
+		}
+
+		/**
+		 * @param entityName of the rows
+		 * @param wait the first batch waits for the first batch of the other waiting entity
+		 * @param fail the last row fails its batch
+		 */
+		void add(String entityName, boolean wait, boolean fail) {
+			List<JSONObject> entityRows = new ArrayList<>(ROWS);
+			for(int i = 0; i < ROWS; i++) {
+				JSONObject json = new JSONObject();
+				json.put("id", entityName + i);
+				entityRows.add(json);
+			}
+			if(fail) {
+				entityRows.get(ROWS - 1).put("fail", true);
+			}
+			rows.put(entityName, entityRows);
+			written.put(entityName, new AtomicInteger());
+			if(wait) {
+				waiting.add(entityName);
+			}
+		}
+
+		void persist(String entityName, List<JSONObject> batch) {
+			try {
+				// Only the first batch of the entity waits
+				if(waiting.remove(entityName)) {
+					barrier.await(barrierTimeout, TimeUnit.SECONDS);
+				}
+				for(JSONObject json: batch) {
+					if(json.has("fail")) {
+						throw new IllegalStateException("Unable to write " + json.get("id"));
+					}
+				}
+			}
+			catch (Exception e) {
+				failedRows.addAndGet(batch.size());
+				throw ClassUtil.wrapRun(e);
+			}
+
+			written.get(entityName).addAndGet(batch.size());
+		}
+
+		int getWritten(String entityName) {
+			return written.get(entityName).get();
+		}
+
+		// The result is kept by the name of the migrate view
+		MigrateResult.EntityResult getResult(String entityName) {
+			return result.getEntityResults().get(views.get(entityName));
+		}
+
+		long getStart(String entityName) {
+			return start.get(entityName);
+		}
+
+		long getEnd(String entityName) {
+			return end.get(entityName);
+		}
+	}
+
+	/**
+	 * Migration whose producer reads the rows of the recorder and whose consumers
+	 * record the batches instead of writing them.
+	 */
+	private class TestMigration extends MigrateOperation {
+		private final Recorder recorder;
+
+		TestMigration(Recorder recorder) {
+			super(aggregateManager, aggregateManager, null);
+			this.recorder = recorder;
+			setEntityPoolSize(recorder.entityPoolSize);
+		}
+
+		@Override
+		public void setResult(MigrateResult result) {
+			super.setResult(result);
+			recorder.result = result;
+		}
+
+		@Override
+		public void execute(Settings settings) {
+			String entityName = settings.getEntityType().getName();
+			recorder.views.put(entityName, settings.getView().getName());
+			recorder.start.put(entityName, System.nanoTime());
+			super.execute(settings);
+			recorder.end.put(entityName, System.nanoTime());
+		}
+
+		@Override
+		protected Producer createProducer(BlockingQueue queue, AggregateManager source, AggregateManager target, Settings settings) {
+			final Iterator<JSONObject> iterator = recorder.rows.get(settings.getEntityType().getName()).iterator();
+
+			return new Producer(queue, source, target, settings) {
+				@Override protected EntityScroll<JSONObject> getEntityScroll ()
+				{
+					return new EntityScroll<JSONObject>() {
+						@Override public void close () {}
+
+						@Override public boolean hasNext ()
+						{
+							return iterator.hasNext();
+						}
+
+						@Override public JSONObject next ()
+						{
+							return iterator.next();
+						}
+					};
+				}
+			};
+		}
+
+		@Override
+		protected Consumer createConsumer(BlockingQueue queue, AggregateManager target, Settings settings) {
+			return new Consumer(queue, target, settings) {
+				@Override protected Map<String, String> persistToDB (List<JSONObject> batch)
+				{
+					recorder.persist(getSettings().getEntityType().getName(), batch);
+
+					return null;
+				}
+			};
+		}
+	}
+}
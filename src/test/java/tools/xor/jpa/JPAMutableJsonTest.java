@@ -1023,18 +1023,17 @@ public class JPAMutableJsonTest extends DefaultMutableJson {
 		}
 	}
 
-	@Test
-	public void testChildrenMix() {
-		// First create a task with 100 children
-		// We use the generators to create this data
-		// This data is committed by the generators
-
+	/**
+	 * Configure the generators for a root task with 100 child tasks
+	 *
+	 * @return relational shape having the TASK generators
+	 */
+	private Shape setupTaskChildrenGenerators() {
 		Shape shape = amJDBC.getDataModel().getShape(JDBCDataModel.RELATIONAL_SHAPE);
 		if(shape == null) {
 			shape = amJDBC.getDataModel().createShape(JDBCDataModel.RELATIONAL_SHAPE);
 		}
 
-
 		JDBCType task = (JDBCType)shape.getType("TASK");
 		task.clearGenerators();
 
@@ -1063,6 +1062,17 @@ public class JPAMutableJsonTest extends DefaultMutableJson {
 		gensettings.addVisit(new DefaultGenerator.GeneratorVisit(toonegen,
 				(GeneratorRecipient)parentgen));
 
+		return shape;
+	}
+
+	@Test
+	public void testChildrenMix() {
+		// First create a task with 100 children
+		// We use the generators to create this data
+		// This data is committed by the generators
+
+		Shape shape = setupTaskChildrenGenerators();
+
 		String[] types = new String[] {
 			"TASK"
 		};
@@ -1119,6 +1129,79 @@ public class JPAMutableJsonTest extends DefaultMutableJson {
 		}
 	}
 	
+	@Test
+	public void testChildrenMixJoinTable() {
+		// First create a task with 100 children
+		// We use the generators to create this data
+		// This data is committed by the generators
+
+		Shape shape = setupTaskChildrenGenerators();
+
+		String[] types = new String[] {
+			"TASK"
+		};
+
+		Settings settings = new Settings();
+		//settings.setImportMethod(ImportMethod.CSV);
+		Transaction tx = amJDBC.createTransaction(settings);
+		tx.begin();
+		try {
+			// Generate the tasks in the DB
+			amJDBC.generateSameTX(shape.getName(), Arrays.asList(types), settings);
+
+			JDBCDataStore po = (JDBCDataStore)amJDBC.getDataStore();
+			po.createQueryJoinTable(null);
+
+			// Query using the mix view
+			settings = new Settings();
+			settings.setView(aggregateService.getView("TASKCHILDRENMIX"));
+			// The 101 parent ids are joined using the query join table instead of an IN list
+			settings.setQueryJoinThreshold(50);
+			shape = aggregateService.getDataModel().getShape();
+			Type type = shape.getType(Task.class);
+			settings.setEntityType(type);
+			settings.init(shape);
+
+			List<?> result = aggregateService.query(null, settings);
+			assert(result.size() == 101);
+			JSONObject rootTask = (JSONObject)result.get(0);
+			assert(rootTask != null);
+
+			assert(rootTask.has("taskChildren"));
+			JSONArray children = rootTask.getJSONArray("taskChildren");
+			assert(children.length() == 100);
+
+			JSONObject child = children.getJSONObject(0);
+			assert(child != null);
+			assert(child.has("name"));
+			assert(child.has("id"));
+
+			// The child query selected the parent ids from the join table, since there
+			// are more parent ids than the threshold
+			Number joinedIds = (Number)entityManager.createNativeQuery(
+				String.format("SELECT COUNT(*) FROM %s", QueryJoinAction.JOIN_TABLE_NAME)).getSingleResult();
+			assert(joinedIds.intValue() > 50);
+
+		} finally {
+
+			JDBCDataStore po = (JDBCDataStore)amJDBC.getDataStore();
+			JDBCSessionContext sc = po.getSessionContext();
+
+			try (Statement stmt = sc.getConnection().createStatement()) {
+				stmt.execute("DELETE from TASK");
+				sc.getConnection().commit();
+
+				// drop the temp table
+				stmt.executeUpdate(String.format("DROP TABLE %s", QueryJoinAction.JOIN_TABLE_NAME));
+			}
+			catch (SQLException e) {
+				e.printStackTrace();
+			}
+			tx.rollback();
+			// We don't close as the connection belongs to Spring
+		}
+	}
+	
     @Test
     public void testGenerateSameThread() {
         // First create a task with 100 children
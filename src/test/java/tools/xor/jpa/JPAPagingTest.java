@@ -0,0 +1,114 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2012, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT 
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations 
+ * under the License.
+ */
+
+package tools.xor.jpa;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import tools.xor.logic.DefaultPaging;
+import tools.xor.providers.jdbc.DBTranslator;
+import tools.xor.service.JPADataStore;
+import tools.xor.service.JPASpringPO;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = { "classpath:/spring-jpa-test.xml" })
+@Transactional
+public class JPAPagingTest extends DefaultPaging {
+
+	@Test
+	public void sortPersonAsc() {
+		super.sortPersonAsc();
+	}
+	
+	@Test
+	public void sortPersonDesc() {
+		super.sortPersonDesc();
+	}
+	
+	@Test
+	public void pagePerson() {
+		super.pagePerson();
+	}
+	
+	@Test
+	public void offsetPerson() {
+		super.offsetPerson();
+	}
+	
+	@Test
+	public void customOffsetPerson() {
+		super.customOffsetPerson();
+	}	
+
+	@Test
+	public void scrollPerson() throws IOException {
+		super.scrollPerson();
+	}
+
+	@Test
+	public void scrollNullableAsc() throws IOException {
+		super.scrollNullableAsc();
+	}
+
+	@Test
+	public void scrollNullableDesc() throws IOException {
+		super.scrollNullableDesc();
+	}
+
+	@Test
+	public void scrollNullableAscUnknownDatabase() throws IOException {
+		scrollUnknownDatabase(false);
+	}
+
+	@Test
+	public void scrollNullableDescUnknownDatabase() throws IOException {
+		scrollUnknownDatabase(true);
+	}
+
+	private void scrollUnknownDatabase(boolean descending) throws IOException {
+		aggregateManager.configure(null);
+		JPADataStore previous = (JPADataStore) aggregateManager.getDataStore();
+		UnknownDatabaseStore dataStore = new UnknownDatabaseStore();
+		dataStore.setPersistenceUtil(previous.getPersistenceUtil());
+		aggregateManager.getDataModelFactory().injectDependencies(dataStore, null);
+
+		aggregateManager.setDataStore(dataStore);
+		try {
+			super.scrollNullableUnknownDatabase(descending);
+		} finally {
+			aggregateManager.setDataStore(previous);
+		}
+	}
+
+	/**
+	 * The null ordering of the database cannot be specified without a translator
+	 */
+	private static class UnknownDatabaseStore extends JPASpringPO {
+		@Override
+		public DBTranslator getDBTranslator () {
+			return null;
+		}
+	}
+}
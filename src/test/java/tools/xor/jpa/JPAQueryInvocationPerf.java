@@ -0,0 +1,170 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.jpa;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import tools.xor.Settings;
+import tools.xor.db.pm.Task;
+import tools.xor.service.AggregateManager;
+import tools.xor.util.ClassUtil;
+import tools.xor.view.AggregateView;
+import tools.xor.view.QueryTreeInvocation;
+
+/**
+ * Measures the memory allocated per row for the bookkeeping done by a QueryTreeInvocation,
+ * i.e., collecting the parent ids, tracking the query objects and the record deltas.
+ * The allocation is measured on the current thread, so the queries are not run in parallel.
+ * This is a benchmark and not part of the test suite, run it explicitly using
+ * -Dtest=JPAQueryInvocationPerf
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = { "classpath:/spring-jpa-test.xml" })
+@Transactional
+public class JPAQueryInvocationPerf
+{
+	private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
+
+	private static final int ROW_COUNT = 1000;
+	private static final int CHILD_COUNT = 2;
+	private static final int ID_COUNT = 200000;
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int ITERATIONS = 20;
+
+	@Autowired
+	protected AggregateManager aggregateManager;
+
+	@BeforeAll
+	public static void executeOnceBeforeAll() {
+		ClassUtil.setParallelDispatch(false);
+	}
+
+	@AfterAll
+	public static void executeOnceAfterAll() {
+		ClassUtil.setParallelDispatch(true);
+	}
+
+	private static long getAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(
+			Thread.currentThread().getId());
+	}
+
+	@Test
+	public void queryTaskChildren() {
+		for(int i = 0; i < ROW_COUNT; i++) {
+			Task task = new Task();
+			task.setName("INVOCATION_" + i);
+			task.setDisplayName("Invocation " + i);
+			task.setDescription("Task number " + i);
+
+			Set<Task> children = new HashSet<>();
+			for(int j = 0; j < CHILD_COUNT; j++) {
+				Task child = new Task();
+				child.setName("INVOCATION_" + i + "_" + j);
+				child.setDisplayName("Invocation " + i + " child " + j);
+				child.setDescription("Child number " + j);
+				child.setTaskParent(task);
+				children.add(child);
+			}
+			task.setTaskChildren(children);
+			aggregateManager.create(task, new Settings());
+		}
+
+		List<String> paths = new ArrayList<>();
+		paths.add("name");
+		paths.add("displayName");
+		paths.add("description");
+		paths.add("taskChildren.name");
+		paths.add("taskChildren.displayName");
+		AggregateView view = new AggregateView("INVOCATION_TASKS");
+		view.setAttributeList(paths);
+
+		for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+			queryTasks(view);
+		}
+
+		long allocated = getAllocatedBytes();
+		long start = System.nanoTime();
+		int rows = 0;
+		for(int i = 0; i < ITERATIONS; i++) {
+			rows += queryTasks(view);
+		}
+		long elapsed = System.nanoTime() - start;
+		allocated = getAllocatedBytes() - allocated;
+
+		assert(rows >= ROW_COUNT * ITERATIONS);
+		logger.info(String.format("Queried %s rows, %.2f microseconds and %s bytes allocated per row",
+			rows, elapsed / 1000.0 / rows, allocated / rows));
+	}
+
+	@Test
+	public void collectIds() {
+		for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+			visitIds();
+		}
+
+		long allocated = getAllocatedBytes();
+		long start = System.nanoTime();
+		int ids = 0;
+		for(int i = 0; i < ITERATIONS; i++) {
+			ids += visitIds();
+		}
+		long elapsed = System.nanoTime() - start;
+		allocated = getAllocatedBytes() - allocated;
+
+		logger.info(String.format("Collected %s ids, %.2f nanoseconds and %s bytes allocated per id",
+			ids, (double)elapsed / ids, allocated / ids));
+	}
+
+	private int visitIds() {
+		// Each id is seen twice, as a parent with many children is repeated in the result set
+		QueryTreeInvocation.QueryVisitor visitor = new QueryTreeInvocation.QueryVisitor();
+		for(long i = 0; i < ID_COUNT; i++) {
+			visitor.addId(i);
+			visitor.addId(i);
+		}
+		assert(visitor.getIds().size() == ID_COUNT);
+
+		return ID_COUNT * 2;
+	}
+
+	private int queryTasks(AggregateView view) {
+		Settings settings = new Settings();
+		settings.setView(view);
+		settings.setEntityClass(Task.class);
+
+		return aggregateManager.query(new Task(), settings).size();
+	}
+}
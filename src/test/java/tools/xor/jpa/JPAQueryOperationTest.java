@@ -68,6 +68,16 @@ public class JPAQueryOperationTest extends DefaultQueryOperation {
 		super.queryPerson();
 	}
 	
+	@Test
+	public void queryReconstitute() {
+		super.queryReconstitute();
+	}
+
+	@Test
+	public void queryParallelTimeout() {
+		super.queryParallelTimeout();
+	}
+
 	@Test
 	public void queryPersonNative() {
 		super.queryPersonNative();
@@ -138,6 +148,11 @@ public class JPAQueryOperationTest extends DefaultQueryOperation {
 		super.queryTaskEmptyFilter();
 	}		
 	
+	@Test
+	public void queryTaskPlanCache() {
+		super.queryTaskPlanCache();
+	}
+
 	@Test
 	public void queryTaskNameFilter() {
 		super.queryTaskNameFilter();
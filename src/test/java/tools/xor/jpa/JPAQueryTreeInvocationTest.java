@@ -0,0 +1,189 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.jpa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import tools.xor.BusinessObject;
+import tools.xor.EntityType;
+import tools.xor.MapperSide;
+import tools.xor.Settings;
+import tools.xor.db.base.Person;
+import tools.xor.db.pm.Task;
+import tools.xor.service.AggregateManager;
+import tools.xor.util.ObjectCreator;
+import tools.xor.view.QueryRow;
+import tools.xor.view.QueryTreeInvocation;
+import tools.xor.view.QueryTreeInvocation.QueryVisitor;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = { "classpath:/spring-jpa-test.xml" })
+@Transactional
+public class JPAQueryTreeInvocationTest
+{
+	@Autowired
+	protected AggregateManager aggregateManager;
+
+	private BusinessObject createBO(Object entity) {
+		ObjectCreator oc = new ObjectCreator(
+			new Settings(),
+			aggregateManager.getDataStore(),
+			aggregateManager.getDataModel().getTypeMapper().newInstance(MapperSide.EXTERNAL));
+
+		return oc.createDataObject(entity, (EntityType)oc.getType(entity.getClass()), null, null);
+	}
+
+	@Test
+	public void queryObjects() {
+		Task task = new Task();
+		task.setId("TASK1");
+		task.setName("TRACKED");
+		BusinessObject taskBO = createBO(task);
+
+		Person person = new Person();
+		person.setId("PERSON1");
+		person.setName("TRACKED");
+		BusinessObject personBO = createBO(person);
+
+		QueryTreeInvocation invocation = new QueryTreeInvocation();
+		invocation.visit("", taskBO);
+		invocation.visit("taskChildren.id", taskBO);
+		invocation.visit("", personBO);
+
+		// Looked up by path, type and id
+		assert(invocation.getQueryObject("", "TASK1", taskBO.getType()) == taskBO);
+		assert(invocation.getQueryObject("taskChildren.", "TASK1", taskBO.getType()) == taskBO);
+		assert(invocation.getQueryObject("", "PERSON1", personBO.getType()) == personBO);
+		assert(invocation.getQueryObject("taskChildren.", "PERSON1", personBO.getType()) == null);
+		assert(invocation.getQueryObject("", "TASK2", taskBO.getType()) == null);
+		assert(invocation.getQueryObject("assignedTo.", "TASK1", taskBO.getType()) == null);
+
+		// The latest object with the same id replaces the earlier one
+		Task copy = new Task();
+		copy.setId("TASK1");
+		copy.setName("TRACKED");
+		BusinessObject copyBO = createBO(copy);
+		invocation.visit("", copyBO);
+		assert(invocation.getQueryObject("", "TASK1", taskBO.getType()) == copyBO);
+	}
+
+	@Test
+	public void numericIds() {
+		QueryVisitor visitor = new QueryVisitor();
+		visitor.addId(3L);
+		visitor.addId(1L);
+		visitor.addId(3L);
+		visitor.addId(null);
+
+		// Distinct ids are kept unboxed
+		Set ids = visitor.getIds();
+		assert(ids instanceof LongOpenHashSet);
+		assert(ids.size() == 2);
+		assert(ids.contains(1L) && ids.contains(3L));
+		assert(visitor.getLastId().equals(3L));
+
+		// An id of another type falls back to a regular set
+		visitor.addId("A");
+		visitor.addId(1L);
+		ids = visitor.getIds();
+		assert(!(ids instanceof LongOpenHashSet));
+		assert(ids.size() == 3);
+		assert(ids.contains(1L) && ids.contains(3L) && ids.contains("A"));
+		assert(visitor.getLastId().equals(1L));
+	}
+
+	@Test
+	public void idBatches() {
+		final List<Set> batches = new ArrayList<>();
+		QueryVisitor visitor = new QueryVisitor((queryTree, source, ids) -> batches.add(ids), null, null);
+
+		for(long i = 0; i < QueryTreeInvocation.MAX_INLIST_SIZE + 10; i++) {
+			visitor.addId(i);
+			// A repeated id is not sent again
+			visitor.addId(0L);
+		}
+		assert(batches.size() == 1);
+		assert(batches.get(0).size() == QueryTreeInvocation.MAX_INLIST_SIZE);
+
+		visitor.flush();
+		assert(batches.size() == 2);
+		assert(batches.get(1).size() == 10);
+		assert(visitor.getIds().size() == QueryTreeInvocation.MAX_INLIST_SIZE + 10);
+
+		// Nothing left to send
+		visitor.flush();
+		assert(batches.size() == 2);
+	}
+
+	@Test
+	public void layoutLookup() {
+		LinkedHashMap<String, Integer> positions = new LinkedHashMap<>();
+		positions.put("id", 0);
+		positions.put("name", 2);
+		positions.put("assignedTo.id", 1);
+		positions.put("assignedTo.name", 3);
+		List<String> propertyPaths = Arrays.asList("name", "assignedTo.name");
+		QueryRow.Layout layout = new QueryRow.Layout(positions, positions, propertyPaths);
+
+		assert(layout.isBuiltFrom(positions));
+		assert(layout.size() == 4);
+		assert(layout.getPath(1).equals("name"));
+
+		QueryRow row = new QueryRow(layout, new Object[] { "T1", "P1", "Task 1", "Person 1" });
+		assert(row.size() == 4);
+		assert(row.get("name").equals("Task 1"));
+		assert(row.get("assignedTo.id").equals("P1"));
+		assert(row.get("assignedTo.displayName") == null);
+		assert(row.containsKey("assignedTo.name"));
+		assert(!row.containsKey("assignedTo.displayName"));
+		assert(row.getValue(1).equals("Task 1"));
+
+		// The row is a map of the values by path
+		Map<String, Object> values = new LinkedHashMap<>(row);
+		assert(values.size() == 4);
+		assert(values.get("assignedTo.name").equals("Person 1"));
+
+		// Changes are checked by column
+		QueryRow next = new QueryRow(layout, new Object[] { "T2", "P1", "Task 2", null });
+		assert(next.isChanged(0, row));
+		assert(!next.isChanged(2, row));
+		assert(next.isChanged(3, row));
+		assert(!next.isChanged(3, next));
+
+		// The property paths of a prefix are computed once
+		Set<String> assignedTo = layout.getPropertyPaths("assignedTo.");
+		assert(assignedTo.size() == 1 && assignedTo.contains("assignedTo.name"));
+		assert(layout.getPropertyPaths("assignedTo.") == assignedTo);
+		assert(layout.getPropertyPaths("").size() == 2);
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tools.xor.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import tools.xor.AssociationSetting;
+import tools.xor.Settings;
+import tools.xor.db.base.Person;
+import tools.xor.db.pm.Task;
+import tools.xor.service.AggregateManager;
+import tools.xor.util.AccessorFactory;
+import tools.xor.util.ClassUtil;
+import tools.xor.view.AggregateView;
+
+/**
+ * Measures the per row cost of reconstituting query results into objects.
+ * This is a benchmark and not part of the test suite, run it explicitly using
+ * -Dtest=JPAReconstitutePerf
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = { "classpath:/spring-jpa-test.xml" })
+@Transactional
+public class JPAReconstitutePerf
+{
+	private static final Logger logger = LogManager.getLogger(new Exception().getStackTrace()[0].getClassName());
+
+	private static final int ROW_COUNT = 2000;
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int ITERATIONS = 20;
+
+	@Autowired
+	protected AggregateManager aggregateManager;
+
+	@BeforeAll
+	public static void executeOnceBeforeAll() {
+		ClassUtil.setParallelDispatch(false);
+	}
+
+	@AfterAll
+	public static void executeOnceAfterAll() {
+		ClassUtil.setParallelDispatch(true);
+	}
+
+	@Test
+	public void reconstituteTasks() {
+		Person person = new Person();
+		person.setName("RECONSTITUTE_OWNER");
+		person.setDisplayName("Reconstitute owner");
+		person.setDescription("Assigned all the tasks");
+		person = (Person) aggregateManager.create(person, new Settings());
+
+		// The assignedTo relationship is not part of the aggregate by default
+		Settings createSettings = new Settings();
+		createSettings.expand(new AssociationSetting("assignedTo"));
+		for(int i = 0; i < ROW_COUNT; i++) {
+			Task task = new Task();
+			task.setName("RECONSTITUTE_" + i);
+			task.setDisplayName("Reconstitute " + i);
+			task.setDescription("Task number " + i);
+			task.setAssignedTo(person);
+			aggregateManager.create(task, createSettings);
+		}
+
+		List<String> paths = new ArrayList<>();
+		paths.add("name");
+		paths.add("displayName");
+		paths.add("description");
+		paths.add("assignedTo.name");
+		paths.add("assignedTo.displayName");
+		AggregateView view = new AggregateView("RECONSTITUTE_TASKS");
+		view.setAttributeList(paths);
+
+		for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+			queryTasks(view);
+		}
+
+		long start = System.nanoTime();
+		int rows = 0;
+		for(int i = 0; i < ITERATIONS; i++) {
+			rows += queryTasks(view);
+		}
+		long elapsed = System.nanoTime() - start;
+
+		assert(rows >= ROW_COUNT * ITERATIONS);
+		logger.info(String.format("Queried and reconstituted %s rows, %.2f microseconds per row",
+			rows, elapsed / 1000.0 / rows));
+		logger.info("Accessed using reflection: " + AccessorFactory.getFallbacks());
+	}
+
+	private int queryTasks(AggregateView view) {
+		Settings settings = new Settings();
+		settings.setView(view);
+		settings.setEntityClass(Task.class);
+
+		return aggregateManager.query(new Task(), settings).size();
+	}
+}
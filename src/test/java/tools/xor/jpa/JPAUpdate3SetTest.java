@@ -19,6 +19,10 @@
 
 package tools.xor.jpa;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -26,8 +30,11 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Transactional;
 
+import tools.xor.EntityType;
 import tools.xor.exception.BidirOutOfSyncException;
 import tools.xor.logic.DefaultUpdate3Set;
+import tools.xor.service.JPADataStore;
+import tools.xor.service.JPASpringPO;
 
 @ExtendWith(SpringExtension.class)
 @ContextConfiguration(locations = { "classpath:/spring-jpa-test.xml" })
@@ -89,6 +96,51 @@ public class JPAUpdate3SetTest extends DefaultUpdate3Set {
 		super.testCase20();
 	}
 	
+	@Test
+	public void testPrefetch() {
+		// Count the lookups made by the update
+		CountingDataStore dataStore = new CountingDataStore();
+		JPADataStore previous = (JPADataStore) aggregateService.getDataStore();
+		dataStore.setPersistenceUtil(previous.getPersistenceUtil());
+		aggregateService.getDataModelFactory().injectDependencies(dataStore, null);
+
+		aggregateService.setDataStore(dataStore);
+		try {
+			super.updatePrefetch();
+		} finally {
+			aggregateService.setDataStore(previous);
+		}
+
+		// The 3 tasks are loaded by a single query instead of one lookup each
+		assert(dataStore.findByIds.size() == 1);
+		assert(dataStore.findByIds.get(0) == 3);
+		assert(dataStore.findById == 0);
+
+		super.checkPrefetch();
+	}
+
+	private static class CountingDataStore extends JPASpringPO {
+		private List<Integer> findByIds = new ArrayList<>();
+		private int findById;
+
+		@Override
+		public Object findById (Class<?> persistentClass, Object id) {
+			findById++;
+			return super.findById(persistentClass, id);
+		}
+
+		@Override
+		public List<Object> findByIds (EntityType entityType, Collection ids) {
+			findByIds.add(ids.size());
+			return super.findByIds(entityType, ids);
+		}
+	}
+	
+	@Test
+	public void testPropertyPlan() {
+		super.testPropertyPlan();
+	}
+
 	@Test
 	public void testCase25() {
 	    Assertions.assertThrows(BidirOutOfSyncException.class, () -> {
@@ -0,0 +1,139 @@
+/**
+ * XOR, empowering Model Driven Architecture in J2EE applications
+ *
+ * Copyright (c) 2019, Dilip Dalton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package tools.xor.logic;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import tools.xor.CounterGenerator;
+import tools.xor.EntityType;
+import tools.xor.ExtendedProperty;
+import tools.xor.Settings;
+import tools.xor.generator.DateRange;
+import tools.xor.generator.StringTemplate;
+import tools.xor.providers.jdbc.ImportMethod;
+import tools.xor.service.AbstractDataModel;
+import tools.xor.service.AggregateManager;
+import tools.xor.service.DataModel;
+import tools.xor.service.SchemaExtension;
+import tools.xor.service.Shape;
+
+/**
+ * Compares the time taken to generate data using prepared statement batching
+ * and the PostgreSQL COPY command.
+ * Needs a PostgreSQL database configured using the psql properties in cfg-test.properties,
+ * so it is not part of the test suite.
+ */
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(locations = { "classpath:/spring-psql-jdbc-test.xml" })
+public class CopyImportPerf
+{
+    private static final int ROW_COUNT = 100000;
+
+    @Autowired
+    protected AggregateManager am;
+
+    @Autowired
+    protected DataSource dataSource;
+
+    @BeforeEach
+    public void setup() throws SQLException
+    {
+        execute("CREATE TABLE \"COPYPERFTAB\" (\"ROOTID\" VARCHAR(25) NOT NULL, " +
+            "\"NAME\" VARCHAR(100) NOT NULL, " +
+            "\"CREATED\" TIMESTAMP NOT NULL, " +
+            "\"PARTITIONNUMBER\" INTEGER NOT NULL, " +
+            "CONSTRAINT \"P_COPYPERFTAB\" PRIMARY KEY (\"ROOTID\"))");
+
+        SchemaExtension generatorExtension = new SchemaExtension()
+        {
+            @Override public void extend (Shape shape)
+            {
+                EntityType copyPerf = (EntityType)shape.getType("COPYPERFTAB");
+                copyPerf.addGenerator(new CounterGenerator(ROW_COUNT));
+
+                ((ExtendedProperty)copyPerf.getProperty("ROOTID")).setGenerator(new StringTemplate(new String[] {"ID_[VISITOR_CONTEXT]"}));
+                ((ExtendedProperty)copyPerf.getProperty("NAME")).setGenerator(new StringTemplate(new String[] {"O'NAME, [VISITOR_CONTEXT]"}));
+                ((ExtendedProperty)copyPerf.getProperty("CREATED")).setGenerator(new DateRange(new String[0]));
+                ((ExtendedProperty)copyPerf.getProperty("PARTITIONNUMBER")).setGenerator(new StringTemplate(new String[] {"[VISITOR_CONTEXT]"}));
+            }
+        };
+
+        DataModel das = am.getDataModel();
+        das.removeShape(AbstractDataModel.RELATIONAL_SHAPE);
+        das.createShape(AbstractDataModel.RELATIONAL_SHAPE, generatorExtension);
+    }
+
+    @AfterEach
+    public void teardown() throws SQLException
+    {
+        execute("DROP TABLE \"COPYPERFTAB\"");
+    }
+
+    @Test
+    public void compareImportMethods() throws SQLException
+    {
+        long prepared = populate(ImportMethod.PREPARED_STATEMENT);
+        execute("TRUNCATE TABLE \"COPYPERFTAB\"");
+        long copy = populate(ImportMethod.COPY);
+
+        System.out.println(String.format("Imported %s rows, PREPARED_STATEMENT: %s ms, COPY: %s ms", ROW_COUNT, prepared, copy));
+    }
+
+    private long populate(ImportMethod importMethod) throws SQLException
+    {
+        Settings settings = new Settings();
+        settings.setImportMethod(importMethod);
+
+        long start = System.currentTimeMillis();
+        am.generate(AbstractDataModel.RELATIONAL_SHAPE, Arrays.asList(new String[] { "COPYPERFTAB" }), settings);
+        long elapsed = System.currentTimeMillis() - start;
+
+        try (Connection c = dataSource.getConnection();
+            Statement stmt = c.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT count(*) FROM \"COPYPERFTAB\"")) {
+            rs.next();
+            assert(rs.getInt(1) == ROW_COUNT);
+        }
+
+        return elapsed;
+    }
+
+    private void execute(String sql) throws SQLException
+    {
+        try (Connection c = dataSource.getConnection();
+            Statement stmt = c.createStatement()) {
+            stmt.execute(sql);
+            c.commit();
+        }
+    }
+}
@@ -19,16 +19,25 @@
 
 package tools.xor.logic;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import tools.xor.AbstractDBTest;
 import tools.xor.Settings;
 import tools.xor.db.base.Person;
+import tools.xor.providers.jdbc.DBTranslator;
 import tools.xor.service.AggregateManager;
+import tools.xor.service.EntityScroll;
+import tools.xor.service.QueryScroll;
+import tools.xor.util.ClassUtil;
 
 public class DefaultPaging extends AbstractDBTest {
 	@Autowired
@@ -47,6 +56,16 @@ public class DefaultPaging extends AbstractDBTest {
 	final String USER_NAME = "ghade";
 	final String TYPE = "CONSTRUCTION";
 	final String FIELD = "HVAC";
+
+	@BeforeAll
+	public static void executeOnceBeforeAll() {
+		ClassUtil.setParallelDispatch(false);
+	}
+
+	@AfterAll
+	public static void executeOnceAfterAll() {
+		ClassUtil.setParallelDispatch(true);
+	}
 		
 	public void sortPersonAsc() {
 		
@@ -206,4 +225,116 @@ public class DefaultPaging extends AbstractDBTest {
 		
 		assert(toList.size() == 1);		
 	}	
+
+	public void scrollPerson() throws IOException {
+		// create person
+		Person person = new Person();
+		person.setName(NAME1);
+		person.setDisplayName(DISPLAY_NAME1);
+		person.setDescription(DESCRIPTION);
+		person.setUserName(USER_NAME);
+
+		// Create person 1
+		aggregateManager.create(person, new Settings());
+
+		// Create person 2
+		person.setName(NAME2);
+		person.setDisplayName(DISPLAY_NAME2);
+		aggregateManager.create(person, new Settings());
+
+		// Create person 3
+		person.setName(NAME3);
+		person.setDisplayName(DISPLAY_NAME3);
+		aggregateManager.create(person, new Settings());
+
+		// read the persons 2 at a time
+		Settings settings = new Settings();
+		settings.setView(aggregateManager.getView("PERSON_DESC"));
+		settings.setBatchSize(2);
+		EntityScroll<Object> scroll = aggregateManager.scroll(new Person(), settings);
+
+		List<String> names = new ArrayList<String>();
+		while(scroll.hasNext()) {
+			names.add(((Person)scroll.next()).getName());
+		}
+		scroll.close();
+
+		// The second page is shorter than the page size, so no empty page is queried
+		assert(((QueryScroll)scroll).getPageCount() == 2);
+
+		// The settings of the caller are not changed
+		assert(settings.getLimit() == null);
+		assert(settings.getNextToken() == null);
+
+		assert(names.size() == 3);
+		assert(names.get(0).equals(NAME3));
+		assert(names.get(1).equals(NAME2));
+		assert(names.get(2).equals(NAME1));
+	}
+
+	/*
+	 * The description is not unique and can be null
+	 */
+	private List<String> scrollByDescription(String viewName) throws IOException {
+		String[] descriptions = new String[] { "B", null, "A", "B", null };
+		for(int i = 0; i < descriptions.length; i++) {
+			Person person = new Person();
+			person.setName(NAME1 + "_" + i);
+			person.setDisplayName(DISPLAY_NAME1);
+			person.setDescription(descriptions[i]);
+			person.setUserName(USER_NAME);
+			aggregateManager.create(person, new Settings());
+		}
+
+		Settings settings = new Settings();
+		settings.setView(aggregateManager.getView(viewName));
+		settings.setBatchSize(2);
+		EntityScroll<Object> scroll = aggregateManager.scroll(new Person(), settings);
+
+		List<String> result = new ArrayList<String>();
+		while(scroll.hasNext()) {
+			result.add(((Person)scroll.next()).getDescription());
+		}
+		scroll.close();
+
+		return result;
+	}
+
+	public void scrollNullableAsc() throws IOException {
+		// HSQLDB sorts the nulls first, so the order of a nullable sort key is changed
+		DBTranslator translator = aggregateManager.getDataStore().getDBTranslator();
+		assert(translator.getNullsLargestClause(false).equals(" NULLS LAST"));
+
+		List<String> descriptions = scrollByDescription("PERSON_DESCRIPTION_ASC");
+
+		assert(descriptions.equals(Arrays.asList("A", "B", "B", null, null)));
+	}
+
+	public void scrollNullableDesc() throws IOException {
+		DBTranslator translator = aggregateManager.getDataStore().getDBTranslator();
+		assert(translator.getNullsLargestClause(true).equals(" NULLS FIRST"));
+
+		// PostgreSQL already sorts the nulls as the largest values
+		assert(DBTranslator.getTranslator("POSTGRESQL").getNullsLargestClause(true).isEmpty());
+
+		List<String> descriptions = scrollByDescription("PERSON_DESCRIPTION_DESC");
+
+		assert(descriptions.equals(Arrays.asList(null, null, "B", "B", "A")));
+	}
+
+	/**
+	 * The nulls are ordered as the largest values even if the database is not known
+	 *
+	 * @param descending sort order of the description
+	 * @throws IOException when closing the scroll
+	 */
+	protected void scrollNullableUnknownDatabase(boolean descending) throws IOException {
+		assert(aggregateManager.getDataStore().getDBTranslator() == null);
+
+		if(descending) {
+			assert(scrollByDescription("PERSON_DESCRIPTION_DESC").equals(Arrays.asList(null, null, "B", "B", "A")));
+		} else {
+			assert(scrollByDescription("PERSON_DESCRIPTION_ASC").equals(Arrays.asList("A", "B", "B", null, null)));
+		}
+	}
 }
@@ -80,7 +80,7 @@ public class DefaultPerfUpdate extends AbstractDBTest {
 	 * in loading the object in a single query and if attach works.
 	 * Each child has 3 children for a total of 10000*3 = 30000 tasks.
 	 */
-	public void createData() {
+	public Task createData() {
 
 		Date start = new Date();
 		Task ROOT = getRootTask();
@@ -93,6 +93,8 @@ public class DefaultPerfUpdate extends AbstractDBTest {
 		ROOT = (Task) aggregateService.read(ROOT, getSettings());
 		assert (ROOT.getTaskChildren() != null && ROOT.getTaskChildren().size() == NUM_CHILD);
 		System.out.println("DefaultPerfUpdate#createData.read took " + ((new Date().getTime()-start.getTime())) + " milliseconds");
+
+		return ROOT;
 	}
 
 	public void testNoBaseline() throws InterruptedException {
@@ -101,6 +103,27 @@ public class DefaultPerfUpdate extends AbstractDBTest {
 		// collection
 	}
 
+	/**
+	 * Update all the children of a task having 10000 children. The property plan
+	 * of a child is the same for all the children, so it is computed once.
+	 */
+	public void testCollectionUpdate() {
+		Task ROOT = createData();
+		for(Task child: ROOT.getTaskChildren()) {
+			child.setDescription("Updated " + child.getName());
+		}
+
+		Date start = new Date();
+		ROOT = (Task) aggregateService.update(ROOT, getSettings());
+		System.out.println("DefaultPerfUpdate#testCollectionUpdate.update took " + ((new Date().getTime()-start.getTime())) + " milliseconds");
+
+		ROOT = taskDao.findById(ROOT.getId());
+		assert (ROOT.getTaskChildren().size() == NUM_CHILD);
+		for(Task child: ROOT.getTaskChildren()) {
+			assert (child.getDescription().equals("Updated " + child.getName()));
+		}
+	}
+
 	public void testBaseline() {
 		//createData();
 		// TODO: update a single task with baseline
@@ -27,6 +27,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.annotation.Resource;
 
@@ -57,6 +64,7 @@ import tools.xor.db.enums.common.ValueTypeEnum;
 import tools.xor.db.pm.Project;
 import tools.xor.db.pm.Task;
 import tools.xor.service.AggregateManager;
+import tools.xor.service.DataStore;
 import tools.xor.service.DataModel;
 import tools.xor.util.ClassUtil;
 import tools.xor.util.InterQuery;
@@ -64,6 +72,8 @@ import tools.xor.view.AggregateTree;
 import tools.xor.view.AggregateView;
 import tools.xor.view.FragmentBuilder;
 import tools.xor.view.QueryBuilder;
+import tools.xor.view.Query;
+import tools.xor.view.QueryPlanCache;
 import tools.xor.view.QueryTree;
 import tools.xor.view.SplitToAnchor;
 import tools.xor.view.SplitToRoot;
@@ -146,6 +156,117 @@ public class DefaultQueryOperation extends AbstractDBTest {
 		assert(result.getDescription().equals(DESCRIPTION));
 	}
 
+	public void queryReconstitute() {
+
+		// create the tasks assigned to a person
+		Person person = new Person();
+		person.setName(NAME);
+		person.setDisplayName(DISPLAY_NAME);
+		person.setDescription(DESCRIPTION);
+		person = (Person) aggregateService.create(person, new Settings());
+
+		for(int i = 0; i < 3; i++) {
+			Task task = new Task();
+			task.setName("RECONSTITUTE_" + i);
+			task.setDisplayName("Reconstitute " + i);
+			task.setDescription("Task number " + i);
+			task.setAssignedTo(person);
+			aggregateService.create(task, getSettings());
+		}
+
+		List<String> paths = new ArrayList<>();
+		paths.add("name");
+		paths.add("displayName");
+		paths.add("assignedTo.name");
+		paths.add("assignedTo.displayName");
+		AggregateView view = new AggregateView("RECONSTITUTE_TASKS");
+		view.setAttributeList(paths);
+
+		// The second query reuses the compiled and resolved paths
+		for(int i = 0; i < 2; i++) {
+			Settings settings = new Settings();
+			settings.setView(view);
+			settings.setEntityClass(Task.class);
+			List<?> toList = aggregateService.query(new Task(), settings);
+
+			assert(toList.size() == 3);
+			for(Object obj: toList) {
+				Task task = (Task) obj;
+				assert(task.getName().startsWith("RECONSTITUTE_"));
+				assert(task.getDisplayName().equals("Reconstitute " + task.getName().substring("RECONSTITUTE_".length())));
+				assert(task.getAssignedTo() != null);
+				assert(task.getAssignedTo().getName().equals(NAME));
+				assert(task.getAssignedTo().getDisplayName().equals(DISPLAY_NAME));
+			}
+		}
+	}
+
+	public void queryParallelTimeout() {
+
+		// create person
+		Person person = new Person();
+		person.setName(NAME);
+		person.setDisplayName(DISPLAY_NAME);
+		person.setDescription(DESCRIPTION);
+		person.setUserName(USER_NAME);
+
+		person = (Person) aggregateService.create(person, new Settings());
+
+		// The only thread of the executor is busy, so the query never gets to run
+		final CountDownLatch busy = new CountDownLatch(1);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+		executor.submit(new Runnable() {
+			@Override public void run ()
+			{
+				try {
+					busy.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+
+		Settings settings = new Settings();
+		settings.setView(aggregateService.getView("BASICINFO"));
+		settings.setQueryExecutor(executor);
+		settings.setQueryTimeout(100);
+
+		RuntimeException failure = null;
+		ClassUtil.setParallelDispatch(true);
+		try {
+			aggregateService.query(person, settings);
+		} catch (RuntimeException e) {
+			failure = e;
+		} finally {
+			ClassUtil.setParallelDispatch(false);
+		}
+
+		try {
+			assert(failure != null && failure.getCause() instanceof TimeoutException);
+
+			// The query that was waiting for the executor should have been cancelled
+			assert(!executor.getQueue().isEmpty());
+			for(Runnable task: executor.getQueue()) {
+				assert(((Future)task).isCancelled());
+			}
+		} finally {
+			busy.countDown();
+			executor.shutdown();
+		}
+
+		// A cancelled query does not return any more results
+		Query query = aggregateService.getDataStore().getQuery("SELECT p FROM Person p", DataStore.QueryType.OQL, null);
+		query.cancel();
+		boolean cancelled = false;
+		try {
+			query.getResultList(null, new Settings());
+		} catch (CancellationException e) {
+			cancelled = true;
+		}
+		assert(cancelled);
+	}
+
 	public void queryPersonNative() {
 
 		// create person
@@ -824,6 +945,73 @@ public class DefaultQueryOperation extends AbstractDBTest {
 		assert(toList.size() == 3);		
 	}
 
+	public void queryTaskPlanCache() {
+		// task 1
+		Task task1 = new Task();
+		task1.setName("DEFECTS");
+		task1.setDisplayName("Defects");
+		task1.setDescription("User story to address product defects");
+		aggregateService.create(task1, new Settings());
+
+		// task 2
+		Task task2 = new Task();
+		task2.setName("FIX_DEFECTS");
+		task2.setDisplayName("Fix defects");
+		task2.setDescription("Task to track the defect fixing effort");
+		aggregateService.create(task2, new Settings());
+
+		// Remove the plans cached by other tests using this view
+		QueryPlanCache planCache = QueryPlanCache.getInstance();
+		planCache.invalidate("TASKFILTER");
+
+		// The first query builds the plan
+		long hits = planCache.getHits();
+		long misses = planCache.getMisses();
+		Settings settings = new Settings();
+		settings.setView(aggregateService.getView("TASKFILTER"));
+		List<?> toList = aggregateService.query(new Task(), settings);
+		assert(toList.size() == 2);
+		long lookups = planCache.getMisses() - misses;
+		assert(lookups > 0);
+		assert(planCache.getHits() == hits);
+
+		// The same query with the same filters reuses the plan
+		hits = planCache.getHits();
+		misses = planCache.getMisses();
+		settings = new Settings();
+		settings.setView(aggregateService.getView("TASKFILTER"));
+		toList = aggregateService.query(new Task(), settings);
+		assert(toList.size() == 2);
+		assert(planCache.getHits() - hits == lookups);
+		assert(planCache.getMisses() == misses);
+
+		// A filter changes the plan
+		hits = planCache.getHits();
+		misses = planCache.getMisses();
+		settings = new Settings();
+		settings.addFunction(FunctionHandler.EQUAL, "name", "exactName");
+		settings.setParam("exactName", "FIX_DEFECTS");
+		settings.setView(aggregateService.getView("TASKFILTER"));
+		toList = aggregateService.query(new Task(), settings);
+		assert(toList.size() == 1);
+		assert(planCache.getMisses() - misses == lookups);
+		assert(planCache.getHits() == hits);
+
+		// The ilike filter refers to a parameter generated for each query, so its plan is not cached
+		int size = planCache.size();
+		for(int i = 0; i < 2; i++) {
+			hits = planCache.getHits();
+			settings = new Settings();
+			settings.setParam("name", "FIX_DEFECTS");
+			settings.setView(aggregateService.getView("TASKFILTER"));
+			toList = aggregateService.query(new Task(), settings);
+			assert(toList.size() == 1);
+			assert(((Task)toList.get(0)).getName().equals("FIX_DEFECTS"));
+			assert(planCache.getHits() == hits);
+			assert(planCache.size() == size);
+		}
+	}
+
 	public void queryTaskNameFilter() {
 		// task 1
 		Task task1 = new Task();
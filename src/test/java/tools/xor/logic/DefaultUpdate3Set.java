@@ -19,6 +19,7 @@
 
 package tools.xor.logic;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -30,14 +31,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import tools.xor.AbstractDBTest;
 import tools.xor.BusinessObject;
+import tools.xor.CallInfo;
+import tools.xor.DefaultPrefetchCache;
+import tools.xor.PrefetchCache;
+import tools.xor.Property;
 import tools.xor.Settings;
+import tools.xor.Type;
 import tools.xor.action.Executable;
 import tools.xor.action.PropertyKey;
 import tools.xor.action.SetUpdateAction;
 import tools.xor.core.Interceptor;
+import tools.xor.custom.DefaultAssociationStrategy;
 import tools.xor.db.dao.TaskDao;
 import tools.xor.db.pm.Task;
 import tools.xor.service.AggregateManager;
+import tools.xor.util.ObjectCreator;
 
 public class DefaultUpdate3Set extends AbstractDBTest {
 
@@ -181,6 +189,106 @@ public class DefaultUpdate3Set extends AbstractDBTest {
 		return settings;
 	}	
 	
+	public void testPrefetch() {
+		updatePrefetch();
+		checkPrefetch();
+	}
+
+	/**
+	 * Update with the tasks loaded in bulk before the update
+	 */
+	protected void updatePrefetch() {
+		Set<Task> children = new HashSet<Task>();
+		children.add(C);
+		children.add(B);
+
+		A.setTaskChildren(children);
+		C.setTaskParent(A);
+		B.setTaskParent(A);
+
+		final Settings settings = getSettings();
+		settings.setPrefetch(true);
+		final PrefetchCache[] cache = new PrefetchCache[1];
+		settings.setInterceptor(new Interceptor() {
+			@Override
+			public void preBiDirActionStage(Map<PropertyKey, List<Executable>> actions) {
+				cache[0] = settings.getPrefetchCache();
+			}
+		});
+		A = (Task) aggregateService.update(A, settings);
+		assert(settings.getPrefetchCache() == null);
+
+		// All the tasks were in the cache during the update
+		assert(cache[0] instanceof DefaultPrefetchCache);
+		Type taskType = aggregateService.getDataModel().getShape().getType(Task.class);
+		for(Task task: new Task[] {A, B, C}) {
+			assert(((DefaultPrefetchCache)cache[0]).isPrefetched(taskType, task.getId()));
+			assert(cache[0].getEntity(taskType, task.getId()) != null);
+		}
+	}
+
+	protected void checkPrefetch() {
+		A = taskDao.findById(A.getId());
+		A = (Task) aggregateService.read(A, getSettings());
+
+		assert(A.getTaskChildren() != null && A.getTaskChildren().size() == 2);
+		for(Task child: A.getTaskChildren()) {
+			assert(child.getTaskParent() != null);
+		}
+	}
+
+	/**
+	 * The property plan of an object is computed once for all the objects
+	 * at the same position in the traversal
+	 */
+	public void testPropertyPlan() {
+		Set<Task> children = new HashSet<Task>();
+		children.add(C);
+		children.add(B);
+
+		A.setTaskChildren(children);
+		C.setTaskParent(A);
+		B.setTaskParent(A);
+
+		// The plan and property path of the first lookup of each task
+		final Map<String, List<Property>> plans = new HashMap<>();
+		final Map<String, String> paths = new HashMap<>();
+		Settings settings = getSettings();
+		settings.setAssociationStrategy(new DefaultAssociationStrategy() {
+			@Override
+			public Object execute(CallInfo callInfo, ObjectCreator oc) {
+				BusinessObject input = (BusinessObject) callInfo.getInput();
+				if(input != null && input.getInstance() instanceof Task) {
+					String name = ((Task)input.getInstance()).getName();
+					if(!plans.containsKey(name)) {
+						plans.put(name, callInfo.getProperties(input.getType()));
+						paths.put(name, callInfo.getInputPropertyPath());
+					}
+				}
+				return super.execute(callInfo, oc);
+			}
+		});
+		A = (Task) aggregateService.update(A, settings);
+
+		A = taskDao.findById(A.getId());
+		C = taskDao.findById(C.getId());
+		B = taskDao.findById(B.getId());
+
+		A = (Task) aggregateService.read(A, getSettings());
+		C = (Task) aggregateService.read(C, getSettings());
+		B = (Task) aggregateService.read(B, getSettings());
+
+		assert(A.getTaskChildren() != null && A.getTaskChildren().size() == 2);
+
+		// The children share the plan
+		assert(paths.get(B_NAME).equals(paths.get(C_NAME)));
+		assert(plans.get(B_NAME) == plans.get(C_NAME));
+
+		// The root has a different state and path, so it has its own plan
+		assert(!paths.get(A_NAME).equals(paths.get(B_NAME)));
+		assert(plans.get(A_NAME) != plans.get(B_NAME));
+	}
+
 	public void testCase4() {
 		C = taskDao.findById(C.getId());		
 		Set<Task> children = new HashSet<Task>();
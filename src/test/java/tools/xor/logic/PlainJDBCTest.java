@@ -19,16 +19,43 @@
 
 package tools.xor.logic;
 
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 
 import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -39,18 +66,40 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import tools.xor.AbstractTypeMapper;
+import tools.xor.BusinessObject;
+import tools.xor.CounterGenerator;
+import tools.xor.DataGenerator;
+import tools.xor.DataImporter;
 import tools.xor.EntityType;
+import tools.xor.ExtendedProperty;
 import tools.xor.FunctionType;
+import tools.xor.ImmutableBO;
 import tools.xor.JDBCType;
+import tools.xor.MapperSide;
 import tools.xor.Settings;
+import tools.xor.SurrogateEntityKey;
+import tools.xor.TypeMapper;
 import tools.xor.generator.Generator;
 import tools.xor.generator.RangePercent;
+import tools.xor.generator.StringTemplate;
+import tools.xor.providers.jdbc.DBTranslator;
+import tools.xor.providers.jdbc.ImportMethod;
+import tools.xor.providers.jdbc.JDBCDataModel;
 import tools.xor.providers.jdbc.JDBCDataStore;
+import tools.xor.providers.jdbc.JDBCQuery;
 import tools.xor.providers.jdbc.JDBCSessionContext;
+import tools.xor.providers.jdbc.SchemaSnapshot;
+import tools.xor.providers.jdbc.StatementCache;
 import tools.xor.service.AggregateManager;
 import tools.xor.service.DataModel;
 import tools.xor.service.Shape;
+import tools.xor.util.ClassUtil;
+import tools.xor.util.ObjectCreator;
 import tools.xor.view.AggregateView;
+import tools.xor.view.AggregateViews;
+import tools.xor.view.ColumnBuffer;
+import tools.xor.view.QueryTree;
 
 @ExtendWith(SpringExtension.class)
 @ContextConfiguration(locations = { "classpath:/spring-jdbc-test.xml" })
@@ -533,6 +582,186 @@ public class PlainJDBCTest
 		sc.close();
 	}
 
+	private AggregateView getColleaguesView() {
+		AggregateView view = new AggregateView();
+		List<String> attributes = new ArrayList<>();
+		view.setAttributeList(attributes);
+		attributes.add("ID");
+		attributes.add("NAME");
+		attributes.add("LIBRARYASSOCIATIONS.ASSOCIATION.ID");
+		attributes.add("LIBRARY.ID");
+		attributes.add("LIBRARY.LIBRARIANS.ID");
+		attributes.add("LIBRARY.LIBRARIANS.NAME");
+
+		// The two collections are anchored at the librarian, so they are read by child queries
+		view.setSplitToRoot(false);
+
+		return view;
+	}
+
+	/**
+	 * Runs the query tasks on a pool, failing the given submission after the task
+	 * has been queued.
+	 */
+	private static class TestExecutor extends AbstractExecutorService {
+		private final ExecutorService pool = Executors.newFixedThreadPool(4);
+		private final AtomicInteger submitted = new AtomicInteger();
+		private final int failAt;
+
+		TestExecutor(int failAt) {
+			this.failAt = failAt;
+		}
+
+		@Override public void execute (Runnable command)
+		{
+			pool.execute(command);
+			if(submitted.incrementAndGet() == failAt) {
+				throw new IllegalStateException("Unable to dispatch the child query");
+			}
+		}
+
+		@Override public void shutdown () { pool.shutdown(); }
+		@Override public List<Runnable> shutdownNow () { return pool.shutdownNow(); }
+		@Override public boolean isShutdown () { return pool.isShutdown(); }
+		@Override public boolean isTerminated () { return pool.isTerminated(); }
+		@Override public boolean awaitTermination (long timeout, TimeUnit unit) throws InterruptedException
+		{
+			return pool.awaitTermination(timeout, unit);
+		}
+	}
+
+	@Test
+	public void queryPipelined() {
+		DataModel das = am.getDataModel();
+		Shape shape = das.getShape(SHAPE_NAME);
+
+		am.configure(null);
+		JDBCSessionContext sc = ((JDBCDataStore)am.getDataStore()).getSessionContext();
+		sc.beginTransaction();
+
+		JSONObject json = new JSONObject();
+		json.put("ID", "1002");
+
+		TestExecutor executor = new TestExecutor(0);
+		Settings settings = new Settings();
+		settings.setEntityType(shape.getType("librarian"));
+		settings.setView(getColleaguesView());
+		settings.setQueryExecutor(executor);
+		settings.init(shape);
+
+		// The child queries are started as the parent ids are read
+		boolean parallel = ClassUtil.doParallelDispatch();
+		ClassUtil.setParallelDispatch(true);
+		ClassUtil.setPipelinedDispatch(true);
+		List<?> toList;
+		try {
+			toList = am.query(json, settings);
+		} finally {
+			ClassUtil.setPipelinedDispatch(false);
+			ClassUtil.setParallelDispatch(parallel);
+			executor.shutdown();
+			sc.close();
+		}
+
+		// Each collection is read by its own child query
+		assert(executor.submitted.get() == 3);
+
+		assert(toList.size() == 1);
+		JSONObject librarian = (JSONObject)toList.get(0);
+		assert(librarian.getJSONArray("LIBRARYASSOCIATIONS").length() == 2);
+		assert(librarian.getJSONObject("LIBRARY").getJSONArray("LIBRARIANS").length() == 3);
+	}
+
+	@Test
+	public void queryPipelinedSharedExecutor() {
+		DataModel das = am.getDataModel();
+		Shape shape = das.getShape(SHAPE_NAME);
+
+		am.configure(null);
+		JDBCSessionContext sc = ((JDBCDataStore)am.getDataStore()).getSessionContext();
+		sc.beginTransaction();
+
+		JSONObject json = new JSONObject();
+		json.put("ID", "1002");
+
+		Settings settings = new Settings();
+		settings.setEntityType(shape.getType("librarian"));
+		settings.setView(getColleaguesView());
+		settings.init(shape);
+
+		boolean parallel = ClassUtil.doParallelDispatch();
+		ClassUtil.setParallelDispatch(true);
+		ClassUtil.setPipelinedDispatch(true);
+		List<?> toList;
+		try {
+			toList = am.query(json, settings);
+		} finally {
+			ClassUtil.setPipelinedDispatch(false);
+			ClassUtil.setParallelDispatch(parallel);
+			sc.close();
+		}
+
+		assert(toList.size() == 1);
+		JSONObject librarian = (JSONObject)toList.get(0);
+		assert(librarian.getJSONArray("LIBRARYASSOCIATIONS").length() == 2);
+		assert(librarian.getJSONObject("LIBRARY").getJSONArray("LIBRARIANS").length() == 3);
+
+		// The pipelines waiting for the parent ids do not hold the threads of the shared query executor
+		boolean pipelineThread = false;
+		for(Thread thread: Thread.getAllStackTraces().keySet()) {
+			if(thread.getName().equals("xor-pipeline")) {
+				pipelineThread = true;
+			}
+		}
+		assert(pipelineThread);
+	}
+
+	@Test
+	public void queryPipelinedParentFailure() throws InterruptedException {
+		DataModel das = am.getDataModel();
+		Shape shape = das.getShape(SHAPE_NAME);
+
+		am.configure(null);
+		JDBCSessionContext sc = ((JDBCDataStore)am.getDataStore()).getSessionContext();
+		sc.beginTransaction();
+
+		JSONObject json = new JSONObject();
+		json.put("ID", "1002");
+
+		// The second task is the pipeline of a child query. It is queued, but the
+		// librarian query fails, so no ids will ever be sent to it. The dispatcher does not
+		// have a Future to cancel it with, so it has to be released by closing the pipeline.
+		TestExecutor executor = new TestExecutor(2);
+		Settings settings = new Settings();
+		settings.setEntityType(shape.getType("librarian"));
+		settings.setView(getColleaguesView());
+		settings.setQueryExecutor(executor);
+		settings.init(shape);
+
+		Throwable failure = null;
+		boolean parallel = ClassUtil.doParallelDispatch();
+		ClassUtil.setParallelDispatch(true);
+		ClassUtil.setPipelinedDispatch(true);
+		try {
+			am.query(json, settings);
+		} catch (RuntimeException e) {
+			failure = e;
+		} finally {
+			ClassUtil.setPipelinedDispatch(false);
+			ClassUtil.setParallelDispatch(parallel);
+			executor.shutdown();
+			sc.close();
+		}
+
+		while(failure != null && !(failure instanceof IllegalStateException)) {
+			failure = failure.getCause();
+		}
+		assert(failure != null && failure.getMessage().equals("Unable to dispatch the child query"));
+
+		// The pipeline waiting for the ids of the librarian has returned
+		assert(executor.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
 	@Test
 	public void testDeeplyNested() {
 		DataModel das = am.getDataModel();
@@ -692,6 +921,967 @@ public class PlainJDBCTest
 		assert(librarian3.getString("ID").equals("1004"));
 	}
 
+	@Test
+	public void changeTrackingUpdate() throws SQLException {
+		DataModel das = am.getDataModel();
+		Shape shape = das.getShape(SHAPE_NAME);
+		TypeMapper typeMapper = das.getTypeMapper().newInstance(MapperSide.DOMAIN);
+		typeMapper.setDomainShape(shape);
+
+		am.configure(null);
+		JDBCDataStore po = (JDBCDataStore)am.getDataStore();
+		JDBCSessionContext sc = po.getSessionContext();
+		sc.setChangeTracking(true);
+		sc.beginTransaction();
+
+		try {
+			JDBCType type = (JDBCType) shape.getType("library");
+			Settings settings = new Settings();
+			settings.setEntityType(type);
+			ObjectCreator oc = new ObjectCreator(settings, po, typeMapper);
+			DBTranslator translator = DBTranslator.getTranslator(sc.getConnection());
+
+			// Only the NAME column is modified
+			JSONObject loaded = new JSONObject().put("ID", "L100").put("NAME", "British Library");
+			sc.process(loaded, type);
+			BusinessObject bo = new ImmutableBO(type, null, null, oc);
+			bo.setInstance(new JSONObject().put("ID", "L100").put("NAME", "The British Library"));
+			BusinessObject dbBO = new ImmutableBO(type, null, null, oc);
+			dbBO.setInstance(sc.getSnapshot(loaded));
+			assert(translator.getDirtyProperties(type, bo, dbBO).size() == 1);
+			sc.update(bo, dbBO);
+
+			// Nothing is modified
+			JSONObject unchanged = new JSONObject().put("ID", "L110").put("NAME", "Signet Library");
+			sc.process(unchanged, type);
+			bo = new ImmutableBO(type, null, null, oc);
+			bo.setInstance(new JSONObject().put("ID", "L110").put("NAME", "Signet Library"));
+			dbBO = new ImmutableBO(type, null, null, oc);
+			dbBO.setInstance(sc.getSnapshot(unchanged));
+			assert(translator.getDirtyProperties(type, bo, dbBO).isEmpty());
+			sc.update(bo, dbBO);
+
+			sc.commit();
+
+			try (Statement statement = sc.getConnection().createStatement();
+				ResultSet rs = statement.executeQuery("SELECT name FROM library WHERE id = 'L100'")) {
+				assert(rs.next());
+				assert(rs.getString(1).equals("The British Library"));
+			}
+		} finally {
+			sc.setChangeTracking(false);
+			sc.close();
+		}
+	}
+
+	@Test
+	public void changeTrackingUpdateDirtySets() throws SQLException {
+		DataModel das = am.getDataModel();
+		Shape shape = das.getShape(SHAPE_NAME);
+		TypeMapper typeMapper = das.getTypeMapper().newInstance(MapperSide.DOMAIN);
+		typeMapper.setDomainShape(shape);
+
+		am.configure(null);
+		JDBCDataStore po = (JDBCDataStore)am.getDataStore();
+		JDBCSessionContext sc = po.getSessionContext();
+		sc.setChangeTracking(true);
+		sc.beginTransaction();
+
+		try {
+			JDBCType type = (JDBCType) shape.getType("address");
+			Settings settings = new Settings();
+			settings.setEntityType(type);
+			ObjectCreator oc = new ObjectCreator(settings, po, typeMapper);
+
+			// The rows of the same table have different dirty columns, so they are updated by different statements
+			String[][] rows = new String[][] {
+				{ "A101", "96 Euston Rd", "London", "STREET", "97 Euston Rd" },
+				{ "A102", "University of Oxford, Broad St", "Oxford", "CITY", "Oxford City" }
+			};
+			for(String[] row: rows) {
+				JSONObject loaded = new JSONObject().put("ID", row[0]).put("STREET", row[1]).put("CITY", row[2]);
+				sc.process(loaded, type);
+				BusinessObject bo = new ImmutableBO(type, null, null, oc);
+				bo.setInstance(new JSONObject(loaded.toString()).put(row[3], row[4]));
+				BusinessObject dbBO = new ImmutableBO(type, null, null, oc);
+				dbBO.setInstance(sc.getSnapshot(loaded));
+				sc.update(bo, dbBO);
+			}
+
+			sc.commit();
+
+			try (Statement statement = sc.getConnection().createStatement();
+				ResultSet rs = statement.executeQuery("SELECT id, street, city FROM address WHERE id IN ('A101', 'A102') ORDER BY id")) {
+				assert(rs.next());
+				assert(rs.getString(2).equals("97 Euston Rd"));
+				assert(rs.getString(3).equals("London"));
+				assert(rs.next());
+				assert(rs.getString(2).equals("University of Oxford, Broad St"));
+				assert(rs.getString(3).equals("Oxford City"));
+			}
+		} finally {
+			sc.setChangeTracking(false);
+			sc.close();
+		}
+	}
+
+	@Test
+	public void statementCache() throws SQLException {
+		DataModel das = am.getDataModel();
+		Shape shape = das.getShape(SHAPE_NAME);
+		TypeMapper typeMapper = das.getTypeMapper().newInstance(MapperSide.DOMAIN);
+		typeMapper.setDomainShape(shape);
+
+		am.configure(null);
+		JDBCDataStore po = (JDBCDataStore)am.getDataStore();
+		JDBCSessionContext sc = po.getSessionContext();
+		sc.beginTransaction();
+
+		try {
+			JDBCType type = (JDBCType) shape.getType("library");
+			Settings settings = new Settings();
+			settings.setEntityType(type);
+			ObjectCreator oc = new ObjectCreator(settings, po, typeMapper);
+
+			// The statement prepared before the flush is reused after it
+			StatementCache cache = sc.getStatementCache();
+			long misses = cache.getMisses();
+			String[] names = new String[] { "British Library", "The British Library", "British Library" };
+			for(int i = 1; i < names.length; i++) {
+				BusinessObject bo = new ImmutableBO(type, null, null, oc);
+				bo.setInstance(new JSONObject().put("ID", "L100").put("NAME", names[i]));
+				BusinessObject dbBO = new ImmutableBO(type, null, null, oc);
+				dbBO.setInstance(new JSONObject().put("ID", "L100").put("NAME", names[i-1]));
+				sc.update(bo, dbBO);
+				sc.flush();
+			}
+			assert(cache.getMisses() == misses + 1);
+			assert(cache.getHits() > 0);
+
+			// The evicted statement is closed once its batch is released
+			Connection connection = sc.getConnection();
+			StatementCache small = new StatementCache(1, StatementCache.EvictionPolicy.LRU);
+			PreparedStatement first = small.prepare(connection, "library", "SELECT name FROM library WHERE id = ?");
+			small.pin(first);
+			PreparedStatement second = small.prepare(connection, "library", "SELECT id FROM library WHERE name = ?");
+			assert(small.getEvictions() == 1);
+			assert(!first.isClosed());
+			small.unpin(Collections.singletonList(first));
+			assert(first.isClosed());
+
+			small.prepare(connection, "address", "SELECT id FROM address WHERE city = ?");
+			assert(second.isClosed());
+			small.clear();
+
+			// An evicted statement with a pending batch is not replaced when it is prepared again
+			StatementCache shared = new StatementCache(1, StatementCache.EvictionPolicy.LRU);
+			String sql = "UPDATE library SET name = ? WHERE id = ?";
+			PreparedStatement batched = shared.prepare(connection, "library", sql);
+			shared.pin(batched);
+			shared.pin(batched); // pinned by a nested transaction sharing the connection
+			shared.prepare(connection, "address", "SELECT id FROM address WHERE city = ?");
+			assert(shared.prepare(connection, "library", sql) == batched);
+
+			// The statement is closed only once both the pins are released
+			shared.prepare(connection, "address", "SELECT id FROM address WHERE city = ?");
+			shared.unpin(Collections.singletonList(batched));
+			assert(shared.isPinned(batched));
+			assert(!batched.isClosed());
+			shared.unpin(Collections.singletonList(batched));
+			assert(!shared.isPinned(batched));
+			assert(batched.isClosed());
+			shared.clear();
+
+			// A nested transaction shares the statements of the outer transaction
+			int size = cache.size();
+			sc.beginTransaction();
+			assert(sc.getStatementCache() == cache);
+			sc.close();
+			assert(cache.size() == size && size > 0);
+
+			// The statements prepared on an attached connection are closed when the session detaches
+			try (Connection existing = dataSource.getConnection()) {
+				sc.attachToExisting(existing);
+				StatementCache attached = sc.getStatementCache();
+				assert(attached != cache);
+				PreparedStatement ps = attached.prepare(existing, "library", "SELECT name FROM library WHERE id = ?");
+				sc.close();
+				assert(ps.isClosed());
+				assert(attached.size() == 0);
+				assert(!existing.isClosed());
+			}
+			assert(sc.getStatementCache() == cache);
+		} finally {
+			sc.close();
+		}
+	}
+
+	@Test
+	public void parallelFlush() throws SQLException {
+		DataModel das = am.getDataModel();
+		Shape shape = das.getShape(SHAPE_NAME);
+		TypeMapper typeMapper = das.getTypeMapper().newInstance(MapperSide.DOMAIN);
+		typeMapper.setDomainShape(shape);
+
+		am.configure(null);
+		JDBCDataStore po = (JDBCDataStore)am.getDataStore();
+		JDBCSessionContext sc = po.getSessionContext();
+		sc.setFlushMode(JDBCSessionContext.FlushMode.PARALLEL);
+		sc.beginTransaction();
+
+		try {
+			JDBCType addressType = (JDBCType) shape.getType("address");
+			JDBCType associationType = (JDBCType) shape.getType("association");
+			Settings settings = new Settings();
+			settings.setEntityType(addressType);
+			ObjectCreator oc = new ObjectCreator(settings, po, typeMapper);
+
+			// address and association are not related, so they are inserted concurrently
+			ImportMethod[] importMethods = new ImportMethod[] { ImportMethod.PREPARED_STATEMENT, ImportMethod.MULTI_ROW };
+			for(int i = 0; i < importMethods.length; i++) {
+				sc.setImportMethod(importMethods[i]);
+
+				BusinessObject address = new ImmutableBO(addressType, null, null, oc);
+				address.setInstance(new JSONObject().put("ID", "A20" + i).put("STREET", "Main St").put("CITY", "Springfield")
+					.put("ZIP_OR_POSTCODE", "12345").put("COUNTRY", "USA"));
+				sc.create(address, Arrays.asList(new String[] { "ID", "STREET", "CITY", "ZIP_OR_POSTCODE", "COUNTRY" }));
+
+				BusinessObject association = new ImmutableBO(associationType, null, null, oc);
+				association.setInstance(new JSONObject().put("ID", "PLA" + i).put("NAME", "Public Library Association").put("STATE", "Illinois"));
+				sc.create(association, Arrays.asList(new String[] { "ID", "NAME", "STATE" }));
+
+				sc.commit();
+			}
+		} finally {
+			sc.setFlushMode(JDBCSessionContext.FlushMode.SERIAL);
+			sc.setImportMethod(ImportMethod.PREPARED_STATEMENT);
+			sc.close();
+		}
+
+		try (Connection connection = dataSource.getConnection();
+			Statement statement = connection.createStatement();
+			ResultSet rs = statement.executeQuery("SELECT (SELECT count(*) FROM address WHERE id LIKE 'A20%'), (SELECT count(*) FROM association WHERE id LIKE 'PLA%') FROM address WHERE id = 'A101'")) {
+			assert(rs.next());
+			assert(rs.getInt(1) == 2);
+			assert(rs.getInt(2) == 2);
+		}
+	}
+
+	@Test
+	public void multiRowInsert() throws SQLException {
+		DataModel das = am.getDataModel();
+		Shape shape = das.getShape(SHAPE_NAME);
+		TypeMapper typeMapper = das.getTypeMapper().newInstance(MapperSide.DOMAIN);
+		typeMapper.setDomainShape(shape);
+
+		am.configure(null);
+		JDBCDataStore po = (JDBCDataStore)am.getDataStore();
+		JDBCSessionContext sc = po.getSessionContext();
+		sc.setImportMethod(ImportMethod.MULTI_ROW);
+		sc.beginTransaction();
+
+		try {
+			JDBCType addressType = (JDBCType) shape.getType("address");
+			JDBCType associationType = (JDBCType) shape.getType("association");
+			Settings settings = new Settings();
+			settings.setEntityType(associationType);
+			ObjectCreator oc = new ObjectCreator(settings, po, typeMapper);
+
+			// 1500 rows of 3 columns need 3 statements at the bind parameter limit of 2000,
+			// the remaining 168 rows are inserted using statements of 128, 32 and 8 rows
+			StatementCache cache = sc.getStatementCache();
+			long misses = cache.getMisses();
+			for(int i = 0; i < 1500; i++) {
+				BusinessObject association = new ImmutableBO(associationType, null, null, oc);
+				association.setInstance(new JSONObject().put("ID", "MRA" + i).put("NAME", "Association " + i).put("STATE", "Ohio"));
+				sc.create(association, Arrays.asList(new String[] { "ID", "NAME", "STATE" }));
+			}
+
+			// The rows of a table with different column sets are inserted by different statements
+			for(int i = 0; i < 5; i++) {
+				BusinessObject address = new ImmutableBO(addressType, null, null, oc);
+				address.setInstance(new JSONObject().put("ID", "MR" + i).put("STREET", "Main St").put("CITY", "Springfield")
+					.put("ZIP_OR_POSTCODE", "12345").put("COUNTRY", "USA"));
+				sc.create(address, Arrays.asList(new String[] { "ID", "STREET", "CITY", "ZIP_OR_POSTCODE", "COUNTRY" }));
+
+				address = new ImmutableBO(addressType, null, null, oc);
+				address.setInstance(new JSONObject().put("ID", "MRC" + i).put("STREET", "Main St").put("CITY", "Springfield")
+					.put("COUNTY_PROVINCE", "Sangamon").put("ZIP_OR_POSTCODE", "12345").put("COUNTRY", "USA"));
+				sc.create(address, Arrays.asList(new String[] { "ID", "STREET", "CITY", "COUNTY_PROVINCE", "ZIP_OR_POSTCODE", "COUNTRY" }));
+			}
+			sc.commit();
+
+			// 666, 128, 32 and 8 rows for association, and 4 and 1 rows for each address column set
+			assert(cache.getMisses() - misses == 8);
+
+			try (Statement statement = sc.getConnection().createStatement();
+				ResultSet rs = statement.executeQuery("SELECT (SELECT count(*) FROM association WHERE id LIKE 'MRA%'), "
+					+ "(SELECT count(*) FROM address WHERE id LIKE 'MR%' AND county_province IS NULL), "
+					+ "(SELECT count(*) FROM address WHERE id LIKE 'MRC%' AND county_province = 'Sangamon') FROM address WHERE id = 'A101'")) {
+				assert(rs.next());
+				assert(rs.getInt(1) == 1500);
+				assert(rs.getInt(2) == 5);
+				assert(rs.getInt(3) == 5);
+			}
+		} finally {
+			sc.setImportMethod(ImportMethod.PREPARED_STATEMENT);
+			sc.close();
+		}
+	}
+
+	@Test
+	public void multiRowInsertSupertype() throws SQLException {
+		final String shapeName = "MultiRowJDBC";
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();) {
+			statement.execute("CREATE TABLE member (id VARCHAR(10) NOT NULL, name VARCHAR(50) NOT NULL, PRIMARY KEY(id))");
+			statement.execute("CREATE TABLE premium_member (id VARCHAR(10) NOT NULL, level INTEGER NOT NULL, PRIMARY KEY(id))");
+			statement.execute("ALTER TABLE premium_member ADD CONSTRAINT FK_premium_member FOREIGN KEY(id) REFERENCES member(id)");
+			connection.commit();
+		}
+
+		DataModel das = am.getDataModel();
+		Shape shape = das.createShape(shapeName);
+		TypeMapper typeMapper = das.getTypeMapper().newInstance(MapperSide.DOMAIN);
+		typeMapper.setDomainShape(shape);
+
+		am.configure(null);
+		JDBCDataStore po = (JDBCDataStore)am.getDataStore();
+		JDBCSessionContext sc = po.getSessionContext();
+		sc.setImportMethod(ImportMethod.MULTI_ROW);
+		sc.beginTransaction();
+
+		try {
+			JDBCType memberType = (JDBCType) shape.getType("premium_member");
+			assert(memberType.getParentType() == shape.getType("member"));
+
+			Settings settings = new Settings();
+			settings.setEntityType(memberType);
+			ObjectCreator oc = new ObjectCreator(settings, po, typeMapper);
+
+			// Each row is inserted into the supertype table before the subtype table
+			for(int i = 0; i < 10; i++) {
+				BusinessObject member = new ImmutableBO(memberType, null, null, oc);
+				member.setInstance(new JSONObject().put("ID", "PM" + i).put("NAME", "Member " + i).put("LEVEL", i));
+				sc.create(member, settings, null);
+			}
+			sc.commit();
+
+			try (Statement statement = sc.getConnection().createStatement();
+				ResultSet rs = statement.executeQuery("SELECT count(*), sum(p.level) FROM member m JOIN premium_member p ON m.id = p.id WHERE m.name LIKE 'Member %'")) {
+				assert(rs.next());
+				assert(rs.getInt(1) == 10);
+				assert(rs.getInt(2) == 45);
+			}
+		} finally {
+			sc.setImportMethod(ImportMethod.PREPARED_STATEMENT);
+			sc.close();
+
+			das.removeShape(shapeName);
+			try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();) {
+				statement.executeUpdate("DROP TABLE premium_member");
+				statement.executeUpdate("DROP TABLE member");
+				connection.commit();
+			}
+		}
+	}
+
+	@Test
+	public void parallelFlushRollback() throws SQLException {
+		DataModel das = am.getDataModel();
+		Shape shape = das.getShape(SHAPE_NAME);
+		TypeMapper typeMapper = das.getTypeMapper().newInstance(MapperSide.DOMAIN);
+		typeMapper.setDomainShape(shape);
+
+		am.configure(null);
+		JDBCDataStore po = (JDBCDataStore)am.getDataStore();
+		JDBCSessionContext sc = po.getSessionContext();
+		sc.setFlushMode(JDBCSessionContext.FlushMode.PARALLEL);
+		sc.setAutoCommit(false);
+		sc.beginTransaction();
+
+		try {
+			JDBCType addressType = (JDBCType) shape.getType("address");
+			JDBCType associationType = (JDBCType) shape.getType("association");
+			Settings settings = new Settings();
+			settings.setEntityType(addressType);
+			ObjectCreator oc = new ObjectCreator(settings, po, typeMapper);
+
+			// Outside autocommit the flush is serial, so the inserts are part of the session transaction
+			BusinessObject address = new ImmutableBO(addressType, null, null, oc);
+			address.setInstance(new JSONObject().put("ID", "A300").put("STREET", "Main St").put("CITY", "Springfield")
+				.put("ZIP_OR_POSTCODE", "12345").put("COUNTRY", "USA"));
+			sc.create(address, Arrays.asList(new String[] { "ID", "STREET", "CITY", "ZIP_OR_POSTCODE", "COUNTRY" }));
+
+			BusinessObject association = new ImmutableBO(associationType, null, null, oc);
+			association.setInstance(new JSONObject().put("ID", "RLA").put("NAME", "Public Library Association").put("STATE", "Illinois"));
+			sc.create(association, Arrays.asList(new String[] { "ID", "NAME", "STATE" }));
+
+			sc.flush();
+			sc.rollback();
+		} finally {
+			sc.setFlushMode(JDBCSessionContext.FlushMode.SERIAL);
+			sc.setAutoCommit(true);
+			sc.close();
+		}
+
+		try (Connection connection = dataSource.getConnection();
+			Statement statement = connection.createStatement();
+			ResultSet rs = statement.executeQuery("SELECT (SELECT count(*) FROM address WHERE id = 'A300'), (SELECT count(*) FROM association WHERE id = 'RLA') FROM address WHERE id = 'A101'")) {
+			assert(rs.next());
+			assert(rs.getInt(1) == 0);
+			assert(rs.getInt(2) == 0);
+		}
+	}
+
+	@Test
+	public void parallelFlushUncommittedParent() throws SQLException {
+		DataModel das = am.getDataModel();
+		Shape shape = das.getShape(SHAPE_NAME);
+		TypeMapper typeMapper = das.getTypeMapper().newInstance(MapperSide.DOMAIN);
+		typeMapper.setDomainShape(shape);
+
+		am.configure(null);
+		JDBCDataStore po = (JDBCDataStore)am.getDataStore();
+		JDBCSessionContext sc = po.getSessionContext();
+		sc.setFlushMode(JDBCSessionContext.FlushMode.PARALLEL);
+		sc.setAutoCommit(false);
+		sc.beginTransaction();
+
+		try {
+			JDBCType addressType = (JDBCType) shape.getType("address");
+			JDBCType libraryType = (JDBCType) shape.getType("library");
+			JDBCType associationType = (JDBCType) shape.getType("association");
+			Settings settings = new Settings();
+			settings.setEntityType(libraryType);
+			ObjectCreator oc = new ObjectCreator(settings, po, typeMapper);
+
+			// The address is flushed but not committed
+			BusinessObject address = new ImmutableBO(addressType, null, null, oc);
+			address.setInstance(new JSONObject().put("ID", "A400").put("STREET", "Main St").put("CITY", "Springfield")
+				.put("ZIP_OR_POSTCODE", "12345").put("COUNTRY", "USA"));
+			sc.create(address, Arrays.asList(new String[] { "ID", "STREET", "CITY", "ZIP_OR_POSTCODE", "COUNTRY" }));
+			sc.flush();
+
+			// The library references the uncommitted address
+			BusinessObject library = new ImmutableBO(libraryType, null, null, oc);
+			library.setInstance(new JSONObject().put("ID", "L400").put("NAME", "Springfield Library").put("ADDRESS", new JSONObject().put("ID", "A400")));
+			sc.create(library, settings, null);
+
+			BusinessObject association = new ImmutableBO(associationType, null, null, oc);
+			association.setInstance(new JSONObject().put("ID", "ULA").put("NAME", "Public Library Association").put("STATE", "Illinois"));
+			sc.create(association, Arrays.asList(new String[] { "ID", "NAME", "STATE" }));
+
+			sc.commit();
+		} finally {
+			sc.setFlushMode(JDBCSessionContext.FlushMode.SERIAL);
+			sc.setAutoCommit(true);
+			sc.close();
+		}
+
+		try (Connection connection = dataSource.getConnection();
+			Statement statement = connection.createStatement();
+			ResultSet rs = statement.executeQuery("SELECT (SELECT count(*) FROM library WHERE id = 'L400' AND address = 'A400'), (SELECT count(*) FROM association WHERE id = 'ULA') FROM address WHERE id = 'A101'")) {
+			assert(rs.next());
+			assert(rs.getInt(1) == 1);
+			assert(rs.getInt(2) == 1);
+		}
+	}
+
+	@Test
+	public void parallelBulkCreate() throws SQLException {
+		try {
+			// The associations are created by 3 threads, each with its own connection
+			List<?> result = (List<?>) am.create(getBulkAssociations(6), getBulkSettings());
+			assert(result.size() == 6);
+			assert(countBulkAssociations("Ohio") == 6);
+		} finally {
+			deleteBulkAssociations();
+		}
+	}
+
+	@Test
+	public void parallelBulkUpdate() throws SQLException {
+		Settings settings = getBulkSettings();
+		JDBCSessionContext sc = ((JDBCDataStore)am.getDataStore()).getSessionContext();
+		try {
+			am.create(getBulkAssociations(6), settings);
+
+			// The sessions of the parts also read the existing rows from the database
+			sc.setReadFromDB(true);
+			List<JSONObject> associations = getBulkAssociations(6);
+			for(JSONObject association: associations) {
+				association.put("STATE", "Texas");
+			}
+			List<?> result = (List<?>) am.update(associations, getBulkSettings());
+			assert(result.size() == 6);
+			assert(countBulkAssociations("Texas") == 6);
+		} finally {
+			sc.setReadFromDB(false);
+			deleteBulkAssociations();
+		}
+	}
+
+	@Test
+	public void parallelBulkPatch() throws SQLException {
+		try {
+			am.create(getBulkAssociations(6), getBulkSettings());
+
+			// The JDBC data store cannot attach a patch, and the failure of the parts is thrown
+			List<JSONObject> associations = getBulkAssociations(6);
+			for(JSONObject association: associations) {
+				association.put("STATE", "Utah");
+			}
+			try {
+				am.patch(associations, null, getBulkSettings());
+				assert(false);
+			} catch (UnsupportedOperationException e) {
+				assert(e.getMessage().contains("does not support dynamic update"));
+			}
+			assert(countBulkAssociations("Ohio") == 6);
+		} finally {
+			deleteBulkAssociations();
+		}
+	}
+
+	@Test
+	public void parallelBulkFailure() throws SQLException {
+		// The last part inserts an association that already exists
+		List<JSONObject> associations = getBulkAssociations(5);
+		associations.add(new JSONObject().put("ID", "ALA").put("NAME", "American Library Association").put("STATE", "Illinois"));
+
+		try {
+			am.create(associations, getBulkSettings());
+			assert(false);
+		} catch (RuntimeException e) {
+			// The failure of a part is thrown, and the parts are not rolled back together
+			assert(countBulkAssociations("Ohio") <= 5);
+		} finally {
+			deleteBulkAssociations();
+		}
+
+		try (Connection connection = dataSource.getConnection();
+			Statement statement = connection.createStatement();
+			ResultSet rs = statement.executeQuery("SELECT name FROM association WHERE id = 'ALA'")) {
+			assert(rs.next());
+			assert(rs.getString(1).equals("American Library Association"));
+			assert(!rs.next());
+		}
+
+		// The shared bulk threads are still usable after the failure
+		try {
+			List<?> result = (List<?>) am.create(getBulkAssociations(6), getBulkSettings());
+			assert(result.size() == 6);
+			assert(countBulkAssociations("Ohio") == 6);
+		} finally {
+			deleteBulkAssociations();
+		}
+	}
+
+	private Settings getBulkSettings() {
+		Shape shape = am.getDataModel().getShape(SHAPE_NAME);
+
+		am.configure(null);
+		Settings settings = new Settings();
+		settings.setEntityType(shape.getType("association"));
+		settings.init(shape);
+		settings.setBulkPoolSize(3);
+
+		return settings;
+	}
+
+	private static List<JSONObject> getBulkAssociations(int count) {
+		List<JSONObject> result = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			result.add(new JSONObject().put("ID", "BLA" + i).put("NAME", "Library Association " + i).put("STATE", "Ohio"));
+		}
+
+		return result;
+	}
+
+	private int countBulkAssociations(String state) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			PreparedStatement statement = connection.prepareStatement("SELECT count(*) FROM association WHERE id LIKE 'BLA%' AND state = ?")) {
+			statement.setString(1, state);
+			try (ResultSet rs = statement.executeQuery()) {
+				assert(rs.next());
+				return rs.getInt(1);
+			}
+		}
+	}
+
+	// The parts commit on their own connections, so the rows are not undone by a rollback
+	private void deleteBulkAssociations() throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			Statement statement = connection.createStatement()) {
+			statement.executeUpdate("DELETE FROM association WHERE id LIKE 'BLA%'");
+			if(!connection.getAutoCommit()) {
+				connection.commit();
+			}
+		}
+	}
+
+	@Test
+	public void generateImporterFailure() throws SQLException {
+		// The importer fails on the second batch, while the generator is still handing off batches
+		generateWithDuplicate(DataImporter.COMMIT_SIZE * (DataGenerator.QUEUE_CAPACITY + 6), DataImporter.COMMIT_SIZE + 1);
+	}
+
+	@Test
+	public void generateImporterFailureLastBatch() throws SQLException {
+		// The importer fails on the last batch, after all the batches have been generated
+		int count = DataImporter.COMMIT_SIZE * DataGenerator.QUEUE_CAPACITY + 1;
+		generateWithDuplicate(count, count);
+	}
+
+	private void generateWithDuplicate(int count, int duplicate) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			Statement statement = connection.createStatement()) {
+			statement.executeUpdate("INSERT INTO association (id, name, state) VALUES ('GEN" + duplicate + "', 'Existing association', 'Utah')");
+			if(!connection.getAutoCommit()) {
+				connection.commit();
+			}
+		}
+
+		Shape shape = am.getDataModel().getShape(SHAPE_NAME);
+		EntityType associationType = (EntityType)shape.getType("association");
+		associationType.addGenerator(new CounterGenerator(count, 1));
+		((ExtendedProperty)associationType.getProperty("ID")).setGenerator(new StringTemplate(new String[] {"GEN[VISITOR_CONTEXT]"}));
+		((ExtendedProperty)associationType.getProperty("NAME")).setGenerator(new StringTemplate(new String[] {"Association [VISITOR_CONTEXT]"}));
+		((ExtendedProperty)associationType.getProperty("STATE")).setGenerator(new StringTemplate(new String[] {"Texas"}));
+
+		// The generator ends with the failure of the importer instead of waiting for it
+		try {
+			assertTimeoutPreemptively(Duration.ofSeconds(60), () -> am.generate(SHAPE_NAME, Arrays.asList(new String[] { "association" }), new Settings()));
+			assert(false);
+		} catch (RuntimeException e) {
+			assert(ExceptionUtils.indexOfType(e, SQLException.class) != -1);
+		}
+
+		try (Connection connection = dataSource.getConnection();
+			Statement statement = connection.createStatement();
+			ResultSet rs = statement.executeQuery("SELECT count(*) FROM association WHERE id LIKE 'GEN%' AND state = 'Texas'")) {
+			assert(rs.next());
+			// Only the batches before the failure are committed
+			assert(rs.getInt(1) == (duplicate - 1) / DataImporter.COMMIT_SIZE * DataImporter.COMMIT_SIZE);
+		}
+	}
+
+	@Test
+	public void findByIds() {
+		DataModel das = am.getDataModel();
+		Shape shape = das.getShape(SHAPE_NAME);
+
+		am.configure(null);
+		JDBCDataStore po = (JDBCDataStore)am.getDataStore();
+		JDBCSessionContext sc = po.getSessionContext();
+		sc.setReadFromDB(true);
+
+		try {
+			JDBCType librarianType = (JDBCType) shape.getType("librarian");
+			List<Object> librarians = po.findByIds(librarianType, Arrays.asList(new String[] { "1002", "1003", "1999" }));
+			assert(librarians.size() == 2);
+
+			JSONObject librarian = (JSONObject) librarians.get(0);
+			assert(librarian.getString("NAME").equals("Lewis Carroll"));
+			assert(librarian.getJSONObject("LIBRARY").getString("ID").equals("L100"));
+			assert(sc.isNotFound(new SurrogateEntityKey("1999", AbstractTypeMapper.getSurrogateKeyTypeName(librarianType))));
+
+			// The librarian is now in the identity map and the library is loaded on demand
+			assert(po.findById(librarianType, "1003") == librarians.get(1));
+			JSONObject library = (JSONObject) po.findById(shape.getType("library"), "L100");
+			assert(library.getString("NAME").equals("British Library"));
+		} finally {
+			sc.setReadFromDB(false);
+			sc.clear();
+		}
+	}
+
+	@Test
+	public void queryFetchSize() {
+		DataModel das = am.getDataModel();
+		Shape shape = das.getShape(SHAPE_NAME);
+
+		am.configure(null);
+		JDBCSessionContext sc = ((JDBCDataStore)am.getDataStore()).getSessionContext();
+		sc.beginTransaction();
+
+		JSONObject json = new JSONObject();
+		json.put("ID", "1001");
+
+		AggregateView view = new AggregateView();
+		List<String> attributes = new ArrayList<>();
+		view.setAttributeList(attributes);
+		attributes.add("ID");
+		attributes.add("NAME");
+		attributes.add("LIBRARY.NAME");
+
+		Settings settings = new Settings();
+		JDBCType type = (JDBCType) shape.getType("librarian");
+		settings.setEntityType(type);
+		settings.setView(view);
+		settings.setFetchSize(50);
+		settings.init(shape);
+
+		// The view fetch size takes precedence over the settings, and the QueryTree over the view
+		QueryTree queryTree = new QueryTree(type, view);
+		assert(queryTree.getFetchSize(settings) == 50);
+		view.setFetchSize(1);
+		assert(queryTree.getFetchSize(settings) == 1);
+		queryTree.setFetchSize(7);
+		assert(queryTree.getFetchSize(settings) == 7);
+		sc.close();
+
+		// The view fetch size reaches the statements of the query, which runs on the
+		// session connection if it is not dispatched to other threads
+		boolean parallel = ClassUtil.doParallelDispatch();
+		ClassUtil.setParallelDispatch(false);
+		JDBCDataStore po = (JDBCDataStore)am.getDataStore();
+		DataSource original = po.getDataSource();
+		final RecordingConnection recorder = new RecordingConnection(null);
+		po.setDataSource((DataSource)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { DataSource.class },
+			(proxy, method, args) -> "getConnection".equals(method.getName()) ? recorder.wrap((Connection)RecordingConnection.invoke(original, method, args)) : RecordingConnection.invoke(original, method, args)));
+		sc.beginTransaction();
+		try {
+			List<?> toList = am.query(json, settings);
+			assert(toList.size() == 1);
+
+			json = (JSONObject)toList.get(0);
+			assert(json.getString("NAME").equals("Thomas Bodley"));
+			assert(json.getJSONObject("LIBRARY").getString("NAME").equals("Bodlein Library"));
+			assert(!recorder.fetchSizes.isEmpty());
+			for(Integer fetchSize: recorder.fetchSizes) {
+				assert(fetchSize == 1);
+			}
+		} finally {
+			sc.close();
+			po.setDataSource(original);
+			ClassUtil.setParallelDispatch(parallel);
+		}
+	}
+
+	@Test
+	public void viewFetchSize() throws JAXBException {
+		String xml = "<AggregateViews><aggregateView fetchSize=\"25\"><name>FETCHSIZE</name>"
+			+ "<attributeList>ID</attributeList></aggregateView></AggregateViews>";
+		AggregateViews views = (AggregateViews)JAXBContext.newInstance(AggregateViews.class).createUnmarshaller().unmarshal(new StringReader(xml));
+
+		AggregateView view = views.getAggregateView().iterator().next();
+		assert(view.getName().equals("FETCHSIZE"));
+		assert(view.getFetchSize() == 25);
+		assert(view.copy().getFetchSize() == 25);
+	}
+
+	@Test
+	public void streamingFetchSize() throws SQLException {
+		// A driver that streams only within a transaction, has autocommit turned off while the result is read
+		RecordingConnection recorder = new RecordingConnection("PostgreSQL");
+		try (Connection connection = recorder.wrap(dataSource.getConnection())) {
+			connection.setAutoCommit(true);
+			JDBCQuery query = new JDBCQuery("SELECT name FROM librarian WHERE id = '1001'", connection, null);
+			query.setFetchSize(5);
+			Object[] row = (Object[])query.getSingleResult(null, new Settings());
+
+			assert(row[0].equals("Thomas Bodley"));
+			assert(recorder.fetchSizes.equals(Collections.singletonList(5)));
+			assert(recorder.executeAutoCommit.equals(Collections.singletonList(Boolean.FALSE)));
+			assert(connection.getAutoCommit());
+		}
+	}
+
+	/**
+	 * Records the fetch size set on the prepared statements of a connection, and the autocommit
+	 * mode in which they are executed. Optionally reports a different database product.
+	 */
+	private static class RecordingConnection {
+		private final String productName;
+		final List<Integer> fetchSizes = new ArrayList<>();
+		final List<Boolean> executeAutoCommit = new ArrayList<>();
+
+		RecordingConnection(String productName) {
+			this.productName = productName;
+		}
+
+		Connection wrap(Connection connection) {
+			return (Connection)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { Connection.class }, (proxy, method, args) -> {
+				Object result = invoke(connection, method, args);
+				if("getMetaData".equals(method.getName()) && productName != null) {
+					return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { DatabaseMetaData.class },
+						(p, m, a) -> "getDatabaseProductName".equals(m.getName()) ? productName : invoke(result, m, a));
+				}
+				if("prepareStatement".equals(method.getName())) {
+					return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { PreparedStatement.class }, (p, m, a) -> {
+						if("setFetchSize".equals(m.getName())) {
+							fetchSizes.add((Integer)a[0]);
+						} else if("executeQuery".equals(m.getName())) {
+							executeAutoCommit.add(connection.getAutoCommit());
+						}
+						return invoke(result, m, a);
+					});
+				}
+				return result;
+			});
+		}
+
+		static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	@Test
+	public void columnBuffer() throws SQLException {
+		String sql = "SELECT id, CAST(LENGTH(street) AS BIGINT), LENGTH(city), CAST(LENGTH(country) AS DOUBLE), county_province IS NULL, CAST(NULL AS BIGINT), "
+			+ "CAST(LENGTH(zip_or_postcode) AS DECIMAL(10,2)), CAST('2020-01-02 03:04:05' AS TIMESTAMP), CAST('2020-01-02' AS DATE) FROM address ORDER BY id";
+
+		List<Object[]> expected = new ArrayList<>();
+		try (Connection connection = dataSource.getConnection();
+			Statement statement = connection.createStatement();
+			ResultSet rs = statement.executeQuery(sql)) {
+			while(rs.next()) {
+				Object[] row = new Object[rs.getMetaData().getColumnCount()];
+				for(int i = 0; i < row.length; i++) {
+					row[i] = rs.getObject(i+1);
+				}
+				expected.add(row);
+			}
+		}
+		assert(expected.size() > 2);
+
+		List<ColumnBuffer.Row> rows = new ArrayList<>();
+		try (Connection connection = dataSource.getConnection();
+			Statement statement = connection.createStatement();
+			ResultSet rs = statement.executeQuery(sql)) {
+			ColumnBuffer.Reader reader = new ColumnBuffer.Reader(rs.getMetaData());
+			ColumnBuffer buffer;
+			// Use a small block to read the result in more than one block
+			while((buffer = reader.read(rs, 2)) != null) {
+				assert(buffer.size() <= 2);
+				for(int i = 0; i < buffer.size(); i++) {
+					rows.add(buffer.getRow(i));
+				}
+			}
+		}
+
+		assert(rows.size() == expected.size());
+		for(int i = 0; i < rows.size(); i++) {
+			assert(Arrays.equals(rows.get(i).toArray(), expected.get(i)));
+		}
+		assert(rows.get(0).getValue(1) instanceof Long);
+		assert(rows.get(0).getValue(5) == null);
+		// Read with the typed getters
+		assert(rows.get(0).getValue(6) instanceof BigDecimal);
+		assert(rows.get(0).getValue(7) instanceof Timestamp);
+
+		// The rows are compared by column, also across blocks
+		assert(rows.get(0).isChanged(0, rows.get(2)));
+		assert(!rows.get(0).isChanged(5, rows.get(2)));
+	}
+
+	@Test
+	public void schemaSnapshot() throws SQLException, IOException {
+		JDBCDataModel das = (JDBCDataModel) am.getDataModel();
+		List<JDBCDataModel.TableInfo> expected = das.getTables();
+
+		File dir = Files.createTempDirectory("schema").toFile();
+		try {
+			// Captured from the database and saved
+			das.setSchemaSnapshotDir(dir);
+			checkTables(expected, das.getTables());
+			File[] files = dir.listFiles();
+			assert(files.length == 1);
+
+			// Read back from the saved snapshot
+			das.setSchemaSnapshotDir(dir);
+			checkTables(expected, das.getTables());
+
+			String key;
+			try (Connection connection = dataSource.getConnection()) {
+				key = SchemaSnapshot.getKey(connection);
+			}
+			assert(SchemaSnapshot.load(dir, key) != null);
+			assert(SchemaSnapshot.load(dir, key + "0") == null);
+
+			// An unreadable snapshot falls back to introspecting the database
+			Files.write(files[0].toPath(), "{".getBytes());
+			assert(SchemaSnapshot.load(dir, key) == null);
+			das.setSchemaSnapshotDir(dir);
+			checkTables(expected, das.getTables());
+			assert(SchemaSnapshot.load(dir, key) != null);
+
+			// A snapshot whose stored key differs is stale and is captured again
+			JSONObject stale = new JSONObject(new String(Files.readAllBytes(files[0].toPath()), StandardCharsets.UTF_8));
+			stale.put("key", key + "0");
+			Files.write(files[0].toPath(), stale.toString().getBytes(StandardCharsets.UTF_8));
+			assert(SchemaSnapshot.load(dir, key) == null);
+			das.setSchemaSnapshotDir(dir);
+			checkTables(expected, das.getTables());
+			assert(SchemaSnapshot.load(dir, key) != null);
+
+			// The key changes with the schema
+			try (Connection connection = dataSource.getConnection();
+				Statement stmt = connection.createStatement()) {
+				stmt.execute("CREATE TABLE SNAPSHOT_CHANGE (ID INTEGER PRIMARY KEY)");
+				try {
+					assert(!key.equals(SchemaSnapshot.getKey(connection)));
+					stmt.execute("ALTER TABLE SNAPSHOT_CHANGE ADD COLUMN NAME VARCHAR(10)");
+					String columnKey = SchemaSnapshot.getKey(connection);
+					stmt.execute("ALTER TABLE SNAPSHOT_CHANGE ALTER COLUMN NAME VARCHAR(20)");
+					assert(!columnKey.equals(SchemaSnapshot.getKey(connection)));
+				} finally {
+					stmt.execute("DROP TABLE SNAPSHOT_CHANGE");
+				}
+				assert(key.equals(SchemaSnapshot.getKey(connection)));
+			}
+		} finally {
+			das.setSchemaSnapshotDir(null);
+			for(File file: dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	private void checkTables(List<JDBCDataModel.TableInfo> expected, List<JDBCDataModel.TableInfo> actual) {
+		assert(expected.size() == actual.size());
+
+		Map<String, JDBCDataModel.TableInfo> actualMap = new HashMap<>();
+		for(JDBCDataModel.TableInfo table: actual) {
+			actualMap.put(table.getName(), table);
+		}
+
+		for(JDBCDataModel.TableInfo table: expected) {
+			JDBCDataModel.TableInfo other = actualMap.get(table.getName());
+			assert(other != null);
+			assert(table.getPrimaryKeys().equals(other.getPrimaryKeys()));
+
+			assert(table.getColumns().size() == other.getColumns().size());
+			for(int i = 0; i < table.getColumns().size(); i++) {
+				JDBCDataModel.ColumnInfo ci = table.getColumns().get(i);
+				JDBCDataModel.ColumnInfo oci = other.getColumns().get(i);
+				assert(ci.getName().equals(oci.getName()));
+				assert(ci.getType() == oci.getType());
+				assert(ci.isNullable() == oci.isNullable());
+				assert(ci.getLength() == oci.getLength());
+			}
+
+			List<JDBCDataModel.ForeignKey> fkeys = table.getForeignKeys() == null ? Collections.<JDBCDataModel.ForeignKey>emptyList() : table.getForeignKeys();
+			List<JDBCDataModel.ForeignKey> otherFkeys = other.getForeignKeys() == null ? Collections.<JDBCDataModel.ForeignKey>emptyList() : other.getForeignKeys();
+			assert(fkeys.size() == otherFkeys.size());
+			for(int i = 0; i < fkeys.size(); i++) {
+				JDBCDataModel.ForeignKey fk = fkeys.get(i);
+				JDBCDataModel.ForeignKey ofk = otherFkeys.get(i);
+				assert(fk.getName().equals(ofk.getName()));
+				assert(fk.getReferencedTable().getName().equals(ofk.getReferencedTable().getName()));
+				assert(fk.getReferencingColumns().equals(ofk.getReferencingColumns()));
+				assert(fk.getReferencedColumns().equals(ofk.getReferencedColumns()));
+				assert(fk.isInheritance() == ofk.isInheritance());
+			}
+		}
+	}
+
 	@Test
 	public void testRangePercent() {
 		Generator parentgen = new RangePercent(new String[] {"ID_[__]",
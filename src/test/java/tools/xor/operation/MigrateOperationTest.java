@@ -0,0 +1,80 @@
+package tools.xor.operation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test the adaptive batching of the migrate operation.
+ */
+public class MigrateOperationTest {
+
+	private static final long MILLIS = 1000000;
+
+	@Test
+	public void batchSize() {
+		MigrateOperation.BatchController controller = new MigrateOperation.BatchController(100, 400, 1000, 4);
+
+		// Fast commits with enough rows queued grow the batch up to the maximum
+		controller.record(100, 100 * MILLIS, 1000);
+		assertEquals(150, controller.getBatchSize());
+		controller.record(150, 100 * MILLIS, 1000);
+		controller.record(225, 100 * MILLIS, 1000);
+		controller.record(337, 100 * MILLIS, 1000);
+		assertEquals(400, controller.getBatchSize());
+
+		// Not enough rows queued to fill a larger batch
+		controller.record(400, 100 * MILLIS, 10);
+		assertEquals(400, controller.getBatchSize());
+
+		// Slow commits shrink the batch
+		controller.record(400, 2000 * MILLIS, 1000);
+		assertEquals(200, controller.getBatchSize());
+
+		// Within the target latency, but not fast enough to grow
+		controller.record(200, 800 * MILLIS, 1000);
+		assertEquals(200, controller.getBatchSize());
+	}
+
+	@Test
+	public void addConsumer() {
+		MigrateOperation.BatchController controller = new MigrateOperation.BatchController(100, 400, 1000, 4);
+
+		// No commit measured yet
+		assertFalse(controller.isAddConsumer(900, 1000, 2));
+
+		controller.record(100, 100 * MILLIS, 900);
+		assertTrue(controller.isAddConsumer(900, 1000, 2));
+		assertFalse(controller.isAddConsumer(100, 1000, 2));
+		assertFalse(controller.isAddConsumer(900, 1000, 4));
+
+		// The target is the bottleneck, more consumers do not help
+		controller.record(100, 2000 * MILLIS, 900);
+		assertFalse(controller.isAddConsumer(900, 1000, 2));
+	}
+
+	@Test
+	public void result() {
+		MigrateResult result = new MigrateResult();
+
+		MigrateResult.EntityResult person = result.getEntityResult("Person");
+		person.start();
+		person.addRowsRead(10);
+		person.addRowsWritten(8);
+		person.addFailedBatch();
+		person.finish();
+
+		MigrateResult.EntityResult task = result.getEntityResult("Task");
+		task.addRowsRead(5);
+		task.addRowsWritten(5);
+
+		assertTrue(result.getEntityResult("Person") == person);
+		assertEquals(2, result.getEntityResults().size());
+		assertEquals(15, result.getRowsRead());
+		assertEquals(13, result.getRowsWritten());
+		assertEquals(1, result.getFailedBatches());
+		assertTrue(person.getThroughput() >= 0);
+	}
+}
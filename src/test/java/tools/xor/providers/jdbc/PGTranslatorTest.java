@@ -0,0 +1,31 @@
+package tools.xor.providers.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+public class PGTranslatorTest {
+
+	@Test
+	public void copyConverter() {
+		PGTranslator translator = new PGTranslator();
+
+		// bytea values are written in the hex format
+		DBTranslator.JDBCtoSQLConverter bytea = translator.getCopyConverter("BYTEA");
+		assert(bytea.toSQLLiteral(new byte[] { 0x0a, (byte)0xff, 0x00 }).equals("\\x0aff00"));
+		assert(bytea.toSQLLiteral(new byte[0]).equals("\\x"));
+		assert(bytea.toSQLLiteral(null).equals("NULL"));
+
+		// The PostgreSQL type names are mapped to the JDBC type names
+		assert(translator.getCopyConverter("CHARACTER VARYING") == translator.getCSVConverter("VARCHAR"));
+		assert(translator.getCopyConverter("TIMESTAMP WITH TIME ZONE") == translator.getCSVConverter("TIMESTAMP"));
+	}
+
+	@Test
+	public void nonCopyConverter() {
+		// Only the COPY rows use the PostgreSQL specific converters
+		PGTranslator translator = new PGTranslator();
+		DBTranslator base = new HSQLTranslator();
+
+		assert(translator.getConverter("BYTEA") == base.getConverter("BYTEA"));
+		assert(translator.getCSVConverter("TIMESTAMP WITH TIME ZONE") == base.getCSVConverter("TIMESTAMP WITH TIME ZONE"));
+	}
+}
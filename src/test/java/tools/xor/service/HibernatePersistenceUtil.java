@@ -143,4 +143,20 @@ public class HibernatePersistenceUtil implements PersistenceUtil {
         };
         execute(work, ((JPADataStore)po).getEntityManager());        
     }
+
+    @Override
+    public DBTranslator getTranslator(DataStore po) {
+        final DBTranslator[] translator = new DBTranslator[1];
+        Work work = new Work()
+        {
+            @Override
+            public void execute (Connection connection) throws SQLException
+            {
+                translator[0] = DBTranslator.getTranslator(connection);
+            }
+        };
+        execute(work, ((JPADataStore)po).getEntityManager());
+
+        return translator[0];
+    }
 }
@@ -0,0 +1,154 @@
+package tools.xor.util;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+public class AccessorFactoryTest {
+
+	public static class PublicBean {
+		public static int counter;
+
+		private int count;
+		private String name;
+
+		public PublicBean() {
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public void setCount(int count) {
+			this.count = count;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			if("INVALID".equals(name)) {
+				throw new IllegalStateException("Invalid name");
+			}
+			this.name = name;
+		}
+	}
+
+	private static class PrivateBean {
+		private long size;
+		private String label;
+
+		private PrivateBean() {
+		}
+
+		private String getLabel() {
+			return label;
+		}
+
+		private void setSize(long size) {
+			this.size = size;
+		}
+	}
+
+	public static abstract class AbstractBean {
+	}
+
+	@Test
+	public void publicMembers() throws Exception {
+		Supplier constructor = AccessorFactory.constructor(PublicBean.class);
+		PublicBean bean = (PublicBean) constructor.get();
+		assert(bean != null);
+
+		BiConsumer setter = AccessorFactory.setter("PublicBean.name", PublicBean.class.getMethod("setName", String.class));
+		Function getter = AccessorFactory.getter("PublicBean.name", PublicBean.class.getMethod("getName"));
+		setter.accept(bean, "A");
+		assert(getter.apply(bean).equals("A"));
+
+		BiConsumer countSetter = AccessorFactory.setter("PublicBean.count", PublicBean.class.getMethod("setCount", int.class));
+		countSetter.accept(bean, 5);
+		assert(bean.getCount() == 5);
+	}
+
+	@Test
+	public void privateMembers() throws Exception {
+		// A constructor that is not public
+		Supplier constructor = AccessorFactory.constructor(PrivateBean.class);
+		PrivateBean bean = (PrivateBean) constructor.get();
+		assert(bean != null);
+
+		// Private fields
+		Function labelGetter = AccessorFactory.fieldGetter("PrivateBean.label", PrivateBean.class.getDeclaredField("label"));
+		BiConsumer labelSetter = AccessorFactory.fieldSetter("PrivateBean.label", PrivateBean.class.getDeclaredField("label"));
+		labelSetter.accept(bean, "B");
+		assert(labelGetter.apply(bean).equals("B"));
+
+		// Private methods
+		Function getter = AccessorFactory.getter("PrivateBean.label", PrivateBean.class.getDeclaredMethod("getLabel"));
+		assert(getter.apply(bean).equals("B"));
+		BiConsumer setter = AccessorFactory.setter("PrivateBean.size", PrivateBean.class.getDeclaredMethod("setSize", long.class));
+		setter.accept(bean, 10L);
+		assert(bean.size == 10L);
+
+		assert(!AccessorFactory.getFallbacks().contains("PrivateBean.label field getter"));
+	}
+
+	@Test
+	public void fallback() throws Exception {
+		// A static field is not an instance property, so it is accessed using reflection
+		assert(AccessorFactory.fieldGetter("PublicBean.counter", PublicBean.class.getField("counter")) == null);
+		assert(AccessorFactory.fieldSetter("PublicBean.counter", PublicBean.class.getField("counter")) == null);
+		assert(AccessorFactory.getFallbacks().contains("PublicBean.counter field getter"));
+		assert(AccessorFactory.getFallbacks().contains("PublicBean.counter field setter"));
+
+		assert(AccessorFactory.constructor(AbstractBean.class) == null);
+		assert(AccessorFactory.getFallbacks().contains(AbstractBean.class.getName() + " constructor"));
+
+		assert(AccessorFactory.getter("none", null) == null);
+		assert(AccessorFactory.fieldSetter("none", null) == null);
+	}
+
+	@Test
+	public void nullPrimitive() throws Exception {
+		PublicBean bean = new PublicBean();
+		PrivateBean privateBean = new PrivateBean();
+
+		BiConsumer[] setters = new BiConsumer[] {
+			AccessorFactory.fieldSetter("PublicBean.count", PublicBean.class.getDeclaredField("count")),
+			AccessorFactory.setter("PublicBean.count", PublicBean.class.getMethod("setCount", int.class))
+		};
+		for(BiConsumer setter: setters) {
+			try {
+				setter.accept(bean, null);
+				assert(false);
+			} catch (IllegalArgumentException e) {
+				// expected, as with reflection
+			}
+		}
+		assert(bean.getCount() == 0);
+
+		try {
+			AccessorFactory.setter("PrivateBean.size", PrivateBean.class.getDeclaredMethod("setSize", long.class)).accept(privateBean, null);
+			assert(false);
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// A null reference is allowed
+		AccessorFactory.fieldSetter("PublicBean.name", PublicBean.class.getDeclaredField("name")).accept(bean, null);
+		assert(bean.getName() == null);
+	}
+
+	@Test
+	public void setterException() throws Exception {
+		BiConsumer setter = AccessorFactory.setter("PublicBean.name", PublicBean.class.getMethod("setName", String.class));
+		try {
+			setter.accept(new PublicBean(), "INVALID");
+			assert(false);
+		} catch (IllegalStateException e) {
+			assert(e.getMessage().equals("Invalid name"));
+		}
+	}
+}